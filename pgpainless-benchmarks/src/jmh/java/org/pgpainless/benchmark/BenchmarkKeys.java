@@ -0,0 +1,95 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.pgpainless.PGPainless;
+import org.pgpainless.key.generation.type.rsa.RsaLength;
+
+/**
+ * Key material used by the benchmarks.
+ * Keys are generated once per JVM, since key generation (RSA in particular) would otherwise dominate the
+ * setup time of each trial.
+ */
+public final class BenchmarkKeys {
+
+    /**
+     * Type of the recipients encryption subkey.
+     */
+    public enum Recipient {
+        X25519,
+        RSA
+    }
+
+    private static PGPSecretKeyRing x25519Recipient;
+    private static PGPSecretKeyRing rsaRecipient;
+    private static final List<PGPSecretKeyRing> signers = new ArrayList<>();
+
+    private BenchmarkKeys() {
+
+    }
+
+    /**
+     * Return the secret key of the recipient of the given type.
+     *
+     * @param recipient recipient type
+     * @return secret key
+     */
+    public static synchronized PGPSecretKeyRing recipientKey(Recipient recipient) {
+        try {
+            switch (recipient) {
+                case X25519:
+                    if (x25519Recipient == null) {
+                        x25519Recipient = PGPainless.generateKeyRing()
+                                .modernKeyRing("Bob <bob@pgpainless.org>");
+                    }
+                    return x25519Recipient;
+                case RSA:
+                    if (rsaRecipient == null) {
+                        rsaRecipient = PGPainless.generateKeyRing()
+                                .simpleRsaKeyRing("Bob <bob@pgpainless.org>", RsaLength._3072);
+                    }
+                    return rsaRecipient;
+                default:
+                    throw new IllegalArgumentException("Unknown recipient type " + recipient);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot generate recipient key.", e);
+        }
+    }
+
+    /**
+     * Return the certificate of the recipient of the given type.
+     *
+     * @param recipient recipient type
+     * @return certificate
+     */
+    public static PGPPublicKeyRing recipientCert(Recipient recipient) {
+        return PGPainless.extractCertificate(recipientKey(recipient));
+    }
+
+    /**
+     * Return the given number of (Ed25519) signing keys.
+     *
+     * @param count number of signers
+     * @return signing keys
+     */
+    public static synchronized List<PGPSecretKeyRing> signerKeys(int count) {
+        try {
+            while (signers.size() < count) {
+                signers.add(PGPainless.generateKeyRing()
+                        .modernKeyRing("Signer " + signers.size() + " <signer" + signers.size() + "@pgpainless.org>"));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot generate signing key.", e);
+        }
+        return Collections.unmodifiableList(new ArrayList<>(signers.subList(0, count)));
+    }
+}
@@ -0,0 +1,111 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.DocumentSignatureType;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.encryption_signing.SigningOptions;
+import org.pgpainless.exception.SignatureValidationException;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.key.info.KeyRingInfo;
+import org.pgpainless.key.modification.secretkeyring.SecretKeyRingEditorInterface;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.signature.consumer.CertificateValidator;
+import org.pgpainless.signature.consumer.SignatureVerificationCache;
+
+/**
+ * Benchmark of the evaluation of certificates carrying many user-ids, such as flooded certificates from public
+ * keyservers.
+ * Self-signatures are either verified sequentially ({@code threads=0}) or concurrently on a
+ * {@link ForkJoinPool} with the given parallelism.
+ * The {@link SignatureVerificationCache} is disabled, so that every operation verifies all self-signatures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CertificateValidationBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int userIds;
+
+    @Param({"0", "4"})
+    public int threads;
+
+    private PGPPublicKeyRing certificate;
+    private PGPSignature signature;
+    private ForkJoinPool executor;
+    private SignatureVerificationCache previousCache;
+
+    @Setup(Level.Trial)
+    public void generateCertificate()
+            throws PGPException, IOException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        SecretKeyRingEditorInterface editor = PGPainless.modifyKeyRing(secretKeys);
+        for (int i = 1; i < userIds; i++) {
+            editor.addUserId("Alice " + i + " <alice" + i + "@pgpainless.org>", SecretKeyRingProtector.unprotectedKeys());
+        }
+        secretKeys = editor.done();
+        certificate = PGPainless.extractCertificate(secretKeys);
+
+        EncryptionStream signingStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(new ByteArrayOutputStream())
+                .withOptions(ProducerOptions.sign(SigningOptions.get()
+                        .addDetachedSignature(SecretKeyRingProtector.unprotectedKeys(), secretKeys,
+                                DocumentSignatureType.BINARY_DOCUMENT)));
+        signingStream.write("Hello, World!\n".getBytes(StandardCharsets.UTF_8));
+        signingStream.close();
+        for (SubkeyIdentifier signingKey : signingStream.getResult().getDetachedSignatures().keySet()) {
+            signature = signingStream.getResult().getDetachedSignatures().get(signingKey).iterator().next();
+        }
+
+        executor = threads == 0 ? null : new ForkJoinPool(threads);
+        previousCache = SignatureVerificationCache.getInstance();
+        SignatureVerificationCache.setInstance(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        SignatureVerificationCache.setInstance(previousCache);
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public int evaluateKeyRingInfo() {
+        KeyRingInfo info = KeyRingInfo.evaluate(certificate, PGPainless.getPolicy(), new Date(), executor);
+        return info.getValidUserIds().size();
+    }
+
+    @Benchmark
+    public boolean validateCertificate() throws SignatureValidationException {
+        return CertificateValidator.validateCertificate(signature, certificate, PGPainless.getPolicy(), executor);
+    }
+}
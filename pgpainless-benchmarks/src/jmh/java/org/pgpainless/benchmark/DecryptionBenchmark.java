@@ -0,0 +1,140 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.pgpainless.PGPainless;
+import org.pgpainless.decryption_verification.DecryptionStream;
+import org.pgpainless.decryption_verification.MessageMetadata;
+import org.pgpainless.decryption_verification.OpenPgpMessageInputStream;
+import org.pgpainless.encryption_signing.EncryptionStream;
+
+/**
+ * Benchmark of the {@link OpenPgpMessageInputStream} pipeline (dearmoring, decryption, decompression and
+ * signature verification).
+ * The primary result is messages per second, the secondary result "megabytes" is the plaintext throughput in MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecryptionBenchmark {
+
+    // Ciphertexts larger than this are written to a temporary file instead of being held in memory
+    private static final long MAX_IN_MEMORY_SIZE = 64L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+
+    private byte[] ciphertext;
+    private File ciphertextFile;
+
+    @Setup(Level.Trial)
+    public void encryptMessage(Message message) throws IOException, PGPException {
+        OutputStream out;
+        ByteArrayOutputStream bytes = null;
+        if (message.getLength() > MAX_IN_MEMORY_SIZE) {
+            ciphertextFile = File.createTempFile("pgpainless-benchmark", ".pgp");
+            ciphertextFile.deleteOnExit();
+            out = new BufferedOutputStream(new FileOutputStream(ciphertextFile));
+        } else {
+            bytes = new ByteArrayOutputStream();
+            out = bytes;
+        }
+
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(out)
+                .withOptions(message.producerOptions());
+        message.writePlaintext(encryptionStream);
+        encryptionStream.close();
+        out.close();
+
+        if (bytes != null) {
+            ciphertext = bytes.toByteArray();
+        }
+
+        verifySetup(message);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteMessage() {
+        ciphertext = null;
+        if (ciphertextFile != null && !ciphertextFile.delete()) {
+            ciphertextFile.deleteOnExit();
+        }
+        ciphertextFile = null;
+    }
+
+    @Benchmark
+    public long decryptAndVerify(Message message, Throughput throughput)
+            throws IOException, PGPException {
+        long read = consume(message).length;
+        throughput.processed(read);
+        return read;
+    }
+
+    // Make sure that we really measure decryption and verification of all signatures
+    private void verifySetup(Message message) throws IOException, PGPException {
+        Result result = consume(message);
+        if (result.length != message.getLength()) {
+            throw new IllegalStateException("Decrypted " + result.length + " bytes, but expected " + message.getLength());
+        }
+        if (result.metadata.getVerifiedInlineSignatures().size() != message.signers) {
+            throw new IllegalStateException("Verified " + result.metadata.getVerifiedInlineSignatures().size() +
+                    " signatures, but expected " + message.signers);
+        }
+    }
+
+    private Result consume(Message message) throws IOException, PGPException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long length = 0;
+        try (InputStream ciphertextIn = openCiphertext()) {
+            DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                    .onInputStream(ciphertextIn)
+                    .withOptions(message.consumerOptions());
+            int read;
+            while ((read = decryptionStream.read(buffer)) != -1) {
+                length += read;
+            }
+            decryptionStream.close();
+            return new Result(length, decryptionStream.getMetadata());
+        }
+    }
+
+    private InputStream openCiphertext() throws IOException {
+        if (ciphertext != null) {
+            return new ByteArrayInputStream(ciphertext);
+        }
+        return new BufferedInputStream(new FileInputStream(ciphertextFile));
+    }
+
+    private static final class Result {
+        private final long length;
+        private final MessageMetadata metadata;
+
+        private Result(long length, MessageMetadata metadata) {
+            this.length = length;
+            this.metadata = metadata;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.pgpainless.PGPainless;
+import org.pgpainless.encryption_signing.EncryptionStream;
+
+/**
+ * Benchmark of the {@link EncryptionStream} pipeline (encryption, compression, signing, armoring).
+ * The primary result is messages per second, the secondary result "megabytes" is the plaintext throughput in MB/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EncryptionBenchmark {
+
+    @Benchmark
+    public long encryptAndSign(Message message, Throughput throughput)
+            throws IOException, PGPException {
+        CountingOutputStream ciphertext = new CountingOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(ciphertext)
+                .withOptions(message.producerOptions());
+
+        message.writePlaintext(encryptionStream);
+        encryptionStream.close();
+
+        throughput.processed(message.getLength());
+        return ciphertext.count;
+    }
+
+    /**
+     * {@link OutputStream} which discards all data, only counting the number of written bytes.
+     */
+    static final class CountingOutputStream extends OutputStream {
+
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(@Nonnull byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
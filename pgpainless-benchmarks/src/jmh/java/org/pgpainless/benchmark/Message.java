@@ -0,0 +1,167 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.CompressionAlgorithm;
+import org.pgpainless.algorithm.DocumentSignatureType;
+import org.pgpainless.decryption_verification.ConsumerOptions;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.encryption_signing.SigningOptions;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+
+/**
+ * Shape of the OpenPGP message which is being produced / consumed by the benchmarks.
+ * The parameters span the dimensions that influence the cost of the streaming pipelines:
+ * message size, ASCII armor, compression, number of signers and the type of the recipient key.
+ */
+@State(Scope.Benchmark)
+public class Message {
+
+    // Plaintext is written in chunks of this size
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Size of the plaintext, e.g. "1KiB", "64MiB".
+     */
+    @Param({"1KiB", "64KiB", "1MiB", "64MiB", "1GiB"})
+    public String size;
+
+    /**
+     * Whether the message is ASCII armored.
+     */
+    @Param({"false", "true"})
+    public boolean armor;
+
+    /**
+     * Compression algorithm of the message.
+     */
+    @Param({"UNCOMPRESSED", "ZLIB"})
+    public CompressionAlgorithm compression;
+
+    /**
+     * Number of inline signatures on the message.
+     */
+    @Param({"0", "1", "3"})
+    public int signers;
+
+    /**
+     * Type of the recipients encryption subkey.
+     */
+    @Param({"X25519", "RSA"})
+    public BenchmarkKeys.Recipient recipient;
+
+    private long length;
+    private byte[] chunk;
+    private PGPSecretKeyRing recipientKey;
+    private PGPPublicKeyRing recipientCert;
+    private List<PGPSecretKeyRing> signerKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        length = parseSize(size);
+        // Random data is incompressible, which makes for a worst-case for compressed messages.
+        chunk = new byte[CHUNK_SIZE];
+        new Random(length).nextBytes(chunk);
+
+        recipientKey = BenchmarkKeys.recipientKey(recipient);
+        recipientCert = BenchmarkKeys.recipientCert(recipient);
+        signerKeys = BenchmarkKeys.signerKeys(signers);
+    }
+
+    /**
+     * Return the length of the plaintext in bytes.
+     *
+     * @return plaintext length
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Write the plaintext to the given output stream.
+     *
+     * @param outputStream output stream
+     * @throws IOException in case of an IO error
+     */
+    public void writePlaintext(OutputStream outputStream) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            int len = (int) Math.min(remaining, chunk.length);
+            outputStream.write(chunk, 0, len);
+            remaining -= len;
+        }
+    }
+
+    /**
+     * Create fresh {@link ProducerOptions} for the message.
+     * Since signature generators are stateful, new options need to be created for every message.
+     *
+     * @return producer options
+     * @throws PGPException if the signing keys cannot be unlocked
+     */
+    public ProducerOptions producerOptions() throws PGPException {
+        EncryptionOptions encryptionOptions = EncryptionOptions.get()
+                .addRecipient(recipientCert);
+        ProducerOptions producerOptions;
+        if (signers == 0) {
+            producerOptions = ProducerOptions.encrypt(encryptionOptions);
+        } else {
+            SigningOptions signingOptions = SigningOptions.get()
+                    .addInlineSignatures(SecretKeyRingProtector.unprotectedKeys(), signerKeys,
+                            DocumentSignatureType.BINARY_DOCUMENT);
+            producerOptions = ProducerOptions.signAndEncrypt(encryptionOptions, signingOptions);
+        }
+        return producerOptions
+                .setAsciiArmor(armor)
+                .overrideCompressionAlgorithm(compression);
+    }
+
+    /**
+     * Create fresh {@link ConsumerOptions} for the message.
+     *
+     * @return consumer options
+     */
+    public ConsumerOptions consumerOptions() {
+        ConsumerOptions consumerOptions = ConsumerOptions.get()
+                .addDecryptionKey(recipientKey);
+        for (PGPSecretKeyRing signerKey : signerKeys) {
+            consumerOptions.addVerificationCert(PGPainless.extractCertificate(signerKey));
+        }
+        return consumerOptions;
+    }
+
+    /**
+     * Parse a size like "64KiB" into a number of bytes.
+     *
+     * @param size size with binary unit suffix (B, KiB, MiB or GiB)
+     * @return number of bytes
+     */
+    static long parseSize(String size) {
+        String[] units = new String[] {"GiB", "MiB", "KiB", "B"};
+        int[] shifts = new int[] {30, 20, 10, 0};
+        for (int i = 0; i < units.length; i++) {
+            if (size.endsWith(units[i])) {
+                String number = size.substring(0, size.length() - units[i].length()).trim();
+                return Long.parseLong(number) << shifts[i];
+            }
+        }
+        return Long.parseLong(size);
+    }
+}
@@ -0,0 +1,116 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.CompressionAlgorithm;
+import org.pgpainless.algorithm.DocumentSignatureType;
+import org.pgpainless.decryption_verification.ConsumerOptions;
+import org.pgpainless.decryption_verification.DecryptionStream;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.encryption_signing.SigningOptions;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+
+/**
+ * Benchmark of decryption and verification of a signed and encrypted message, consumed with different read sizes.
+ * A read size of 1 uses {@link java.io.InputStream#read()}, other sizes use
+ * {@link java.io.InputStream#read(byte[], int, int)}.
+ * Since signatures are updated in blocks regardless of how the caller reads the plaintext,
+ * throughput should not depend much on the read size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReadSizeBenchmark {
+
+    @Param({"1", "16", "8192"})
+    public int readSize;
+
+    @Param({"1MiB"})
+    public String size;
+
+    @Param({"3"})
+    public int signers;
+
+    private long length;
+    private byte[] ciphertext;
+    private ConsumerOptions consumerOptions;
+
+    @Setup(Level.Trial)
+    public void encryptMessage() throws IOException, PGPException {
+        length = Message.parseSize(size);
+        byte[] plaintext = new byte[(int) length];
+        new Random(length).nextBytes(plaintext);
+
+        PGPSecretKeyRing recipientKey = BenchmarkKeys.recipientKey(BenchmarkKeys.Recipient.X25519);
+        List<PGPSecretKeyRing> signerKeys = BenchmarkKeys.signerKeys(signers);
+
+        ProducerOptions producerOptions = ProducerOptions.signAndEncrypt(
+                EncryptionOptions.get().addRecipient(PGPainless.extractCertificate(recipientKey)),
+                SigningOptions.get().addInlineSignatures(SecretKeyRingProtector.unprotectedKeys(), signerKeys,
+                        DocumentSignatureType.BINARY_DOCUMENT))
+                .overrideCompressionAlgorithm(CompressionAlgorithm.UNCOMPRESSED);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(out)
+                .withOptions(producerOptions);
+        encryptionStream.write(plaintext);
+        encryptionStream.close();
+        ciphertext = out.toByteArray();
+
+        consumerOptions = ConsumerOptions.get().addDecryptionKey(recipientKey);
+        for (PGPSecretKeyRing signerKey : signerKeys) {
+            consumerOptions.addVerificationCert(PGPainless.extractCertificate(signerKey));
+        }
+    }
+
+    @Benchmark
+    public long decryptAndVerify(Throughput throughput) throws IOException, PGPException {
+        DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(ciphertext))
+                .withOptions(consumerOptions);
+
+        long read = 0;
+        if (readSize == 1) {
+            while (decryptionStream.read() != -1) {
+                read++;
+            }
+        } else {
+            byte[] buffer = new byte[readSize];
+            int r;
+            while ((r = decryptionStream.read(buffer, 0, buffer.length)) != -1) {
+                read += r;
+            }
+        }
+        decryptionStream.close();
+
+        if (decryptionStream.getMetadata().getVerifiedInlineSignatures().size() != signers) {
+            throw new IllegalStateException("Signatures could not be verified.");
+        }
+        throughput.processed(read);
+        return read;
+    }
+}
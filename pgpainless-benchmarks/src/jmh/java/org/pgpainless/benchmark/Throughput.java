@@ -0,0 +1,35 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark result, which reports the amount of processed plaintext.
+ * Since JMH normalizes operation counters to the benchmark time unit, this results in a throughput in MB/s
+ * (given a time unit of seconds).
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+
+    private static final double MEGABYTE = 1000d * 1000d;
+
+    /**
+     * Number of processed megabytes of plaintext.
+     */
+    public double megabytes;
+
+    /**
+     * Record that the given number of plaintext bytes was processed.
+     *
+     * @param bytes number of bytes
+     */
+    public void processed(long bytes) {
+        megabytes += bytes / MEGABYTE;
+    }
+}
@@ -0,0 +1,269 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.certificate_store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.pgpainless.PGPainless;
+import org.pgpainless.decryption_verification.ConsumerOptions;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.info.KeyRingInfo;
+
+/**
+ * Certificate store, which keeps OpenPGP certificates in an append-only file inside a directory.
+ *
+ * Certificates are stored as checksummed records in the data file {@value #DATA_FILE}.
+ * Inserting a certificate which is already present appends a new record containing the merged certificate.
+ * The memory-mapped index file {@value #INDEX_FILE} maps the key-ids of all primary keys and subkeys, as well as the
+ * normalized email addresses (as extracted by {@link KeyRingInfo#getEmailAddresses()}) of each certificate to
+ * the offsets of its records. Fingerprint lookups use the key-id part of the index and compare the fingerprint
+ * of the candidate certificates.
+ * Certificates are only parsed when they are looked up, and a small number of parsed certificates is cached.
+ *
+ * Records which were appended after the index file was last written are indexed on the heap and are merged into
+ * the index file by {@link #writeIndex()}, which happens automatically when the number of those entries grows large,
+ * as well as when the store is closed. Since the index can always be rebuilt from the data file, a missing or
+ * outdated index file is repaired when the store is opened.
+ *
+ * The store can be used as a {@link ConsumerOptions.CertificateSource} for signature verification and as a
+ * {@link EncryptionOptions.RecipientCertificateSource} for looking up recipients by their email address.
+ * Since these interfaces do not allow for checked exceptions, IO errors during lookups via those methods are
+ * rethrown as {@link RuntimeException RuntimeExceptions}.
+ *
+ * The store is thread-safe, but must not be opened by multiple instances at the same time.
+ */
+public final class FileCertificateStore extends RecordStore<PGPPublicKeyRing>
+        implements ConsumerOptions.CertificateSource, EncryptionOptions.RecipientCertificateSource {
+
+    /**
+     * Name of the data file.
+     */
+    public static final String DATA_FILE = "certificates.dat";
+
+    /**
+     * Name of the index file.
+     */
+    public static final String INDEX_FILE = "certificates.idx";
+
+    /**
+     * Number of parsed certificates, which are cached.
+     */
+    public static final int CACHE_SIZE = 256;
+
+    @SuppressWarnings("CharsetObjectCanBeUsed")
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private FileCertificateStore(File directory) throws IOException {
+        super(directory, DATA_FILE, INDEX_FILE, CACHE_SIZE);
+    }
+
+    /**
+     * Open the certificate store in the given directory.
+     * If the directory does not exist, it is created.
+     *
+     * @param directory store directory
+     * @return certificate store
+     * @throws IOException in case of an IO error
+     */
+    public static FileCertificateStore open(@Nonnull File directory) throws IOException {
+        FileCertificateStore store = new FileCertificateStore(directory);
+        store.indexUnindexedRecords();
+        return store;
+    }
+
+    /**
+     * Insert a certificate into the store.
+     * If the store already contains a certificate with the same primary key, the certificates are merged.
+     *
+     * @param certificate certificate
+     * @return true if the store was modified, false if it already contained all packets of the certificate
+     * @throws IOException in case of an IO error
+     * @throws PGPException in case the certificate cannot be merged with the stored version
+     */
+    public synchronized boolean insert(@Nonnull PGPPublicKeyRing certificate) throws IOException, PGPException {
+        PGPPublicKeyRing existing = getCertificateByFingerprint(OpenPgpFingerprint.of(certificate));
+        PGPPublicKeyRing merged = existing == null ? certificate : PGPainless.mergeCertificate(existing, certificate);
+        byte[] encoding = merged.getEncoded();
+        if (existing != null && Arrays.equals(existing.getEncoded(), encoding)) {
+            return false;
+        }
+
+        append(merged, encoding);
+        return true;
+    }
+
+    /**
+     * Insert all given certificates into the store.
+     *
+     * @param certificates certificates
+     * @return number of certificates which modified the store
+     * @throws IOException in case of an IO error
+     * @throws PGPException in case a certificate cannot be merged with its stored version
+     */
+    public synchronized int insert(@Nonnull Iterable<PGPPublicKeyRing> certificates) throws IOException, PGPException {
+        int modified = 0;
+        for (PGPPublicKeyRing certificate : certificates) {
+            if (insert(certificate)) {
+                modified++;
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Return the certificate containing a primary key or subkey with the given key-id.
+     * If multiple certificates contain a key with this key-id, the most recently inserted one is returned.
+     *
+     * @param keyId key-id
+     * @return certificate or null
+     * @throws IOException in case of an IO error
+     */
+    @Nullable
+    public synchronized PGPPublicKeyRing getCertificateByKeyId(long keyId) throws IOException {
+        for (MappedIndex.Record record : lookup(MappedIndex.Section.KEY_ID, keyId)) {
+            PGPPublicKeyRing certificate = read(record);
+            if (certificate.getPublicKey(keyId) != null) {
+                return certificate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the certificate containing a primary key or subkey with the given fingerprint.
+     *
+     * @param fingerprint fingerprint
+     * @return certificate or null
+     * @throws IOException in case of an IO error
+     */
+    @Nullable
+    public synchronized PGPPublicKeyRing getCertificateByFingerprint(@Nonnull OpenPgpFingerprint fingerprint)
+            throws IOException {
+        for (MappedIndex.Record record : lookup(MappedIndex.Section.KEY_ID, fingerprint.getKeyId())) {
+            PGPPublicKeyRing certificate = read(record);
+            PGPPublicKey key = certificate.getPublicKey(fingerprint.getKeyId());
+            if (key != null && OpenPgpFingerprint.of(key).equals(fingerprint)) {
+                return certificate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the most recent versions of all certificates carrying a user-id with the given email address.
+     * Email addresses are compared case-insensitively.
+     *
+     * @param email email address
+     * @return (potentially empty) list of certificates
+     * @throws IOException in case of an IO error
+     */
+    @Nonnull
+    public synchronized List<PGPPublicKeyRing> getCertificatesByEmailAddress(@Nonnull String email)
+            throws IOException {
+        String normalized = normalize(email);
+        List<PGPPublicKeyRing> certificates = new ArrayList<>();
+        Set<OpenPgpFingerprint> seen = new HashSet<>();
+        for (MappedIndex.Record record : lookup(MappedIndex.Section.EMAIL, hash(normalized))) {
+            PGPPublicKeyRing certificate = read(record);
+            // older versions of the same certificate come later
+            if (seen.add(OpenPgpFingerprint.of(certificate)) && containsEmailAddress(certificate, normalized)) {
+                certificates.add(certificate);
+            }
+        }
+        return certificates;
+    }
+
+    @Override
+    @Nullable
+    public PGPPublicKeyRing getCertificate(long keyId) {
+        try {
+            return getCertificateByKeyId(keyId);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read certificate store.", e);
+        }
+    }
+
+    @Override
+    @Nullable
+    public PGPPublicKeyRing getCertificate(@Nonnull OpenPgpFingerprint fingerprint) {
+        try {
+            return getCertificateByFingerprint(fingerprint);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read certificate store.", e);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public List<PGPPublicKeyRing> getCertificatesByEmail(@Nonnull String email) {
+        try {
+            return getCertificatesByEmailAddress(email);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read certificate store.", e);
+        }
+    }
+
+    @Override
+    PGPPublicKeyRing parse(@Nonnull byte[] encoding) throws IOException {
+        return new PGPPublicKeyRing(encoding, ImplementationFactory.getInstance().getKeyFingerprintCalculator());
+    }
+
+    @Override
+    void index(@Nonnull PGPPublicKeyRing certificate, long offset, int length) {
+        Iterator<PGPPublicKey> keys = certificate.getPublicKeys();
+        while (keys.hasNext()) {
+            addToIndex(MappedIndex.Section.KEY_ID, keys.next().getKeyID(), offset, length);
+        }
+        Set<String> emails = new HashSet<>();
+        for (String email : PGPainless.inspectKeyRing(certificate).getEmailAddresses()) {
+            if (emails.add(normalize(email))) {
+                addToIndex(MappedIndex.Section.EMAIL, hash(normalize(email)), offset, length);
+            }
+        }
+    }
+
+    private static boolean containsEmailAddress(PGPPublicKeyRing certificate, String normalizedEmail) {
+        Iterator<String> userIds = certificate.getPublicKey().getUserIDs();
+        while (userIds.hasNext()) {
+            String email = KeyRingInfo.getEmailAddress(userIds.next());
+            if (email != null && normalize(email).equals(normalizedEmail)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the UTF-8 encoding of the given string.
+     */
+    private static long hash(String string) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : string.getBytes(UTF8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
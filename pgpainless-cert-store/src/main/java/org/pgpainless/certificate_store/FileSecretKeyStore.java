@@ -0,0 +1,251 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.certificate_store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.pgpainless.decryption_verification.ConsumerOptions;
+import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.OpenPgpFingerprint;
+
+/**
+ * Secret key store, which keeps OpenPGP secret keys in an append-only file inside a directory.
+ *
+ * Secret key rings are stored as they are (i.e. protected secret keys stay protected) as checksummed records in
+ * the data file {@value #DATA_FILE}. The memory-mapped index file {@value #INDEX_FILE} maps the key-ids of all
+ * primary keys and subkeys to the offsets of those records.
+ * Inserting a key ring with the same primary key as a stored key ring replaces the stored version.
+ *
+ * Note, that since the data file is append-only, replaced versions of a key ring (including secret keys which were
+ * removed from it) remain in the data file until {@link #compact()} is called.
+ * Use {@link #delete(OpenPgpFingerprint)} to remove a key ring including all its versions from the data file.
+ * Both methods overwrite the replaced data file with zeros, but cannot erase copies which the file system or storage
+ * device keeps elsewhere (e.g. journals, snapshots or remapped flash blocks).
+ *
+ * Key rings are only parsed when they are looked up, and the number of parsed key rings held in memory is bounded by
+ * the cache size of the store, so that a store with a large number of keys (e.g. the keys of all tenants of a
+ * service) can be used as a {@link ConsumerOptions.DecryptionKeySource} for message decryption.
+ * When decrypting a message, only the key ring of the recipient key of a PKESK is loaded, and only the matching
+ * secret key is unlocked.
+ * Since the {@link ConsumerOptions.DecryptionKeySource} interface does not allow for checked exceptions,
+ * IO errors during lookups via {@link #getDecryptionKey(long)} are rethrown as
+ * {@link RuntimeException RuntimeExceptions}.
+ *
+ * The store is thread-safe, but must not be opened by multiple instances at the same time.
+ */
+public final class FileSecretKeyStore extends RecordStore<PGPSecretKeyRing>
+        implements ConsumerOptions.DecryptionKeySource {
+
+    /**
+     * Name of the data file.
+     */
+    public static final String DATA_FILE = "secret-keys.dat";
+
+    /**
+     * Name of the index file.
+     */
+    public static final String INDEX_FILE = "secret-keys.idx";
+
+    /**
+     * Default number of parsed key rings, which are cached.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private FileSecretKeyStore(File directory, int cacheSize) throws IOException {
+        super(directory, DATA_FILE, INDEX_FILE, cacheSize);
+    }
+
+    /**
+     * Open the secret key store in the given directory.
+     * If the directory does not exist, it is created.
+     *
+     * @param directory store directory
+     * @return secret key store
+     * @throws IOException in case of an IO error
+     */
+    public static FileSecretKeyStore open(@Nonnull File directory) throws IOException {
+        return open(directory, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Open the secret key store in the given directory.
+     * If the directory does not exist, it is created.
+     *
+     * @param directory store directory
+     * @param cacheSize maximum number of parsed key rings, which are held in memory
+     * @return secret key store
+     * @throws IOException in case of an IO error
+     */
+    public static FileSecretKeyStore open(@Nonnull File directory, int cacheSize) throws IOException {
+        FileSecretKeyStore store = new FileSecretKeyStore(directory, cacheSize);
+        store.indexUnindexedRecords();
+        return store;
+    }
+
+    /**
+     * Insert a secret key ring into the store.
+     * If the store already contains a key ring with the same primary key, the stored version is replaced.
+     *
+     * Warning: The replaced version is not removed from the data file, so its secret key material stays on disk
+     * until {@link #compact()} is called.
+     *
+     * @param secretKeys secret key ring
+     * @return true if the store was modified, false if it already contained the same key ring
+     * @throws IOException in case of an IO error
+     */
+    public synchronized boolean insert(@Nonnull PGPSecretKeyRing secretKeys) throws IOException {
+        PGPSecretKeyRing existing = getSecretKeyRingByFingerprint(OpenPgpFingerprint.of(secretKeys));
+        byte[] encoding = secretKeys.getEncoded();
+        if (existing != null && Arrays.equals(existing.getEncoded(), encoding)) {
+            return false;
+        }
+        append(secretKeys, encoding);
+        return true;
+    }
+
+    /**
+     * Insert all given secret key rings into the store.
+     *
+     * @param secretKeys secret key rings
+     * @return number of key rings which modified the store
+     * @throws IOException in case of an IO error
+     */
+    public synchronized int insert(@Nonnull Iterable<PGPSecretKeyRing> secretKeys) throws IOException {
+        int modified = 0;
+        for (PGPSecretKeyRing keyRing : secretKeys) {
+            if (insert(keyRing)) {
+                modified++;
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Remove all replaced versions of key rings from the data file.
+     * This rewrites the data file, so it should be called after the store was modified, e.g. after replacing
+     * key rings whose old secret key material must no longer be kept on disk.
+     *
+     * @return number of removed versions
+     * @throws IOException in case of an IO error
+     */
+    public synchronized int compact() throws IOException {
+        return rewrite(new RecordFilter<PGPSecretKeyRing>() {
+            @Override
+            public boolean retain(@Nonnull PGPSecretKeyRing secretKeys, long offset) throws IOException {
+                return getCurrentRecord(OpenPgpFingerprint.of(secretKeys)).offset == offset;
+            }
+        });
+    }
+
+    /**
+     * Remove the key ring with the given primary key fingerprint from the store.
+     * All versions of the key ring are removed from the data file, which is rewritten.
+     * Replaced versions of other key rings are removed as well.
+     *
+     * @param primaryKeyFingerprint fingerprint of the primary key
+     * @return true if the store contained the key ring
+     * @throws IOException in case of an IO error
+     */
+    public synchronized boolean delete(@Nonnull final OpenPgpFingerprint primaryKeyFingerprint) throws IOException {
+        PGPSecretKeyRing existing = getSecretKeyRingByFingerprint(primaryKeyFingerprint);
+        if (existing == null || !OpenPgpFingerprint.of(existing).equals(primaryKeyFingerprint)) {
+            return false;
+        }
+        rewrite(new RecordFilter<PGPSecretKeyRing>() {
+            @Override
+            public boolean retain(@Nonnull PGPSecretKeyRing secretKeys, long offset) throws IOException {
+                OpenPgpFingerprint fingerprint = OpenPgpFingerprint.of(secretKeys);
+                return !fingerprint.equals(primaryKeyFingerprint) && getCurrentRecord(fingerprint).offset == offset;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Return the current version of the secret key ring containing a secret key with the given key-id.
+     * If multiple key rings contain a key with this key-id, the most recently inserted one is returned.
+     *
+     * @param keyId key-id
+     * @return secret key ring or null
+     * @throws IOException in case of an IO error
+     */
+    @Nullable
+    public synchronized PGPSecretKeyRing getSecretKeyRingByKeyId(long keyId) throws IOException {
+        for (MappedIndex.Record record : lookup(MappedIndex.Section.KEY_ID, keyId)) {
+            PGPSecretKeyRing secretKeys = read(record);
+            // Skip outdated versions, since the secret key might have been removed from the current one
+            if (secretKeys.getSecretKey(keyId) != null
+                    && getCurrentRecord(OpenPgpFingerprint.of(secretKeys)).offset == record.offset) {
+                return secretKeys;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the current version of the secret key ring containing a secret key with the given fingerprint.
+     *
+     * @param fingerprint fingerprint
+     * @return secret key ring or null
+     * @throws IOException in case of an IO error
+     */
+    @Nullable
+    public synchronized PGPSecretKeyRing getSecretKeyRingByFingerprint(@Nonnull OpenPgpFingerprint fingerprint)
+            throws IOException {
+        PGPSecretKeyRing secretKeys = getSecretKeyRingByKeyId(fingerprint.getKeyId());
+        if (secretKeys == null) {
+            return null;
+        }
+        PGPSecretKey secretKey = secretKeys.getSecretKey(fingerprint.getKeyId());
+        return OpenPgpFingerprint.of(secretKey.getPublicKey()).equals(fingerprint) ? secretKeys : null;
+    }
+
+    @Override
+    @Nullable
+    public PGPSecretKeyRing getDecryptionKey(long keyId) {
+        try {
+            return getSecretKeyRingByKeyId(keyId);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read secret key store.", e);
+        }
+    }
+
+    @Override
+    PGPSecretKeyRing parse(@Nonnull byte[] encoding) throws IOException {
+        try {
+            return new PGPSecretKeyRing(encoding, ImplementationFactory.getInstance().getKeyFingerprintCalculator());
+        } catch (PGPException e) {
+            throw new IOException("Cannot parse secret key ring.", e);
+        }
+    }
+
+    @Override
+    void index(@Nonnull PGPSecretKeyRing secretKeys, long offset, int length) {
+        Iterator<PGPSecretKey> keys = secretKeys.getSecretKeys();
+        while (keys.hasNext()) {
+            addToIndex(MappedIndex.Section.KEY_ID, keys.next().getKeyID(), offset, length);
+        }
+    }
+
+    /**
+     * Return the newest record of the key ring with the given primary key fingerprint.
+     */
+    private MappedIndex.Record getCurrentRecord(OpenPgpFingerprint primaryKeyFingerprint) throws IOException {
+        for (MappedIndex.Record record : lookup(MappedIndex.Section.KEY_ID, primaryKeyFingerprint.getKeyId())) {
+            if (OpenPgpFingerprint.of(read(record)).equals(primaryKeyFingerprint)) {
+                return record;
+            }
+        }
+        throw new IOException("Index does not contain the primary key " + primaryKeyFingerprint);
+    }
+}
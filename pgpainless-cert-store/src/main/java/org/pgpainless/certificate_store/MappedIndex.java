@@ -0,0 +1,248 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.certificate_store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Read-only, memory-mapped index file of a {@link FileCertificateStore}.
+ *
+ * The file consists of a header followed by sections of fixed-size entries, one section per {@link Section}.
+ * Every entry maps a 64-bit key (a key-id or the hash of an email address) to the offset and length of a
+ * certificate record in the data file. Within each section, entries are sorted by key and offset, so that
+ * lookups are binary searches on the mapped file and do not require the index to be loaded onto the heap.
+ *
+ * <pre>
+ * header:  magic (8 bytes) | covered data length (long) | entries per section (int, int)
+ * entry:   key (long) | record offset (long) | record length (int)
+ * </pre>
+ */
+final class MappedIndex {
+
+    /**
+     * Sections of the index.
+     */
+    enum Section {
+        /**
+         * Key-ids of primary keys and subkeys.
+         */
+        KEY_ID,
+        /**
+         * Hashes of normalized email addresses.
+         */
+        EMAIL
+    }
+
+    private static final byte[] MAGIC = new byte[] {'P', 'G', 'P', 'C', 'S', 'I', 'X', '1'};
+    private static final int HEADER_LENGTH = MAGIC.length + 8 + 4 * Section.values().length;
+    private static final int ENTRY_LENGTH = 8 + 8 + 4;
+
+    private final ByteBuffer buffer;
+    private final long dataLength;
+    private final int[] sectionStarts = new int[Section.values().length];
+    private final int[] sectionSizes = new int[Section.values().length];
+
+    private MappedIndex(@Nullable ByteBuffer buffer, long dataLength, int[] sectionSizes) {
+        this.buffer = buffer;
+        this.dataLength = dataLength;
+        int start = HEADER_LENGTH;
+        for (int i = 0; i < sectionSizes.length; i++) {
+            this.sectionStarts[i] = start;
+            this.sectionSizes[i] = sectionSizes[i];
+            start += sectionSizes[i] * ENTRY_LENGTH;
+        }
+    }
+
+    /**
+     * Return an empty index, which does not cover any records.
+     *
+     * @return empty index
+     */
+    static MappedIndex empty() {
+        return new MappedIndex(null, 0, new int[Section.values().length]);
+    }
+
+    /**
+     * Map the given index file.
+     * If the file does not exist or is malformed, null is returned, so that the index can be rebuilt from the
+     * data file.
+     *
+     * @param file index file
+     * @return index or null
+     * @throws IOException in case of an IO error
+     */
+    @Nullable
+    static MappedIndex open(@Nonnull File file) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_LENGTH || file.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        ByteBuffer buffer;
+        try {
+            // The mapping stays valid after the channel is closed
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        } finally {
+            randomAccessFile.close();
+        }
+
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            return null;
+        }
+        long dataLength = buffer.getLong();
+        int[] sectionSizes = new int[Section.values().length];
+        long expectedLength = HEADER_LENGTH;
+        for (int i = 0; i < sectionSizes.length; i++) {
+            sectionSizes[i] = buffer.getInt();
+            if (sectionSizes[i] < 0) {
+                return null;
+            }
+            expectedLength += (long) sectionSizes[i] * ENTRY_LENGTH;
+        }
+        if (dataLength < 0 || expectedLength != buffer.capacity()) {
+            return null;
+        }
+        return new MappedIndex(buffer, dataLength, sectionSizes);
+    }
+
+    /**
+     * Return the length of the data file prefix, whose records are covered by this index.
+     *
+     * @return covered data length
+     */
+    long getDataLength() {
+        return dataLength;
+    }
+
+    int size(@Nonnull Section section) {
+        return sectionSizes[section.ordinal()];
+    }
+
+    long key(@Nonnull Section section, int i) {
+        return buffer.getLong(position(section, i));
+    }
+
+    long offset(@Nonnull Section section, int i) {
+        return buffer.getLong(position(section, i) + 8);
+    }
+
+    int length(@Nonnull Section section, int i) {
+        return buffer.getInt(position(section, i) + 16);
+    }
+
+    /**
+     * Add the records of all entries with the given key in the given section to the list.
+     *
+     * @param section section
+     * @param key key
+     * @param records list of records
+     */
+    void lookup(@Nonnull Section section, long key, @Nonnull List<Record> records) {
+        int low = 0;
+        int high = size(section);
+        // lower bound of the key
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key(section, mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < size(section) && key(section, i) == key; i++) {
+            records.add(new Record(key, offset(section, i), length(section, i)));
+        }
+    }
+
+    private int position(Section section, int i) {
+        return sectionStarts[section.ordinal()] + i * ENTRY_LENGTH;
+    }
+
+    /**
+     * Write a new index file, which contains the entries of the given index merged with the given additional
+     * entries.
+     *
+     * @param file index file
+     * @param dataLength length of the data file prefix covered by the new index
+     * @param index existing index
+     * @param additions additional entries per section, sorted by key and offset
+     * @throws IOException in case of an IO error
+     */
+    static void write(@Nonnull File file,
+                      long dataLength,
+                      @Nonnull MappedIndex index,
+                      @Nonnull List<List<Record>> additions)
+            throws IOException {
+        FileOutputStream fileOut = new FileOutputStream(file);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.write(MAGIC);
+            out.writeLong(dataLength);
+            for (Section section : Section.values()) {
+                out.writeInt(index.size(section) + additions.get(section.ordinal()).size());
+            }
+            for (Section section : Section.values()) {
+                List<Record> added = additions.get(section.ordinal());
+                int i = 0;
+                int j = 0;
+                while (i < index.size(section) || j < added.size()) {
+                    if (j == added.size() || (i < index.size(section)
+                            && compare(index.key(section, i), index.offset(section, i), added.get(j)) <= 0)) {
+                        writeEntry(out, index.key(section, i), index.offset(section, i), index.length(section, i));
+                        i++;
+                    } else {
+                        Record record = added.get(j++);
+                        writeEntry(out, record.key, record.offset, record.length);
+                    }
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+    }
+
+    private static int compare(long key, long offset, Record record) {
+        if (key != record.key) {
+            return key < record.key ? -1 : 1;
+        }
+        return offset < record.offset ? -1 : (offset == record.offset ? 0 : 1);
+    }
+
+    private static void writeEntry(DataOutputStream out, long key, long offset, int length) throws IOException {
+        out.writeLong(key);
+        out.writeLong(offset);
+        out.writeInt(length);
+    }
+
+    /**
+     * Index entry, pointing to a certificate record in the data file.
+     */
+    static final class Record {
+
+        final long key;
+        final long offset;
+        final int length;
+
+        Record(long key, long offset, int length) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
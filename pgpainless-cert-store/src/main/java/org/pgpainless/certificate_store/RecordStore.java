@@ -0,0 +1,501 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.certificate_store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import javax.annotation.Nonnull;
+
+import org.pgpainless.util.LongMap;
+
+/**
+ * Base class of the file-backed stores of this package.
+ *
+ * Items are stored as records in an append-only data file, and are indexed by 64-bit keys in a
+ * memory-mapped {@link MappedIndex}. Each record starts with a header consisting of the length of the encoded item,
+ * a CRC-32 checksum of that length and a CRC-32 checksum of the encoded item, so that a record which was only
+ * partially written can be told apart from a corrupted one. Records which were appended after the index file was last written are indexed
+ * on the heap and are merged into the index file by {@link #writeIndex()}, which happens automatically when the
+ * number of those entries grows large, as well as when the store is closed.
+ * Since the index can always be rebuilt from the data file, a missing or outdated index file is repaired when the
+ * store is opened.
+ *
+ * Items are only parsed when they are read, and a bounded number of parsed items is cached.
+ *
+ * @param <T> type of stored items
+ */
+abstract class RecordStore<T> implements Closeable {
+
+    /**
+     * Number of index entries held on the heap, after which the index file is rewritten.
+     */
+    static final int MAX_UNWRITTEN_INDEX_ENTRIES = 1 << 16;
+
+    /**
+     * Length of the header preceding each record.
+     */
+    static final int RECORD_HEADER_LENGTH = 12;
+
+    private static final Comparator<MappedIndex.Record> BY_KEY_AND_OFFSET = new Comparator<MappedIndex.Record>() {
+        @Override
+        public int compare(MappedIndex.Record one, MappedIndex.Record two) {
+            if (one.key != two.key) {
+                return one.key < two.key ? -1 : 1;
+            }
+            return one.offset < two.offset ? -1 : (one.offset == two.offset ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<MappedIndex.Record> NEWEST_FIRST = new Comparator<MappedIndex.Record>() {
+        @Override
+        public int compare(MappedIndex.Record one, MappedIndex.Record two) {
+            return one.offset > two.offset ? -1 : (one.offset == two.offset ? 0 : 1);
+        }
+    };
+
+    private final File indexFile;
+    private final File dataFilePath;
+    private RandomAccessFile dataFile;
+    private FileChannel data;
+    private long dataLength;
+
+    private MappedIndex index;
+    // records appended after the index file was written, per section, in insertion order and by key
+    private final List<List<MappedIndex.Record>> unwritten = new ArrayList<>();
+    private final List<LongMap<List<MappedIndex.Record>>> unwrittenByKey = new ArrayList<>();
+    private int unwrittenEntries = 0;
+
+    private final Map<Long, T> cache;
+
+    /**
+     * Open the data and index files of a store.
+     * Subclasses must call {@link #indexUnindexedRecords()} once they are initialized.
+     *
+     * @param directory store directory
+     * @param dataFileName name of the data file
+     * @param indexFileName name of the index file
+     * @param cacheSize number of parsed items, which are cached
+     * @throws IOException in case of an IO error
+     */
+    RecordStore(@Nonnull File directory, @Nonnull String dataFileName, @Nonnull String indexFileName,
+                final int cacheSize) throws IOException {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative.");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory.getAbsolutePath());
+        }
+        this.cache = new LinkedHashMap<Long, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.indexFile = new File(directory, indexFileName);
+        this.dataFilePath = new File(directory, dataFileName);
+        this.dataFile = new RandomAccessFile(dataFilePath, "rw");
+        this.data = dataFile.getChannel();
+        for (int i = 0; i < MappedIndex.Section.values().length; i++) {
+            unwritten.add(new ArrayList<MappedIndex.Record>());
+            unwrittenByKey.add(new LongMap<List<MappedIndex.Record>>());
+        }
+
+        MappedIndex mapped = MappedIndex.open(indexFile);
+        if (mapped == null || mapped.getDataLength() > data.size()) {
+            mapped = MappedIndex.empty();
+        }
+        this.index = mapped;
+        this.dataLength = mapped.getDataLength();
+    }
+
+    /**
+     * Parse an item from its encoding.
+     *
+     * @param encoding encoding
+     * @return item
+     * @throws IOException if the item cannot be parsed
+     */
+    abstract T parse(@Nonnull byte[] encoding) throws IOException;
+
+    /**
+     * Add the index entries of an item by calling {@link #addToIndex(MappedIndex.Section, long, long, int)}.
+     *
+     * @param item item
+     * @param offset offset of the record
+     * @param length length of the record
+     */
+    abstract void index(@Nonnull T item, long offset, int length);
+
+    /**
+     * Append an item to the data file and index it.
+     *
+     * @param item item
+     * @param encoding encoding of the item
+     * @throws IOException in case of an IO error
+     */
+    final synchronized void append(@Nonnull T item, @Nonnull byte[] encoding) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + encoding.length);
+        record.putInt(encoding.length).putInt(checksum(encoding.length)).putInt(checksum(encoding)).put(encoding);
+        record.flip();
+        long offset = dataLength;
+        while (record.hasRemaining()) {
+            data.write(record, offset + record.position());
+        }
+        dataLength += RECORD_HEADER_LENGTH + encoding.length;
+        index(item, offset, encoding.length);
+
+        if (unwrittenEntries >= MAX_UNWRITTEN_INDEX_ENTRIES) {
+            writeIndex();
+        }
+    }
+
+    /**
+     * Add an index entry for the record at the given offset.
+     *
+     * @param section section
+     * @param key key
+     * @param offset offset of the record
+     * @param length length of the record
+     */
+    final void addToIndex(@Nonnull MappedIndex.Section section, long key, long offset, int length) {
+        MappedIndex.Record record = new MappedIndex.Record(key, offset, length);
+        unwritten.get(section.ordinal()).add(record);
+        LongMap<List<MappedIndex.Record>> byKey = unwrittenByKey.get(section.ordinal());
+        List<MappedIndex.Record> records = byKey.get(key);
+        if (records == null) {
+            records = new ArrayList<>(1);
+            byKey.put(key, records);
+        }
+        records.add(record);
+        unwrittenEntries++;
+    }
+
+    /**
+     * Return all records with the given key, newest first.
+     *
+     * @param section section
+     * @param key key
+     * @return records
+     */
+    @Nonnull
+    final synchronized List<MappedIndex.Record> lookup(@Nonnull MappedIndex.Section section, long key) {
+        List<MappedIndex.Record> records = new ArrayList<>();
+        index.lookup(section, key, records);
+        List<MappedIndex.Record> added = unwrittenByKey.get(section.ordinal()).get(key);
+        if (added != null) {
+            records.addAll(added);
+        }
+        Collections.sort(records, NEWEST_FIRST);
+        return records;
+    }
+
+    /**
+     * Return the (possibly cached) item stored in the given record.
+     *
+     * @param record record
+     * @return item
+     * @throws IOException in case of an IO error
+     */
+    @Nonnull
+    final synchronized T read(@Nonnull MappedIndex.Record record) throws IOException {
+        T item = cache.get(record.offset);
+        if (item == null) {
+            item = parse(readRecord(record.offset, record.length));
+            cache.put(record.offset, item);
+        }
+        return item;
+    }
+
+    /**
+     * Return the number of index entries, which have not yet been written to the index file.
+     *
+     * @return number of unwritten index entries
+     */
+    public synchronized int getUnwrittenIndexEntries() {
+        return unwrittenEntries;
+    }
+
+    /**
+     * Merge the index entries of records, which were appended after the index file was last written,
+     * into the index file.
+     *
+     * @throws IOException in case of an IO error
+     */
+    public synchronized void writeIndex() throws IOException {
+        if (unwrittenEntries == 0 && index.getDataLength() == dataLength) {
+            return;
+        }
+        data.force(false);
+
+        List<List<MappedIndex.Record>> additions = new ArrayList<>();
+        for (MappedIndex.Section section : MappedIndex.Section.values()) {
+            List<MappedIndex.Record> records = new ArrayList<>(unwritten.get(section.ordinal()));
+            Collections.sort(records, BY_KEY_AND_OFFSET);
+            additions.add(records);
+        }
+
+        File temporary = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        MappedIndex.write(temporary, dataLength, index, additions);
+        if (!temporary.renameTo(indexFile)) {
+            // Some platforms do not allow to replace existing files by renaming
+            if (!indexFile.delete() || !temporary.renameTo(indexFile)) {
+                throw new IOException("Cannot replace index file " + indexFile.getAbsolutePath());
+            }
+        }
+
+        MappedIndex written = MappedIndex.open(indexFile);
+        if (written == null) {
+            throw new IOException("Cannot read written index file " + indexFile.getAbsolutePath());
+        }
+        index = written;
+        for (int i = 0; i < unwritten.size(); i++) {
+            unwritten.set(i, new ArrayList<MappedIndex.Record>());
+            unwrittenByKey.set(i, new LongMap<List<MappedIndex.Record>>());
+        }
+        unwrittenEntries = 0;
+    }
+
+    /**
+     * Rewrite the data file, retaining only the records accepted by the given filter, and rebuild the index.
+     * The records are written to a temporary file, which then replaces the data file.
+     * Afterwards, the contents of the replaced data file are overwritten with zeros, so that discarded records
+     * (e.g. outdated secret keys) do not remain in the file system.
+     * Note, that this cannot erase copies which the file system or storage device keeps elsewhere (e.g. journals,
+     * snapshots or remapped flash blocks).
+     *
+     * @param filter filter deciding which records are retained
+     * @return number of discarded records
+     * @throws IOException in case of an IO error
+     */
+    final synchronized int rewrite(@Nonnull RecordFilter<T> filter) throws IOException {
+        File temporary = new File(dataFilePath.getParentFile(), dataFilePath.getName() + ".tmp");
+        int discarded = 0;
+        RandomAccessFile rewritten = new RandomAccessFile(temporary, "rw");
+        try {
+            FileChannel channel = rewritten.getChannel();
+            channel.truncate(0);
+            long position = 0;
+            for (long offset = 0; offset < dataLength; ) {
+                ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+                readFully(header, offset);
+                int length = header.getInt(0);
+                byte[] encoding = readRecord(offset, length);
+                T item = cache.get(offset);
+                if (filter.retain(item != null ? item : parse(encoding), offset)) {
+                    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + length);
+                    record.put(header.array()).put(encoding);
+                    record.flip();
+                    while (record.hasRemaining()) {
+                        channel.write(record, position + record.position());
+                    }
+                    position += RECORD_HEADER_LENGTH + length;
+                } else {
+                    discarded++;
+                }
+                offset += RECORD_HEADER_LENGTH + length;
+            }
+            channel.force(true);
+        } finally {
+            rewritten.close();
+        }
+        if (discarded == 0) {
+            if (!temporary.delete()) {
+                throw new IOException("Cannot delete temporary file " + temporary.getAbsolutePath());
+            }
+            return 0;
+        }
+
+        // The index refers to offsets in the old data file, so it is deleted first and rebuilt if we crash
+        if (indexFile.exists() && !indexFile.delete()) {
+            throw new IOException("Cannot delete index file " + indexFile.getAbsolutePath());
+        }
+        RandomAccessFile replaced = dataFile;
+        boolean renamed = temporary.renameTo(dataFilePath);
+        try {
+            // If the data file was replaced, its contents remain accessible through the open channel
+            zeroFill(data);
+        } finally {
+            replaced.close();
+            if (renamed) {
+                reopen();
+            }
+        }
+        if (!renamed) {
+            // Some platforms do not allow to replace existing files by renaming
+            if (!dataFilePath.delete() || !temporary.renameTo(dataFilePath)) {
+                throw new IOException("Cannot replace data file " + dataFilePath.getAbsolutePath()
+                        + ", the retained records were written to " + temporary.getAbsolutePath());
+            }
+            reopen();
+        }
+        writeIndex();
+        return discarded;
+    }
+
+    /**
+     * Open the data file after it was replaced and index it from scratch.
+     */
+    private void reopen() throws IOException {
+        dataFile = new RandomAccessFile(dataFilePath, "rw");
+        data = dataFile.getChannel();
+        index = MappedIndex.empty();
+        dataLength = 0;
+        for (int i = 0; i < unwritten.size(); i++) {
+            unwritten.set(i, new ArrayList<MappedIndex.Record>());
+            unwrittenByKey.set(i, new LongMap<List<MappedIndex.Record>>());
+        }
+        unwrittenEntries = 0;
+        cache.clear();
+        indexUnindexedRecords();
+    }
+
+    private static void zeroFill(FileChannel channel) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate(4096);
+        long size = channel.size();
+        for (long position = 0; position < size; position += zeros.limit()) {
+            zeros.clear();
+            zeros.limit((int) Math.min(zeros.capacity(), size - position));
+            while (zeros.hasRemaining()) {
+                channel.write(zeros, position + zeros.position());
+            }
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Write the index and close the store.
+     *
+     * @throws IOException in case of an IO error
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writeIndex();
+        } finally {
+            dataFile.close();
+        }
+    }
+
+    /**
+     * Index the records following the part of the data file, which is covered by the index file.
+     * A partially written record at the very end of the data file (e.g. caused by a crash) is discarded.
+     * The record checksums tell such a record apart from a corrupted one: A record is only considered partially
+     * written, if it is the last one in the file, or if the file is zero-filled from its start.
+     * Any other malformed record is reported as an error and the data file is left untouched, since discarding it
+     * would also discard all records following it.
+     * If indexing fails, the data file is closed.
+     *
+     * @throws IOException in case of an IO error or if the data file is corrupted
+     */
+    final synchronized void indexUnindexedRecords() throws IOException {
+        try {
+            long size = data.size();
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+            while (dataLength + RECORD_HEADER_LENGTH <= size) {
+                header.clear();
+                readFully(header, dataLength);
+                int length = header.getInt(0);
+                if (length < 0 || header.getInt(4) != checksum(length)) {
+                    if (isZeroFilled(dataLength, size)) {
+                        // some file systems extend the file with zeros, if a write is interrupted
+                        break;
+                    }
+                    throw new IOException("Malformed record header at offset " + dataLength
+                            + " in data file of size " + size + ".");
+                }
+                long end = dataLength + RECORD_HEADER_LENGTH + length;
+                if (end > size) {
+                    // the length is intact, so the last record was not completely written
+                    break;
+                }
+                byte[] encoding = readRecord(dataLength, length);
+                if (header.getInt(8) != checksum(encoding)) {
+                    if (end == size) {
+                        // the last record was not completely written
+                        break;
+                    }
+                    throw new IOException("Checksum mismatch of record at offset " + dataLength
+                            + " in data file of size " + size + ".");
+                }
+                index(parse(encoding), dataLength, length);
+                dataLength = end;
+            }
+            if (dataLength != size) {
+                data.truncate(dataLength);
+            }
+        } catch (IOException | RuntimeException e) {
+            dataFile.close();
+            throw e;
+        }
+    }
+
+    private boolean isZeroFilled(long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (long position = from; position < to; position += buffer.limit()) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            readFully(buffer, position);
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private byte[] readRecord(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(buffer, offset + RECORD_HEADER_LENGTH);
+        return buffer.array();
+    }
+
+    private static int checksum(int length) {
+        return checksum(ByteBuffer.allocate(4).putInt(length).array());
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of data file.");
+            }
+        }
+    }
+
+    /**
+     * Decides which records are retained when the data file is rewritten.
+     *
+     * @param <T> type of stored items
+     */
+    interface RecordFilter<T> {
+
+        /**
+         * Return true, if the given record shall be retained.
+         *
+         * @param item item stored in the record
+         * @param offset offset of the record in the current data file
+         * @return true to retain the record
+         * @throws IOException in case of an IO error
+         */
+        boolean retain(@Nonnull T item, long offset) throws IOException;
+    }
+}
@@ -0,0 +1,8 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+/**
+ * File-backed storage for large numbers of OpenPGP certificates and secret keys.
+ */
+package org.pgpainless.certificate_store;
@@ -0,0 +1,278 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.certificate_store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.DocumentSignatureType;
+import org.pgpainless.decryption_verification.ConsumerOptions;
+import org.pgpainless.decryption_verification.DecryptionStream;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.encryption_signing.SigningOptions;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+
+public class FileCertificateStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testInsertAndLookup()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPPublicKeyRing alice = certificate("Alice <alice@pgpainless.org>");
+        PGPPublicKeyRing bob = certificate("Bob <Bob@PGPainless.org>");
+
+        FileCertificateStore store = FileCertificateStore.open(tempDir);
+        assertEquals(2, store.insert(Arrays.asList(alice, bob)));
+        // inserting the same certificate again does not modify the store
+        assertFalse(store.insert(alice));
+
+        assertContainsAllKeys(store, alice);
+        assertContainsAllKeys(store, bob);
+        assertNull(store.getCertificateByKeyId(0L));
+
+        assertEncodingEquals(alice, store.getCertificatesByEmailAddress("alice@pgpainless.org"));
+        assertEncodingEquals(bob, store.getCertificatesByEmailAddress(" bob@pgpainless.org"));
+        assertTrue(store.getCertificatesByEmailAddress("mallory@pgpainless.org").isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void testReopen()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPPublicKeyRing alice = certificate("Alice <alice@pgpainless.org>");
+        PGPPublicKeyRing bob = certificate("Bob <bob@pgpainless.org>");
+        PGPPublicKeyRing charlie = certificate("Charlie <charlie@pgpainless.org>");
+
+        FileCertificateStore store = FileCertificateStore.open(tempDir);
+        store.insert(alice);
+        store.writeIndex();
+        assertEquals(0, store.getUnwrittenIndexEntries());
+        store.insert(bob);
+        assertTrue(store.getUnwrittenIndexEntries() > 0);
+        assertContainsAllKeys(store, alice);
+        assertContainsAllKeys(store, bob);
+        store.close();
+
+        // reopen from index
+        store = FileCertificateStore.open(tempDir);
+        assertEquals(0, store.getUnwrittenIndexEntries());
+        assertContainsAllKeys(store, alice);
+        assertContainsAllKeys(store, bob);
+        store.insert(charlie);
+        // simulate a crash before the index was written
+        store = FileCertificateStore.open(tempDir);
+        assertTrue(store.getUnwrittenIndexEntries() > 0);
+        assertContainsAllKeys(store, charlie);
+        store.close();
+
+        // missing index is rebuilt from the data file
+        assertTrue(new File(tempDir, FileCertificateStore.INDEX_FILE).delete());
+        store = FileCertificateStore.open(tempDir);
+        assertContainsAllKeys(store, alice);
+        assertContainsAllKeys(store, bob);
+        assertContainsAllKeys(store, charlie);
+        store.close();
+    }
+
+    @Test
+    public void testTruncatedRecordIsDiscarded()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPPublicKeyRing alice = certificate("Alice <alice@pgpainless.org>");
+        FileCertificateStore store = FileCertificateStore.open(tempDir);
+        store.insert(alice);
+        store.close();
+
+        File dataFile = new File(tempDir, FileCertificateStore.DATA_FILE);
+        long length = dataFile.length();
+        RandomAccessFile file = new RandomAccessFile(dataFile, "rw");
+        file.seek(length);
+        // intact header of a record whose encoding was not completely written
+        file.writeInt(1000);
+        CRC32 crc = new CRC32();
+        crc.update(new byte[] {0, 0, 0x03, (byte) 0xe8});
+        file.writeInt((int) crc.getValue());
+        file.writeInt(0);
+        file.write(new byte[10]);
+        file.close();
+
+        store = FileCertificateStore.open(tempDir);
+        assertEquals(length, dataFile.length());
+        assertContainsAllKeys(store, alice);
+        store.close();
+    }
+
+    @Test
+    public void testMalformedRecordBeforeTailIsNotDiscarded()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        FileCertificateStore store = FileCertificateStore.open(tempDir);
+        store.insert(certificate("Alice <alice@pgpainless.org>"));
+        store.insert(certificate("Bob <bob@pgpainless.org>"));
+        store.close();
+        assertTrue(new File(tempDir, FileCertificateStore.INDEX_FILE).delete());
+
+        File dataFile = new File(tempDir, FileCertificateStore.DATA_FILE);
+        long length = dataFile.length();
+        RandomAccessFile file = new RandomAccessFile(dataFile, "rw");
+        file.writeInt(-1);
+        file.close();
+
+        assertThrows(IOException.class, () -> FileCertificateStore.open(tempDir));
+        assertEquals(length, dataFile.length());
+    }
+
+    @Test
+    public void testRecordWithCorruptedLengthBeforeTailIsNotDiscarded()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPPublicKeyRing alice = certificate("Alice <alice@pgpainless.org>");
+        PGPPublicKeyRing bob = certificate("Bob <bob@pgpainless.org>");
+        PGPPublicKeyRing charlie = certificate("Charlie <charlie@pgpainless.org>");
+        FileCertificateStore store = FileCertificateStore.open(tempDir);
+        store.insert(alice);
+        store.insert(bob);
+        store.insert(charlie);
+        store.close();
+        assertTrue(new File(tempDir, FileCertificateStore.INDEX_FILE).delete());
+
+        // the length of bob's record now exceeds the end of the file
+        File dataFile = new File(tempDir, FileCertificateStore.DATA_FILE);
+        long length = dataFile.length();
+        RandomAccessFile file = new RandomAccessFile(dataFile, "rw");
+        long bobOffset = RecordStore.RECORD_HEADER_LENGTH + file.readInt();
+        file.seek(bobOffset);
+        int bobLength = file.readInt();
+        file.seek(bobOffset);
+        file.writeInt(0x7fff0000);
+        file.close();
+
+        assertThrows(IOException.class, () -> FileCertificateStore.open(tempDir));
+        assertEquals(length, dataFile.length());
+
+        // the records following the corrupted one survived
+        file = new RandomAccessFile(dataFile, "rw");
+        file.seek(bobOffset);
+        file.writeInt(bobLength);
+        file.close();
+        store = FileCertificateStore.open(tempDir);
+        assertContainsAllKeys(store, alice);
+        assertContainsAllKeys(store, bob);
+        assertContainsAllKeys(store, charlie);
+        store.close();
+    }
+
+    @Test
+    public void testInsertMergesCertificates()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPPublicKeyRing alice = PGPainless.extractCertificate(secretKeys);
+        PGPPublicKeyRing updated = PGPainless.extractCertificate(PGPainless.modifyKeyRing(secretKeys)
+                .addUserId("Alice <alice@example.org>", SecretKeyRingProtector.unprotectedKeys())
+                .done());
+
+        FileCertificateStore store = FileCertificateStore.open(tempDir);
+        store.insert(updated);
+        // inserting an outdated version does not modify the store
+        assertFalse(store.insert(alice));
+        store.close();
+
+        store = FileCertificateStore.open(tempDir);
+        List<PGPPublicKeyRing> found = store.getCertificatesByEmailAddress("alice@example.org");
+        assertEquals(1, found.size());
+        assertEncodingEquals(updated, found);
+        assertEncodingEquals(updated, store.getCertificatesByEmailAddress("alice@pgpainless.org"));
+        store.close();
+    }
+
+    @Test
+    public void testStoreAsCertificateSource()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing aliceKey = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPSecretKeyRing bobKey = PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>");
+        FileCertificateStore store = FileCertificateStore.open(tempDir);
+        store.insert(PGPainless.extractCertificate(aliceKey));
+        store.insert(PGPainless.extractCertificate(bobKey));
+
+        byte[] message = "Hello, World!\n".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign().onOutputStream(out)
+                .withOptions(ProducerOptions.signAndEncrypt(
+                        EncryptionOptions.get().addRecipientsByEmail("BOB@pgpainless.org", store),
+                        SigningOptions.get().addInlineSignature(SecretKeyRingProtector.unprotectedKeys(), aliceKey,
+                                DocumentSignatureType.BINARY_DOCUMENT)));
+        encryptionStream.write(message);
+        encryptionStream.close();
+
+        assertThrows(IllegalArgumentException.class, () ->
+                EncryptionOptions.get().addRecipientsByEmail("mallory@pgpainless.org", store));
+
+        DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(out.toByteArray()))
+                .withOptions(new ConsumerOptions()
+                        .addDecryptionKey(bobKey)
+                        .addCertificateSource(store));
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        Streams.pipeAll(decryptionStream, plaintext);
+        decryptionStream.close();
+
+        assertArrayEquals(message, plaintext.toByteArray());
+        assertTrue(decryptionStream.getMetadata().isVerifiedSignedBy(PGPainless.extractCertificate(aliceKey)));
+        store.close();
+    }
+
+    private static PGPPublicKeyRing certificate(String userId)
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        return PGPainless.extractCertificate(PGPainless.generateKeyRing().modernKeyRing(userId));
+    }
+
+    private static void assertContainsAllKeys(FileCertificateStore store, PGPPublicKeyRing certificate)
+            throws IOException {
+        Iterator<PGPPublicKey> keys = certificate.getPublicKeys();
+        while (keys.hasNext()) {
+            PGPPublicKey key = keys.next();
+            PGPPublicKeyRing byKeyId = store.getCertificateByKeyId(key.getKeyID());
+            assertNotNull(byKeyId);
+            assertArrayEquals(certificate.getEncoded(), byKeyId.getEncoded());
+            PGPPublicKeyRing byFingerprint = store.getCertificate(OpenPgpFingerprint.of(key));
+            assertNotNull(byFingerprint);
+            assertArrayEquals(certificate.getEncoded(), byFingerprint.getEncoded());
+        }
+    }
+
+    private static void assertEncodingEquals(PGPPublicKeyRing expected, List<PGPPublicKeyRing> actual)
+            throws IOException {
+        assertEquals(1, actual.size());
+        assertArrayEquals(expected.getEncoded(), actual.get(0).getEncoded());
+    }
+}
@@ -0,0 +1,194 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.certificate_store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pgpainless.PGPainless;
+import org.pgpainless.decryption_verification.ConsumerOptions;
+import org.pgpainless.decryption_verification.DecryptionStream;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.util.Passphrase;
+
+public class FileSecretKeyStoreTest {
+
+    private static final byte[] MESSAGE = "Hello, World!\n".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testInsertLookupAndReopen()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPSecretKeyRing bob = PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>");
+
+        FileSecretKeyStore store = FileSecretKeyStore.open(tempDir);
+        store.insert(alice);
+        store.writeIndex();
+        store.insert(bob);
+        assertFalse(store.insert(alice));
+        assertContainsAllKeys(store, alice);
+        assertContainsAllKeys(store, bob);
+        assertNull(store.getSecretKeyRingByKeyId(0L));
+        store.close();
+
+        store = FileSecretKeyStore.open(tempDir);
+        assertEquals(0, store.getUnwrittenIndexEntries());
+        assertContainsAllKeys(store, alice);
+        assertContainsAllKeys(store, bob);
+        store.close();
+    }
+
+    @Test
+    public void testInsertReplacesKeyRing()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        Iterator<PGPSecretKey> secretKeys = alice.getSecretKeys();
+        secretKeys.next();
+        PGPSecretKey removed = secretKeys.next();
+        PGPSecretKeyRing withoutSubkey = PGPSecretKeyRing.removeSecretKey(alice, removed);
+
+        FileSecretKeyStore store = FileSecretKeyStore.open(tempDir);
+        store.insert(alice);
+        assertNotNull(store.getSecretKeyRingByKeyId(removed.getKeyID()));
+        assertTrue(store.insert(withoutSubkey));
+
+        // outdated version of the key ring is no longer returned
+        assertNull(store.getSecretKeyRingByKeyId(removed.getKeyID()));
+        assertContainsAllKeys(store, withoutSubkey);
+        store.close();
+    }
+
+    @Test
+    public void testCompactAndDeleteRemoveSecretKeyMaterialFromDataFile()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPSecretKeyRing bob = PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>");
+        Iterator<PGPSecretKey> secretKeys = alice.getSecretKeys();
+        secretKeys.next();
+        PGPSecretKey removed = secretKeys.next();
+        PGPSecretKeyRing withoutSubkey = PGPSecretKeyRing.removeSecretKey(alice, removed);
+
+        FileSecretKeyStore store = FileSecretKeyStore.open(tempDir);
+        store.insert(alice);
+        store.insert(bob);
+        store.insert(withoutSubkey);
+        assertTrue(dataFileContains(removed.getEncoded()));
+
+        assertEquals(1, store.compact());
+        assertEquals(0, store.compact());
+        assertFalse(dataFileContains(removed.getEncoded()));
+        assertContainsAllKeys(store, withoutSubkey);
+        assertContainsAllKeys(store, bob);
+
+        assertTrue(store.delete(OpenPgpFingerprint.of(bob)));
+        assertFalse(store.delete(OpenPgpFingerprint.of(bob)));
+        assertNull(store.getSecretKeyRingByFingerprint(OpenPgpFingerprint.of(bob)));
+        assertFalse(dataFileContains(bob.getEncoded()));
+        assertContainsAllKeys(store, withoutSubkey);
+        store.close();
+
+        store = FileSecretKeyStore.open(tempDir);
+        assertContainsAllKeys(store, withoutSubkey);
+        assertNull(store.getSecretKeyRingByFingerprint(OpenPgpFingerprint.of(bob)));
+        store.close();
+    }
+
+    @Test
+    public void testDecryptWithKeysFromStore()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        List<PGPSecretKeyRing> tenants = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tenants.add(PGPainless.generateKeyRing()
+                    .simpleEcKeyRing("Tenant " + i + " <tenant" + i + "@pgpainless.org>", "password" + i));
+        }
+        // working set smaller than the number of keys
+        FileSecretKeyStore store = FileSecretKeyStore.open(tempDir, 2);
+        assertEquals(tenants.size(), store.insert(tenants));
+
+        SecretKeyRingProtector protector = SecretKeyRingProtector.unlockEachKeyWith(
+                Passphrase.fromPassword("password3"), tenants.get(3));
+        ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign().onOutputStream(ciphertext)
+                .withOptions(ProducerOptions.encrypt(EncryptionOptions.encryptCommunications()
+                        .addRecipient(PGPainless.extractCertificate(tenants.get(3)))));
+        encryptionStream.write(MESSAGE);
+        encryptionStream.close();
+
+        DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(ciphertext.toByteArray()))
+                .withOptions(new ConsumerOptions().addDecryptionKeySource(store, protector));
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        Streams.pipeAll(decryptionStream, plaintext);
+        decryptionStream.close();
+
+        assertArrayEquals(MESSAGE, plaintext.toByteArray());
+        SubkeyIdentifier decryptionKey = decryptionStream.getMetadata().getDecryptionKey();
+        assertNotNull(decryptionKey);
+        assertEquals(OpenPgpFingerprint.of(tenants.get(3)), decryptionKey.getPrimaryKeyFingerprint());
+        store.close();
+    }
+
+    private boolean dataFileContains(byte[] bytes) throws IOException {
+        FileInputStream in = new FileInputStream(new File(tempDir, FileSecretKeyStore.DATA_FILE));
+        byte[] data;
+        try {
+            data = Streams.readAll(in);
+        } finally {
+            in.close();
+        }
+        for (int i = 0; i + bytes.length <= data.length; i++) {
+            if (Arrays.equals(bytes, Arrays.copyOfRange(data, i, i + bytes.length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertContainsAllKeys(FileSecretKeyStore store, PGPSecretKeyRing secretKeys)
+            throws IOException {
+        Iterator<PGPPublicKey> keys = secretKeys.getPublicKeys();
+        while (keys.hasNext()) {
+            PGPPublicKey key = keys.next();
+            PGPSecretKeyRing byKeyId = store.getSecretKeyRingByKeyId(key.getKeyID());
+            assertNotNull(byKeyId);
+            assertArrayEquals(secretKeys.getEncoded(), byKeyId.getEncoded());
+            PGPSecretKeyRing byFingerprint = store.getSecretKeyRingByFingerprint(OpenPgpFingerprint.of(key));
+            assertNotNull(byFingerprint);
+            assertArrayEquals(secretKeys.getEncoded(), byFingerprint.getEncoded());
+        }
+    }
+}
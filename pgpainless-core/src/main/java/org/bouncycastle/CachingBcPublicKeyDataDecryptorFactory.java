@@ -8,16 +8,13 @@ import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPPrivateKey;
 import org.bouncycastle.openpgp.operator.PublicKeyDataDecryptorFactory;
 import org.bouncycastle.openpgp.operator.bc.BcPublicKeyDataDecryptorFactory;
-import org.bouncycastle.util.encoders.Base64;
-import org.bouncycastle.util.encoders.Hex;
+import org.pgpainless.decryption_verification.CachingPublicKeyDataDecryptorFactory;
 import org.pgpainless.decryption_verification.CustomPublicKeyDataDecryptorFactory;
+import org.pgpainless.decryption_verification.SessionKeyDataCache;
 import org.pgpainless.key.SubkeyIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Implementation of the {@link PublicKeyDataDecryptorFactory} which caches decrypted session keys.
  * That way, if a message needs to be decrypted multiple times, expensive private key operations can be omitted.
@@ -26,6 +23,9 @@ import java.util.Map;
  * cache hits.
  * If no hit is found, the method call is delegated to the underlying {@link PublicKeyDataDecryptorFactory}.
  * The result of that is then placed in the cache and returned.
+ *
+ * To cache session keys of other {@link PublicKeyDataDecryptorFactory} implementations,
+ * use {@link CachingPublicKeyDataDecryptorFactory} instead.
  */
 public class CachingBcPublicKeyDataDecryptorFactory
         extends BcPublicKeyDataDecryptorFactory
@@ -33,23 +33,37 @@ public class CachingBcPublicKeyDataDecryptorFactory
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CachingBcPublicKeyDataDecryptorFactory.class);
 
-    private final Map<String, byte[]> cachedSessionKeys = new HashMap<>();
+    private final SessionKeyDataCache cachedSessionKeys;
     private final SubkeyIdentifier decryptionKey;
 
     public CachingBcPublicKeyDataDecryptorFactory(PGPPrivateKey privateKey, SubkeyIdentifier decryptionKey) {
+        this(privateKey, decryptionKey, new SessionKeyDataCache());
+    }
+
+    /**
+     * Create a factory which stores decrypted session keys in the given (possibly shared) cache.
+     *
+     * @param privateKey private decryption key
+     * @param decryptionKey identifier of the decryption key
+     * @param cache session key cache
+     */
+    public CachingBcPublicKeyDataDecryptorFactory(PGPPrivateKey privateKey,
+                                                  SubkeyIdentifier decryptionKey,
+                                                  SessionKeyDataCache cache) {
         super(privateKey);
         this.decryptionKey = decryptionKey;
+        this.cachedSessionKeys = cache;
     }
 
     @Override
     public byte[] recoverSessionData(int keyAlgorithm, byte[][] secKeyData) throws PGPException {
-        byte[] sessionKey = lookupSessionKeyData(secKeyData);
+        byte[] sessionKey = cachedSessionKeys.get(decryptionKey, keyAlgorithm, secKeyData);
         if (sessionKey == null) {
-            LOGGER.debug("Cache miss for encrypted session key " + Hex.toHexString(secKeyData[0]));
+            LOGGER.debug("Cache miss for encrypted session key of " + decryptionKey);
             sessionKey = costlyRecoverSessionData(keyAlgorithm, secKeyData);
-            cacheSessionKeyData(secKeyData, sessionKey);
+            cachedSessionKeys.put(decryptionKey, keyAlgorithm, secKeyData, sessionKey);
         } else {
-            LOGGER.debug("Cache hit for encrypted session key " + Hex.toHexString(secKeyData[0]));
+            LOGGER.debug("Cache hit for encrypted session key of " + decryptionKey);
         }
         return sessionKey;
     }
@@ -58,34 +72,20 @@ public class CachingBcPublicKeyDataDecryptorFactory
         return super.recoverSessionData(keyAlgorithm, secKeyData);
     }
 
-    private byte[] lookupSessionKeyData(byte[][] secKeyData) {
-        String key = toKey(secKeyData);
-        byte[] sessionKey = cachedSessionKeys.get(key);
-        return copy(sessionKey);
-    }
-
-    private void cacheSessionKeyData(byte[][] secKeyData, byte[] sessionKey) {
-        String key = toKey(secKeyData);
-        cachedSessionKeys.put(key, copy(sessionKey));
-    }
-
-    private static String toKey(byte[][] secKeyData) {
-        byte[] sk = secKeyData[0];
-        String key = Base64.toBase64String(sk);
-        return key;
-    }
-
-    private static byte[] copy(byte[] bytes) {
-        if (bytes == null) {
-            return null;
-        }
-        byte[] copy = new byte[bytes.length];
-        System.arraycopy(bytes, 0, copy, 0, copy.length);
-        return copy;
+    /**
+     * Return the cache used by this factory.
+     *
+     * @return session key cache
+     */
+    public SessionKeyDataCache getCache() {
+        return cachedSessionKeys;
     }
 
+    /**
+     * Remove all session keys which were decrypted using this factories decryption key from the cache.
+     */
     public void clear() {
-        cachedSessionKeys.clear();
+        cachedSessionKeys.invalidate(decryptionKey);
     }
 
     @Override
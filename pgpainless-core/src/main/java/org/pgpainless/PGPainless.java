@@ -78,6 +78,7 @@ public final class PGPainless {
      * @param updatedCopy updated, newer copy of the cert
      * @return merged certificate
      * @throws PGPException in case of an error
+     * @see org.pgpainless.key.merge.CertificateMerger for merging large numbers of certificates
      */
     public static PGPPublicKeyRing mergeCertificate(
             @Nonnull PGPPublicKeyRing originalCopy,
@@ -187,7 +188,7 @@ public final class PGPainless {
      * @return access object
      */
     public static KeyRingInfo inspectKeyRing(PGPKeyRing keyRing) {
-        return new KeyRingInfo(keyRing);
+        return inspectKeyRing(keyRing, new Date());
     }
 
     /**
@@ -199,7 +200,7 @@ public final class PGPainless {
      * @return access object
      */
     public static KeyRingInfo inspectKeyRing(PGPKeyRing keyRing, Date referenceTime) {
-        return new KeyRingInfo(keyRing, referenceTime);
+        return KeyRingInfo.evaluate(keyRing, getPolicy(), referenceTime);
     }
 
     /**
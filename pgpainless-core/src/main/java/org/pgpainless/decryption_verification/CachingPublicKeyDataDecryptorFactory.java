@@ -0,0 +1,99 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.operator.PGPDataDecryptor;
+import org.bouncycastle.openpgp.operator.PublicKeyDataDecryptorFactory;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CustomPublicKeyDataDecryptorFactory} which wraps another {@link PublicKeyDataDecryptorFactory}
+ * and caches decrypted session keys in a {@link SessionKeyDataCache}.
+ * That way, if a message needs to be decrypted multiple times, expensive private key operations
+ * (or round-trips to a hardware token) can be omitted.
+ *
+ * A single {@link SessionKeyDataCache} can be shared between multiple factories and threads.
+ *
+ * @see HardwareSecurity.HardwareDataDecryptorFactory
+ */
+public class CachingPublicKeyDataDecryptorFactory implements CustomPublicKeyDataDecryptorFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingPublicKeyDataDecryptorFactory.class);
+
+    private final PublicKeyDataDecryptorFactory delegate;
+    private final SubkeyIdentifier decryptionKey;
+    private final SessionKeyDataCache cache;
+
+    /**
+     * Wrap the given {@link CustomPublicKeyDataDecryptorFactory}.
+     *
+     * @param delegate factory which performs the actual session key decryption
+     * @param cache session key cache
+     */
+    public CachingPublicKeyDataDecryptorFactory(@Nonnull CustomPublicKeyDataDecryptorFactory delegate,
+                                                @Nonnull SessionKeyDataCache cache) {
+        this(delegate, delegate.getSubkeyIdentifier(), cache);
+    }
+
+    /**
+     * Wrap the given {@link PublicKeyDataDecryptorFactory}.
+     *
+     * @param delegate factory which performs the actual session key decryption
+     * @param decryptionKey identifier of the decryption subkey
+     * @param cache session key cache
+     */
+    public CachingPublicKeyDataDecryptorFactory(@Nonnull PublicKeyDataDecryptorFactory delegate,
+                                                @Nonnull SubkeyIdentifier decryptionKey,
+                                                @Nonnull SessionKeyDataCache cache) {
+        this.delegate = delegate;
+        this.decryptionKey = decryptionKey;
+        this.cache = cache;
+    }
+
+    @Override
+    public byte[] recoverSessionData(int keyAlgorithm, byte[][] secKeyData) throws PGPException {
+        byte[] sessionKey = cache.get(decryptionKey, keyAlgorithm, secKeyData);
+        if (sessionKey != null) {
+            LOGGER.debug("Cache hit for encrypted session key of " + decryptionKey);
+            return sessionKey;
+        }
+
+        LOGGER.debug("Cache miss for encrypted session key of " + decryptionKey);
+        sessionKey = delegate.recoverSessionData(keyAlgorithm, secKeyData);
+        cache.put(decryptionKey, keyAlgorithm, secKeyData, sessionKey);
+        return sessionKey;
+    }
+
+    @Override
+    public PGPDataDecryptor createDataDecryptor(boolean withIntegrityPacket, int encAlgorithm, byte[] key)
+            throws PGPException {
+        return delegate.createDataDecryptor(withIntegrityPacket, encAlgorithm, key);
+    }
+
+    @Override
+    public PGPDataDecryptor createDataDecryptor(int aeadAlgorithm, byte[] iv, int chunkSize, int encAlgorithm, byte[] key)
+            throws PGPException {
+        return delegate.createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key);
+    }
+
+    /**
+     * Return the cache used by this factory.
+     *
+     * @return session key cache
+     */
+    public SessionKeyDataCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public SubkeyIdentifier getSubkeyIdentifier() {
+        return decryptionKey;
+    }
+}
@@ -6,6 +6,7 @@ package org.pgpainless.decryption_verification;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -13,6 +14,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -25,7 +27,10 @@ import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.openpgp.operator.PublicKeyDataDecryptorFactory;
 import org.pgpainless.decryption_verification.cleartext_signatures.InMemoryMultiPassStrategy;
 import org.pgpainless.decryption_verification.cleartext_signatures.MultiPassStrategy;
+import org.pgpainless.decryption_verification.session_keys.SessionKeyIndex;
+import org.pgpainless.key.OpenPgpFingerprint;
 import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.key.protection.PrivateKeyCache;
 import org.pgpainless.key.protection.SecretKeyRingProtector;
 import org.pgpainless.signature.SignatureUtils;
 import org.pgpainless.util.Passphrase;
@@ -42,18 +47,24 @@ public class ConsumerOptions {
     private Date verifyNotBefore = null;
     private Date verifyNotAfter = new Date();
 
-    private final CertificateSource certificates = new CertificateSource();
+    private final InMemoryCertificateSource certificates = new InMemoryCertificateSource();
+    private final List<CertificateSource> certificateSources = new ArrayList<>();
     private final Set<PGPSignature> detachedSignatures = new HashSet<>();
     private MissingPublicKeyCallback missingCertificateCallback = null;
 
     // Session key for decryption without passphrase/key
     private SessionKey sessionKey = null;
+    private SessionKeyIndex sessionKeyIndex = null;
     private final Map<SubkeyIdentifier, PublicKeyDataDecryptorFactory> customPublicKeyDataDecryptorFactories =
             new HashMap<>();
 
     private final Map<PGPSecretKeyRing, SecretKeyRingProtector> decryptionKeys = new HashMap<>();
+    private final DecryptionKeyIndex decryptionKeyIndex = new DecryptionKeyIndex();
     private final Set<Passphrase> decryptionPassphrases = new HashSet<>();
     private MissingKeyPassphraseStrategy missingKeyPassphraseStrategy = MissingKeyPassphraseStrategy.INTERACTIVE;
+    private PrivateKeyCache privateKeyCache = null;
+    private Executor trialDecryptionExecutor = null;
+    private Executor certificateValidationExecutor = null;
 
     private MultiPassStrategy multiPassStrategy = new InMemoryMultiPassStrategy();
 
@@ -168,6 +179,19 @@ public class ConsumerOptions {
         return this;
     }
 
+    /**
+     * Add a {@link CertificateSource} for signature verification, such as an external certificate store.
+     * Certificate sources are consulted in the order they were added, if none of the explicitly added verification
+     * certificates contains the signing key of a signature.
+     *
+     * @param certificateSource certificate source
+     * @return options
+     */
+    public ConsumerOptions addCertificateSource(@Nonnull CertificateSource certificateSource) {
+        this.certificateSources.add(certificateSource);
+        return this;
+    }
+
     /**
      * Set a callback that's used when a certificate (public key) is missing for signature verification.
      *
@@ -204,6 +228,30 @@ public class ConsumerOptions {
         return sessionKey;
     }
 
+    /**
+     * Set a {@link SessionKeyIndex} which records the session keys of decrypted public-key encrypted messages.
+     * Before trying secret keys, the index is consulted for the session key of the message, so that repeated
+     * decryption of the same message does not require private key operations.
+     * Note, that if a message is decrypted using a session key from the index,
+     * {@link MessageMetadata#getDecryptionKey()} will return null.
+     *
+     * @param sessionKeyIndex session key index or null
+     * @return options
+     */
+    public ConsumerOptions setSessionKeyIndex(@Nullable SessionKeyIndex sessionKeyIndex) {
+        this.sessionKeyIndex = sessionKeyIndex;
+        return this;
+    }
+
+    /**
+     * Return the {@link SessionKeyIndex}, or null if no index is used.
+     *
+     * @return session key index or null
+     */
+    public @Nullable SessionKeyIndex getSessionKeyIndex() {
+        return sessionKeyIndex;
+    }
+
     /**
      * Add a key for message decryption.
      * The key is expected to be unencrypted.
@@ -226,6 +274,7 @@ public class ConsumerOptions {
     public ConsumerOptions addDecryptionKey(@Nonnull PGPSecretKeyRing key,
                                             @Nonnull SecretKeyRingProtector keyRingProtector) {
         decryptionKeys.put(key, keyRingProtector);
+        decryptionKeyIndex.add(key, keyRingProtector);
         return this;
     }
 
@@ -244,6 +293,25 @@ public class ConsumerOptions {
         return this;
     }
 
+    /**
+     * Add a {@link DecryptionKeySource} for message decryption, such as an external secret key store.
+     * Sources are queried by the key-id of a PKESK in the order they were added, if none of the explicitly added
+     * decryption keys contains the recipient key.
+     * This allows to decrypt messages for a large number of potential recipients without loading all their secret
+     * keys upfront.
+     * Note, that sources are not consulted for anonymous (wildcard) PKESKs, since that would require trying all keys
+     * of the source.
+     *
+     * @param source decryption key source
+     * @param keyRingProtector protector for encrypted secret keys of the source
+     * @return options
+     */
+    public ConsumerOptions addDecryptionKeySource(@Nonnull DecryptionKeySource source,
+                                                  @Nonnull SecretKeyRingProtector keyRingProtector) {
+        decryptionKeyIndex.addSource(source, keyRingProtector);
+        return this;
+    }
+
     /**
      * Add a passphrase for message decryption.
      * This passphrase will be used to try to decrypt messages which were symmetrically encrypted for a passphrase.
@@ -291,6 +359,16 @@ public class ConsumerOptions {
         return Collections.unmodifiableSet(decryptionKeys.keySet());
     }
 
+    /**
+     * Return an index of the available decryption keys by key-id.
+     * For internal use.
+     *
+     * @return decryption key index
+     */
+    @Nonnull DecryptionKeyIndex getDecryptionKeyIndex() {
+        return decryptionKeyIndex;
+    }
+
     /**
      * Return the set of available message decryption passphrases.
      *
@@ -312,14 +390,24 @@ public class ConsumerOptions {
     }
 
     /**
-     * Return an object holding available certificates for signature verification.
+     * Return an object holding the explicitly added certificates for signature verification.
      *
      * @return certificate source
      */
-    public @Nonnull CertificateSource getCertificateSource() {
+    public @Nonnull InMemoryCertificateSource getCertificateSource() {
         return certificates;
     }
 
+    /**
+     * Return the additional {@link CertificateSource CertificateSources}, which are consulted if none of the
+     * explicitly added certificates contains the signing key of a signature.
+     *
+     * @return additional certificate sources
+     */
+    public @Nonnull List<CertificateSource> getCertificateSources() {
+        return Collections.unmodifiableList(certificateSources);
+    }
+
     /**
      * Return the callback that gets called when a certificate for signature verification is missing.
      * This method might return <pre>null</pre> if the users hasn't set a callback.
@@ -332,6 +420,9 @@ public class ConsumerOptions {
 
     /**
      * Return the {@link SecretKeyRingProtector} for the given {@link PGPSecretKeyRing}.
+     * This only covers key rings added via {@link #addDecryptionKey(PGPSecretKeyRing, SecretKeyRingProtector)}.
+     * The protectors of key rings obtained from a {@link DecryptionKeySource} are the ones passed to
+     * {@link #addDecryptionKeySource(DecryptionKeySource, SecretKeyRingProtector)}.
      *
      * @param decryptionKeyRing secret key
      * @return protector for that particular secret key
@@ -439,6 +530,85 @@ public class ConsumerOptions {
         return missingKeyPassphraseStrategy;
     }
 
+    /**
+     * Set a {@link PrivateKeyCache} which is consulted before unlocking a decryption key.
+     * Unlocked decryption keys are added to the cache.
+     * The same cache can be shared between multiple {@link ConsumerOptions} instances.
+     * Cached private keys of protected secret keys are only reused with the protector instance that unlocked them.
+     * By default, no cache is used.
+     *
+     * @param privateKeyCache cache for unlocked private keys or null
+     * @return options
+     */
+    public ConsumerOptions setPrivateKeyCache(@Nullable PrivateKeyCache privateKeyCache) {
+        this.privateKeyCache = privateKeyCache;
+        return this;
+    }
+
+    /**
+     * Return the {@link PrivateKeyCache} for unlocked decryption keys, or null if no cache is used.
+     *
+     * @return private key cache or null
+     */
+    @Nullable
+    public PrivateKeyCache getPrivateKeyCache() {
+        return privateKeyCache;
+    }
+
+    /**
+     * Set an {@link Executor} which is used to try multiple decryption keys concurrently on PKESKs with an
+     * anonymous recipient (wildcard key-id).
+     * The candidate keys are unlocked on the calling thread, so {@link SecretKeyRingProtector SecretKeyRingProtectors}
+     * are never called from the executors threads. Each attempt then decrypts the session key with one unlocked
+     * candidate key. Once an attempt succeeds, the remaining attempts are cancelled.
+     * Keys without an available passphrase are still tried one after another afterwards.
+     * The executor is also used to try multiple decryption passphrases on SKESKs concurrently.
+     * By default, candidate keys are tried sequentially.
+     *
+     * @param executor executor (e.g. a thread pool or virtual-thread-per-task executor) or null
+     * @return options
+     */
+    public ConsumerOptions setTrialDecryptionExecutor(@Nullable Executor executor) {
+        this.trialDecryptionExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Return the {@link Executor} used to try multiple decryption keys on anonymous PKESKs concurrently,
+     * or null if candidate keys are tried sequentially.
+     *
+     * @return executor or null
+     */
+    @Nullable
+    public Executor getTrialDecryptionExecutor() {
+        return trialDecryptionExecutor;
+    }
+
+    /**
+     * Set an {@link Executor} which is used to verify the self-signatures of signing certificates concurrently.
+     * The signatures on each user-id of a certificate are verified as independent tasks, which speeds up the
+     * validation of certificates with many user-ids and signatures, e.g. certificates obtained from keyservers.
+     * By default, self-signatures are verified sequentially on the calling thread.
+     *
+     * @param executor executor (e.g. a {@link java.util.concurrent.ForkJoinPool}) or null
+     * @return options
+     */
+    public ConsumerOptions setCertificateValidationExecutor(@Nullable Executor executor) {
+        this.certificateValidationExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Return the {@link Executor} used to verify self-signatures of signing certificates concurrently,
+     * or null if they are verified sequentially.
+     *
+     * @return executor or null
+     */
+    @Nullable
+    public Executor getCertificateValidationExecutor() {
+        return certificateValidationExecutor;
+    }
+
     /**
      * Set a custom multi-pass strategy for processing cleartext-signed messages.
      * Uses {@link InMemoryMultiPassStrategy} by default.
@@ -463,46 +633,47 @@ public class ConsumerOptions {
 
     /**
      * Source for OpenPGP certificates.
-     * When verifying signatures on a message, this object holds available signer certificates.
+     * When verifying signatures on a message, certificate sources are consulted for the certificates of the signers.
+     * Besides the {@link InMemoryCertificateSource} holding the explicitly added verification certificates,
+     * this interface can be implemented to look up certificates lazily from external certificate stores.
+     *
+     * @see ConsumerOptions#addCertificateSource(CertificateSource)
      */
-    public static class CertificateSource {
-
-        private Set<PGPPublicKeyRing> explicitCertificates = new HashSet<>();
+    public interface CertificateSource {
 
         /**
-         * Add a certificate as verification cert explicitly.
+         * Return a certificate which contains a primary key or subkey with the given keyId.
          *
-         * @param certificate certificate
+         * @param keyId key id
+         * @return certificate or null
          */
-        public void addCertificate(PGPPublicKeyRing certificate) {
-            this.explicitCertificates.add(certificate);
-        }
+        @Nullable PGPPublicKeyRing getCertificate(long keyId);
 
         /**
-         * Return the set of explicitly set verification certificates.
-         * @return explicitly set verification certs
+         * Return a certificate which contains a primary key or subkey with the given fingerprint.
+         *
+         * @param fingerprint fingerprint
+         * @return certificate or null
          */
-        public Set<PGPPublicKeyRing> getExplicitCertificates() {
-            return Collections.unmodifiableSet(explicitCertificates);
-        }
+        @Nullable PGPPublicKeyRing getCertificate(@Nonnull OpenPgpFingerprint fingerprint);
+    }
+
+    /**
+     * Source for secret keys used for message decryption.
+     * In contrast to the explicitly added decryption keys, which need to be parsed and held in memory upfront,
+     * this interface can be implemented to load secret keys lazily from external key stores, which is useful
+     * if there is a large number of potential recipient keys.
+     *
+     * @see ConsumerOptions#addDecryptionKeySource(DecryptionKeySource, SecretKeyRingProtector)
+     */
+    public interface DecryptionKeySource {
 
         /**
-         * Return a certificate which contains a subkey with the given keyId.
-         * This method first checks all explicitly set verification certs and if no cert is found it consults
-         * the certificate stores.
+         * Return a secret key ring which contains a secret key with the given keyId.
          *
          * @param keyId key id
-         * @return certificate
+         * @return secret key ring or null
          */
-        public PGPPublicKeyRing getCertificate(long keyId) {
-
-            for (PGPPublicKeyRing cert : explicitCertificates) {
-                if (cert.getPublicKey(keyId) != null) {
-                    return cert;
-                }
-            }
-
-            return null;
-        }
+        @Nullable PGPSecretKeyRing getDecryptionKey(long keyId);
     }
 }
@@ -0,0 +1,235 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.pgpainless.algorithm.EncryptionPurpose;
+import org.pgpainless.key.info.CertificateTimeline;
+import org.pgpainless.key.info.KeyRingInfo;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.key.util.KeyIdUtil;
+import org.pgpainless.policy.Policy;
+import org.pgpainless.util.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the decryption keys of a {@link ConsumerOptions} object.
+ * Secret keys are indexed by their key-id when the key ring is added.
+ * The encryption capabilities of a key ring are evaluated using a {@link KeyRingInfo} the first time the key ring is
+ * considered for decryption, and are then reused for all (nested) layers of the message, as well as for
+ * further messages processed with the same options, until the evaluation might change
+ * (see {@link CertificateTimeline#getNextChange(org.bouncycastle.openpgp.PGPKeyRing, Date)}), e.g. because a subkey
+ * expired.
+ *
+ * If no explicitly added key ring contains a secret key with the requested key-id, the
+ * {@link ConsumerOptions.DecryptionKeySource DecryptionKeySources} are queried.
+ * Only the capabilities of a bounded number of key rings obtained from those sources are remembered, so that the
+ * memory footprint does not grow with the number of keys in the sources.
+ * Key rings are returned along with their protector, so that the protector of a key ring obtained from a source is
+ * available regardless of whether its capabilities are still remembered.
+ */
+final class DecryptionKeyIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecryptionKeyIndex.class);
+
+    /**
+     * Number of key rings obtained from {@link ConsumerOptions.DecryptionKeySource DecryptionKeySources},
+     * whose capabilities are remembered.
+     */
+    static final int MAX_SOURCE_KEY_RINGS = 1024;
+
+    private final List<PGPSecretKeyRing> keyRings = new ArrayList<>();
+    private final Set<PGPSecretKeyRing> knownKeyRings =
+            Collections.newSetFromMap(new IdentityHashMap<PGPSecretKeyRing, Boolean>());
+    private final Map<Long, List<PGPSecretKeyRing>> keyRingsByKeyId = new HashMap<>();
+    private final Map<PGPSecretKeyRing, SecretKeyRingProtector> protectors = new IdentityHashMap<>();
+    private final Map<PGPSecretKeyRing, Capabilities> capabilities = new IdentityHashMap<>();
+    private final List<Tuple<ConsumerOptions.DecryptionKeySource, SecretKeyRingProtector>> sources = new ArrayList<>();
+    // PGPSecretKeyRing does not override equals(), so key rings are compared by identity
+    private final Map<PGPSecretKeyRing, Capabilities> sourceCapabilities =
+            new LinkedHashMap<PGPSecretKeyRing, Capabilities>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<PGPSecretKeyRing, Capabilities> eldest) {
+                    return size() > MAX_SOURCE_KEY_RINGS;
+                }
+            };
+    private Policy evaluatedPolicy;
+
+    /**
+     * Add a key ring to the index.
+     * If the key ring was already added, its protector is replaced.
+     *
+     * @param keyRing secret key ring
+     * @param protector protector for the secret keys of the key ring
+     */
+    synchronized void add(@Nonnull PGPSecretKeyRing keyRing, @Nonnull SecretKeyRingProtector protector) {
+        protectors.put(keyRing, protector);
+        if (!knownKeyRings.add(keyRing)) {
+            return;
+        }
+
+        keyRings.add(keyRing);
+        Iterator<PGPSecretKey> secretKeys = keyRing.getSecretKeys();
+        while (secretKeys.hasNext()) {
+            long keyId = secretKeys.next().getKeyID();
+            List<PGPSecretKeyRing> candidates = keyRingsByKeyId.get(keyId);
+            if (candidates == null) {
+                candidates = new ArrayList<>(1);
+                keyRingsByKeyId.put(keyId, candidates);
+            }
+            candidates.add(keyRing);
+        }
+    }
+
+    /**
+     * Add a source, which is queried for decryption keys, which are not contained in any of the added key rings.
+     *
+     * @param source decryption key source
+     * @param protector protector for the secret keys of the source
+     */
+    synchronized void addSource(@Nonnull ConsumerOptions.DecryptionKeySource source,
+                                @Nonnull SecretKeyRingProtector protector) {
+        sources.add(new Tuple<>(source, protector));
+    }
+
+    /**
+     * Return the key ring containing the secret key with the given key-id, given that the key is
+     * currently encryption capable, along with the protector of the key ring.
+     *
+     * @param keyId key-id of the secret key
+     * @param policy policy
+     * @return key ring and protector or null
+     */
+    @Nullable
+    Tuple<PGPSecretKeyRing, SecretKeyRingProtector> getDecryptionKey(long keyId, @Nonnull Policy policy) {
+        return getDecryptionKey(keyId, policy, new Date());
+    }
+
+    /**
+     * Return the key ring containing the secret key with the given key-id, given that the key is
+     * encryption capable at the reference date, along with the protector of the key ring.
+     *
+     * @param keyId key-id of the secret key
+     * @param policy policy
+     * @param referenceDate reference date
+     * @return key ring and protector or null
+     */
+    @Nullable
+    synchronized Tuple<PGPSecretKeyRing, SecretKeyRingProtector> getDecryptionKey(long keyId,
+                                                                                 @Nonnull Policy policy,
+                                                                                 @Nonnull Date referenceDate) {
+        List<PGPSecretKeyRing> candidates = keyRingsByKeyId.get(keyId);
+        if (candidates != null) {
+            for (PGPSecretKeyRing keyRing : candidates) {
+                if (getCapabilities(keyRing, policy, referenceDate, capabilities).encryptionKeyIds.contains(keyId)) {
+                    return new Tuple<>(keyRing, protectors.get(keyRing));
+                }
+                LOGGER.debug("Subkey " + KeyIdUtil.formatKeyId(keyId) + " cannot be used for decryption.");
+            }
+        }
+
+        for (Tuple<ConsumerOptions.DecryptionKeySource, SecretKeyRingProtector> source : sources) {
+            PGPSecretKeyRing keyRing = source.getA().getDecryptionKey(keyId);
+            if (keyRing == null || keyRing.getSecretKey(keyId) == null) {
+                continue;
+            }
+            if (getCapabilities(keyRing, policy, referenceDate, sourceCapabilities).encryptionKeyIds.contains(keyId)) {
+                return new Tuple<>(keyRing, source.getB());
+            }
+            LOGGER.debug("Subkey " + KeyIdUtil.formatKeyId(keyId) + " cannot be used for decryption.");
+        }
+        return null;
+    }
+
+    /**
+     * Return all available encryption capable secret keys of the given public key algorithm.
+     * Those are candidates for the decryption of anonymous (wildcard) PKESKs.
+     *
+     * @param algorithm public key algorithm
+     * @param policy policy
+     * @return list of key rings and secret keys
+     */
+    @Nonnull
+    synchronized List<Tuple<PGPSecretKeyRing, PGPSecretKey>> getDecryptionKeyCandidates(int algorithm,
+                                                                                          @Nonnull Policy policy) {
+        List<Tuple<PGPSecretKeyRing, PGPSecretKey>> candidates = new ArrayList<>();
+        Date referenceDate = new Date();
+        for (PGPSecretKeyRing keyRing : keyRings) {
+            Capabilities evaluated = getCapabilities(keyRing, policy, referenceDate, capabilities);
+            for (PGPSecretKey secretKey : evaluated.availableEncryptionKeys) {
+                if (secretKey.getPublicKey().getAlgorithm() == algorithm) {
+                    candidates.add(new Tuple<>(keyRing, secretKey));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private Capabilities getCapabilities(PGPSecretKeyRing keyRing, Policy policy, Date referenceDate,
+                                         Map<PGPSecretKeyRing, Capabilities> evaluatedCapabilities) {
+        if (policy != evaluatedPolicy) {
+            capabilities.clear();
+            sourceCapabilities.clear();
+            evaluatedPolicy = policy;
+        }
+
+        Capabilities evaluated = evaluatedCapabilities.get(keyRing);
+        if (evaluated == null || !evaluated.isValidAt(referenceDate)) {
+            evaluated = new Capabilities(KeyRingInfo.evaluate(keyRing, policy, referenceDate),
+                    referenceDate, CertificateTimeline.getNextChange(keyRing, referenceDate));
+            evaluatedCapabilities.put(keyRing, evaluated);
+        }
+        return evaluated;
+    }
+
+    /**
+     * Encryption capabilities of a key ring during the period in which its evaluation does not change.
+     */
+    private static final class Capabilities {
+
+        // start and (exclusive) end of the period in milliseconds
+        private final long evaluatedAt;
+        private final long nextChange;
+
+        // key-ids of encryption capable subkeys
+        private final Set<Long> encryptionKeyIds = new HashSet<>();
+        // encryption capable secret keys, which are not stored on a smart card
+        private final List<PGPSecretKey> availableEncryptionKeys = new ArrayList<>();
+
+        Capabilities(KeyRingInfo info, Date referenceDate, @Nullable Date nextChange) {
+            this.evaluatedAt = referenceDate.getTime();
+            this.nextChange = nextChange == null ? Long.MAX_VALUE : nextChange.getTime();
+            for (PGPPublicKey encryptionKey : info.getEncryptionSubkeys(EncryptionPurpose.ANY)) {
+                encryptionKeyIds.add(encryptionKey.getKeyID());
+                if (info.isSecretKeyAvailable(encryptionKey.getKeyID())) {
+                    availableEncryptionKeys.add(info.getSecretKey(encryptionKey.getKeyID()));
+                }
+            }
+        }
+
+        boolean isValidAt(Date referenceDate) {
+            long time = referenceDate.getTime();
+            // the last change before the reference date is not known, so the period does not extend backwards
+            return time >= evaluatedAt && time < nextChange;
+        }
+    }
+}
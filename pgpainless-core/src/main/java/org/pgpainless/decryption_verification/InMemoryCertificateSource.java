@@ -0,0 +1,72 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.util.LongMap;
+
+/**
+ * {@link ConsumerOptions.CertificateSource} holding certificates in memory.
+ * Certificates are indexed by the key-ids and fingerprints of their primary keys and subkeys when they are added,
+ * so that looking up the certificate of a signer does not depend on the number of available certificates.
+ *
+ * If multiple certificates contain a key with the same key-id, lookups by key-id return the certificate which
+ * was added first.
+ */
+public class InMemoryCertificateSource implements ConsumerOptions.CertificateSource {
+
+    private final Set<PGPPublicKeyRing> explicitCertificates = new LinkedHashSet<>();
+    private final LongMap<PGPPublicKeyRing> certificatesByKeyId = new LongMap<>();
+    private final Map<OpenPgpFingerprint, PGPPublicKeyRing> certificatesByFingerprint = new HashMap<>();
+
+    /**
+     * Add a certificate as verification cert explicitly.
+     *
+     * @param certificate certificate
+     */
+    public void addCertificate(@Nonnull PGPPublicKeyRing certificate) {
+        if (!explicitCertificates.add(certificate)) {
+            return;
+        }
+        Iterator<PGPPublicKey> keys = certificate.getPublicKeys();
+        while (keys.hasNext()) {
+            PGPPublicKey key = keys.next();
+            certificatesByKeyId.putIfAbsent(key.getKeyID(), certificate);
+            OpenPgpFingerprint fingerprint = OpenPgpFingerprint.of(key);
+            if (!certificatesByFingerprint.containsKey(fingerprint)) {
+                certificatesByFingerprint.put(fingerprint, certificate);
+            }
+        }
+    }
+
+    /**
+     * Return the set of explicitly set verification certificates.
+     * @return explicitly set verification certs
+     */
+    public @Nonnull Set<PGPPublicKeyRing> getExplicitCertificates() {
+        return Collections.unmodifiableSet(explicitCertificates);
+    }
+
+    @Override
+    public @Nullable PGPPublicKeyRing getCertificate(long keyId) {
+        return certificatesByKeyId.get(keyId);
+    }
+
+    @Override
+    public @Nullable PGPPublicKeyRing getCertificate(@Nonnull OpenPgpFingerprint fingerprint) {
+        return certificatesByFingerprint.get(fingerprint);
+    }
+}
@@ -4,22 +4,37 @@
 
 package org.pgpainless.decryption_verification;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.bouncycastle.bcpg.ArmoredInputStream;
 import org.bouncycastle.bcpg.BCPGInputStream;
+import org.bouncycastle.bcpg.PacketTags;
 import org.bouncycastle.bcpg.S2K;
 import org.bouncycastle.bcpg.UnsupportedPacketVersionException;
+import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.openpgp.PGPCompressedData;
 import org.bouncycastle.openpgp.PGPEncryptedData;
 import org.bouncycastle.openpgp.PGPEncryptedDataList;
@@ -33,17 +48,19 @@ import org.bouncycastle.openpgp.PGPPublicKeyEncryptedData;
 import org.bouncycastle.openpgp.PGPPublicKeyRing;
 import org.bouncycastle.openpgp.PGPSecretKey;
 import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSessionKey;
 import org.bouncycastle.openpgp.PGPSessionKeyEncryptedData;
 import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.openpgp.PGPSignatureList;
 import org.bouncycastle.openpgp.operator.PBEDataDecryptorFactory;
 import org.bouncycastle.openpgp.operator.PGPContentVerifierBuilderProvider;
+import org.bouncycastle.openpgp.operator.PGPDataDecryptor;
 import org.bouncycastle.openpgp.operator.PublicKeyDataDecryptorFactory;
 import org.bouncycastle.openpgp.operator.SessionKeyDataDecryptorFactory;
+import org.bouncycastle.util.encoders.Hex;
 import org.bouncycastle.util.io.TeeInputStream;
 import org.pgpainless.PGPainless;
 import org.pgpainless.algorithm.CompressionAlgorithm;
-import org.pgpainless.algorithm.EncryptionPurpose;
 import org.pgpainless.algorithm.OpenPgpPacket;
 import org.pgpainless.algorithm.StreamEncoding;
 import org.pgpainless.algorithm.SymmetricKeyAlgorithm;
@@ -52,6 +69,8 @@ import org.pgpainless.decryption_verification.syntax_check.PDA;
 import org.pgpainless.decryption_verification.syntax_check.StackSymbol;
 import org.pgpainless.decryption_verification.cleartext_signatures.ClearsignedMessageUtil;
 import org.pgpainless.decryption_verification.cleartext_signatures.MultiPassStrategy;
+import org.pgpainless.decryption_verification.session_keys.IndexedSessionKey;
+import org.pgpainless.decryption_verification.session_keys.SessionKeyIndex;
 import org.pgpainless.exception.MalformedOpenPgpMessageException;
 import org.pgpainless.exception.MessageNotIntegrityProtectedException;
 import org.pgpainless.exception.MissingDecryptionMethodException;
@@ -59,18 +78,20 @@ import org.pgpainless.exception.MissingPassphraseException;
 import org.pgpainless.exception.SignatureValidationException;
 import org.pgpainless.exception.UnacceptableAlgorithmException;
 import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.OpenPgpFingerprint;
 import org.pgpainless.key.SubkeyIdentifier;
-import org.pgpainless.key.info.KeyRingInfo;
 import org.pgpainless.key.protection.SecretKeyRingProtector;
 import org.pgpainless.key.protection.UnlockSecretKey;
 import org.pgpainless.key.util.KeyIdUtil;
 import org.pgpainless.key.util.KeyRingUtils;
 import org.pgpainless.policy.Policy;
+import org.pgpainless.signature.SharedHashContext;
 import org.pgpainless.signature.SignatureUtils;
 import org.pgpainless.signature.consumer.CertificateValidator;
 import org.pgpainless.signature.consumer.OnePassSignatureCheck;
 import org.pgpainless.signature.consumer.SignatureCheck;
 import org.pgpainless.signature.consumer.SignatureValidator;
+import org.pgpainless.signature.subpackets.SignatureSubpacketsUtil;
 import org.pgpainless.util.ArmoredInputStreamFactory;
 import org.pgpainless.util.Passphrase;
 import org.pgpainless.util.SessionKey;
@@ -95,6 +116,15 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
 
     private boolean closed = false;
 
+    // Size of the read-ahead buffer, which is used to turn small reads into block-wise signature updates
+    private static final int READ_AHEAD_BUFFER_SIZE = 8192;
+    // Number of bytes of the body of the encrypted data packet, which are part of the message identifier
+    private static final int ENCRYPTED_DATA_PREFIX_LENGTH = 33;
+    // Data which was read from the nested stream (and hashed), but not yet returned to the caller
+    private byte[] readAheadBuffer;
+    private int readAheadPos = 0;
+    private int readAheadLen = 0;
+
     private final Signatures signatures;
     private final MessageMetadata.Layer metadata;
 
@@ -406,7 +436,15 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
     private boolean processEncryptedData() throws IOException, PGPException {
         LOGGER.debug("Symmetrically Encrypted Data Packet at depth " + metadata.depth + " encountered");
         syntaxVerifier.next(InputSymbol.EncryptedData);
-        PGPEncryptedDataList encDataList = packetInputStream.readEncryptedDataList();
+        SessionKeyIndex sessionKeyIndex = options.getSessionKeyIndex();
+        PGPEncryptedDataList encDataList;
+        ByteArrayOutputStream encryptedDataHeader = null;
+        if (sessionKeyIndex == null) {
+            encDataList = packetInputStream.readEncryptedDataList();
+        } else {
+            encryptedDataHeader = new ByteArrayOutputStream();
+            encDataList = packetInputStream.readEncryptedDataList(encryptedDataHeader);
+        }
 
         if (!encDataList.isIntegrityProtected()) {
             LOGGER.warn("Symmetrically Encrypted Data Packet is not integrity-protected.");
@@ -421,6 +459,36 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                 (esks.pkesks.size() + esks.anonPkesks.size()) + " PKESK(s) from which " +
                 esks.anonPkesks.size() + " PKESK(s) have an anonymous recipient");
 
+        // Try session key index
+        byte[] messageIdentifier = null;
+        if (encryptedDataHeader != null && (!esks.pkesks.isEmpty() || !esks.anonPkesks.isEmpty())) {
+            messageIdentifier = computeMessageIdentifier(encryptedDataHeader.toByteArray());
+        }
+        if (messageIdentifier != null) {
+            IndexedSessionKey indexedSessionKey = lookupSessionKey(sessionKeyIndex, messageIdentifier);
+            if (indexedSessionKey != null) {
+                LOGGER.debug("Attempt decryption with session key from session key index");
+                if (decryptWithSessionKey(encDataList, indexedSessionKey.getSessionKey(),
+                        esks, indexedSessionKey.getDecryptionKey())) {
+                    return true;
+                }
+                // the indexed session key is stale and will be replaced once the message is decrypted
+                LOGGER.debug("Session key from session key index does not match the message.");
+            }
+        }
+
+        if (!decryptEncryptedData(encDataList, esks)) {
+            return false;
+        }
+
+        if (messageIdentifier != null) {
+            recordSessionKey(sessionKeyIndex, messageIdentifier);
+        }
+        return true;
+    }
+
+    private boolean decryptEncryptedData(PGPEncryptedDataList encDataList, SortedESKs esks)
+            throws IOException, PGPException {
         // Try custom decryptor factories
         for (SubkeyIdentifier subkeyIdentifier : options.getCustomDecryptorFactories().keySet()) {
             LOGGER.debug("Attempt decryption with custom decryptor factory with key " + subkeyIdentifier);
@@ -441,32 +509,15 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
         // Try provided session key
         if (options.getSessionKey() != null) {
             LOGGER.debug("Attempt decryption with provided session key");
-            SessionKey sessionKey = options.getSessionKey();
-            throwIfUnacceptable(sessionKey.getAlgorithm());
-
-            SessionKeyDataDecryptorFactory decryptorFactory = ImplementationFactory.getInstance()
-                    .getSessionKeyDataDecryptorFactory(sessionKey);
-            MessageMetadata.EncryptedData encryptedData = new MessageMetadata.EncryptedData(
-                    sessionKey.getAlgorithm(), metadata.depth + 1);
-
-            PGPSessionKeyEncryptedData sessionKeyEncryptedData = encDataList.extractSessionKeyEncryptedData();
-            try {
-                InputStream decrypted = sessionKeyEncryptedData.getDataStream(decryptorFactory);
-                encryptedData.sessionKey = sessionKey;
-                IntegrityProtectedInputStream integrityProtected = new IntegrityProtectedInputStream(decrypted, sessionKeyEncryptedData, options);
-                nestedInputStream = new OpenPgpMessageInputStream(integrityProtected, options, encryptedData, policy);
-                LOGGER.debug("Successfully decrypted data with provided session key");
+            if (decryptWithSessionKey(encDataList, options.getSessionKey(), null, null)) {
                 return true;
-            } catch (PGPException e) {
-                // Session key mismatch?
-                LOGGER.debug("Decryption using provided session key failed. Mismatched session key and message?", e);
             }
         }
 
         // Try passwords
+        List<Tuple<Passphrase, PGPPBEEncryptedData>> passphraseTrials = new ArrayList<>();
         for (Passphrase passphrase : options.getDecryptionPassphrases()) {
             for (PGPPBEEncryptedData skesk : esks.skesks) {
-                LOGGER.debug("Attempt decryption with provided passphrase");
                 SymmetricKeyAlgorithm encapsulationAlgorithm = SymmetricKeyAlgorithm.requireFromId(skesk.getAlgorithm());
                 try {
                     throwIfUnacceptable(encapsulationAlgorithm);
@@ -474,12 +525,28 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                     LOGGER.debug("Skipping SKESK with unacceptable encapsulation algorithm", e);
                     continue;
                 }
+                passphraseTrials.add(new Tuple<>(passphrase, skesk));
+            }
+        }
 
-                PBEDataDecryptorFactory decryptorFactory = ImplementationFactory.getInstance()
-                        .getPBEDataDecryptorFactory(passphrase);
-                if (decryptSKESKAndStream(esks, skesk, decryptorFactory)) {
-                    return true;
+        Executor executor = options.getTrialDecryptionExecutor();
+        if (executor != null && passphraseTrials.size() > 1) {
+            if (decryptSKESKsConcurrently(esks, passphraseTrials, executor)) {
+                return true;
+            }
+        } else {
+            // derived keys are memoized per passphrase
+            PBEDecryptorFactories decryptorFactories = new PBEDecryptorFactories();
+            try {
+                for (Tuple<Passphrase, PGPPBEEncryptedData> passphraseTrial : passphraseTrials) {
+                    LOGGER.debug("Attempt decryption with provided passphrase");
+                    PBEDataDecryptorFactory decryptorFactory = decryptorFactories.get(passphraseTrial.getA());
+                    if (decryptSKESKAndStream(esks, passphraseTrial.getB(), decryptorFactory)) {
+                        return true;
+                    }
                 }
+            } finally {
+                decryptorFactories.clear();
             }
         }
 
@@ -489,11 +556,12 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
         for (PGPPublicKeyEncryptedData pkesk : esks.pkesks) {
             long keyId = pkesk.getKeyID();
             LOGGER.debug("Encountered PKESK for recipient " + KeyIdUtil.formatKeyId(keyId));
-            PGPSecretKeyRing decryptionKeys = getDecryptionKey(keyId);
-            if (decryptionKeys == null) {
+            Tuple<PGPSecretKeyRing, SecretKeyRingProtector> decryptionKey = getDecryptionKey(keyId);
+            if (decryptionKey == null) {
                 LOGGER.debug("Skipping PKESK because no matching key " + KeyIdUtil.formatKeyId(keyId) + " was provided");
                 continue;
             }
+            PGPSecretKeyRing decryptionKeys = decryptionKey.getA();
             PGPSecretKey secretKey = decryptionKeys.getSecretKey(keyId);
             SubkeyIdentifier decryptionKeyId = new SubkeyIdentifier(decryptionKeys, secretKey.getKeyID());
             if (hasUnsupportedS2KSpecifier(secretKey, decryptionKeyId)) {
@@ -501,7 +569,7 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
             }
             LOGGER.debug("Attempt decryption using secret key " + decryptionKeyId);
 
-            SecretKeyRingProtector protector = options.getSecretKeyProtector(decryptionKeys);
+            SecretKeyRingProtector protector = decryptionKey.getB();
             // Postpone keys with missing passphrase
             if (!protector.hasPassphraseFor(keyId)) {
                 LOGGER.debug("Missing passphrase for key " + decryptionKeyId + ". Postponing decryption until all other keys were tried");
@@ -509,7 +577,8 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                 continue;
             }
 
-            PGPPrivateKey privateKey = UnlockSecretKey.unlockSecretKey(secretKey, protector);
+            PGPPrivateKey privateKey = UnlockSecretKey.unlockSecretKey(
+                    secretKey, decryptionKeyId, protector, options.getPrivateKeyCache());
             if (decryptWithPrivateKey(esks, privateKey, decryptionKeyId, pkesk)) {
                 return true;
             }
@@ -517,7 +586,16 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
 
         // try anonymous secret keys
         for (PGPPublicKeyEncryptedData pkesk : esks.anonPkesks) {
-            for (Tuple<PGPSecretKeyRing, PGPSecretKey> decryptionKeyCandidate : findPotentialDecryptionKeys(pkesk)) {
+            List<Tuple<PGPSecretKeyRing, PGPSecretKey>> decryptionKeyCandidates = findPotentialDecryptionKeys(pkesk);
+            if (executor != null && decryptionKeyCandidates.size() > 1) {
+                if (decryptAnonymousPKESKConcurrently(esks, pkesk, decryptionKeyCandidates, executor,
+                        postponedDueToMissingPassphrase)) {
+                    return true;
+                }
+                continue;
+            }
+
+            for (Tuple<PGPSecretKeyRing, PGPSecretKey> decryptionKeyCandidate : decryptionKeyCandidates) {
                 PGPSecretKeyRing decryptionKeys = decryptionKeyCandidate.getA();
                 PGPSecretKey secretKey = decryptionKeyCandidate.getB();
                 SubkeyIdentifier decryptionKeyId = new SubkeyIdentifier(decryptionKeys, secretKey.getKeyID());
@@ -532,7 +610,8 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                     continue;
                 }
 
-                PGPPrivateKey privateKey = UnlockSecretKey.unlockSecretKey(secretKey, protector);
+                PGPPrivateKey privateKey = UnlockSecretKey.unlockSecretKey(
+                        secretKey, decryptionKeyId, protector, options.getPrivateKeyCache());
                 if (decryptWithPrivateKey(esks, privateKey, decryptionKeyId, pkesk)) {
                     return true;
                 }
@@ -544,7 +623,7 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
             Set<SubkeyIdentifier> keyIds = new HashSet<>();
             for (Tuple<PGPSecretKey, PGPPublicKeyEncryptedData> k : postponedDueToMissingPassphrase) {
                 PGPSecretKey key = k.getA();
-                PGPSecretKeyRing keys = getDecryptionKey(key.getKeyID());
+                PGPSecretKeyRing keys = getDecryptionKey(key.getKeyID()).getA();
                 keyIds.add(new SubkeyIdentifier(keys, key.getKeyID()));
             }
             if (!keyIds.isEmpty()) {
@@ -556,15 +635,16 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                 for (Tuple<PGPSecretKey, PGPPublicKeyEncryptedData> missingPassphrases : postponedDueToMissingPassphrase) {
                     PGPSecretKey secretKey = missingPassphrases.getA();
                     long keyId = secretKey.getKeyID();
-                    PGPSecretKeyRing decryptionKey = getDecryptionKey(keyId);
-                    SubkeyIdentifier decryptionKeyId = new SubkeyIdentifier(decryptionKey, keyId);
+                    Tuple<PGPSecretKeyRing, SecretKeyRingProtector> decryptionKey = getDecryptionKey(keyId);
+                    SubkeyIdentifier decryptionKeyId = new SubkeyIdentifier(decryptionKey.getA(), keyId);
                     if (hasUnsupportedS2KSpecifier(secretKey, decryptionKeyId)) {
                         continue;
                     }
 
                     LOGGER.debug("Attempt decryption with key " + decryptionKeyId + " while interactively requesting its passphrase");
-                    SecretKeyRingProtector protector = options.getSecretKeyProtector(decryptionKey);
-                    PGPPrivateKey privateKey = UnlockSecretKey.unlockSecretKey(secretKey, protector);
+                    SecretKeyRingProtector protector = decryptionKey.getB();
+                    PGPPrivateKey privateKey = UnlockSecretKey.unlockSecretKey(
+                            secretKey, decryptionKeyId, protector, options.getPrivateKeyCache());
                     if (decryptWithPrivateKey(esks, privateKey, decryptionKeyId, pkesk)) {
                         return true;
                     }
@@ -580,6 +660,236 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
         return false;
     }
 
+    /**
+     * Attempt to decrypt an anonymous PKESK with multiple candidate keys concurrently.
+     * Candidates are unlocked on the calling thread, since {@link SecretKeyRingProtector SecretKeyRingProtectors} may
+     * be interactive and are not required to be thread-safe. Only the session key decryptions are tried on the given
+     * {@link Executor}. Once a session key was successfully decrypted (which includes passing the session key
+     * checksum), the remaining attempts are cancelled.
+     *
+     * @param esks encrypted session keys
+     * @param pkesk anonymous PKESK
+     * @param decryptionKeyCandidates candidate keys
+     * @param executor executor to run the attempts on
+     * @param postponedDueToMissingPassphrase list of keys which are skipped due to a missing passphrase
+     * @return true if decryption was successful
+     */
+    private boolean decryptAnonymousPKESKConcurrently(
+            SortedESKs esks,
+            PGPPublicKeyEncryptedData pkesk,
+            List<Tuple<PGPSecretKeyRing, PGPSecretKey>> decryptionKeyCandidates,
+            Executor executor,
+            List<Tuple<PGPSecretKey, PGPPublicKeyEncryptedData>> postponedDueToMissingPassphrase)
+            throws PGPException, IOException {
+        CompletionService<TrialDecryption> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<TrialDecryption>> trials = new ArrayList<>();
+        PGPException unlockError = null;
+        try {
+            for (Tuple<PGPSecretKeyRing, PGPSecretKey> decryptionKeyCandidate : decryptionKeyCandidates) {
+                PGPSecretKeyRing decryptionKeys = decryptionKeyCandidate.getA();
+                PGPSecretKey secretKey = decryptionKeyCandidate.getB();
+                SubkeyIdentifier decryptionKeyId = new SubkeyIdentifier(decryptionKeys, secretKey.getKeyID());
+                if (hasUnsupportedS2KSpecifier(secretKey, decryptionKeyId)) {
+                    continue;
+                }
+                SecretKeyRingProtector protector = options.getSecretKeyProtector(decryptionKeys);
+                if (!protector.hasPassphraseFor(secretKey.getKeyID())) {
+                    LOGGER.debug("Missing passphrase for key " + decryptionKeyId + ". Postponing decryption until all other keys were tried.");
+                    postponedDueToMissingPassphrase.add(new Tuple<>(secretKey, pkesk));
+                    continue;
+                }
+
+                PGPPrivateKey privateKey;
+                try {
+                    privateKey = UnlockSecretKey.unlockSecretKey(
+                            secretKey, decryptionKeyId, protector, options.getPrivateKeyCache());
+                } catch (PGPException e) {
+                    // try the other candidates first
+                    if (unlockError == null) {
+                        unlockError = e;
+                    }
+                    continue;
+                }
+
+                LOGGER.debug("Attempt decryption of anonymous PKESK with key " + decryptionKeyId);
+                trials.add(completionService.submit(new TrialDecryption(pkesk, privateKey, decryptionKeyId)));
+            }
+
+            for (int i = 0; i < trials.size(); i++) {
+                TrialDecryption trial = takeTrial(completionService);
+                if (trial.sessionKeyRecovered) {
+                    // remaining trials are cancelled when leaving this method
+                    if (decryptPKESKAndStream(esks, trial.decryptionKeyId, trial.decryptorFactory, pkesk)) {
+                        return true;
+                    }
+                }
+            }
+
+            if (unlockError != null) {
+                throw unlockError;
+            }
+            return false;
+        } finally {
+            cancelAll(trials);
+            clearCompletedTrials(trials);
+        }
+    }
+
+    /**
+     * Attempt to decrypt the SKESKs with the given passphrases concurrently.
+     * Key derivation and session key decryption of each (passphrase, SKESK) pair is executed on the given
+     * {@link Executor}. The first plausible session key is used to decrypt the message and the remaining attempts
+     * are cancelled.
+     *
+     * @param esks encrypted session keys
+     * @param passphraseTrials pairs of passphrases and SKESKs
+     * @param executor executor to run the attempts on
+     * @return true if decryption was successful
+     */
+    private boolean decryptSKESKsConcurrently(SortedESKs esks,
+                                              List<Tuple<Passphrase, PGPPBEEncryptedData>> passphraseTrials,
+                                              Executor executor)
+            throws PGPException, IOException {
+        CompletionService<PassphraseTrial> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<PassphraseTrial>> trials = new ArrayList<>();
+        // derived keys are memoized per passphrase and shared by all trials of the passphrase
+        PBEDecryptorFactories decryptorFactories = new PBEDecryptorFactories();
+        try {
+            for (Tuple<Passphrase, PGPPBEEncryptedData> passphraseTrial : passphraseTrials) {
+                LOGGER.debug("Attempt decryption with provided passphrase");
+                PBEDataDecryptorFactory decryptorFactory = decryptorFactories.get(passphraseTrial.getA());
+                trials.add(completionService.submit(new PassphraseTrial(passphraseTrial.getB(), decryptorFactory)));
+            }
+
+            for (int i = 0; i < trials.size(); i++) {
+                PassphraseTrial trial = takeTrial(completionService);
+                // remaining trials are cancelled when leaving this method
+                if (trial.sessionKeyRecovered && decryptSKESKAndStream(esks, trial.skesk, trial.decryptorFactory)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            cancelAll(trials);
+            decryptorFactories.clear();
+        }
+    }
+
+    private static <T> T takeTrial(CompletionService<T> completionService)
+            throws PGPException, IOException {
+        try {
+            return completionService.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting for trial decryption.");
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new PGPException("Trial decryption failed.", (Exception) cause);
+        }
+    }
+
+    private static void cancelAll(List<? extends Future<?>> trials) {
+        for (Future<?> trial : trials) {
+            trial.cancel(true);
+        }
+    }
+
+    /**
+     * Overwrite the session data memoized by completed trials, which were not used to decrypt the message.
+     *
+     * @param trials cancelled trials
+     */
+    private static void clearCompletedTrials(List<Future<TrialDecryption>> trials) {
+        for (Future<TrialDecryption> trial : trials) {
+            if (!trial.isDone() || trial.isCancelled()) {
+                continue;
+            }
+            try {
+                MemoizingPublicKeyDataDecryptorFactory decryptorFactory = trial.get().decryptorFactory;
+                if (decryptorFactory != null) {
+                    decryptorFactory.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // failed trials did not memoize anything
+            }
+        }
+    }
+
+    /**
+     * Attempt to decrypt the session key of a PKESK with a single, already unlocked candidate key.
+     * This task recovers the session key, but does not yet start decrypting the message.
+     */
+    private static final class TrialDecryption implements Callable<TrialDecryption> {
+
+        private final PGPPublicKeyEncryptedData pkesk;
+        private final PGPPrivateKey privateKey;
+        private final SubkeyIdentifier decryptionKeyId;
+
+        private MemoizingPublicKeyDataDecryptorFactory decryptorFactory;
+        private boolean sessionKeyRecovered;
+
+        TrialDecryption(PGPPublicKeyEncryptedData pkesk,
+                        PGPPrivateKey privateKey,
+                        SubkeyIdentifier decryptionKeyId) {
+            this.pkesk = pkesk;
+            this.privateKey = privateKey;
+            this.decryptionKeyId = decryptionKeyId;
+        }
+
+        @Override
+        public TrialDecryption call() {
+            decryptorFactory = new MemoizingPublicKeyDataDecryptorFactory(
+                    ImplementationFactory.getInstance().getPublicKeyDataDecryptorFactory(privateKey));
+            try {
+                // also verifies the session key checksum
+                pkesk.getSessionKey(decryptorFactory);
+                sessionKeyRecovered = true;
+            } catch (PGPException e) {
+                LOGGER.debug("Decryption of anonymous PKESK with key " + decryptionKeyId + " failed.", e);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Attempt to decrypt the session key of an SKESK with a single passphrase.
+     * Since SKESKs do not carry a checksum, a session key with a known symmetric algorithm is considered plausible.
+     */
+    private static final class PassphraseTrial implements Callable<PassphraseTrial> {
+
+        private final PGPPBEEncryptedData skesk;
+        private final PBEDataDecryptorFactory decryptorFactory;
+
+        private boolean sessionKeyRecovered;
+
+        PassphraseTrial(PGPPBEEncryptedData skesk, PBEDataDecryptorFactory decryptorFactory) {
+            this.skesk = skesk;
+            this.decryptorFactory = decryptorFactory;
+        }
+
+        @Override
+        public PassphraseTrial call() {
+            try {
+                PGPSessionKey sessionKey = skesk.getSessionKey(decryptorFactory);
+                SymmetricKeyAlgorithm algorithm = SymmetricKeyAlgorithm.fromId(sessionKey.getAlgorithm());
+                sessionKeyRecovered = algorithm != null && algorithm != SymmetricKeyAlgorithm.NULL;
+            } catch (PGPException e) {
+                LOGGER.debug("Decryption of SKESK with passphrase failed.", e);
+            }
+            return this;
+        }
+    }
+
     private boolean decryptWithPrivateKey(SortedESKs esks,
                                           PGPPrivateKey privateKey,
                                           SubkeyIdentifier decryptionKeyId,
@@ -629,11 +939,396 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
         return false;
     }
 
+    private boolean decryptWithSessionKey(PGPEncryptedDataList encDataList,
+                                          SessionKey sessionKey,
+                                          @Nullable SortedESKs esks,
+                                          @Nullable SubkeyIdentifier decryptionKey)
+            throws IOException, UnacceptableAlgorithmException {
+        throwIfUnacceptable(sessionKey.getAlgorithm());
+
+        SessionKeyDataDecryptorFactory decryptorFactory = ImplementationFactory.getInstance()
+                .getSessionKeyDataDecryptorFactory(sessionKey);
+        MessageMetadata.EncryptedData encryptedData = new MessageMetadata.EncryptedData(
+                sessionKey.getAlgorithm(), metadata.depth + 1);
+
+        PGPSessionKeyEncryptedData sessionKeyEncryptedData = encDataList.extractSessionKeyEncryptedData();
+        try {
+            InputStream decrypted = sessionKeyEncryptedData.getDataStream(decryptorFactory);
+            encryptedData.sessionKey = sessionKey;
+            encryptedData.decryptionKey = decryptionKey;
+            if (esks != null) {
+                encryptedData.recipients = new ArrayList<>();
+                for (PGPPublicKeyEncryptedData pkesk : esks.pkesks) {
+                    encryptedData.recipients.add(pkesk.getKeyID());
+                }
+            }
+            IntegrityProtectedInputStream integrityProtected = new IntegrityProtectedInputStream(decrypted, sessionKeyEncryptedData, options);
+            nestedInputStream = new OpenPgpMessageInputStream(integrityProtected, options, encryptedData, policy);
+            LOGGER.debug("Successfully decrypted data with session key");
+            return true;
+        } catch (PGPException e) {
+            // Session key mismatch?
+            LOGGER.debug("Decryption using session key failed. Mismatched session key and message?", e);
+        }
+        return false;
+    }
+
+    /**
+     * Compute an identifier for the message, which is used to look up its session key in the
+     * {@link SessionKeyIndex}.
+     * The identifier is a SHA-256 digest over the raw encrypted session key packets, the header of the encrypted
+     * data packet and the first {@link #ENCRYPTED_DATA_PREFIX_LENGTH} bytes of its body (its version, as well as the
+     * encrypted random prefix or IV), so that messages which reuse the same encrypted session keys are distinguished.
+     * The number of body bytes which were captured depends on the buffering of the underlying stream. If fewer than
+     * {@link #ENCRYPTED_DATA_PREFIX_LENGTH} body bytes were captured, no identifier is computed, since an identifier
+     * over a shorter prefix would not match the one computed when reading the same message from another stream.
+     *
+     * @param encryptedDataHeader raw bytes of the encrypted session key packets and the encrypted data packet header
+     * @return message identifier or null if the bytes cannot be parsed or are too short
+     */
+    @Nullable
+    private static byte[] computeMessageIdentifier(@Nonnull byte[] encryptedDataHeader) {
+        int headerEnd = encryptedDataHeaderEnd(encryptedDataHeader);
+        if (headerEnd == -1) {
+            return null;
+        }
+        int length = headerEnd + ENCRYPTED_DATA_PREFIX_LENGTH;
+        if (encryptedDataHeader.length < length) {
+            LOGGER.debug("Encrypted data prefix was not captured. Skip session key index.");
+            return null;
+        }
+
+        SHA256Digest digest = new SHA256Digest();
+        digest.update(encryptedDataHeader, 0, length);
+        byte[] identifier = new byte[digest.getDigestSize()];
+        digest.doFinal(identifier, 0);
+        return identifier;
+    }
+
+    /**
+     * Return the offset after the packet header of the encrypted data packet, which follows the encrypted session key
+     * packets in the given bytes.
+     *
+     * @param bytes raw packets
+     * @return offset of the body of the encrypted data packet or -1
+     */
+    private static int encryptedDataHeaderEnd(byte[] bytes) {
+        int pos = 0;
+        while (pos < bytes.length) {
+            int ctb = bytes[pos++] & 0xff;
+            if ((ctb & 0x80) == 0) {
+                return -1;
+            }
+            int tag;
+            long bodyLength;
+            if ((ctb & 0x40) != 0) {
+                // new format
+                tag = ctb & 0x3f;
+                if (pos >= bytes.length) {
+                    return -1;
+                }
+                int first = bytes[pos++] & 0xff;
+                if (first < 192) {
+                    bodyLength = first;
+                } else if (first <= 223) {
+                    if (pos >= bytes.length) {
+                        return -1;
+                    }
+                    bodyLength = ((first - 192) << 8) + (bytes[pos++] & 0xff) + 192;
+                } else if (first == 255) {
+                    if (pos + 4 > bytes.length) {
+                        return -1;
+                    }
+                    bodyLength = readLength(bytes, pos, 4);
+                    pos += 4;
+                } else {
+                    // partial body length
+                    bodyLength = -1;
+                }
+            } else {
+                // old format
+                tag = (ctb >> 2) & 0x0f;
+                int lengthType = ctb & 0x03;
+                if (lengthType == 3) {
+                    // indeterminate length
+                    bodyLength = -1;
+                } else {
+                    int lengthBytes = 1 << lengthType;
+                    if (pos + lengthBytes > bytes.length) {
+                        return -1;
+                    }
+                    bodyLength = readLength(bytes, pos, lengthBytes);
+                    pos += lengthBytes;
+                }
+            }
+
+            if (tag == PacketTags.SYMMETRIC_KEY_ENC || tag == PacketTags.SYM_ENC_INTEGRITY_PRO
+                    || tag == PacketTags.AEAD_ENC_DATA) {
+                return pos;
+            }
+            if (bodyLength == -1) {
+                return -1;
+            }
+            pos += bodyLength;
+        }
+        return -1;
+    }
+
+    private static long readLength(byte[] bytes, int pos, int lengthBytes) {
+        long length = 0;
+        for (int i = 0; i < lengthBytes; i++) {
+            length = (length << 8) | (bytes[pos + i] & 0xff);
+        }
+        return length;
+    }
+
+    private static IndexedSessionKey lookupSessionKey(SessionKeyIndex sessionKeyIndex, byte[] messageIdentifier) {
+        try {
+            return sessionKeyIndex.getSessionKey(messageIdentifier);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read session key from session key index.", e);
+            return null;
+        }
+    }
+
+    private void recordSessionKey(SessionKeyIndex sessionKeyIndex, byte[] messageIdentifier) {
+        if (!(nestedInputStream instanceof OpenPgpMessageInputStream)) {
+            return;
+        }
+        MessageMetadata.Layer layer = ((OpenPgpMessageInputStream) nestedInputStream).metadata;
+        if (!(layer instanceof MessageMetadata.EncryptedData)) {
+            return;
+        }
+        MessageMetadata.EncryptedData encryptedData = (MessageMetadata.EncryptedData) layer;
+        if (encryptedData.sessionKey == null) {
+            return;
+        }
+        try {
+            sessionKeyIndex.putSessionKey(messageIdentifier,
+                    new IndexedSessionKey(encryptedData.sessionKey, encryptedData.decryptionKey));
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write session key to session key index.", e);
+        }
+    }
+
+    /**
+     * {@link PublicKeyDataDecryptorFactory} which remembers the first successfully recovered session data.
+     * BC recovers the session data in {@link PGPPublicKeyEncryptedData#getSessionKey(PublicKeyDataDecryptorFactory)},
+     * {@link PGPPublicKeyEncryptedData#getDataStream(PublicKeyDataDecryptorFactory)} and
+     * {@link PGPPublicKeyEncryptedData#getSymmetricAlgorithm(PublicKeyDataDecryptorFactory)}, so without this class
+     * each of these calls would perform the private key operation again.
+     * Instances MUST only be used with a single PKESK.
+     */
+    private static final class MemoizingPublicKeyDataDecryptorFactory implements PublicKeyDataDecryptorFactory {
+
+        private final PublicKeyDataDecryptorFactory delegate;
+        private byte[] sessionData;
+
+        MemoizingPublicKeyDataDecryptorFactory(PublicKeyDataDecryptorFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized byte[] recoverSessionData(int keyAlgorithm, byte[][] secKeyData) throws PGPException {
+            if (sessionData == null) {
+                // the delegate might return an array it keeps, so memoize a copy which can be cleared
+                sessionData = delegate.recoverSessionData(keyAlgorithm, secKeyData).clone();
+            }
+            return sessionData.clone();
+        }
+
+        /**
+         * Overwrite the memoized session data with zeros.
+         * The session data is recovered again, if it is requested afterwards.
+         */
+        synchronized void clear() {
+            if (sessionData != null) {
+                Arrays.fill(sessionData, (byte) 0);
+                sessionData = null;
+            }
+        }
+
+        @Override
+        public PGPDataDecryptor createDataDecryptor(boolean withIntegrityPacket, int encAlgorithm, byte[] key)
+                throws PGPException {
+            return delegate.createDataDecryptor(withIntegrityPacket, encAlgorithm, key);
+        }
+
+        @Override
+        public PGPDataDecryptor createDataDecryptor(int aeadAlgorithm, byte[] iv, int chunkSize, int encAlgorithm, byte[] key)
+                throws PGPException {
+            return delegate.createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key);
+        }
+    }
+
+    /**
+     * {@link PBEDataDecryptorFactory} which memoizes keys derived from the passphrase per S2K specifier.
+     * BC derives the key in both {@link PGPPBEEncryptedData#getSessionKey(PBEDataDecryptorFactory)} and
+     * {@link PGPPBEEncryptedData#getDataStream(PBEDataDecryptorFactory)}, and multiple SKESKs may use the same
+     * S2K specifier, so without this class each of these calls would perform the costly key derivation again.
+     * This class is thread-safe, so that concurrent trials of the same passphrase can share an instance.
+     */
+    private static final class MemoizingPBEDataDecryptorFactory extends PBEDataDecryptorFactory {
+
+        private final PBEDataDecryptorFactory delegate;
+        private final Map<String, DerivedKey> derivedKeys = new HashMap<>();
+        private boolean cleared;
+
+        MemoizingPBEDataDecryptorFactory(PBEDataDecryptorFactory delegate) {
+            // key derivation is delegated, so there is no need to pass the passphrase on
+            super(null, null);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public byte[] makeKeyFromPassPhrase(int keyAlgorithm, S2K s2k) throws PGPException {
+            String specifier;
+            try {
+                specifier = keyAlgorithm + ":" + Hex.toHexString(s2k.getEncoded());
+            } catch (IOException e) {
+                return delegate.makeKeyFromPassPhrase(keyAlgorithm, s2k);
+            }
+
+            DerivedKey derivedKey;
+            synchronized (derivedKeys) {
+                if (cleared) {
+                    throw new PGPException("Decryptor factory has been cleared.");
+                }
+                derivedKey = derivedKeys.get(specifier);
+                if (derivedKey == null) {
+                    derivedKey = new DerivedKey();
+                    derivedKeys.put(specifier, derivedKey);
+                }
+            }
+            // concurrent trials with the same S2K wait for a single derivation,
+            // while derivations with different S2Ks run in parallel
+            synchronized (derivedKey) {
+                if (derivedKey.key == null) {
+                    derivedKey.key = delegate.makeKeyFromPassPhrase(keyAlgorithm, s2k);
+                }
+                return derivedKey.key.clone();
+            }
+        }
+
+        @Override
+        public byte[] recoverSessionData(int keyAlgorithm, byte[] key, byte[] seckKeyData) throws PGPException {
+            return delegate.recoverSessionData(keyAlgorithm, key, seckKeyData);
+        }
+
+        @Override
+        public PGPDataDecryptor createDataDecryptor(boolean withIntegrityPacket, int encAlgorithm, byte[] key)
+                throws PGPException {
+            return delegate.createDataDecryptor(withIntegrityPacket, encAlgorithm, key);
+        }
+
+        @Override
+        public PGPDataDecryptor createDataDecryptor(int aeadAlgorithm, byte[] iv, int chunkSize, int encAlgorithm, byte[] key)
+                throws PGPException {
+            return delegate.createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key);
+        }
+
+        /**
+         * Overwrite all memoized keys with zeros and reject further key derivations.
+         */
+        void clear() {
+            List<DerivedKey> keys;
+            synchronized (derivedKeys) {
+                cleared = true;
+                keys = new ArrayList<>(derivedKeys.values());
+                derivedKeys.clear();
+            }
+            for (DerivedKey derivedKey : keys) {
+                synchronized (derivedKey) {
+                    if (derivedKey.key != null) {
+                        Arrays.fill(derivedKey.key, (byte) 0);
+                        derivedKey.key = null;
+                    }
+                }
+            }
+        }
+
+        private static final class DerivedKey {
+            private byte[] key;
+        }
+    }
+
+    /**
+     * {@link MemoizingPBEDataDecryptorFactory MemoizingPBEDataDecryptorFactories} by passphrase.
+     * Passphrases are compared by their contents, so that the same passphrase passed as separate
+     * {@link Passphrase} instances is only derived once. The memo holds copies of the passphrases, which are
+     * overwritten when it is cleared, together with the keys derived by its factories.
+     */
+    private static final class PBEDecryptorFactories {
+
+        private final Map<PassphraseKey, MemoizingPBEDataDecryptorFactory> factories = new HashMap<>();
+
+        PBEDataDecryptorFactory get(Passphrase passphrase) throws PGPException {
+            PassphraseKey key = new PassphraseKey(passphrase.getChars());
+            MemoizingPBEDataDecryptorFactory factory = factories.get(key);
+            if (factory != null) {
+                key.clear();
+                return factory;
+            }
+            factory = new MemoizingPBEDataDecryptorFactory(
+                    ImplementationFactory.getInstance().getPBEDataDecryptorFactory(passphrase));
+            factories.put(key, factory);
+            return factory;
+        }
+
+        void clear() {
+            for (Map.Entry<PassphraseKey, MemoizingPBEDataDecryptorFactory> entry : factories.entrySet()) {
+                entry.getKey().clear();
+                entry.getValue().clear();
+            }
+            factories.clear();
+        }
+    }
+
+    /**
+     * Copy of the chars of a passphrase, which is compared by its contents.
+     */
+    private static final class PassphraseKey {
+
+        private final char[] chars;
+        private final int hashCode;
+
+        PassphraseKey(@Nullable char[] chars) {
+            this.chars = chars;
+            this.hashCode = Arrays.hashCode(chars);
+        }
+
+        void clear() {
+            if (chars != null) {
+                Arrays.fill(chars, ' ');
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PassphraseKey)) {
+                return false;
+            }
+            return Arrays.equals(chars, ((PassphraseKey) obj).chars);
+        }
+    }
+
     private boolean decryptPKESKAndStream(SortedESKs esks,
                                           SubkeyIdentifier decryptionKeyId,
                                           PublicKeyDataDecryptorFactory decryptorFactory,
                                           PGPPublicKeyEncryptedData asymEsk)
             throws IOException, UnacceptableAlgorithmException {
+        MemoizingPublicKeyDataDecryptorFactory memoizingFactory = decryptorFactory instanceof MemoizingPublicKeyDataDecryptorFactory ?
+                (MemoizingPublicKeyDataDecryptorFactory) decryptorFactory :
+                new MemoizingPublicKeyDataDecryptorFactory(decryptorFactory);
+        decryptorFactory = memoizingFactory;
         try {
             InputStream decrypted = asymEsk.getDataStream(decryptorFactory);
             SessionKey sessionKey = new SessionKey(asymEsk.getSessionKey(decryptorFactory));
@@ -657,6 +1352,9 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
             throw e;
         } catch (PGPException e) {
             LOGGER.debug("Decryption of encrypted data packet using secret key failed.", e);
+        } finally {
+            // the session key was extracted, so the memoized session data is no longer needed
+            memoizingFactory.clear();
         }
         return false;
     }
@@ -669,80 +1367,44 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
     }
 
     private List<Tuple<PGPSecretKeyRing, PGPSecretKey>> findPotentialDecryptionKeys(PGPPublicKeyEncryptedData pkesk) {
-        int algorithm = pkesk.getAlgorithm();
-        List<Tuple<PGPSecretKeyRing, PGPSecretKey>> decryptionKeyCandidates = new ArrayList<>();
-
-        for (PGPSecretKeyRing secretKeys : options.getDecryptionKeys()) {
-            KeyRingInfo info = PGPainless.inspectKeyRing(secretKeys);
-            for (PGPPublicKey publicKey : info.getEncryptionSubkeys(EncryptionPurpose.ANY)) {
-                if (publicKey.getAlgorithm() == algorithm && info.isSecretKeyAvailable(publicKey.getKeyID())) {
-                    PGPSecretKey candidate = secretKeys.getSecretKey(publicKey.getKeyID());
-                    decryptionKeyCandidates.add(new Tuple<>(secretKeys, candidate));
-                }
-            }
-        }
-        return decryptionKeyCandidates;
+        return options.getDecryptionKeyIndex().getDecryptionKeyCandidates(pkesk.getAlgorithm(), policy);
     }
 
-    private PGPSecretKeyRing getDecryptionKey(long keyID) {
-        for (PGPSecretKeyRing secretKeys : options.getDecryptionKeys()) {
-            PGPSecretKey decryptionKey = secretKeys.getSecretKey(keyID);
-            if (decryptionKey == null) {
-                continue;
-            }
-
-            KeyRingInfo info = new KeyRingInfo(secretKeys, policy, new Date());
-            List<PGPPublicKey> encryptionKeys = info.getEncryptionSubkeys(EncryptionPurpose.ANY);
-            for (PGPPublicKey key : encryptionKeys) {
-                if (key.getKeyID() == keyID) {
-                    return secretKeys;
-                }
-            }
-
-            LOGGER.debug("Subkey " + Long.toHexString(keyID) + " cannot be used for decryption.");
-        }
-        return null;
+    private Tuple<PGPSecretKeyRing, SecretKeyRingProtector> getDecryptionKey(long keyID) {
+        return options.getDecryptionKeyIndex().getDecryptionKey(keyID, policy);
     }
 
     @Override
     public int read() throws IOException {
-        if (nestedInputStream == null) {
-            if (packetInputStream != null) {
-                syntaxVerifier.assertValid();
-            }
+        if (readAheadPos == readAheadLen && !fillReadAheadBuffer(true)) {
             return -1;
         }
+        return readAheadBuffer[readAheadPos++] & 0xff;
+    }
 
-        int r;
-        try {
-            r = nestedInputStream.read();
-        } catch (IOException e) {
-            r = -1;
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len)
+            throws IOException {
+        if (len == 0) {
+            return 0;
         }
-        boolean eos = r == -1;
-        if (!eos) {
-            byte b = (byte) r;
-            signatures.updateLiteral(b);
-        } else {
-            nestedInputStream.close();
-            collectMetadata();
-            nestedInputStream = null;
 
-            if (packetInputStream != null) {
-                try {
-                    consumePackets();
-                } catch (PGPException e) {
-                    throw new RuntimeException(e);
-                }
+        // Serve data that was already read ahead first
+        if (readAheadPos < readAheadLen) {
+            int n = Math.min(len, readAheadLen - readAheadPos);
+            System.arraycopy(readAheadBuffer, readAheadPos, b, off, n);
+            readAheadPos += n;
+            return n;
+        }
+
+        // Small reads are served from the read-ahead buffer, so that signatures are updated in blocks
+        if (len < READ_AHEAD_BUFFER_SIZE) {
+            if (!fillReadAheadBuffer(false)) {
+                return -1;
             }
-            signatures.finish(metadata, policy);
+            return read(b, off, len);
         }
-        return r;
-    }
 
-    @Override
-    public int read(@Nonnull byte[] b, int off, int len)
-            throws IOException {
         if (nestedInputStream == null) {
             if (packetInputStream != null) {
                 syntaxVerifier.assertValid();
@@ -753,21 +1415,71 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
         int r = nestedInputStream.read(b, off, len);
         if (r != -1) {
             signatures.updateLiteral(b, off, r);
-        } else  {
-            nestedInputStream.close();
-            collectMetadata();
-            nestedInputStream = null;
+        } else {
+            finishNestedInputStream();
+        }
+        return r;
+    }
 
+    /**
+     * Read the next block of data from the nested input stream into the read-ahead buffer and update the signatures
+     * with it.
+     * If the nested input stream is exhausted, process the remaining packets of the current layer.
+     *
+     * @param treatIOExceptionAsEOF if true, an {@link IOException} of the nested stream is treated as end of stream
+     * @return false if the end of the stream is reached, true otherwise
+     * @throws IOException in case of an IO error
+     */
+    private boolean fillReadAheadBuffer(boolean treatIOExceptionAsEOF) throws IOException {
+        readAheadPos = 0;
+        readAheadLen = 0;
+
+        if (nestedInputStream == null) {
             if (packetInputStream != null) {
-                try {
-                    consumePackets();
-                } catch (PGPException e) {
-                    throw new RuntimeException(e);
+                syntaxVerifier.assertValid();
+            }
+            return false;
+        }
+
+        if (readAheadBuffer == null) {
+            readAheadBuffer = new byte[READ_AHEAD_BUFFER_SIZE];
+        }
+
+        int r;
+        do {
+            try {
+                r = nestedInputStream.read(readAheadBuffer, 0, readAheadBuffer.length);
+            } catch (IOException e) {
+                if (!treatIOExceptionAsEOF) {
+                    throw e;
                 }
+                r = -1;
             }
-            signatures.finish(metadata, policy);
+        } while (r == 0);
+
+        if (r == -1) {
+            finishNestedInputStream();
+            return false;
         }
-        return r;
+
+        signatures.updateLiteral(readAheadBuffer, 0, r);
+        readAheadLen = r;
+        return true;
+    }
+
+    private void finishNestedInputStream() throws IOException {
+        nestedInputStream.close();
+        collectMetadata();
+        nestedInputStream = null;
+
+        if (packetInputStream != null) {
+            try {
+                consumePackets();
+            } catch (PGPException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        signatures.finish(metadata, policy);
     }
 
     @Override
@@ -780,6 +1492,9 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
             return;
         }
 
+        readAheadPos = 0;
+        readAheadLen = 0;
+
         if (nestedInputStream != null) {
             nestedInputStream.close();
             collectMetadata();
@@ -863,6 +1578,13 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
         final List<SignatureVerification.Failure> prependedSignaturesWithMissingCert = new ArrayList<>();
         final List<SignatureVerification.Failure> inbandSignaturesWithMissingCert = new ArrayList<>();
         final List<SignatureVerification.Failure> detachedSignaturesWithMissingCert = new ArrayList<>();
+        // Signatures over the literal data, which share a hash context with other signatures
+        final Map<OnePassSignatureCheck, SharedHashContext> sharedOPSHashContexts = new IdentityHashMap<>();
+        final Map<SignatureCheck, SharedHashContext> sharedSignatureHashContexts = new IdentityHashMap<>();
+        final List<SharedHashContext> literalHashContexts = new ArrayList<>();
+        // OPSs which were updated with packet data, so they cannot share a hash context over the literal data
+        final Set<OnePassSignatureCheck> opsWithPacketData = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean literalHashingStarted = false;
         boolean isLiteral = true;
 
         private Signatures(ConsumerOptions options) {
@@ -910,7 +1632,15 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
 
         SignatureCheck initializeSignature(PGPSignature signature) {
             long keyId = SignatureUtils.determineIssuerKeyId(signature);
-            PGPPublicKeyRing certificate = findCertificate(keyId);
+            PGPPublicKeyRing certificate = null;
+            OpenPgpFingerprint fingerprint = SignatureSubpacketsUtil.getIssuerFingerprintAsOpenPgpFingerprint(signature);
+            if (fingerprint != null) {
+                // fingerprint lookups are not prone to key-id collisions
+                certificate = findCertificate(fingerprint);
+            }
+            if (certificate == null || certificate.getPublicKey(keyId) == null) {
+                certificate = findCertificate(keyId);
+            }
             if (certificate == null) {
                 return null;
             }
@@ -956,7 +1686,13 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                 try {
                     SignatureValidator.signatureWasCreatedInBounds(options.getVerifyNotBefore(), options.getVerifyNotAfter())
                             .verify(signature);
-                    CertificateValidator.validateCertificateAndVerifyOnePassSignature(onePassSignature, policy);
+                    SharedHashContext hashContext = sharedOPSHashContexts.get(onePassSignature);
+                    if (hashContext != null) {
+                        initialize(hashContext, onePassSignature.getOnePassSignature(),
+                                onePassSignature.getVerificationKeys().getPublicKey(keyId));
+                    }
+                    CertificateValidator.validateCertificateAndVerifyOnePassSignature(onePassSignature, policy,
+                            options.getCertificateValidationExecutor());
                     LOGGER.debug("Acceptable signature by key " + verification.getSigningKey());
                     layer.addVerifiedOnePassSignature(verification);
                 } catch (SignatureValidationException e) {
@@ -1006,11 +1742,53 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
             }
         }
 
+        private static void initialize(@Nonnull SharedHashContext hashContext,
+                                       @Nonnull PGPSignature signature,
+                                       @Nonnull PGPPublicKey verificationKey)
+                throws SignatureValidationException {
+            try {
+                hashContext.initialize(signature, verificationKey);
+            } catch (PGPException e) {
+                throw new SignatureValidationException("Cannot initialize signature.", e);
+            }
+        }
+
+        private static void initialize(@Nonnull SharedHashContext hashContext,
+                                       @Nonnull PGPOnePassSignature onePassSignature,
+                                       @Nonnull PGPPublicKey verificationKey)
+                throws SignatureValidationException {
+            try {
+                hashContext.initialize(onePassSignature, verificationKey);
+            } catch (PGPException e) {
+                throw new SignatureValidationException("Cannot initialize one-pass-signature.", e);
+            }
+        }
+
+        private PGPPublicKeyRing findCertificate(OpenPgpFingerprint fingerprint) {
+            PGPPublicKeyRing cert = options.getCertificateSource().getCertificate(fingerprint);
+            if (cert != null) {
+                return cert;
+            }
+            for (ConsumerOptions.CertificateSource source : options.getCertificateSources()) {
+                cert = source.getCertificate(fingerprint);
+                if (cert != null) {
+                    return cert;
+                }
+            }
+            return null;
+        }
+
         private PGPPublicKeyRing findCertificate(long keyId) {
             PGPPublicKeyRing cert = options.getCertificateSource().getCertificate(keyId);
             if (cert != null) {
                 return cert;
             }
+            for (ConsumerOptions.CertificateSource source : options.getCertificateSources()) {
+                cert = source.getCertificate(keyId);
+                if (cert != null && cert.getPublicKey(keyId) != null) {
+                    return cert;
+                }
+            }
 
             if (options.getMissingCertificateCallback() != null) {
                 return options.getMissingCertificateCallback().onMissingPublicKeyEncountered(keyId);
@@ -1018,32 +1796,118 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
             return null; // TODO: Missing cert for sig
         }
 
-        public void updateLiteral(byte b) {
+        public void updateLiteral(byte[] b, int off, int len) {
+            if (!literalHashingStarted) {
+                initializeSharedHashContexts();
+            }
+
+            for (SharedHashContext hashContext : literalHashContexts) {
+                hashContext.update(b, off, len);
+            }
+
             for (OnePassSignatureCheck ops : literalOPS) {
-                ops.getOnePassSignature().update(b);
+                if (!sharedOPSHashContexts.containsKey(ops)) {
+                    ops.getOnePassSignature().update(b, off, len);
+                }
             }
 
             for (SignatureCheck detached : detachedSignatures) {
-                detached.getSignature().update(b);
+                if (!sharedSignatureHashContexts.containsKey(detached)) {
+                    detached.getSignature().update(b, off, len);
+                }
             }
 
             for (SignatureCheck prepended : prependedSignatures) {
-                prepended.getSignature().update(b);
+                if (!sharedSignatureHashContexts.containsKey(prepended)) {
+                    prepended.getSignature().update(b, off, len);
+                }
             }
         }
 
-        public void updateLiteral(byte[] b, int off, int len) {
+        /**
+         * Group the signatures over the literal data by hash algorithm and signature type.
+         * Groups with more than one signature share a {@link SharedHashContext}, so that the literal data is
+         * hashed only once per group instead of once per signature.
+         * Signatures which are the only member of their group are updated directly as before.
+         */
+        private void initializeSharedHashContexts() {
+            literalHashingStarted = true;
+
+            Map<Integer, Integer> groupSizes = new HashMap<>();
             for (OnePassSignatureCheck ops : literalOPS) {
-                ops.getOnePassSignature().update(b, off, len);
+                if (canShareHashContext(ops)) {
+                    countGroupMember(groupSizes, ops.getOnePassSignature().getHashAlgorithm(),
+                            ops.getOnePassSignature().getSignatureType());
+                }
+            }
+            for (SignatureCheck check : detachedAndPrependedSignatures()) {
+                if (canShareHashContext(check)) {
+                    countGroupMember(groupSizes, check.getSignature().getHashAlgorithm(),
+                            check.getSignature().getSignatureType());
+                }
             }
 
-            for (SignatureCheck detached : detachedSignatures) {
-                detached.getSignature().update(b, off, len);
+            Map<Integer, SharedHashContext> groups = new HashMap<>();
+            for (OnePassSignatureCheck ops : literalOPS) {
+                if (canShareHashContext(ops)) {
+                    SharedHashContext hashContext = getGroup(groups, groupSizes,
+                            ops.getOnePassSignature().getHashAlgorithm(), ops.getOnePassSignature().getSignatureType());
+                    if (hashContext != null) {
+                        sharedOPSHashContexts.put(ops, hashContext);
+                    }
+                }
             }
+            for (SignatureCheck check : detachedAndPrependedSignatures()) {
+                if (canShareHashContext(check)) {
+                    SharedHashContext hashContext = getGroup(groups, groupSizes,
+                            check.getSignature().getHashAlgorithm(), check.getSignature().getSignatureType());
+                    if (hashContext != null) {
+                        sharedSignatureHashContexts.put(check, hashContext);
+                    }
+                }
+            }
+            literalHashContexts.addAll(groups.values());
+        }
 
-            for (SignatureCheck prepended : prependedSignatures) {
-                prepended.getSignature().update(b, off, len);
+        private List<SignatureCheck> detachedAndPrependedSignatures() {
+            List<SignatureCheck> checks = new ArrayList<>(detachedSignatures);
+            checks.addAll(prependedSignatures);
+            return checks;
+        }
+
+        private boolean canShareHashContext(OnePassSignatureCheck ops) {
+            return !opsWithPacketData.contains(ops) && SharedHashContext.isSupported(
+                    ops.getOnePassSignature().getKeyAlgorithm(), ops.getOnePassSignature().getHashAlgorithm());
+        }
+
+        private static boolean canShareHashContext(SignatureCheck check) {
+            return SharedHashContext.isSupported(
+                    check.getSignature().getKeyAlgorithm(), check.getSignature().getHashAlgorithm());
+        }
+
+        private static int groupKey(int hashAlgorithm, int signatureType) {
+            return (hashAlgorithm << 8) | signatureType;
+        }
+
+        private static void countGroupMember(Map<Integer, Integer> groupSizes, int hashAlgorithm, int signatureType) {
+            int key = groupKey(hashAlgorithm, signatureType);
+            Integer size = groupSizes.get(key);
+            groupSizes.put(key, size == null ? 1 : size + 1);
+        }
+
+        private static SharedHashContext getGroup(Map<Integer, SharedHashContext> groups,
+                                                  Map<Integer, Integer> groupSizes,
+                                                  int hashAlgorithm, int signatureType) {
+            int key = groupKey(hashAlgorithm, signatureType);
+            if (groupSizes.get(key) < 2) {
+                return null;
+            }
+            SharedHashContext hashContext = groups.get(key);
+            if (hashContext == null) {
+                hashContext = SharedHashContext.create(hashAlgorithm, signatureType);
+                groups.put(key, hashContext);
             }
+            return hashContext;
         }
 
         public void updatePacket(byte b) {
@@ -1051,6 +1915,9 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                 List<OnePassSignatureCheck> nestedOPSs = opsUpdateStack.get(i);
                 for (OnePassSignatureCheck ops : nestedOPSs) {
                     ops.getOnePassSignature().update(b);
+                    if (!literalHashingStarted) {
+                        opsWithPacketData.add(ops);
+                    }
                 }
             }
         }
@@ -1060,6 +1927,9 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                 List<OnePassSignatureCheck> nestedOPSs = opsUpdateStack.get(i);
                 for (OnePassSignatureCheck ops : nestedOPSs) {
                     ops.getOnePassSignature().update(buf, off, len);
+                    if (!literalHashingStarted) {
+                        opsWithPacketData.add(ops);
+                    }
                 }
             }
         }
@@ -1070,8 +1940,14 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                 try {
                     SignatureValidator.signatureWasCreatedInBounds(options.getVerifyNotBefore(), options.getVerifyNotAfter())
                             .verify(detached.getSignature());
+                    SharedHashContext hashContext = sharedSignatureHashContexts.get(detached);
+                    if (hashContext != null) {
+                        initialize(hashContext, detached.getSignature(),
+                                detached.getSigningKeyRing().getPublicKey(detached.getSigningKeyIdentifier().getSubkeyId()));
+                    }
                     CertificateValidator.validateCertificateAndVerifyInitializedSignature(
-                            detached.getSignature(), KeyRingUtils.publicKeys(detached.getSigningKeyRing()), policy);
+                            detached.getSignature(), KeyRingUtils.publicKeys(detached.getSigningKeyRing()), policy,
+                            options.getCertificateValidationExecutor());
                     LOGGER.debug("Acceptable signature by key " + verification.getSigningKey());
                     layer.addVerifiedDetachedSignature(verification);
                 } catch (SignatureValidationException e) {
@@ -1085,8 +1961,14 @@ public class OpenPgpMessageInputStream extends DecryptionStream {
                 try {
                     SignatureValidator.signatureWasCreatedInBounds(options.getVerifyNotBefore(), options.getVerifyNotAfter())
                             .verify(prepended.getSignature());
+                    SharedHashContext hashContext = sharedSignatureHashContexts.get(prepended);
+                    if (hashContext != null) {
+                        initialize(hashContext, prepended.getSignature(),
+                                prepended.getSigningKeyRing().getPublicKey(prepended.getSigningKeyIdentifier().getSubkeyId()));
+                    }
                     CertificateValidator.validateCertificateAndVerifyInitializedSignature(
-                            prepended.getSignature(), KeyRingUtils.publicKeys(prepended.getSigningKeyRing()), policy);
+                            prepended.getSignature(), KeyRingUtils.publicKeys(prepended.getSigningKeyRing()), policy,
+                            options.getCertificateValidationExecutor());
                     LOGGER.debug("Acceptable signature by key " + verification.getSigningKey());
                     layer.addVerifiedPrependedSignature(verification);
                 } catch (SignatureValidationException e) {
@@ -0,0 +1,243 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.pgpainless.key.SubkeyIdentifier;
+
+/**
+ * Bounded, thread-safe cache of decrypted session key data.
+ * Entries are keyed by the decryption subkey, the public key algorithm and the encrypted session key data of a
+ * public-key encrypted session key packet, which means that repeated decryption of the same message can skip the
+ * expensive asymmetric operation.
+ *
+ * The cache is split into independently locked segments, so that many decrypting threads can access it concurrently.
+ * Within each segment, the least recently used entry is evicted once the segment is full.
+ *
+ * @see CachingPublicKeyDataDecryptorFactory
+ */
+public class SessionKeyDataCache {
+
+    /**
+     * Default maximum number of cached session keys.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a cache holding up to {@link #DEFAULT_MAX_SIZE} session keys.
+     */
+    public SessionKeyDataCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a cache holding up to (roughly) maxSize session keys.
+     * Since eviction happens per segment, the cache may evict entries before maxSize is reached.
+     *
+     * @param maxSize maximum number of cached session keys
+     */
+    public SessionKeyDataCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum size MUST be positive.");
+        }
+        int segmentCount = Math.min(MAX_SEGMENTS, maxSize);
+        int segmentSize = (maxSize + segmentCount - 1) / segmentCount;
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Return the cached session key data for the given encrypted session key, or null if there is no cache hit.
+     * The returned array is shared with the cache and MUST NOT be modified.
+     *
+     * @param decryptionKey identifier of the decryption subkey
+     * @param keyAlgorithm public key algorithm
+     * @param secKeyData encrypted session key data
+     * @return session key data or null
+     */
+    @Nullable
+    public byte[] get(@Nonnull SubkeyIdentifier decryptionKey, int keyAlgorithm, @Nonnull byte[][] secKeyData) {
+        Key key = new Key(decryptionKey, keyAlgorithm, secKeyData);
+        byte[] sessionKeyData = segmentFor(key).get(key);
+        if (sessionKeyData == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return sessionKeyData;
+    }
+
+    /**
+     * Add decrypted session key data to the cache.
+     * The cache stores copies of the given arrays.
+     *
+     * @param decryptionKey identifier of the decryption subkey
+     * @param keyAlgorithm public key algorithm
+     * @param secKeyData encrypted session key data
+     * @param sessionKeyData decrypted session key data
+     */
+    public void put(@Nonnull SubkeyIdentifier decryptionKey,
+                    int keyAlgorithm,
+                    @Nonnull byte[][] secKeyData,
+                    @Nonnull byte[] sessionKeyData) {
+        byte[][] secKeyDataCopy = new byte[secKeyData.length][];
+        for (int i = 0; i < secKeyData.length; i++) {
+            secKeyDataCopy[i] = secKeyData[i] == null ? null : secKeyData[i].clone();
+        }
+        Key key = new Key(decryptionKey, keyAlgorithm, secKeyDataCopy);
+        segmentFor(key).put(key, sessionKeyData.clone());
+    }
+
+    /**
+     * Remove all session keys which were decrypted using the given subkey.
+     *
+     * @param decryptionKey identifier of the decryption subkey
+     */
+    public void invalidate(@Nonnull SubkeyIdentifier decryptionKey) {
+        for (Segment segment : segments) {
+            segment.removeAll(decryptionKey);
+        }
+    }
+
+    /**
+     * Remove all session keys from the cache.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Return the number of cached session keys.
+     *
+     * @return size
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Return the number of lookups which were answered from the cache.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Return the number of lookups which could not be answered from the cache.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private Segment segmentFor(Key key) {
+        int hash = key.hashCode;
+        hash ^= hash >>> 16;
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    private static final class Segment {
+
+        private final LinkedHashMap<Key, byte[]> entries;
+
+        Segment(final int maxSize) {
+            this.entries = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized byte[] get(Key key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(Key key, byte[] sessionKeyData) {
+            entries.put(key, sessionKeyData);
+        }
+
+        synchronized void removeAll(SubkeyIdentifier decryptionKey) {
+            Iterator<Key> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().decryptionKey.equals(decryptionKey)) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Key {
+
+        private final SubkeyIdentifier decryptionKey;
+        private final int keyAlgorithm;
+        private final byte[][] secKeyData;
+        private final int hashCode;
+
+        Key(SubkeyIdentifier decryptionKey, int keyAlgorithm, byte[][] secKeyData) {
+            this.decryptionKey = decryptionKey;
+            this.keyAlgorithm = keyAlgorithm;
+            this.secKeyData = secKeyData;
+
+            int hash = decryptionKey.hashCode() * 31 + keyAlgorithm;
+            for (byte[] data : secKeyData) {
+                hash = hash * 31 + Arrays.hashCode(data);
+            }
+            this.hashCode = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && keyAlgorithm == other.keyAlgorithm
+                    && Arrays.deepEquals(secKeyData, other.secKeyData)
+                    && decryptionKey.equals(other.decryptionKey);
+        }
+    }
+}
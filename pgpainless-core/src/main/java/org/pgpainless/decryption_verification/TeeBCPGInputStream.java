@@ -31,6 +31,9 @@ import org.pgpainless.algorithm.OpenPgpPacket;
  * we need to delay teeing out that byte to signature verifiers.
  * Hence, the reading methods of the {@link TeeBCPGInputStream} handle pushing this byte to the output stream using
  * {@link DelayedTeeInputStream#squeeze()}.
+ *
+ * To avoid updating signatures byte by byte while packet headers are parsed, the {@link DelayedTeeInputStream}
+ * collects teed bytes in a small buffer, which is flushed before the next packet is processed.
  */
 public class TeeBCPGInputStream {
 
@@ -45,6 +48,8 @@ public class TeeBCPGInputStream {
 
     public OpenPgpPacket nextPacketTag() throws IOException {
         int tag = packetInputStream.nextPacketTag();
+        // the tag itself is delayed, but all preceding bytes belong to the previous packet
+        delayedTee.flushTee();
         if (tag == -1) {
             return null;
         }
@@ -78,6 +83,25 @@ public class TeeBCPGInputStream {
         return new PGPEncryptedDataList(packetInputStream);
     }
 
+    /**
+     * Read an encrypted data list and write the raw bytes, which were read from the underlying stream, to the
+     * given capture stream.
+     * Those are the encrypted session key packets, the header of the encrypted data packet and the beginning of its
+     * body, as far as it was already buffered by BC.
+     *
+     * @param capture stream to which the raw bytes are written
+     * @return encrypted data list
+     * @throws IOException in case of an IO error
+     */
+    public PGPEncryptedDataList readEncryptedDataList(OutputStream capture) throws IOException {
+        delayedTee.startCapture(capture);
+        try {
+            return readEncryptedDataList();
+        } finally {
+            delayedTee.stopCapture();
+        }
+    }
+
     public PGPOnePassSignature readOnePassSignature() throws PGPException, IOException {
         PGPOnePassSignature onePassSignature = new PGPOnePassSignature(packetInputStream);
         delayedTee.squeeze();
@@ -102,9 +126,15 @@ public class TeeBCPGInputStream {
 
     public static class DelayedTeeInputStream extends InputStream {
 
+        // Bytes which are teed out one by one are collected and written to the output stream in blocks
+        private static final int TEE_BUFFER_SIZE = 512;
+
         private int last = -1;
         private final InputStream inputStream;
         private final OutputStream outputStream;
+        private final byte[] teeBuffer = new byte[TEE_BUFFER_SIZE];
+        private int teeBufferLen = 0;
+        private OutputStream capture = null;
 
         public DelayedTeeInputStream(InputStream inputStream, OutputStream outputStream) {
             this.inputStream = inputStream;
@@ -114,10 +144,13 @@ public class TeeBCPGInputStream {
         @Override
         public int read() throws IOException {
             if (last != -1) {
-                outputStream.write(last);
+                tee(last);
             }
             try {
                 last = inputStream.read();
+                if (capture != null && last != -1) {
+                    capture.write(last);
+                }
                 return last;
             } catch (IOException e) {
                 if ("crc check failed in armored message.".equals(e.getMessage())) {
@@ -130,12 +163,15 @@ public class TeeBCPGInputStream {
         @Override
         public int read(byte[] b, int off, int len) throws IOException {
             if (last != -1) {
-                outputStream.write(last);
+                tee(last);
             }
 
             int r = inputStream.read(b, off, len);
             if (r > 0) {
-                outputStream.write(b, off, r - 1);
+                if (capture != null) {
+                    capture.write(b, off, r);
+                }
+                tee(b, off, r - 1);
                 last = b[off + r - 1];
             } else {
                 last = -1;
@@ -143,6 +179,60 @@ public class TeeBCPGInputStream {
             return r;
         }
 
+        private void tee(int b) throws IOException {
+            if (teeBufferLen == teeBuffer.length) {
+                flushTee();
+            }
+            teeBuffer[teeBufferLen++] = (byte) b;
+        }
+
+        private void tee(byte[] b, int off, int len) throws IOException {
+            if (teeBufferLen + len > teeBuffer.length) {
+                flushTee();
+            }
+            if (len >= teeBuffer.length) {
+                // large blocks bypass the buffer
+                outputStream.write(b, off, len);
+                return;
+            }
+            System.arraycopy(b, off, teeBuffer, teeBufferLen, len);
+            teeBufferLen += len;
+        }
+
+        /**
+         * Write out all bytes which were teed, except for the last, delayed byte.
+         * This method needs to be called before the state of the output stream is changed or inspected.
+         *
+         * @throws IOException in case of an IO error
+         */
+        public void flushTee() throws IOException {
+            if (teeBufferLen != 0) {
+                outputStream.write(teeBuffer, 0, teeBufferLen);
+                teeBufferLen = 0;
+            }
+        }
+
+        /**
+         * Start writing the bytes read from the underlying stream to the given capture stream.
+         * The last, delayed byte (e.g. the tag of the next packet) is captured as well.
+         *
+         * @param capture capture stream
+         * @throws IOException in case of an IO error
+         */
+        void startCapture(OutputStream capture) throws IOException {
+            if (last != -1) {
+                capture.write(last);
+            }
+            this.capture = capture;
+        }
+
+        /**
+         * Stop capturing bytes.
+         */
+        void stopCapture() {
+            this.capture = null;
+        }
+
         /**
          * Squeeze the last byte out and update the output stream.
          *
@@ -150,14 +240,16 @@ public class TeeBCPGInputStream {
          */
         public void squeeze() throws IOException {
             if (last != -1) {
-                outputStream.write(last);
+                tee(last);
             }
             last = -1;
+            flushTee();
         }
 
         @Override
         public void close() throws IOException {
             inputStream.close();
+            flushTee();
             outputStream.close();
         }
     }
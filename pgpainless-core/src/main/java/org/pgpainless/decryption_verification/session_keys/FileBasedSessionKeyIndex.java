@@ -0,0 +1,390 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification.session_keys;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.util.encoders.Hex;
+import org.pgpainless.algorithm.SymmetricKeyAlgorithm;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.util.SessionKey;
+
+/**
+ * Implementation of the {@link SessionKeyIndex} which stores session keys in a local, memory-mapped file.
+ *
+ * Session keys are encrypted at rest using AES-256-GCM with a key derived from the index key passed to the
+ * constructor. Message identifiers are not stored in plain, but as an HMAC keyed with another key derived from
+ * the index key, so the file does not reveal which messages are indexed.
+ *
+ * The file consists of a header, followed by fixed-size records which are only ever appended.
+ * If the session key of an already indexed message is replaced, a new record is appended, which supersedes the old one.
+ * When the index is opened, the record tags are read into memory. The records themselves are read from the
+ * memory-mapped file on lookup.
+ *
+ * This class is thread-safe. The index MUST be closed after use.
+ */
+public class FileBasedSessionKeyIndex implements SessionKeyIndex, Closeable {
+
+    private static final byte[] MAGIC = "PGPSKIDX".getBytes(Charset.forName("UTF-8"));
+    private static final byte VERSION = 2;
+
+    private static final int SALT_LENGTH = 16;
+    private static final int CHECK_LENGTH = 16;
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + SALT_LENGTH + CHECK_LENGTH;
+
+    private static final int TAG_LENGTH = 32;
+    private static final int NONCE_LENGTH = 12;
+    private static final int MAX_SESSION_KEY_LENGTH = 32;
+    private static final int MAX_FINGERPRINT_LENGTH = 32;
+    // algorithm id, key length, padded key, followed by the length and padded value of the primary key and subkey
+    // fingerprints of the decryption key (length 0 if unknown)
+    private static final int PAYLOAD_LENGTH = 2 + MAX_SESSION_KEY_LENGTH + 2 * (1 + MAX_FINGERPRINT_LENGTH);
+    private static final int AUTH_TAG_LENGTH = 16;
+    private static final int RECORD_LENGTH = TAG_LENGTH + NONCE_LENGTH + PAYLOAD_LENGTH + AUTH_TAG_LENGTH;
+
+    private static final int MIN_INDEX_KEY_LENGTH = 16;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] tagKey;
+    private final byte[] encryptionKey;
+    private final Map<ByteBuffer, Long> recordOffsets = new HashMap<>();
+
+    private MappedByteBuffer mapped;
+    private long size;
+
+    /**
+     * Open the index stored in the given file, or create a new index if the file does not exist or is empty.
+     *
+     * @param indexFile file containing the index
+     * @param indexKey secret key used to protect the index (at least 16 bytes)
+     *
+     * @throws IOException if the file cannot be read, is corrupted or was created with a different index key
+     */
+    public FileBasedSessionKeyIndex(@Nonnull File indexFile, @Nonnull byte[] indexKey) throws IOException {
+        if (indexKey.length < MIN_INDEX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Index key MUST be at least " + MIN_INDEX_KEY_LENGTH + " bytes long.");
+        }
+
+        this.file = new RandomAccessFile(indexFile, "rw");
+        this.channel = file.getChannel();
+        try {
+            byte[] salt;
+            if (channel.size() == 0) {
+                salt = new byte[SALT_LENGTH];
+                random.nextBytes(salt);
+                this.tagKey = deriveKey(indexKey, salt, "tag");
+                this.encryptionKey = deriveKey(indexKey, salt, "encryption");
+                writeHeader(salt);
+            } else {
+                salt = readHeader();
+                this.tagKey = deriveKey(indexKey, salt, "tag");
+                this.encryptionKey = deriveKey(indexKey, salt, "encryption");
+                verifyKeyCheck();
+            }
+            loadRecords();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Nullable
+    @Override
+    public synchronized IndexedSessionKey getSessionKey(@Nonnull byte[] messageIdentifier) throws IOException {
+        byte[] tag = computeTag(messageIdentifier);
+        Long offset = recordOffsets.get(ByteBuffer.wrap(tag));
+        if (offset == null) {
+            return null;
+        }
+
+        byte[] nonce = new byte[NONCE_LENGTH];
+        byte[] ciphertext = new byte[PAYLOAD_LENGTH + AUTH_TAG_LENGTH];
+        ByteBuffer record = mappedRecord(offset);
+        record.position(TAG_LENGTH);
+        record.get(nonce);
+        record.get(ciphertext);
+
+        byte[] payload = new byte[PAYLOAD_LENGTH];
+        try {
+            GCMBlockCipher cipher = initCipher(false, nonce, tag);
+            int len = cipher.processBytes(ciphertext, 0, ciphertext.length, payload, 0);
+            cipher.doFinal(payload, len);
+
+            SymmetricKeyAlgorithm algorithm = SymmetricKeyAlgorithm.fromId(payload[0] & 0xff);
+            int keyLength = payload[1] & 0xff;
+            if (algorithm == null || keyLength > MAX_SESSION_KEY_LENGTH) {
+                throw new IOException("Corrupted session key index record.");
+            }
+            SessionKey sessionKey = new SessionKey(algorithm, Arrays.copyOfRange(payload, 2, 2 + keyLength));
+            int fingerprintOffset = 2 + MAX_SESSION_KEY_LENGTH;
+            OpenPgpFingerprint primaryKey = readFingerprint(payload, fingerprintOffset);
+            OpenPgpFingerprint subkey = readFingerprint(payload, fingerprintOffset + 1 + MAX_FINGERPRINT_LENGTH);
+            SubkeyIdentifier decryptionKey = primaryKey == null || subkey == null
+                    ? null : new SubkeyIdentifier(primaryKey, subkey);
+            return new IndexedSessionKey(sessionKey, decryptionKey);
+        } catch (InvalidCipherTextException e) {
+            throw new IOException("Corrupted session key index record.", e);
+        } finally {
+            Arrays.fill(payload, (byte) 0);
+        }
+    }
+
+    @Override
+    public synchronized void putSessionKey(@Nonnull byte[] messageIdentifier, @Nonnull IndexedSessionKey indexedSessionKey)
+            throws IOException {
+        SessionKey sessionKey = indexedSessionKey.getSessionKey();
+        SubkeyIdentifier decryptionKey = indexedSessionKey.getDecryptionKey();
+        byte[] key = sessionKey.getKey();
+        if (key.length > MAX_SESSION_KEY_LENGTH) {
+            throw new IllegalArgumentException("Session key is too long.");
+        }
+
+        byte[] tag = computeTag(messageIdentifier);
+        ByteBuffer tagBuffer = ByteBuffer.wrap(tag);
+        if (recordOffsets.containsKey(tagBuffer) && isSame(indexedSessionKey, readSessionKey(messageIdentifier))) {
+            return;
+        }
+
+        byte[] payload = new byte[PAYLOAD_LENGTH];
+        payload[0] = (byte) sessionKey.getAlgorithm().getAlgorithmId();
+        payload[1] = (byte) key.length;
+        System.arraycopy(key, 0, payload, 2, key.length);
+        if (decryptionKey != null) {
+            int offset = 2 + MAX_SESSION_KEY_LENGTH;
+            writeFingerprint(decryptionKey.getPrimaryKeyFingerprint(), payload, offset);
+            writeFingerprint(decryptionKey.getSubkeyFingerprint(), payload, offset + 1 + MAX_FINGERPRINT_LENGTH);
+        }
+
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        byte[] ciphertext = new byte[PAYLOAD_LENGTH + AUTH_TAG_LENGTH];
+        try {
+            GCMBlockCipher cipher = initCipher(true, nonce, tag);
+            int len = cipher.processBytes(payload, 0, payload.length, ciphertext, 0);
+            cipher.doFinal(ciphertext, len);
+        } catch (InvalidCipherTextException e) {
+            throw new IOException("Cannot encrypt session key.", e);
+        } finally {
+            Arrays.fill(payload, (byte) 0);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_LENGTH);
+        record.put(tag).put(nonce).put(ciphertext);
+        record.flip();
+        writeFully(record, size);
+
+        // a newer record supersedes older records with the same tag, also when the index is loaded again
+        recordOffsets.put(tagBuffer, size);
+        size += RECORD_LENGTH;
+    }
+
+    private static boolean isSame(IndexedSessionKey sessionKey, @Nullable IndexedSessionKey indexed) {
+        if (indexed == null) {
+            return false;
+        }
+        SubkeyIdentifier decryptionKey = sessionKey.getDecryptionKey();
+        return indexed.getSessionKey().getAlgorithm() == sessionKey.getSessionKey().getAlgorithm()
+                && Arrays.equals(indexed.getSessionKey().getKey(), sessionKey.getSessionKey().getKey())
+                && (decryptionKey == null ? indexed.getDecryptionKey() == null
+                : decryptionKey.equals(indexed.getDecryptionKey()));
+    }
+
+    private static void writeFingerprint(OpenPgpFingerprint fingerprint, byte[] payload, int offset) {
+        byte[] bytes = Hex.decode(fingerprint.toString());
+        if (bytes.length > MAX_FINGERPRINT_LENGTH) {
+            throw new IllegalArgumentException("Fingerprint is too long.");
+        }
+        payload[offset] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, payload, offset + 1, bytes.length);
+    }
+
+    @Nullable
+    private static OpenPgpFingerprint readFingerprint(byte[] payload, int offset) throws IOException {
+        int length = payload[offset] & 0xff;
+        if (length == 0) {
+            return null;
+        }
+        if (length > MAX_FINGERPRINT_LENGTH) {
+            throw new IOException("Corrupted session key index record.");
+        }
+        try {
+            return OpenPgpFingerprint.parseFromBinary(Arrays.copyOfRange(payload, offset + 1, offset + 1 + length));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupted session key index record.", e);
+        }
+    }
+
+    @Nullable
+    private IndexedSessionKey readSessionKey(byte[] messageIdentifier) {
+        try {
+            return getSessionKey(messageIdentifier);
+        } catch (IOException e) {
+            // corrupted record, which is replaced
+            return null;
+        }
+    }
+
+    /**
+     * Return the number of indexed session keys.
+     *
+     * @return size
+     */
+    public synchronized int size() {
+        return recordOffsets.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        Arrays.fill(tagKey, (byte) 0);
+        Arrays.fill(encryptionKey, (byte) 0);
+        recordOffsets.clear();
+        mapped = null;
+        channel.close();
+        file.close();
+    }
+
+    private void writeHeader(byte[] salt) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).put(VERSION).put(salt).put(computeKeyCheck());
+        header.flip();
+        writeFully(header, 0);
+    }
+
+    private byte[] readHeader() throws IOException {
+        if (channel.size() < HEADER_LENGTH) {
+            throw new IOException("Session key index is corrupted.");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        readFully(header, 0);
+        header.flip();
+
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("File is not a session key index.");
+        }
+        byte version = header.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported session key index version " + version);
+        }
+        byte[] salt = new byte[SALT_LENGTH];
+        header.get(salt);
+        return salt;
+    }
+
+    private void verifyKeyCheck() throws IOException {
+        ByteBuffer check = ByteBuffer.allocate(CHECK_LENGTH);
+        readFully(check, HEADER_LENGTH - CHECK_LENGTH);
+        if (!org.bouncycastle.util.Arrays.constantTimeAreEqual(computeKeyCheck(), check.array())) {
+            throw new IOException("Wrong key for session key index.");
+        }
+    }
+
+    private void loadRecords() throws IOException {
+        long fileSize = channel.size();
+        long recordCount = (fileSize - HEADER_LENGTH) / RECORD_LENGTH;
+        size = HEADER_LENGTH + recordCount * RECORD_LENGTH;
+        if (size != fileSize) {
+            // drop incomplete record
+            channel.truncate(size);
+        }
+
+        remap();
+        for (long offset = HEADER_LENGTH; offset < size; offset += RECORD_LENGTH) {
+            byte[] tag = new byte[TAG_LENGTH];
+            ByteBuffer record = mappedRecord(offset);
+            record.get(tag);
+            recordOffsets.put(ByteBuffer.wrap(tag), offset);
+        }
+    }
+
+    private ByteBuffer mappedRecord(long offset) throws IOException {
+        if (offset + RECORD_LENGTH > mapped.capacity()) {
+            remap();
+        }
+        ByteBuffer record = mapped.duplicate();
+        record.position((int) offset);
+        record.limit((int) offset + RECORD_LENGTH);
+        return record.slice();
+    }
+
+    private void remap() throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Session key index is too large.");
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new IOException("Unexpected end of session key index.");
+            }
+            position += read;
+        }
+    }
+
+    private GCMBlockCipher initCipher(boolean forEncryption, byte[] nonce, byte[] associatedData) {
+        GCMBlockCipher cipher = new GCMBlockCipher(new AESEngine());
+        cipher.init(forEncryption, new AEADParameters(
+                new KeyParameter(encryptionKey), AUTH_TAG_LENGTH * 8, nonce, associatedData));
+        return cipher;
+    }
+
+    private byte[] computeTag(byte[] messageIdentifier) {
+        return hmac(tagKey, messageIdentifier);
+    }
+
+    private byte[] computeKeyCheck() {
+        return Arrays.copyOf(hmac(tagKey, MAGIC), CHECK_LENGTH);
+    }
+
+    private static byte[] deriveKey(byte[] indexKey, byte[] salt, String label) {
+        byte[] labelBytes = label.getBytes(Charset.forName("UTF-8"));
+        byte[] info = new byte[salt.length + labelBytes.length];
+        System.arraycopy(salt, 0, info, 0, salt.length);
+        System.arraycopy(labelBytes, 0, info, salt.length, labelBytes.length);
+        return hmac(indexKey, info);
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) {
+        HMac mac = new HMac(new SHA256Digest());
+        mac.init(new KeyParameter(key));
+        mac.update(data, 0, data.length);
+        byte[] out = new byte[mac.getMacSize()];
+        mac.doFinal(out, 0);
+        return out;
+    }
+}
@@ -0,0 +1,53 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification.session_keys;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.util.SessionKey;
+
+/**
+ * Session key stored in a {@link SessionKeyIndex}, along with the identifier of the secret key which was used to
+ * decrypt the message in the first place.
+ * The latter is reported in the metadata of later decryptions of the message, which use the indexed session key.
+ */
+public final class IndexedSessionKey {
+
+    private final SessionKey sessionKey;
+    private final SubkeyIdentifier decryptionKey;
+
+    /**
+     * Create an indexed session key.
+     *
+     * @param sessionKey session key
+     * @param decryptionKey identifier of the secret key which decrypted the session key, or null if unknown
+     */
+    public IndexedSessionKey(@Nonnull SessionKey sessionKey, @Nullable SubkeyIdentifier decryptionKey) {
+        this.sessionKey = sessionKey;
+        this.decryptionKey = decryptionKey;
+    }
+
+    /**
+     * Return the session key.
+     *
+     * @return session key
+     */
+    @Nonnull
+    public SessionKey getSessionKey() {
+        return sessionKey;
+    }
+
+    /**
+     * Return the identifier of the secret key which decrypted the session key, or null if unknown.
+     *
+     * @return decryption key or null
+     */
+    @Nullable
+    public SubkeyIdentifier getDecryptionKey() {
+        return decryptionKey;
+    }
+}
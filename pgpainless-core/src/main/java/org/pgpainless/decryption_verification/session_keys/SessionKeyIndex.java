@@ -0,0 +1,49 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification.session_keys;
+
+import java.io.IOException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+
+/**
+ * Index of session keys of previously decrypted messages.
+ * If a {@link SessionKeyIndex} is set in the {@link org.pgpainless.decryption_verification.ConsumerOptions},
+ * the session key of a public-key encrypted message is recorded after the message was first decrypted.
+ * When the same message is decrypted again, the session key is taken from the index, which turns the decryption
+ * into a purely symmetric operation.
+ * Along with the session key, the index stores the identifier of the secret key which decrypted the message, so that
+ * the metadata of later decryptions is the same as that of the first one.
+ *
+ * Messages are identified by a digest over their encrypted session key packets and the header of their encrypted
+ * data packet.
+ * If an indexed session key does not decrypt the message, the message is decrypted as usual and the index entry
+ * is replaced with the correct session key.
+ */
+public interface SessionKeyIndex {
+
+    /**
+     * Return the session key of the message with the given identifier, or null if the message is not indexed.
+     *
+     * @param messageIdentifier identifier of the message
+     * @return indexed session key or null
+     *
+     * @throws IOException in case of an IO error
+     */
+    @Nullable
+    IndexedSessionKey getSessionKey(@Nonnull byte[] messageIdentifier) throws IOException;
+
+    /**
+     * Record the session key of the message with the given identifier.
+     * A previously recorded session key of the same message is replaced.
+     *
+     * @param messageIdentifier identifier of the message
+     * @param sessionKey session key and the identifier of the secret key which decrypted it
+     *
+     * @throws IOException in case of an IO error
+     */
+    void putSessionKey(@Nonnull byte[] messageIdentifier, @Nonnull IndexedSessionKey sessionKey) throws IOException;
+}
@@ -0,0 +1,8 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+/**
+ * Classes related to the persistent indexing of message session keys.
+ */
+package org.pgpainless.decryption_verification.session_keys;
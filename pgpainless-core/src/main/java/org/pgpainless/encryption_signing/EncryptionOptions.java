@@ -20,6 +20,7 @@ import org.bouncycastle.openpgp.PGPPublicKeyRing;
 import org.bouncycastle.openpgp.PGPPublicKeyRingCollection;
 import org.bouncycastle.openpgp.operator.PBEKeyEncryptionMethodGenerator;
 import org.bouncycastle.openpgp.operator.PGPKeyEncryptionMethodGenerator;
+import org.pgpainless.PGPainless;
 import org.pgpainless.algorithm.EncryptionPurpose;
 import org.pgpainless.algorithm.SymmetricKeyAlgorithm;
 import org.pgpainless.exception.KeyException;
@@ -168,7 +169,7 @@ public class EncryptionOptions {
      * @return this
      */
     public EncryptionOptions addRecipient(PGPPublicKeyRing key, String userId, EncryptionKeySelector encryptionKeySelectionStrategy) {
-        KeyRingInfo info = new KeyRingInfo(key, new Date());
+        KeyRingInfo info = KeyRingInfo.evaluate(key, PGPainless.getPolicy(), new Date());
 
         List<PGPPublicKey> encryptionSubkeys = encryptionKeySelectionStrategy
                 .selectEncryptionSubkeys(info.getEncryptionSubkeys(userId, purpose));
@@ -206,7 +207,7 @@ public class EncryptionOptions {
     public EncryptionOptions addRecipient(PGPPublicKeyRing key, EncryptionKeySelector encryptionKeySelectionStrategy) {
         Date evaluationDate = new Date();
         KeyRingInfo info;
-        info = new KeyRingInfo(key, evaluationDate);
+        info = KeyRingInfo.evaluate(key, PGPainless.getPolicy(), evaluationDate);
 
         Date primaryKeyExpiration;
         try {
@@ -234,6 +235,44 @@ public class EncryptionOptions {
         return this;
     }
 
+    /**
+     * Add the recipients with the given email address, whose certificates are looked up in the given
+     * {@link RecipientCertificateSource} (e.g. a certificate store).
+     * For every certificate carrying a valid user-id with the given email address, that user-id is used to
+     * determine the recipients preferences, see {@link #addRecipient(PGPPublicKeyRing, String)}.
+     * Certificates without acceptable encryption subkeys are skipped.
+     * Email addresses are compared case-insensitively.
+     *
+     * @param email email address
+     * @param source source of recipient certificates
+     * @return this
+     *
+     * @throws IllegalArgumentException if no usable certificate with a valid user-id containing the email address
+     * was found
+     */
+    public EncryptionOptions addRecipientsByEmail(@Nonnull String email, @Nonnull RecipientCertificateSource source) {
+        boolean added = false;
+        for (PGPPublicKeyRing certificate : source.getCertificatesByEmail(email)) {
+            KeyRingInfo info = KeyRingInfo.evaluate(certificate, PGPainless.getPolicy(), new Date());
+            for (String userId : info.getValidUserIds()) {
+                String userIdEmail = KeyRingInfo.getEmailAddress(userId);
+                if (userIdEmail != null && userIdEmail.equalsIgnoreCase(email.trim())) {
+                    if (info.getEncryptionSubkeys(userId, purpose).isEmpty()) {
+                        // skip certificates which are not usable for encryption
+                        break;
+                    }
+                    addRecipient(certificate, userId);
+                    added = true;
+                    break;
+                }
+            }
+        }
+        if (!added) {
+            throw new IllegalArgumentException("No usable certificate for email address " + email + " found.");
+        }
+        return this;
+    }
+
     private void addRecipientKey(PGPPublicKeyRing keyRing, PGPPublicKey key) {
         encryptionKeys.add(new SubkeyIdentifier(keyRing, key.getKeyID()));
         PGPKeyEncryptionMethodGenerator encryptionMethod = ImplementationFactory
@@ -321,6 +360,24 @@ public class EncryptionOptions {
         return !encryptionMethods.isEmpty();
     }
 
+    /**
+     * Source of recipient certificates, which can be queried by email address, such as a certificate store.
+     *
+     * @see #addRecipientsByEmail(String, RecipientCertificateSource)
+     */
+    public interface RecipientCertificateSource {
+
+        /**
+         * Return all certificates which carry a user-id with the given email address.
+         * Email addresses shall be compared case-insensitively.
+         * The returned certificates might not be valid.
+         *
+         * @param email email address
+         * @return (potentially empty) list of certificates
+         */
+        @Nonnull List<PGPPublicKeyRing> getCertificatesByEmail(@Nonnull String email);
+    }
+
     public interface EncryptionKeySelector {
         List<PGPPublicKey> selectEncryptionSubkeys(List<PGPPublicKey> encryptionCapableKeys);
     }
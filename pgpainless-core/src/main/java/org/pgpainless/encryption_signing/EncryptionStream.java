@@ -64,6 +64,7 @@ public final class EncryptionStream extends OutputStream {
     private BCPGOutputStream basicCompressionStream;
     private PGPLiteralDataGenerator literalDataGenerator;
     private OutputStream literalDataStream;
+    private SignatureGenerationStream signatureGenerationStream;
 
     EncryptionStream(@Nonnull OutputStream targetOutputStream,
                      @Nonnull ProducerOptions options)
@@ -185,7 +186,8 @@ public final class EncryptionStream extends OutputStream {
     }
 
     public void prepareSigningStream() {
-        outermostStream = new SignatureGenerationStream(outermostStream, options.getSigningOptions());
+        signatureGenerationStream = new SignatureGenerationStream(outermostStream, options.getSigningOptions());
+        outermostStream = signatureGenerationStream;
     }
 
     public void prepareInputEncoding() {
@@ -229,7 +231,7 @@ public final class EncryptionStream extends OutputStream {
 
     @Override
     public void write(@Nonnull byte[] buffer, int off, int len) throws IOException {
-        outermostStream.write(buffer, 0, len);
+        outermostStream.write(buffer, off, len);
     }
 
     @Override
@@ -298,8 +300,7 @@ public final class EncryptionStream extends OutputStream {
         for (int i = signingKeys.size() - 1; i >= 0; i--) {
             SubkeyIdentifier signingKey = signingKeys.get(i);
             SigningOptions.SigningMethod signingMethod = signingOptions.getSigningMethods().get(signingKey);
-            PGPSignatureGenerator signatureGenerator = signingMethod.getSignatureGenerator();
-            PGPSignature signature = signatureGenerator.generate();
+            PGPSignature signature = signatureGenerationStream.generateSignature(signingKey);
             if (signingMethod.isDetached()) {
                 resultBuilder.addDetachedSignature(signingKey, signature);
             }
@@ -4,25 +4,74 @@
 
 package org.pgpainless.encryption_signing;
 
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.openpgp.PGPSignatureGenerator;
 import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.signature.SharedHashContext;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * OutputStream which has the task of updating signature generators for written data.
+ * Signing methods with the same hash algorithm and signature type share a {@link SharedHashContext},
+ * so that the data is hashed only once for all of them.
  */
 class SignatureGenerationStream extends OutputStream {
 
     private final OutputStream wrapped;
     private final SigningOptions options;
+    private final List<PGPSignatureGenerator> signatureGenerators = new ArrayList<>();
+    private final List<SharedHashContext> hashContexts = new ArrayList<>();
+    private final Map<SubkeyIdentifier, SharedHashContext> sharedHashContexts = new HashMap<>();
+    private final byte[] singleByte = new byte[1];
 
     SignatureGenerationStream(@Nonnull OutputStream wrapped, @Nullable SigningOptions signingOptions) {
         this.wrapped = wrapped;
         this.options = signingOptions;
+        if (options != null) {
+            initializeHashContexts(options.getSigningMethods());
+        }
+    }
+
+    private void initializeHashContexts(Map<SubkeyIdentifier, SigningOptions.SigningMethod> signingMethods) {
+        Map<Integer, List<SubkeyIdentifier>> groups = new HashMap<>();
+        for (SubkeyIdentifier signingKey : signingMethods.keySet()) {
+            SigningOptions.SigningMethod signingMethod = signingMethods.get(signingKey);
+            if (!signingMethod.canShareHashContext()) {
+                signatureGenerators.add(signingMethod.getSignatureGenerator());
+                continue;
+            }
+            int groupKey = (signingMethod.getHashAlgorithm().getAlgorithmId() << 8) | signingMethod.getSignatureType();
+            List<SubkeyIdentifier> group = groups.get(groupKey);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(groupKey, group);
+            }
+            group.add(signingKey);
+        }
+
+        for (List<SubkeyIdentifier> group : groups.values()) {
+            // A single signing method does not benefit from a shared hash context
+            if (group.size() == 1) {
+                signatureGenerators.add(signingMethods.get(group.get(0)).getSignatureGenerator());
+                continue;
+            }
+            SigningOptions.SigningMethod first = signingMethods.get(group.get(0));
+            SharedHashContext hashContext = SharedHashContext.create(
+                    first.getHashAlgorithm().getAlgorithmId(), first.getSignatureType());
+            hashContexts.add(hashContext);
+            for (SubkeyIdentifier signingKey : group) {
+                sharedHashContexts.put(signingKey, hashContext);
+            }
+        }
     }
 
     @Override
@@ -32,12 +81,14 @@ class SignatureGenerationStream extends OutputStream {
             return;
         }
 
-        for (SubkeyIdentifier signingKey : options.getSigningMethods().keySet()) {
-            SigningOptions.SigningMethod signingMethod = options.getSigningMethods().get(signingKey);
-            PGPSignatureGenerator signatureGenerator = signingMethod.getSignatureGenerator();
-            byte asByte = (byte) (b & 0xff);
+        byte asByte = (byte) (b & 0xff);
+        for (PGPSignatureGenerator signatureGenerator : signatureGenerators) {
             signatureGenerator.update(asByte);
         }
+        singleByte[0] = asByte;
+        for (SharedHashContext hashContext : hashContexts) {
+            hashContext.update(singleByte, 0, 1);
+        }
     }
 
     @Override
@@ -47,15 +98,32 @@ class SignatureGenerationStream extends OutputStream {
 
     @Override
     public void write(@Nonnull byte[] buffer, int off, int len) throws IOException {
-        wrapped.write(buffer, 0, len);
+        wrapped.write(buffer, off, len);
         if (options == null || options.getSigningMethods().isEmpty()) {
             return;
         }
-        for (SubkeyIdentifier signingKey : options.getSigningMethods().keySet()) {
-            SigningOptions.SigningMethod signingMethod = options.getSigningMethods().get(signingKey);
-            PGPSignatureGenerator signatureGenerator = signingMethod.getSignatureGenerator();
-            signatureGenerator.update(buffer, 0, len);
+        for (PGPSignatureGenerator signatureGenerator : signatureGenerators) {
+            signatureGenerator.update(buffer, off, len);
+        }
+        for (SharedHashContext hashContext : hashContexts) {
+            hashContext.update(buffer, off, len);
+        }
+    }
+
+    /**
+     * Generate the signature of the signing method of the given signing key over the written data.
+     *
+     * @param signingKey signing key
+     * @return signature
+     * @throws PGPException in case of an OpenPGP error
+     */
+    PGPSignature generateSignature(SubkeyIdentifier signingKey) throws PGPException {
+        SigningOptions.SigningMethod signingMethod = options.getSigningMethods().get(signingKey);
+        SharedHashContext hashContext = sharedHashContexts.get(signingKey);
+        if (hashContext != null) {
+            return signingMethod.generateSignature(hashContext);
         }
+        return signingMethod.getSignatureGenerator().generate();
     }
 
     @Override
@@ -17,7 +17,9 @@ import org.bouncycastle.openpgp.PGPPrivateKey;
 import org.bouncycastle.openpgp.PGPPublicKey;
 import org.bouncycastle.openpgp.PGPSecretKey;
 import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.openpgp.PGPSignatureGenerator;
+import org.bouncycastle.openpgp.PGPSignatureSubpacketVector;
 import org.bouncycastle.openpgp.operator.PGPContentSignerBuilder;
 import org.pgpainless.PGPainless;
 import org.pgpainless.algorithm.DocumentSignatureType;
@@ -29,9 +31,11 @@ import org.pgpainless.implementation.ImplementationFactory;
 import org.pgpainless.key.OpenPgpFingerprint;
 import org.pgpainless.key.SubkeyIdentifier;
 import org.pgpainless.key.info.KeyRingInfo;
+import org.pgpainless.key.protection.PrivateKeyCache;
 import org.pgpainless.key.protection.SecretKeyRingProtector;
 import org.pgpainless.key.protection.UnlockSecretKey;
 import org.pgpainless.policy.Policy;
+import org.pgpainless.signature.SharedHashContext;
 import org.pgpainless.signature.subpackets.BaseSignatureSubpackets;
 import org.pgpainless.signature.subpackets.SignatureSubpackets;
 import org.pgpainless.signature.subpackets.SignatureSubpacketsHelper;
@@ -45,11 +49,30 @@ public final class SigningOptions {
         private final PGPSignatureGenerator signatureGenerator;
         private final boolean detached;
         private final HashAlgorithm hashAlgorithm;
+        // Parameters required to re-create the signature generator on top of a shared hash context
+        private final PGPPrivateKey signingKey;
+        private final int signatureType;
+        private final PGPSignatureSubpacketVector hashedSubpackets;
+        private final PGPSignatureSubpacketVector unhashedSubpackets;
 
         private SigningMethod(PGPSignatureGenerator signatureGenerator, boolean detached, HashAlgorithm hashAlgorithm) {
+            this(signatureGenerator, detached, hashAlgorithm, null, 0, null, null);
+        }
+
+        private SigningMethod(PGPSignatureGenerator signatureGenerator,
+                              boolean detached,
+                              HashAlgorithm hashAlgorithm,
+                              @Nullable PGPPrivateKey signingKey,
+                              int signatureType,
+                              @Nullable PGPSignatureSubpacketVector hashedSubpackets,
+                              @Nullable PGPSignatureSubpacketVector unhashedSubpackets) {
             this.signatureGenerator = signatureGenerator;
             this.detached = detached;
             this.hashAlgorithm = hashAlgorithm;
+            this.signingKey = signingKey;
+            this.signatureType = signatureType;
+            this.hashedSubpackets = hashedSubpackets;
+            this.unhashedSubpackets = unhashedSubpackets;
         }
 
         /**
@@ -88,10 +111,47 @@ public final class SigningOptions {
         public HashAlgorithm getHashAlgorithm() {
             return hashAlgorithm;
         }
+
+        /**
+         * Return the type of the signature.
+         *
+         * @return signature type
+         */
+        int getSignatureType() {
+            return signatureType;
+        }
+
+        /**
+         * Return true, if the signature can be generated from a {@link SharedHashContext} instead of the
+         * signature generator.
+         *
+         * @return true if the signing method can share a hash context with other signing methods
+         */
+        boolean canShareHashContext() {
+            return signingKey != null && SharedHashContext.isSupported(
+                    signingKey.getPublicKeyPacket().getAlgorithm(), hashAlgorithm.getAlgorithmId());
+        }
+
+        /**
+         * Generate the signature from the given shared hash context, which was updated with the signed data
+         * instead of the signature generator of this method.
+         *
+         * @param hashContext shared hash context
+         * @return signature
+         * @throws PGPException in case of an OpenPGP error
+         */
+        PGPSignature generateSignature(SharedHashContext hashContext) throws PGPException {
+            PGPSignatureGenerator generator = new PGPSignatureGenerator(hashContext.getContentSignerBuilder());
+            generator.init(signatureType, signingKey);
+            generator.setHashedSubpackets(hashedSubpackets);
+            generator.setUnhashedSubpackets(unhashedSubpackets);
+            return generator.generate();
+        }
     }
 
     private final Map<SubkeyIdentifier, SigningMethod> signingMethods = new HashMap<>();
     private HashAlgorithm hashAlgorithmOverride;
+    private PrivateKeyCache privateKeyCache;
 
     public static SigningOptions get() {
         return new SigningOptions();
@@ -201,7 +261,7 @@ public final class SigningOptions {
                                              DocumentSignatureType signatureType,
                                              @Nullable BaseSignatureSubpackets.Callback subpacketsCallback)
             throws KeyException, PGPException {
-        KeyRingInfo keyRingInfo = new KeyRingInfo(secretKey, new Date());
+        KeyRingInfo keyRingInfo = KeyRingInfo.evaluate(secretKey, PGPainless.getPolicy(), new Date());
         if (userId != null && !keyRingInfo.isUserIdValid(userId)) {
             throw new KeyException.UnboundUserIdException(
                     OpenPgpFingerprint.of(secretKey),
@@ -221,7 +281,8 @@ public final class SigningOptions {
             if (signingSecKey == null) {
                 throw new KeyException.MissingSecretKeyException(OpenPgpFingerprint.of(secretKey), signingPubKey.getKeyID());
             }
-            PGPPrivateKey signingSubkey = UnlockSecretKey.unlockSecretKey(signingSecKey, secretKeyDecryptor);
+            PGPPrivateKey signingSubkey = UnlockSecretKey.unlockSecretKey(signingSecKey,
+                    new SubkeyIdentifier(secretKey, signingSecKey.getKeyID()), secretKeyDecryptor, privateKeyCache);
             Set<HashAlgorithm> hashAlgorithms = userId != null ? keyRingInfo.getPreferredHashAlgorithms(userId)
                     : keyRingInfo.getPreferredHashAlgorithms(signingPubKey.getKeyID());
             HashAlgorithm hashAlgorithm = negotiateHashAlgorithm(hashAlgorithms, PGPainless.getPolicy());
@@ -339,7 +400,7 @@ public final class SigningOptions {
                                                DocumentSignatureType signatureType,
                                                @Nullable BaseSignatureSubpackets.Callback subpacketCallback)
             throws PGPException {
-        KeyRingInfo keyRingInfo = new KeyRingInfo(secretKey, new Date());
+        KeyRingInfo keyRingInfo = KeyRingInfo.evaluate(secretKey, PGPainless.getPolicy(), new Date());
         if (userId != null && !keyRingInfo.isUserIdValid(userId)) {
             throw new KeyException.UnboundUserIdException(
                     OpenPgpFingerprint.of(secretKey),
@@ -359,7 +420,8 @@ public final class SigningOptions {
             if (signingSecKey == null) {
                 throw new KeyException.MissingSecretKeyException(OpenPgpFingerprint.of(secretKey), signingPubKey.getKeyID());
             }
-            PGPPrivateKey signingSubkey = UnlockSecretKey.unlockSecretKey(signingSecKey, secretKeyDecryptor);
+            PGPPrivateKey signingSubkey = UnlockSecretKey.unlockSecretKey(signingSecKey,
+                    new SubkeyIdentifier(secretKey, signingSecKey.getKeyID()), secretKeyDecryptor, privateKeyCache);
             Set<HashAlgorithm> hashAlgorithms = userId != null ? keyRingInfo.getPreferredHashAlgorithms(userId)
                     : keyRingInfo.getPreferredHashAlgorithms(signingPubKey.getKeyID());
             HashAlgorithm hashAlgorithm = negotiateHashAlgorithm(hashAlgorithms, PGPainless.getPolicy());
@@ -395,12 +457,13 @@ public final class SigningOptions {
             subpacketCallback.modifyHashedSubpackets(hashedSubpackets);
             subpacketCallback.modifyUnhashedSubpackets(unhashedSubpackets);
         }
-        generator.setHashedSubpackets(SignatureSubpacketsHelper.toVector(hashedSubpackets));
-        generator.setUnhashedSubpackets(SignatureSubpacketsHelper.toVector(unhashedSubpackets));
+        PGPSignatureSubpacketVector hashedSubpacketVector = SignatureSubpacketsHelper.toVector(hashedSubpackets);
+        PGPSignatureSubpacketVector unhashedSubpacketVector = SignatureSubpacketsHelper.toVector(unhashedSubpackets);
+        generator.setHashedSubpackets(hashedSubpacketVector);
+        generator.setUnhashedSubpackets(unhashedSubpacketVector);
 
-        SigningMethod signingMethod = detached ?
-                SigningMethod.detachedSignature(generator, hashAlgorithm) :
-                SigningMethod.inlineSignature(generator, hashAlgorithm);
+        SigningMethod signingMethod = new SigningMethod(generator, detached, hashAlgorithm, signingSubkey,
+                signatureType.getSignatureType().getCode(), hashedSubpacketVector, unhashedSubpacketVector);
         signingMethods.put(signingKeyIdentifier, signingMethod);
     }
 
@@ -472,4 +535,33 @@ public final class SigningOptions {
     public HashAlgorithm getHashAlgorithmOverride() {
         return hashAlgorithmOverride;
     }
+
+    /**
+     * Set a {@link PrivateKeyCache} which is consulted before unlocking a signing key.
+     * Unlocked signing keys are added to the cache.
+     * The same cache can be shared between multiple {@link SigningOptions} instances.
+     * Cached private keys of protected secret keys are only reused with the protector instance that unlocked them.
+     * By default, no cache is used.
+     *
+     * Note: To use the cache, call this method *before* calling
+     * {@link #addInlineSignature(SecretKeyRingProtector, PGPSecretKeyRing, DocumentSignatureType)} or
+     * {@link #addDetachedSignature(SecretKeyRingProtector, PGPSecretKeyRing, DocumentSignatureType)}.
+     *
+     * @param privateKeyCache cache for unlocked private keys or null
+     * @return this
+     */
+    public SigningOptions setPrivateKeyCache(@Nullable PrivateKeyCache privateKeyCache) {
+        this.privateKeyCache = privateKeyCache;
+        return this;
+    }
+
+    /**
+     * Return the {@link PrivateKeyCache} for unlocked signing keys, or null if no cache is used.
+     *
+     * @return private key cache or null
+     */
+    @Nullable
+    public PrivateKeyCache getPrivateKeyCache() {
+        return privateKeyCache;
+    }
 }
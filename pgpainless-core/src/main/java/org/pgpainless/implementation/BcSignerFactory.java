@@ -0,0 +1,170 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.implementation;
+
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.bcpg.PublicKeyAlgorithmTags;
+import org.bouncycastle.crypto.CipherParameters;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.DataLengthException;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.Signer;
+import org.bouncycastle.crypto.digests.MD5Digest;
+import org.bouncycastle.crypto.digests.RIPEMD160Digest;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA224Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.digests.SHA384Digest;
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.crypto.params.Ed25519PrivateKeyParameters;
+import org.bouncycastle.crypto.params.Ed25519PublicKeyParameters;
+import org.bouncycastle.crypto.signers.DSADigestSigner;
+import org.bouncycastle.crypto.signers.DSASigner;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.crypto.signers.Ed25519Signer;
+import org.bouncycastle.crypto.signers.Ed448Signer;
+import org.bouncycastle.crypto.signers.RSADigestSigner;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.util.Arrays;
+
+/**
+ * Factory for BCs lightweight {@link Signer} and {@link Digest} implementations.
+ * Contrary to BCs own operator classes, the signers created by this factory operate on a caller-provided
+ * {@link Digest}, which makes it possible to create or verify signatures over an already calculated hash context.
+ */
+public final class BcSignerFactory {
+
+    private BcSignerFactory() {
+
+    }
+
+    /**
+     * Return true, if {@link #createSigner(int, Digest, CipherParameters)} supports the given public key algorithm.
+     *
+     * @param keyAlgorithm public key algorithm id
+     * @return true if supported
+     */
+    public static boolean isSupportedKeyAlgorithm(int keyAlgorithm) {
+        switch (keyAlgorithm) {
+            case PublicKeyAlgorithmTags.RSA_GENERAL:
+            case PublicKeyAlgorithmTags.RSA_SIGN:
+            case PublicKeyAlgorithmTags.DSA:
+            case PublicKeyAlgorithmTags.ECDSA:
+            case PublicKeyAlgorithmTags.EDDSA:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Create a new {@link Digest} for the given hash algorithm.
+     * All returned digests implement {@link org.bouncycastle.util.Memoable}, so their state can be copied.
+     *
+     * @param hashAlgorithm hash algorithm id
+     * @return digest or null, if the hash algorithm is not supported
+     */
+    public static Digest createDigest(int hashAlgorithm) {
+        switch (hashAlgorithm) {
+            case HashAlgorithmTags.SHA1:
+                return new SHA1Digest();
+            case HashAlgorithmTags.SHA224:
+                return new SHA224Digest();
+            case HashAlgorithmTags.SHA256:
+                return new SHA256Digest();
+            case HashAlgorithmTags.SHA384:
+                return new SHA384Digest();
+            case HashAlgorithmTags.SHA512:
+                return new SHA512Digest();
+            case HashAlgorithmTags.RIPEMD160:
+                return new RIPEMD160Digest();
+            case HashAlgorithmTags.MD5:
+                return new MD5Digest();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Create a {@link Signer} for the given public key algorithm, which uses the given {@link Digest}.
+     * Note, that BCs signers reset the digest when they are initialized, so if the digest already contains
+     * hashed data, it must not propagate calls to {@link Digest#reset()}.
+     *
+     * @param keyAlgorithm public key algorithm id
+     * @param digest digest
+     * @param keyParam key parameters (used to distinguish between Ed25519 and Ed448)
+     * @return signer
+     * @throws PGPException if the public key algorithm is not supported
+     */
+    public static Signer createSigner(int keyAlgorithm, Digest digest, CipherParameters keyParam)
+            throws PGPException {
+        switch (keyAlgorithm) {
+            case PublicKeyAlgorithmTags.RSA_GENERAL:
+            case PublicKeyAlgorithmTags.RSA_SIGN:
+                return new RSADigestSigner(digest);
+            case PublicKeyAlgorithmTags.DSA:
+                return new DSADigestSigner(new DSASigner(), digest);
+            case PublicKeyAlgorithmTags.ECDSA:
+                return new DSADigestSigner(new ECDSASigner(), digest);
+            case PublicKeyAlgorithmTags.EDDSA:
+                if (keyParam instanceof Ed25519PrivateKeyParameters || keyParam instanceof Ed25519PublicKeyParameters) {
+                    return new EdDsaSigner(new Ed25519Signer(), digest);
+                }
+                return new EdDsaSigner(new Ed448Signer(new byte[0]), digest);
+            default:
+                throw new PGPException("cannot recognise keyAlgorithm: " + keyAlgorithm);
+        }
+    }
+
+    // Copied from BCs BcImplProvider - required since BCs class is package visible only :/
+    private static class EdDsaSigner
+            implements Signer {
+        private final Signer signer;
+        private final Digest digest;
+        private final byte[] digBuf;
+
+        EdDsaSigner(Signer signer, Digest digest) {
+            this.signer = signer;
+            this.digest = digest;
+            this.digBuf = new byte[digest.getDigestSize()];
+        }
+
+        public void init(boolean forSigning, CipherParameters param) {
+            this.signer.init(forSigning, param);
+            this.digest.reset();
+        }
+
+        public void update(byte b) {
+            this.digest.update(b);
+        }
+
+        public void update(byte[] in, int off, int len) {
+            this.digest.update(in, off, len);
+        }
+
+        public byte[] generateSignature()
+                throws CryptoException, DataLengthException {
+            digest.doFinal(digBuf, 0);
+
+            signer.update(digBuf, 0, digBuf.length);
+
+            return signer.generateSignature();
+        }
+
+        public boolean verifySignature(byte[] signature) {
+            digest.doFinal(digBuf, 0);
+
+            signer.update(digBuf, 0, digBuf.length);
+
+            return signer.verifySignature(signature);
+        }
+
+        public void reset() {
+            Arrays.clear(digBuf);
+            signer.reset();
+            digest.reset();
+        }
+    }
+}
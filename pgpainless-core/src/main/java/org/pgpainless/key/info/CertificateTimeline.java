@@ -0,0 +1,501 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.info;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureList;
+import org.bouncycastle.openpgp.PGPSignatureSubpacketVector;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.KeyFlag;
+import org.pgpainless.policy.Policy;
+import org.pgpainless.signature.consumer.SignatureIndex;
+import org.pgpainless.signature.consumer.SignatureVerificationCache;
+import org.pgpainless.util.DateUtil;
+
+/**
+ * Validity timeline of a certificate.
+ *
+ * While {@link KeyRingInfo} evaluates a certificate at a single reference date, the timeline evaluates all
+ * self-signatures, revocations and expirations of the certificate once and records the validity of the primary key,
+ * each user-id and each subkey, as well as the key flags of each key, as sorted lists of intervals.
+ * Afterwards, the state of the certificate at any reference date can be queried in O(log n) via binary search.
+ * This is useful when verifying many signatures which were made at different times by the same certificate.
+ *
+ * The evaluation of a certificate can only change at its "events", which are the creation times of keys and
+ * signatures as well as signature- and key expiration dates.
+ * The certificate is therefore evaluated once for each event and once for each gap between two consecutive events,
+ * using the same validity rules as {@link KeyRingInfo}.
+ * Each self-signature is cryptographically verified at most once, regardless of the number of events.
+ *
+ * Instances are immutable and thread-safe.
+ */
+public final class CertificateTimeline {
+
+    // the verification cache is segmented, each segment needs to be able to hold all outcomes
+    private static final int VERIFICATION_CACHE_SEGMENTS = 16;
+
+    private final PGPKeyRing keys;
+    private final Track<Boolean> primaryKeyValidity;
+    private final Map<String, Track<Boolean>> userIdValidity = new HashMap<>();
+    private final Map<Long, Track<Boolean>> keyValidity = new HashMap<>();
+    private final Map<Long, Track<List<KeyFlag>>> keyFlags = new HashMap<>();
+
+    private CertificateTimeline(PGPKeyRing keys, Policy policy) {
+        this.keys = keys;
+        long[] events = collectEvents(keys);
+        // signatures are indexed only once for all evaluations
+        SignatureIndex index = SignatureIndex.of(keys);
+
+        List<String> userIds = new ArrayList<>();
+        Iterator<String> userIdIterator = keys.getPublicKey().getUserIDs();
+        while (userIdIterator.hasNext()) {
+            userIds.add(userIdIterator.next());
+        }
+        List<PGPPublicKey> publicKeys = new ArrayList<>();
+        int signatureCount = 0;
+        Iterator<PGPPublicKey> publicKeyIterator = keys.getPublicKeys();
+        while (publicKeyIterator.hasNext()) {
+            PGPPublicKey publicKey = publicKeyIterator.next();
+            publicKeys.add(publicKey);
+            Iterator<?> signatures = publicKey.getSignatures();
+            while (signatures.hasNext()) {
+                signatures.next();
+                signatureCount++;
+            }
+        }
+
+        Track.Builder<Boolean> primaryKeyValidityBuilder = new Track.Builder<>();
+        Map<String, Track.Builder<Boolean>> userIdValidityBuilders = new HashMap<>();
+        for (String userId : userIds) {
+            userIdValidityBuilders.put(userId, new Track.Builder<Boolean>());
+        }
+        Map<Long, Track.Builder<Boolean>> keyValidityBuilders = new HashMap<>();
+        Map<Long, Track.Builder<List<KeyFlag>>> keyFlagsBuilders = new HashMap<>();
+        for (PGPPublicKey publicKey : publicKeys) {
+            keyValidityBuilders.put(publicKey.getKeyID(), new Track.Builder<Boolean>());
+            keyFlagsBuilders.put(publicKey.getKeyID(), new Track.Builder<List<KeyFlag>>());
+        }
+
+        // The correctness of a signature does not depend on the reference date, so each self-signature (and embedded
+        // back-signature) is verified only once and the outcome is reused for all evaluations below.
+        SignatureVerificationCache verified = new SignatureVerificationCache(
+                VERIFICATION_CACHE_SEGMENTS * (2 * signatureCount + 1));
+        SignatureVerificationCache previous = SignatureVerificationCache.setThreadInstance(verified);
+        try {
+            // Evaluate the certificate once for the gap before each event, once at each event and once after the last
+            for (int slot = 0; slot <= 2 * events.length; slot++) {
+                long start;
+                if (slot % 2 == 1) {
+                    start = events[slot / 2];
+                } else if (slot == 0) {
+                    start = Long.MIN_VALUE;
+                } else {
+                    start = events[slot / 2 - 1] + 1;
+                }
+                if (slot % 2 == 0 && slot / 2 < events.length && start >= events[slot / 2]) {
+                    // empty gap between two adjacent events
+                    continue;
+                }
+                // any date within the slot yields the same evaluation
+                Date sample = new Date(slot == 0 ? (events.length == 0 ? 0 : events[0] - 1) : start);
+                KeyRingInfo info = new KeyRingInfo(keys, new KeyRingInfo.Signatures(index, sample, policy), sample);
+
+                boolean primaryKeyValid = info.isPrimaryKeyValid();
+                primaryKeyValidityBuilder.add(start, primaryKeyValid);
+                for (String userId : userIds) {
+                    userIdValidityBuilders.get(userId).add(start, primaryKeyValid && info.isUserIdBound(userId));
+                }
+                for (PGPPublicKey publicKey : publicKeys) {
+                    boolean valid = primaryKeyValid && info.isKeyValid(publicKey.getKeyID());
+                    keyValidityBuilders.get(publicKey.getKeyID()).add(start, valid);
+                    List<KeyFlag> flags = valid ? info.getKeyFlagsOf(publicKey.getKeyID()) : Collections.<KeyFlag>emptyList();
+                    keyFlagsBuilders.get(publicKey.getKeyID()).add(start, Collections.unmodifiableList(flags));
+                }
+            }
+        } finally {
+            SignatureVerificationCache.setThreadInstance(previous);
+        }
+
+        primaryKeyValidity = primaryKeyValidityBuilder.build();
+        for (String userId : userIds) {
+            userIdValidity.put(userId, userIdValidityBuilders.get(userId).build());
+        }
+        for (PGPPublicKey publicKey : publicKeys) {
+            keyValidity.put(publicKey.getKeyID(), keyValidityBuilders.get(publicKey.getKeyID()).build());
+            keyFlags.put(publicKey.getKeyID(), keyFlagsBuilders.get(publicKey.getKeyID()).build());
+        }
+    }
+
+    /**
+     * Evaluate the timeline of the given certificate using the default {@link Policy}.
+     *
+     * @param keys certificate or key
+     * @return timeline
+     */
+    public static CertificateTimeline of(@Nonnull PGPKeyRing keys) {
+        return of(keys, PGPainless.getPolicy());
+    }
+
+    /**
+     * Evaluate the timeline of the given certificate using the given {@link Policy}.
+     *
+     * @param keys certificate or key
+     * @param policy policy
+     * @return timeline
+     */
+    public static CertificateTimeline of(@Nonnull PGPKeyRing keys, @Nonnull Policy policy) {
+        return new CertificateTimeline(keys, policy);
+    }
+
+    /**
+     * Return the certificate this timeline was evaluated for.
+     *
+     * @return certificate
+     */
+    public PGPKeyRing getKeyRing() {
+        return keys;
+    }
+
+    /**
+     * Return true, if the primary key is validly bound, not expired and not revoked at the given date.
+     *
+     * @param referenceDate reference date
+     * @return true if the primary key is valid
+     */
+    public boolean isPrimaryKeyValid(@Nonnull Date referenceDate) {
+        return primaryKeyValidity.get(referenceDate);
+    }
+
+    /**
+     * Return true, if the given user-id is validly bound to the certificate and not revoked at the given date.
+     *
+     * @param userId user-id
+     * @param referenceDate reference date
+     * @return true if the user-id is valid
+     */
+    public boolean isUserIdValid(@Nonnull String userId, @Nonnull Date referenceDate) {
+        Track<Boolean> track = userIdValidity.get(userId);
+        return track != null && track.get(referenceDate);
+    }
+
+    /**
+     * Return true, if the (sub-)key with the given key-id is validly bound, not expired and not revoked at the given
+     * date.
+     *
+     * @param keyId key-id
+     * @param referenceDate reference date
+     * @return true if the key is valid
+     */
+    public boolean isKeyValid(long keyId, @Nonnull Date referenceDate) {
+        Track<Boolean> track = keyValidity.get(keyId);
+        return track != null && track.get(referenceDate);
+    }
+
+    /**
+     * Return the key flags of the (sub-)key with the given key-id at the given date.
+     * If the key is not valid at that date, an empty list is returned.
+     *
+     * @param keyId key-id
+     * @param referenceDate reference date
+     * @return key flags
+     */
+    public @Nonnull List<KeyFlag> getKeyFlags(long keyId, @Nonnull Date referenceDate) {
+        Track<List<KeyFlag>> track = keyFlags.get(keyId);
+        return track == null ? Collections.<KeyFlag>emptyList() : track.get(referenceDate);
+    }
+
+    /**
+     * Return true, if the (sub-)key with the given key-id is valid and carries the given key flag at the given date.
+     *
+     * @param keyId key-id
+     * @param flag key flag
+     * @param referenceDate reference date
+     * @return true if the key has the flag
+     */
+    public boolean hasKeyFlag(long keyId, @Nonnull KeyFlag flag, @Nonnull Date referenceDate) {
+        return getKeyFlags(keyId, referenceDate).contains(flag);
+    }
+
+    /**
+     * Return the sorted intervals during which the primary key is valid.
+     *
+     * @return validity intervals
+     */
+    public @Nonnull List<Interval> getPrimaryKeyValidityIntervals() {
+        return primaryKeyValidity.intervalsOf(Boolean.TRUE);
+    }
+
+    /**
+     * Return the sorted intervals during which the given user-id is valid.
+     *
+     * @param userId user-id
+     * @return validity intervals
+     * @throws NoSuchElementException if the certificate does not carry the user-id
+     */
+    public @Nonnull List<Interval> getUserIdValidityIntervals(@Nonnull String userId) {
+        Track<Boolean> track = userIdValidity.get(userId);
+        if (track == null) {
+            throw new NoSuchElementException("No user-id '" + userId + "' found on this key.");
+        }
+        return track.intervalsOf(Boolean.TRUE);
+    }
+
+    /**
+     * Return the sorted intervals during which the (sub-)key with the given key-id is valid.
+     *
+     * @param keyId key-id
+     * @return validity intervals
+     * @throws NoSuchElementException if the certificate does not contain the key
+     */
+    public @Nonnull List<Interval> getKeyValidityIntervals(long keyId) {
+        Track<Boolean> track = keyValidity.get(keyId);
+        if (track == null) {
+            throw new NoSuchElementException("No subkey with key id " + Long.toHexString(keyId) + " found on this key.");
+        }
+        return track.intervalsOf(Boolean.TRUE);
+    }
+
+    /**
+     * Return the sorted intervals during which the (sub-)key with the given key-id is valid and carries the given
+     * key flag.
+     *
+     * @param keyId key-id
+     * @param flag key flag
+     * @return intervals
+     * @throws NoSuchElementException if the certificate does not contain the key
+     */
+    public @Nonnull List<Interval> getKeyFlagIntervals(long keyId, @Nonnull KeyFlag flag) {
+        Track<List<KeyFlag>> track = keyFlags.get(keyId);
+        if (track == null) {
+            throw new NoSuchElementException("No subkey with key id " + Long.toHexString(keyId) + " found on this key.");
+        }
+        List<Interval> intervals = new ArrayList<>();
+        for (int i = 0; i < track.values.size(); i++) {
+            if (track.values.get(i).contains(flag)) {
+                track.appendInterval(intervals, i);
+            }
+        }
+        return intervals;
+    }
+
+    /**
+     * Return the first point in time after the reference date, at which the evaluation of the given key ring might
+     * change, e.g. because a key or signature expires, or because a signature becomes effective.
+     * Evaluations of the key ring (e.g. using {@link KeyRingInfo}) at the reference date can be reused until then.
+     *
+     * @param keys key ring
+     * @param referenceDate reference date
+     * @return next change or null, if the evaluation does not change after the reference date
+     */
+    public static @Nullable Date getNextChange(@Nonnull PGPKeyRing keys, @Nonnull Date referenceDate) {
+        long reference = referenceDate.getTime();
+        for (long event : collectEvents(keys)) {
+            if (event > reference) {
+                return new Date(event);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collect all points in time at which the evaluation of the key ring might change.
+     *
+     * @param keys key ring
+     * @return sorted event times in milliseconds
+     */
+    static long[] collectEvents(PGPKeyRing keys) {
+        TreeSet<Long> events = new TreeSet<>();
+        Iterator<PGPPublicKey> publicKeys = keys.getPublicKeys();
+        while (publicKeys.hasNext()) {
+            PGPPublicKey publicKey = publicKeys.next();
+            long keyCreation = publicKey.getCreationTime().getTime();
+            events.add(keyCreation);
+            Iterator<?> signatures = publicKey.getSignatures();
+            while (signatures.hasNext()) {
+                addEvents(events, (PGPSignature) signatures.next(), keyCreation);
+            }
+        }
+
+        long[] sorted = new long[events.size()];
+        int i = 0;
+        for (Long event : events) {
+            sorted[i++] = event;
+        }
+        return sorted;
+    }
+
+    private static void addEvents(TreeSet<Long> events, PGPSignature signature, long keyCreation) {
+        long creation = signature.getCreationTime().getTime();
+        events.add(creation);
+        PGPSignatureSubpacketVector hashed = signature.getHashedSubPackets();
+        if (hashed == null) {
+            return;
+        }
+        if (hashed.getSignatureExpirationTime() != 0) {
+            events.add(creation + 1000L * hashed.getSignatureExpirationTime());
+        }
+        if (hashed.getKeyExpirationTime() != 0) {
+            events.add(keyCreation + 1000L * hashed.getKeyExpirationTime());
+        }
+        addEmbeddedSignatureEvents(events, hashed, keyCreation);
+        addEmbeddedSignatureEvents(events, signature.getUnhashedSubPackets(), keyCreation);
+    }
+
+    private static void addEmbeddedSignatureEvents(TreeSet<Long> events,
+                                                   @Nullable PGPSignatureSubpacketVector subpackets,
+                                                   long keyCreation) {
+        if (subpackets == null) {
+            return;
+        }
+        PGPSignatureList embeddedSignatures;
+        try {
+            embeddedSignatures = subpackets.getEmbeddedSignatures();
+        } catch (PGPException e) {
+            // Malformed embedded signatures are rejected during evaluation anyway
+            return;
+        }
+        for (PGPSignature embedded : embeddedSignatures) {
+            addEvents(events, embedded, keyCreation);
+        }
+    }
+
+    /**
+     * Time interval.
+     * The start date is inclusive, the end date is exclusive.
+     * A null start or end date denotes an unbounded interval.
+     */
+    public static final class Interval {
+
+        private final Date start;
+        private final Date end;
+
+        Interval(@Nullable Date start, @Nullable Date end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Return the (inclusive) start of the interval, or null if the interval has no lower bound.
+         *
+         * @return start date or null
+         */
+        public @Nullable Date getStart() {
+            return start;
+        }
+
+        /**
+         * Return the (exclusive) end of the interval, or null if the interval has no upper bound.
+         *
+         * @return end date or null
+         */
+        public @Nullable Date getEnd() {
+            return end;
+        }
+
+        /**
+         * Return true, if the given date lies within this interval.
+         *
+         * @param date date
+         * @return true if the interval contains the date
+         */
+        public boolean contains(@Nonnull Date date) {
+            return (start == null || !date.before(start)) && (end == null || date.before(end));
+        }
+
+        @Override
+        public String toString() {
+            return "[" + (start == null ? "-inf" : DateUtil.formatUTCDate(start)) + ", "
+                    + (end == null ? "inf" : DateUtil.formatUTCDate(end)) + ")";
+        }
+    }
+
+    /**
+     * Step function mapping points in time to values.
+     *
+     * @param <T> value type
+     */
+    private static final class Track<T> {
+
+        // starts[i] is the (inclusive) start of the interval with value values[i], starts[0] is Long.MIN_VALUE
+        private final long[] starts;
+        private final List<T> values;
+
+        private Track(long[] starts, List<T> values) {
+            this.starts = starts;
+            this.values = values;
+        }
+
+        T get(Date date) {
+            int index = Arrays.binarySearch(starts, date.getTime());
+            if (index < 0) {
+                index = -index - 2;
+            }
+            return values.get(index);
+        }
+
+        List<Interval> intervalsOf(T value) {
+            List<Interval> intervals = new ArrayList<>();
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i).equals(value)) {
+                    appendInterval(intervals, i);
+                }
+            }
+            return intervals;
+        }
+
+        void appendInterval(List<Interval> intervals, int index) {
+            Date start = starts[index] == Long.MIN_VALUE ? null : new Date(starts[index]);
+            Date end = index + 1 < starts.length ? new Date(starts[index + 1]) : null;
+            if (!intervals.isEmpty()) {
+                Interval last = intervals.get(intervals.size() - 1);
+                if (last.getEnd() != null && last.getEnd().equals(start)) {
+                    // merge adjacent intervals
+                    intervals.set(intervals.size() - 1, new Interval(last.getStart(), end));
+                    return;
+                }
+            }
+            intervals.add(new Interval(start, end));
+        }
+
+        static final class Builder<T> {
+
+            private final List<Long> starts = new ArrayList<>();
+            private final List<T> values = new ArrayList<>();
+
+            void add(long start, T value) {
+                // merge with the previous interval if the value did not change
+                if (!values.isEmpty() && values.get(values.size() - 1).equals(value)) {
+                    return;
+                }
+                starts.add(start);
+                values.add(value);
+            }
+
+            Track<T> build() {
+                long[] startArray = new long[starts.size()];
+                for (int i = 0; i < startArray.length; i++) {
+                    startArray[i] = starts.get(i);
+                }
+                return new Track<>(startArray, values);
+            }
+        }
+    }
+}
@@ -9,13 +9,16 @@ import static org.pgpainless.util.CollectionUtils.iteratorToList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nonnull;
@@ -44,7 +47,9 @@ import org.pgpainless.key.SubkeyIdentifier;
 import org.pgpainless.key.util.RevocationAttributes;
 import org.pgpainless.policy.Policy;
 import org.pgpainless.signature.SignatureUtils;
+import org.pgpainless.signature.consumer.SignatureIndex;
 import org.pgpainless.signature.consumer.SignaturePicker;
+import org.pgpainless.signature.consumer.SignatureVerificationCache;
 import org.pgpainless.signature.subpackets.SignatureSubpacketsUtil;
 
 /**
@@ -58,8 +63,10 @@ public class KeyRingInfo {
     private final PGPKeyRing keys;
     private final Signatures signatures;
     private final Date referenceDate;
-    private final String primaryUserId;
-    private final RevocationState revocationState;
+    // evaluated lazily
+    private volatile String primaryUserId;
+    private volatile boolean primaryUserIdEvaluated;
+    private volatile RevocationState revocationState;
 
     /**
      * Evaluate the key ring at creation time of the given signature.
@@ -69,7 +76,52 @@ public class KeyRingInfo {
      * @return info of key ring at signature creation time
      */
     public static KeyRingInfo evaluateForSignature(PGPKeyRing keyRing, PGPSignature signature) {
-        return new KeyRingInfo(keyRing, signature.getCreationTime());
+        return evaluate(keyRing, PGPainless.getPolicy(), signature.getCreationTime());
+    }
+
+    /**
+     * Evaluate the key ring at the provided validation date.
+     * If a {@link KeyRingInfoCache} is installed, a previous evaluation of the same key ring may be reused.
+     *
+     * @param keyRing key ring
+     * @param policy policy
+     * @param referenceDate validation date
+     * @return info of key ring at the validation date
+     */
+    public static KeyRingInfo evaluate(PGPKeyRing keyRing, Policy policy, Date referenceDate) {
+        KeyRingInfoCache cache = KeyRingInfoCache.getInstance();
+        if (cache == null) {
+            return new KeyRingInfo(keyRing, policy, referenceDate);
+        }
+        return cache.get(keyRing, policy, referenceDate != null ? referenceDate : new Date());
+    }
+
+    /**
+     * Evaluate the key ring at the provided validation date.
+     * If an {@link Executor} is given, the self-signatures of the primary key, each user-id and each subkey are
+     * verified eagerly as independent tasks on the executor, which speeds up the evaluation of certificates with
+     * many user-ids or subkeys (e.g. certificates obtained from public keyservers).
+     * Otherwise, the key ring is evaluated lazily on the calling thread.
+     *
+     * The calling thread blocks until all tasks have completed, so this method must not be called from a thread of
+     * a bounded executor, which is passed in as well. Once all threads of the pool wait for queued tasks, the
+     * evaluation deadlocks.
+     *
+     * @param keyRing key ring
+     * @param policy policy
+     * @param referenceDate validation date
+     * @param executor executor (e.g. a {@link java.util.concurrent.ForkJoinPool}) or null
+     * @return info of key ring at the validation date
+     */
+    public static KeyRingInfo evaluate(PGPKeyRing keyRing,
+                                       Policy policy,
+                                       Date referenceDate,
+                                       @Nullable Executor executor) {
+        KeyRingInfo info = evaluate(keyRing, policy, referenceDate);
+        if (executor != null) {
+            info.signatures.evaluateAll(executor);
+        }
+        return info;
     }
 
     /**
@@ -102,12 +154,27 @@ public class KeyRingInfo {
         this.referenceDate = referenceDate != null ? referenceDate : new Date();
         this.keys = keys;
         this.signatures = new Signatures(keys, this.referenceDate, policy);
-        this.primaryUserId = findPrimaryUserId();
-        this.revocationState = findRevocationState();
+    }
+
+    /**
+     * Create a key ring info reusing signatures which were picked for an equivalent reference date.
+     *
+     * @param keys key ring
+     * @param signatures signatures
+     * @param referenceDate validation date
+     */
+    KeyRingInfo(PGPKeyRing keys, Signatures signatures, Date referenceDate) {
+        this.referenceDate = referenceDate;
+        this.keys = keys;
+        this.signatures = signatures;
+    }
+
+    Signatures getSignatures() {
+        return signatures;
     }
 
     private RevocationState findRevocationState() {
-        PGPSignature revocation = signatures.primaryKeyRevocation;
+        PGPSignature revocation = signatures.getPrimaryKeyRevocation();
         if (revocation != null) {
             return SignatureUtils.isHardRevocation(revocation) ?
                     RevocationState.hardRevoked() : RevocationState.softRevoked(revocation.getCreationTime());
@@ -168,17 +235,18 @@ public class KeyRingInfo {
         }
 
         if (publicKey == getPublicKey()) {
-            if (signatures.primaryKeyRevocation != null && SignatureUtils.isHardRevocation(signatures.primaryKeyRevocation)) {
+            PGPSignature primaryKeyRevocation = signatures.getPrimaryKeyRevocation();
+            if (primaryKeyRevocation != null && SignatureUtils.isHardRevocation(primaryKeyRevocation)) {
                 return false;
             }
-            return signatures.primaryKeyRevocation == null;
+            return primaryKeyRevocation == null;
         }
 
-        PGPSignature binding = signatures.subkeyBindings.get(keyId);
-        PGPSignature revocation = signatures.subkeyRevocations.get(keyId);
+        PGPSignature binding = signatures.getSubkeyBinding(keyId);
+        PGPSignature revocation = signatures.getSubkeyRevocation(keyId);
 
         // No valid binding
-        if (binding == null || SignatureUtils.isSignatureExpired(binding)) {
+        if (binding == null || SignatureUtils.isSignatureExpired(binding, referenceDate)) {
             return false;
         }
 
@@ -189,7 +257,7 @@ public class KeyRingInfo {
                 return false;
             } else {
                 // Key is soft-revoked, not yet re-bound
-                return SignatureUtils.isSignatureExpired(revocation)
+                return SignatureUtils.isSignatureExpired(revocation, referenceDate)
                         || !revocation.getCreationTime().after(binding.getCreationTime());
             }
         }
@@ -197,6 +265,67 @@ public class KeyRingInfo {
         return true;
     }
 
+    /**
+     * Return true if the key with the given key id is validly bound to the key ring, and neither it nor the primary
+     * key is revoked or expired at the reference date.
+     *
+     * @param keyId key id
+     * @return true if the key is valid
+     */
+    boolean isKeyValid(long keyId) {
+        PGPPublicKey publicKey = keys.getPublicKey(keyId);
+        if (publicKey == null || !isPrimaryKeyValid()) {
+            return false;
+        }
+        if (publicKey == getPublicKey()) {
+            return true;
+        }
+        if (!isKeyValidlyBound(keyId)) {
+            return false;
+        }
+        Date expirationDate = getSubkeyExpirationDate(OpenPgpFingerprint.of(publicKey));
+        return expirationDate == null || !referenceDate.after(expirationDate);
+    }
+
+    /**
+     * Return true if the primary key is bound by a direct-key signature or a user-id certification, and is neither
+     * revoked nor expired at the reference date.
+     *
+     * @return true if the primary key is valid
+     */
+    boolean isPrimaryKeyValid() {
+        if (getPublicKey().getCreationTime().after(referenceDate)) {
+            return false;
+        }
+        PGPSignature revocation = signatures.getPrimaryKeyRevocation();
+        if (revocation != null && !SignatureUtils.isSignatureExpired(revocation, referenceDate)) {
+            return false;
+        }
+
+        PGPSignature directKeySignature = getLatestDirectKeySelfSignature();
+        boolean bound = directKeySignature != null
+                && !SignatureUtils.isSignatureExpired(directKeySignature, referenceDate);
+        if (!bound) {
+            for (String userId : getUserIds()) {
+                if (isUserIdBound(userId)) {
+                    bound = true;
+                    break;
+                }
+            }
+        }
+        if (!bound) {
+            return false;
+        }
+
+        Date expirationDate;
+        try {
+            expirationDate = getPrimaryKeyExpirationDate();
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+        return expirationDate == null || !referenceDate.after(expirationDate);
+    }
+
     /**
      * Return all {@link PGPPublicKey PGPPublicKeys} of this key ring.
      * The first key in the list being the primary key.
@@ -281,6 +410,10 @@ public class KeyRingInfo {
     }
 
     public @Nullable String getPrimaryUserId() {
+        if (!primaryUserIdEvaluated) {
+            primaryUserId = findPrimaryUserId();
+            primaryUserIdEvaluated = true;
+        }
         return primaryUserId;
     }
 
@@ -303,7 +436,7 @@ public class KeyRingInfo {
 
         String firstUserId = null;
         for (String userId : userIds) {
-            PGPSignature certification = signatures.userIdCertifications.get(userId);
+            PGPSignature certification = signatures.getUserIdCertification(userId);
             if (certification == null) {
                 continue;
             }
@@ -368,8 +501,8 @@ public class KeyRingInfo {
         List<String> userIds = getUserIds();
 
         for (String userId : userIds) {
-            PGPSignature certification = signatures.userIdCertifications.get(userId);
-            PGPSignature revocation = signatures.userIdRevocations.get(userId);
+            PGPSignature certification = signatures.getUserIdCertification(userId);
+            PGPSignature revocation = signatures.getUserIdRevocation(userId);
 
             // Unbound user-id
             if (certification == null) {
@@ -402,6 +535,7 @@ public class KeyRingInfo {
      * @return true if user-id is valid
      */
     public boolean isUserIdValid(String userId) {
+        String primaryUserId = getPrimaryUserId();
         if (!userId.equals(primaryUserId)) {
             if (!isUserIdBound(primaryUserId)) {
                 // primary user-id not valid
@@ -412,15 +546,22 @@ public class KeyRingInfo {
     }
 
 
-    private boolean isUserIdBound(String userId) {
+    /**
+     * Return true if the given user-id is bound to the primary key and not revoked at the reference date.
+     * Unlike {@link #isUserIdValid(String)}, the validity of the primary user-id is not taken into account.
+     *
+     * @param userId user-id
+     * @return true if the user-id is bound
+     */
+    boolean isUserIdBound(String userId) {
 
-        PGPSignature certification = signatures.userIdCertifications.get(userId);
-        PGPSignature revocation = signatures.userIdRevocations.get(userId);
+        PGPSignature certification = signatures.getUserIdCertification(userId);
+        PGPSignature revocation = signatures.getUserIdRevocation(userId);
 
         if (certification == null) {
             return false;
         }
-        if (SignatureUtils.isSignatureExpired(certification)) {
+        if (SignatureUtils.isSignatureExpired(certification, referenceDate)) {
             return false;
         }
         if (certification.getHashedSubPackets().isPrimaryUserID()) {
@@ -451,19 +592,34 @@ public class KeyRingInfo {
         List<String> userIds = getUserIds();
         List<String> emails = new ArrayList<>();
         for (String userId : userIds) {
-            Matcher matcher = PATTERN_EMAIL_FROM_USERID.matcher(userId);
-            if (matcher.find()) {
-                emails.add(matcher.group(1));
-            } else {
-                matcher = PATTERN_EMAIL_EXPLICIT.matcher(userId);
-                if (matcher.find()) {
-                    emails.add(matcher.group(1));
-                }
+            String email = getEmailAddress(userId);
+            if (email != null) {
+                emails.add(email);
             }
         }
         return emails;
     }
 
+    /**
+     * Return the email-address contained in the given user-id, or null if the user-id does not appear to contain
+     * an email-address.
+     * This is the extraction used by {@link #getEmailAddresses()}.
+     *
+     * @param userId user-id
+     * @return email address or null
+     */
+    public static @Nullable String getEmailAddress(@Nonnull String userId) {
+        Matcher matcher = PATTERN_EMAIL_FROM_USERID.matcher(userId);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        matcher = PATTERN_EMAIL_EXPLICIT.matcher(userId);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        return null;
+    }
+
     /**
      * Return the latest direct-key self signature.
      *
@@ -472,7 +628,7 @@ public class KeyRingInfo {
      * @return latest direct key self-signature or null
      */
     public @Nullable PGPSignature getLatestDirectKeySelfSignature() {
-        return signatures.primaryKeySelfSignature;
+        return signatures.getPrimaryKeySelfSignature();
     }
 
     /**
@@ -481,7 +637,7 @@ public class KeyRingInfo {
      * @return revocation or null
      */
     public @Nullable PGPSignature getRevocationSelfSignature() {
-        return signatures.primaryKeyRevocation;
+        return signatures.getPrimaryKeyRevocation();
     }
 
     /**
@@ -491,7 +647,7 @@ public class KeyRingInfo {
      * @return certification signature or null
      */
     public @Nullable PGPSignature getLatestUserIdCertification(String userId) {
-        return signatures.userIdCertifications.get(userId);
+        return signatures.getUserIdCertification(userId);
     }
 
     /**
@@ -501,7 +657,7 @@ public class KeyRingInfo {
      * @return revocation or null
      */
     public @Nullable PGPSignature getUserIdRevocation(String userId) {
-        return signatures.userIdRevocations.get(userId);
+        return signatures.getUserIdRevocation(userId);
     }
 
     /**
@@ -511,7 +667,7 @@ public class KeyRingInfo {
      * @return subkey binding signature or null
      */
     public @Nullable PGPSignature getCurrentSubkeyBindingSignature(long keyId) {
-        return signatures.subkeyBindings.get(keyId);
+        return signatures.getSubkeyBinding(keyId);
     }
 
     /**
@@ -521,7 +677,7 @@ public class KeyRingInfo {
      * @return subkey binding revocation or null
      */
     public @Nullable PGPSignature getSubkeyRevocationSignature(long keyId) {
-        return signatures.subkeyRevocations.get(keyId);
+        return signatures.getSubkeyRevocation(keyId);
     }
 
     /**
@@ -648,10 +804,14 @@ public class KeyRingInfo {
         PGPSignature revocationSelfSignature = getRevocationSelfSignature();
         if (mostRecentSelfSignature != null) allSignatures.add(mostRecentSelfSignature);
         if (revocationSelfSignature != null) allSignatures.add(revocationSelfSignature);
-        allSignatures.addAll(signatures.userIdCertifications.values());
-        allSignatures.addAll(signatures.userIdRevocations.values());
-        allSignatures.addAll(signatures.subkeyBindings.values());
-        allSignatures.addAll(signatures.subkeyRevocations.values());
+        for (String userId : getUserIds()) {
+            addIfNotNull(allSignatures, signatures.getUserIdCertification(userId));
+            addIfNotNull(allSignatures, signatures.getUserIdRevocation(userId));
+        }
+        for (PGPPublicKey subkey : getPublicKeys()) {
+            addIfNotNull(allSignatures, signatures.getSubkeyBinding(subkey.getKeyID()));
+            addIfNotNull(allSignatures, signatures.getSubkeyRevocation(subkey.getKeyID()));
+        }
 
         PGPSignature mostRecent = null;
         for (PGPSignature signature : allSignatures) {
@@ -662,7 +822,16 @@ public class KeyRingInfo {
         return mostRecent;
     }
 
+    private static void addIfNotNull(Set<PGPSignature> signatures, @Nullable PGPSignature signature) {
+        if (signature != null) {
+            signatures.add(signature);
+        }
+    }
+
     public RevocationState getRevocationState() {
+        if (revocationState == null) {
+            revocationState = findRevocationState();
+        }
         return revocationState;
     }
 
@@ -821,7 +990,7 @@ public class KeyRingInfo {
     }
 
     public boolean isHardRevoked(String userId) {
-        PGPSignature revocation = signatures.userIdRevocations.get(userId);
+        PGPSignature revocation = signatures.getUserIdRevocation(userId);
         if (revocation == null) {
             return false;
         }
@@ -896,14 +1065,14 @@ public class KeyRingInfo {
 
     /**
      * Return a list of all subkeys which can be used for encryption of the given purpose.
-     * This list does not include expired or revoked keys.
+     * This list does not include keys which are expired or revoked at the reference date.
      *
      * @param purpose purpose (encrypt data at rest / communications)
      * @return encryption subkeys
      */
     public @Nonnull List<PGPPublicKey> getEncryptionSubkeys(EncryptionPurpose purpose) {
         Date primaryExpiration = getPrimaryKeyExpirationDate();
-        if (primaryExpiration != null && primaryExpiration.before(new Date())) {
+        if (primaryExpiration != null && primaryExpiration.before(referenceDate)) {
             return Collections.emptyList();
         }
 
@@ -917,7 +1086,7 @@ public class KeyRingInfo {
             }
 
             Date subkeyExpiration = getSubkeyExpirationDate(OpenPgpFingerprint.of(subKey));
-            if (subkeyExpiration != null && subkeyExpiration.before(new Date())) {
+            if (subkeyExpiration != null && subkeyExpiration.before(referenceDate)) {
                 continue;
             }
 
@@ -1138,48 +1307,262 @@ public class KeyRingInfo {
                 : new KeyAccessor.ViaUserId(this, new SubkeyIdentifier(keys, keyID), userId);
     }
 
+    /**
+     * Current self-signatures of the key ring.
+     * Signatures are picked (and thereby verified) lazily per component (primary key, user-id, subkey) on first
+     * access and are memoized afterwards, so that queries which only concern a single component do not need to
+     * evaluate the whole key ring.
+     * This class is thread-safe.
+     */
     public static class Signatures {
 
-        private final PGPSignature primaryKeyRevocation;
-        private final PGPSignature primaryKeySelfSignature;
-        private final Map<String, PGPSignature> userIdRevocations;
-        private final Map<String, PGPSignature> userIdCertifications;
-        private final Map<Long, PGPSignature> subkeyRevocations;
-        private final Map<Long, PGPSignature> subkeyBindings;
+        private final PGPKeyRing keyRing;
+        private final Date referenceDate;
+        private final Policy policy;
+
+        private volatile SignatureIndex index;
+        private volatile Evaluated primaryKeyRevocation;
+        private volatile Evaluated primaryKeySelfSignature;
+        private final Map<String, Evaluated> userIdRevocations = new ConcurrentHashMap<>();
+        private final Map<String, Evaluated> userIdCertifications = new ConcurrentHashMap<>();
+        private final Map<Long, Evaluated> subkeyRevocations = new ConcurrentHashMap<>();
+        private final Map<Long, Evaluated> subkeyBindings = new ConcurrentHashMap<>();
 
         public Signatures(PGPKeyRing keyRing, Date referenceDate, Policy policy) {
-            primaryKeyRevocation = SignaturePicker.pickCurrentRevocationSelfSignature(keyRing, policy, referenceDate);
-            primaryKeySelfSignature = SignaturePicker.pickLatestDirectKeySignature(keyRing, policy, referenceDate);
-            userIdRevocations = new HashMap<>();
-            userIdCertifications = new HashMap<>();
-            subkeyRevocations = new HashMap<>();
-            subkeyBindings = new HashMap<>();
-
-            for (Iterator<String> it = keyRing.getPublicKey().getUserIDs(); it.hasNext(); ) {
-                String userId = it.next();
-                PGPSignature revocation = SignaturePicker.pickCurrentUserIdRevocationSignature(keyRing, userId, policy, referenceDate);
-                if (revocation != null) {
-                    userIdRevocations.put(userId, revocation);
+            this.keyRing = keyRing;
+            this.referenceDate = referenceDate;
+            this.policy = policy;
+        }
+
+        /**
+         * Create signatures of the key ring at the given reference date using an existing index of its signatures.
+         * This allows to evaluate the same key ring at multiple reference dates without indexing it repeatedly.
+         *
+         * @param index signature index of the key ring
+         * @param referenceDate reference date
+         * @param policy policy
+         */
+        Signatures(SignatureIndex index, Date referenceDate, Policy policy) {
+            this(index.getKeyRing(), referenceDate, policy);
+            this.index = index;
+        }
+
+        /**
+         * Return the index of the signatures of the key ring, which is built on first use.
+         *
+         * @return signature index
+         */
+        private SignatureIndex getIndex() {
+            SignatureIndex signatureIndex = index;
+            if (signatureIndex == null) {
+                signatureIndex = SignatureIndex.of(keyRing);
+                index = signatureIndex;
+            }
+            return signatureIndex;
+        }
+
+        @Nullable
+        private PGPSignature getPrimaryKeyRevocation() {
+            Evaluated evaluated = primaryKeyRevocation;
+            if (evaluated == null) {
+                evaluated = new Evaluated(
+                        SignaturePicker.pickCurrentRevocationSelfSignature(getIndex(), policy, referenceDate));
+                primaryKeyRevocation = evaluated;
+            }
+            return evaluated.signature;
+        }
+
+        @Nullable
+        private PGPSignature getPrimaryKeySelfSignature() {
+            Evaluated evaluated = primaryKeySelfSignature;
+            if (evaluated == null) {
+                evaluated = new Evaluated(
+                        SignaturePicker.pickLatestDirectKeySignature(getIndex(), policy, referenceDate));
+                primaryKeySelfSignature = evaluated;
+            }
+            return evaluated.signature;
+        }
+
+        @Nullable
+        private PGPSignature getUserIdRevocation(@Nullable String userId) {
+            if (userId == null) {
+                return null;
+            }
+            Evaluated evaluated = userIdRevocations.get(userId);
+            if (evaluated == null) {
+                if (!hasUserId(userId)) {
+                    return null;
                 }
-                PGPSignature certification = SignaturePicker.pickLatestUserIdCertificationSignature(keyRing, userId, policy, referenceDate);
-                if (certification != null) {
-                    userIdCertifications.put(userId, certification);
+                evaluated = new Evaluated(
+                        SignaturePicker.pickCurrentUserIdRevocationSignature(getIndex(), userId, policy, referenceDate));
+                userIdRevocations.put(userId, evaluated);
+            }
+            return evaluated.signature;
+        }
+
+        @Nullable
+        private PGPSignature getUserIdCertification(@Nullable String userId) {
+            if (userId == null) {
+                return null;
+            }
+            Evaluated evaluated = userIdCertifications.get(userId);
+            if (evaluated == null) {
+                if (!hasUserId(userId)) {
+                    return null;
                 }
+                evaluated = new Evaluated(
+                        SignaturePicker.pickLatestUserIdCertificationSignature(getIndex(), userId, policy, referenceDate));
+                userIdCertifications.put(userId, evaluated);
             }
+            return evaluated.signature;
+        }
+
+        @Nullable
+        private PGPSignature getSubkeyRevocation(long keyId) {
+            PGPPublicKey subkey = getSubkey(keyId);
+            if (subkey == null) {
+                return null;
+            }
+            Evaluated evaluated = subkeyRevocations.get(keyId);
+            if (evaluated == null) {
+                evaluated = new Evaluated(SignaturePicker.pickCurrentSubkeyBindingRevocationSignature(
+                        getIndex(), subkey, policy, referenceDate));
+                subkeyRevocations.put(keyId, evaluated);
+            }
+            return evaluated.signature;
+        }
 
-            Iterator<PGPPublicKey> keys = keyRing.getPublicKeys();
-            keys.next(); // Skip primary key
-            while (keys.hasNext()) {
-                PGPPublicKey subkey = keys.next();
-                PGPSignature subkeyRevocation = SignaturePicker.pickCurrentSubkeyBindingRevocationSignature(keyRing, subkey, policy, referenceDate);
-                if (subkeyRevocation != null) {
-                    subkeyRevocations.put(subkey.getKeyID(), subkeyRevocation);
+        @Nullable
+        private PGPSignature getSubkeyBinding(long keyId) {
+            PGPPublicKey subkey = getSubkey(keyId);
+            if (subkey == null) {
+                return null;
+            }
+            Evaluated evaluated = subkeyBindings.get(keyId);
+            if (evaluated == null) {
+                evaluated = new Evaluated(
+                        SignaturePicker.pickLatestSubkeyBindingSignature(getIndex(), subkey, policy, referenceDate));
+                subkeyBindings.put(keyId, evaluated);
+            }
+            return evaluated.signature;
+        }
+
+        /**
+         * Evaluate the signatures of all components of the key ring concurrently.
+         * Each user-id and each subkey is evaluated as an independent task on the given executor, while the
+         * calling thread evaluates the primary key signatures.
+         * If the calling thread is interrupted while waiting, the remaining components are evaluated lazily.
+         *
+         * The calling thread blocks until all tasks have completed, see
+         * {@link KeyRingInfo#evaluate(PGPKeyRing, Policy, Date, Executor)} on using bounded executors.
+         *
+         * @param executor executor
+         */
+        void evaluateAll(@Nonnull Executor executor) {
+            // build the index on the calling thread, so that the tasks do not race to build it each
+            getIndex();
+            List<FutureTask<Void>> tasks = new ArrayList<>();
+            Iterator<String> userIds = keyRing.getPublicKey().getUserIDs();
+            while (userIds.hasNext()) {
+                FutureTask<Void> task = new FutureTask<>(new ComponentEvaluation(this, userIds.next(), null), null);
+                tasks.add(task);
+                executor.execute(task);
+            }
+            Iterator<PGPPublicKey> subkeys = keyRing.getPublicKeys();
+            while (subkeys.hasNext()) {
+                PGPPublicKey subkey = subkeys.next();
+                if (subkey.isMasterKey()) {
+                    continue;
                 }
-                PGPSignature subkeyBinding = SignaturePicker.pickLatestSubkeyBindingSignature(keyRing, subkey, policy, referenceDate);
-                if (subkeyBinding != null) {
-                    subkeyBindings.put(subkey.getKeyID(), subkeyBinding);
+                FutureTask<Void> task = new FutureTask<>(new ComponentEvaluation(this, null, subkey.getKeyID()), null);
+                tasks.add(task);
+                executor.execute(task);
+            }
+
+            getPrimaryKeyRevocation();
+            getPrimaryKeySelfSignature();
+
+            for (FutureTask<Void> task : tasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    for (FutureTask<Void> t : tasks) {
+                        t.cancel(true);
+                    }
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        }
+
+        private boolean hasUserId(String userId) {
+            return getIndex().hasUserId(userId);
+        }
+
+        @Nullable
+        private PGPPublicKey getSubkey(long keyId) {
+            PGPPublicKey subkey = keyRing.getPublicKey(keyId);
+            // the primary key is not a subkey
+            if (subkey == null || subkey.isMasterKey()) {
+                return null;
+            }
+            return subkey;
+        }
+
+        /**
+         * Evaluation of the signatures on a single user-id or subkey.
+         */
+        private static final class ComponentEvaluation implements Runnable {
+
+            private final Signatures signatures;
+            private final String userId;
+            private final Long keyId;
+            // verification cache of the thread which created the task, installed on the executor's thread
+            private final SignatureVerificationCache cache = SignatureVerificationCache.getInstance();
+
+            ComponentEvaluation(Signatures signatures, @Nullable String userId, @Nullable Long keyId) {
+                this.signatures = signatures;
+                this.userId = userId;
+                this.keyId = keyId;
+            }
+
+            @Override
+            public void run() {
+                SignatureVerificationCache previous = SignatureVerificationCache.setThreadInstance(cache);
+                try {
+                    if (userId != null) {
+                        signatures.getUserIdCertification(userId);
+                        signatures.getUserIdRevocation(userId);
+                    }
+                    if (keyId != null) {
+                        signatures.getSubkeyBinding(keyId);
+                        signatures.getSubkeyRevocation(keyId);
+                    }
+                } finally {
+                    SignatureVerificationCache.setThreadInstance(previous);
                 }
             }
         }
+
+        /**
+         * Result of picking a signature, which might be null.
+         */
+        private static final class Evaluated {
+
+            private final PGPSignature signature;
+
+            Evaluated(@Nullable PGPSignature signature) {
+                this.signature = signature;
+            }
+        }
     }
 }
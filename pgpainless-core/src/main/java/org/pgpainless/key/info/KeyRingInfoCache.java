@@ -0,0 +1,320 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.info;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.openpgp.PGPKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.policy.Policy;
+
+/**
+ * Bounded, thread-safe cache of {@link KeyRingInfo} evaluations.
+ *
+ * Entries are keyed by the primary key fingerprint, a digest over the encoding of the public keys and signatures
+ * of the key ring and the identity of the {@link Policy}.
+ * Any modification of the key ring (e.g. a new signature) therefore results in a new entry.
+ * Since the {@link Policy} is mutable, the cache should be cleared after changing it.
+ *
+ * The evaluation of a key ring only depends on the reference date in relation to the "events" of the key ring,
+ * which are the creation times of keys and signatures as well as signature- and key expiration dates.
+ * Evaluations are therefore reused for any reference date which lies between the same two consecutive events.
+ *
+ * The cache is opt-in and needs to be installed using {@link #setInstance(KeyRingInfoCache)}.
+ * Afterwards it is used by {@link org.pgpainless.PGPainless#inspectKeyRing(PGPKeyRing)},
+ * {@link KeyRingInfo#evaluate(PGPKeyRing, Policy, Date)} and thereby by encryption, signing and decryption.
+ *
+ * The cache is split into independently locked segments, so that many threads can access it concurrently.
+ * Within each segment, the least recently used key ring is evicted once the segment is full.
+ */
+public class KeyRingInfoCache {
+
+    /**
+     * Default maximum number of cached key rings.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private static volatile KeyRingInfoCache INSTANCE;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a cache holding evaluations of up to {@link #DEFAULT_MAX_SIZE} key rings.
+     */
+    public KeyRingInfoCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a cache holding evaluations of up to (roughly) maxSize key rings.
+     * Since eviction happens per segment, the cache may evict entries before maxSize is reached.
+     *
+     * @param maxSize maximum number of cached key rings
+     */
+    public KeyRingInfoCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum size MUST be positive.");
+        }
+        int segmentCount = Math.min(MAX_SEGMENTS, maxSize);
+        int segmentSize = (maxSize + segmentCount - 1) / segmentCount;
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Install a process-wide cache which is used when inspecting key rings.
+     * Passing null disables caching, which is the default.
+     *
+     * @param cache cache or null
+     */
+    public static void setInstance(@Nullable KeyRingInfoCache cache) {
+        INSTANCE = cache;
+    }
+
+    /**
+     * Return the installed process-wide cache, or null if caching is disabled.
+     *
+     * @return cache or null
+     */
+    @Nullable
+    public static KeyRingInfoCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Return a {@link KeyRingInfo} of the given key ring evaluated at the given reference date.
+     * If the key ring was already evaluated using the same policy at a reference date for which the evaluation
+     * is provably identical, the existing evaluation is reused.
+     *
+     * @param keys key ring
+     * @param policy policy
+     * @param referenceDate reference date
+     * @return key ring info
+     */
+    @Nonnull
+    public KeyRingInfo get(@Nonnull PGPKeyRing keys, @Nonnull Policy policy, @Nonnull Date referenceDate) {
+        Key key;
+        try {
+            key = new Key(OpenPgpFingerprint.of(keys), computeDigest(keys), policy);
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            return new KeyRingInfo(keys, policy, referenceDate);
+        }
+
+        Segment segment = segmentFor(key);
+        CertificateEntry entry = segment.get(key);
+        if (entry == null) {
+            entry = segment.putIfAbsent(key, new CertificateEntry(CertificateTimeline.collectEvents(keys)));
+        }
+
+        Integer interval = entry.intervalOf(referenceDate);
+        KeyRingInfo.Signatures signatures = entry.signatures.get(interval);
+        if (signatures != null) {
+            hits.incrementAndGet();
+            return new KeyRingInfo(keys, signatures, referenceDate);
+        }
+
+        misses.incrementAndGet();
+        KeyRingInfo info = new KeyRingInfo(keys, policy, referenceDate);
+        entry.signatures.put(interval, info.getSignatures());
+        return info;
+    }
+
+    /**
+     * Remove all evaluations of the key ring with the given primary key fingerprint.
+     *
+     * @param fingerprint primary key fingerprint
+     */
+    public void invalidate(@Nonnull OpenPgpFingerprint fingerprint) {
+        for (Segment segment : segments) {
+            segment.removeAll(fingerprint);
+        }
+    }
+
+    /**
+     * Remove all evaluations from the cache.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Return the number of cached key rings.
+     *
+     * @return size
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Return the number of lookups which were answered from the cache.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Return the number of lookups which required a new evaluation.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private Segment segmentFor(Key key) {
+        int hash = key.hashCode;
+        hash ^= hash >>> 16;
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    private static ByteBuffer computeDigest(PGPKeyRing keys) throws IOException {
+        SHA256Digest digest = new SHA256Digest();
+        Iterator<PGPPublicKey> publicKeys = keys.getPublicKeys();
+        while (publicKeys.hasNext()) {
+            // public key packets including user-ids and signatures, but without secret key material
+            byte[] encoding = publicKeys.next().getEncoded();
+            digest.update(encoding, 0, encoding.length);
+        }
+        byte[] result = new byte[digest.getDigestSize()];
+        digest.doFinal(result, 0);
+        return ByteBuffer.wrap(result);
+    }
+
+    /**
+     * Evaluations of a single key ring.
+     */
+    private static final class CertificateEntry {
+
+        private final long[] events;
+        private final Map<Integer, KeyRingInfo.Signatures> signatures = new ConcurrentHashMap<>();
+
+        CertificateEntry(long[] events) {
+            this.events = events;
+        }
+
+        /**
+         * Return the index of the interval containing the reference date.
+         * Even indices 2i denote the open interval before the i-th event, odd indices 2i+1 denote the i-th event
+         * itself.
+         *
+         * @param referenceDate reference date
+         * @return interval index
+         */
+        Integer intervalOf(Date referenceDate) {
+            int index = Arrays.binarySearch(events, referenceDate.getTime());
+            if (index >= 0) {
+                return 2 * index + 1;
+            }
+            return 2 * (-index - 1);
+        }
+    }
+
+    private static final class Segment {
+
+        private final LinkedHashMap<Key, CertificateEntry> entries;
+
+        Segment(final int maxSize) {
+            this.entries = new LinkedHashMap<Key, CertificateEntry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, CertificateEntry> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized CertificateEntry get(Key key) {
+            return entries.get(key);
+        }
+
+        synchronized CertificateEntry putIfAbsent(Key key, CertificateEntry entry) {
+            CertificateEntry existing = entries.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            entries.put(key, entry);
+            return entry;
+        }
+
+        synchronized void removeAll(OpenPgpFingerprint fingerprint) {
+            Iterator<Key> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().fingerprint.equals(fingerprint)) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Key {
+
+        private final OpenPgpFingerprint fingerprint;
+        private final ByteBuffer digest;
+        private final Policy policy;
+        private final int hashCode;
+
+        Key(OpenPgpFingerprint fingerprint, ByteBuffer digest, Policy policy) {
+            this.fingerprint = fingerprint;
+            this.digest = digest;
+            this.policy = policy;
+            this.hashCode = (fingerprint.hashCode() * 31 + digest.hashCode()) * 31 + System.identityHashCode(policy);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && policy == other.policy
+                    && digest.equals(other.digest)
+                    && fingerprint.equals(other.fingerprint);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.merge;
+
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.pgpainless.key.OpenPgpFingerprint;
+
+/**
+ * Changes, which were applied to a certificate by merging updates into it.
+ * Note, that signatures are not verified while merging, so new components and signatures are not necessarily valid.
+ */
+public final class CertificateChange {
+
+    private final PGPPublicKeyRing certificate;
+    private final OpenPgpFingerprint fingerprint;
+    private final boolean newCertificate;
+    private final List<String> newUserIds;
+    private final List<OpenPgpFingerprint> newSubkeys;
+    private final List<PGPSignature> newRevocations;
+    private final int newSignatures;
+
+    CertificateChange(@Nonnull PGPPublicKeyRing certificate,
+                      @Nonnull OpenPgpFingerprint fingerprint,
+                      boolean newCertificate,
+                      @Nonnull List<String> newUserIds,
+                      @Nonnull List<OpenPgpFingerprint> newSubkeys,
+                      @Nonnull List<PGPSignature> newRevocations,
+                      int newSignatures) {
+        this.certificate = certificate;
+        this.fingerprint = fingerprint;
+        this.newCertificate = newCertificate;
+        this.newUserIds = Collections.unmodifiableList(newUserIds);
+        this.newSubkeys = Collections.unmodifiableList(newSubkeys);
+        this.newRevocations = Collections.unmodifiableList(newRevocations);
+        this.newSignatures = newSignatures;
+    }
+
+    /**
+     * Return the merged certificate.
+     *
+     * @return certificate
+     */
+    @Nonnull
+    public PGPPublicKeyRing getCertificate() {
+        return certificate;
+    }
+
+    /**
+     * Return the fingerprint of the certificate.
+     *
+     * @return fingerprint
+     */
+    @Nonnull
+    public OpenPgpFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Return true, if the certificate was not known before the merge.
+     *
+     * @return true if new certificate
+     */
+    public boolean isNewCertificate() {
+        return newCertificate;
+    }
+
+    /**
+     * Return the user-ids, which were added to the certificate.
+     *
+     * @return new user-ids
+     */
+    @Nonnull
+    public List<String> getNewUserIds() {
+        return newUserIds;
+    }
+
+    /**
+     * Return the fingerprints of the subkeys, which were added to the certificate.
+     *
+     * @return new subkeys
+     */
+    @Nonnull
+    public List<OpenPgpFingerprint> getNewSubkeys() {
+        return newSubkeys;
+    }
+
+    /**
+     * Return the key, subkey and certification revocations, which were added to the certificate.
+     *
+     * @return new revocations
+     */
+    @Nonnull
+    public List<PGPSignature> getNewRevocations() {
+        return newRevocations;
+    }
+
+    /**
+     * Return the number of signatures (including revocations), which were added to the certificate.
+     *
+     * @return number of new signatures
+     */
+    public int getNewSignatureCount() {
+        return newSignatures;
+    }
+
+    @Override
+    public String toString() {
+        return fingerprint + (newCertificate ? " (new)" : "") + ": " + newUserIds.size() + " new user-ids, "
+                + newSubkeys.size() + " new subkeys, " + newRevocations.size() + " new revocations, "
+                + newSignatures + " new signatures";
+    }
+}
@@ -0,0 +1,269 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.merge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.bcpg.BCPGOutputStream;
+import org.bouncycastle.bcpg.PublicKeyPacket;
+import org.bouncycastle.bcpg.UserIDPacket;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPUserAttributeSubpacketVector;
+import org.bouncycastle.util.Strings;
+import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.OpenPgpFingerprint;
+
+/**
+ * Accumulator, which merges copies of the same certificate component by component.
+ * Signatures are deduplicated per component by the digest of their encoding, so that byte-identical signatures are
+ * only retained once, even if they occur multiple times in the same copy.
+ * Components and signatures, which were contributed by updates, are recorded as changes.
+ *
+ * This class is not thread-safe.
+ */
+final class CertificateMerge {
+
+    private final SHA256Digest digest;
+
+    private OpenPgpFingerprint fingerprint;
+    private PublicKeyPacket primaryKeyPacket;
+    private final Component primaryKey = new Component();
+    private final Map<ByteArrayKey, UserIdComponent> userIds = new LinkedHashMap<>();
+    private final Map<PGPUserAttributeSubpacketVector, Component> userAttributes = new LinkedHashMap<>();
+    private final Map<OpenPgpFingerprint, SubkeyComponent> subkeys = new LinkedHashMap<>();
+
+    // changes contributed by updates
+    private boolean newCertificate = true;
+    private final List<String> newUserIds = new ArrayList<>();
+    private final List<OpenPgpFingerprint> newSubkeys = new ArrayList<>();
+    private final List<PGPSignature> newRevocations = new ArrayList<>();
+    private int newSignatures = 0;
+
+    /**
+     * Create a merge.
+     *
+     * @param digest digest used for signature deduplication, which may be reused across merges on the same thread
+     */
+    CertificateMerge(@Nonnull SHA256Digest digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * Add a copy of the certificate.
+     *
+     * @param certificate certificate
+     * @param update true if additions by this copy are changes
+     */
+    void add(@Nonnull PGPPublicKeyRing certificate, boolean update) throws IOException {
+        PGPPublicKey key = certificate.getPublicKey();
+        if (fingerprint == null) {
+            fingerprint = OpenPgpFingerprint.of(key);
+            primaryKeyPacket = key.getPublicKeyPacket();
+        } else if (!fingerprint.equals(OpenPgpFingerprint.of(key))) {
+            throw new IllegalArgumentException("Cannot merge certificate " + OpenPgpFingerprint.of(key)
+                    + " into " + fingerprint);
+        }
+        if (!update) {
+            newCertificate = false;
+        }
+
+        addSignatures(primaryKey, key.getKeySignatures(), update);
+
+        Iterator<byte[]> rawUserIds = key.getRawUserIDs();
+        while (rawUserIds.hasNext()) {
+            byte[] rawUserId = rawUserIds.next();
+            ByteArrayKey userIdKey = new ByteArrayKey(rawUserId);
+            UserIdComponent component = userIds.get(userIdKey);
+            if (component == null) {
+                component = new UserIdComponent(rawUserId);
+                userIds.put(userIdKey, component);
+                if (update) {
+                    newUserIds.add(Strings.fromUTF8ByteArray(rawUserId));
+                }
+            }
+            addSignatures(component, key.getSignaturesForID(rawUserId), update);
+        }
+
+        Iterator<PGPUserAttributeSubpacketVector> attributes = key.getUserAttributes();
+        while (attributes.hasNext()) {
+            PGPUserAttributeSubpacketVector attribute = attributes.next();
+            Component component = userAttributes.get(attribute);
+            if (component == null) {
+                component = new Component();
+                userAttributes.put(attribute, component);
+            }
+            addSignatures(component, key.getSignaturesForUserAttribute(attribute), update);
+        }
+
+        Iterator<PGPPublicKey> keys = certificate.getPublicKeys();
+        while (keys.hasNext()) {
+            PGPPublicKey subkey = keys.next();
+            if (subkey.isMasterKey()) {
+                continue;
+            }
+            OpenPgpFingerprint subkeyFingerprint = OpenPgpFingerprint.of(subkey);
+            SubkeyComponent component = subkeys.get(subkeyFingerprint);
+            if (component == null) {
+                component = new SubkeyComponent(subkey.getPublicKeyPacket());
+                subkeys.put(subkeyFingerprint, component);
+                if (update) {
+                    newSubkeys.add(subkeyFingerprint);
+                }
+            }
+            addSignatures(component, subkey.getKeySignatures(), update);
+        }
+    }
+
+    private void addSignatures(Component component, Iterator<PGPSignature> signatures, boolean update)
+            throws IOException {
+        if (signatures == null) {
+            return;
+        }
+        while (signatures.hasNext()) {
+            PGPSignature signature = signatures.next();
+            byte[] encoding = signature.getEncoded();
+            byte[] signatureDigest = new byte[digest.getDigestSize()];
+            digest.update(encoding, 0, encoding.length);
+            digest.doFinal(signatureDigest, 0);
+
+            if (!component.digests.add(new ByteArrayKey(signatureDigest))) {
+                continue;
+            }
+            component.signatures.add(signature);
+            if (update) {
+                newSignatures++;
+                if (isRevocation(signature)) {
+                    newRevocations.add(signature);
+                }
+            }
+        }
+    }
+
+    private static boolean isRevocation(PGPSignature signature) {
+        int type = signature.getSignatureType();
+        return type == PGPSignature.KEY_REVOCATION
+                || type == PGPSignature.SUBKEY_REVOCATION
+                || type == PGPSignature.CERTIFICATION_REVOCATION;
+    }
+
+    /**
+     * Return true, if updates contributed anything to the merged certificate.
+     *
+     * @return true if changed
+     */
+    boolean isChanged() {
+        return newCertificate || newSignatures != 0 || !newUserIds.isEmpty() || !newSubkeys.isEmpty();
+    }
+
+    /**
+     * Build the merged certificate.
+     *
+     * @return merged certificate
+     * @throws IOException if the merged certificate cannot be encoded
+     */
+    PGPPublicKeyRing build() throws IOException {
+        ByteArrayOutputStream encoding = new ByteArrayOutputStream();
+        BCPGOutputStream out = new BCPGOutputStream(encoding);
+        primaryKeyPacket.encode(out);
+        primaryKey.encode(out);
+        for (UserIdComponent userId : userIds.values()) {
+            new UserIDPacket(userId.rawUserId).encode(out);
+            userId.encode(out);
+        }
+        for (SubkeyComponent subkey : subkeys.values()) {
+            subkey.packet.encode(out);
+            subkey.encode(out);
+        }
+        out.close();
+        PGPPublicKeyRing merged = new PGPPublicKeyRing(encoding.toByteArray(),
+                ImplementationFactory.getInstance().getKeyFingerprintCalculator());
+
+        if (userAttributes.isEmpty()) {
+            return merged;
+        }
+        // User attribute packets cannot be re-encoded from their parsed form, so they are added to the key instead
+        PGPPublicKey key = merged.getPublicKey();
+        for (Map.Entry<PGPUserAttributeSubpacketVector, Component> attribute : userAttributes.entrySet()) {
+            for (PGPSignature signature : attribute.getValue().signatures) {
+                key = PGPPublicKey.addCertification(key, attribute.getKey(), signature);
+            }
+        }
+        return PGPPublicKeyRing.insertPublicKey(merged, key);
+    }
+
+    /**
+     * Return the changes contributed by updates.
+     *
+     * @param merged merged certificate
+     * @return changes
+     */
+    CertificateChange getChange(@Nonnull PGPPublicKeyRing merged) {
+        return new CertificateChange(merged, fingerprint, newCertificate, newUserIds, newSubkeys, newRevocations,
+                newSignatures);
+    }
+
+    private static class Component {
+        final List<PGPSignature> signatures = new ArrayList<>();
+        final Set<ByteArrayKey> digests = new HashSet<>();
+
+        void encode(BCPGOutputStream out) throws IOException {
+            for (PGPSignature signature : signatures) {
+                signature.encode(out);
+            }
+        }
+    }
+
+    private static final class UserIdComponent extends Component {
+        final byte[] rawUserId;
+
+        UserIdComponent(byte[] rawUserId) {
+            this.rawUserId = rawUserId;
+        }
+    }
+
+    private static final class SubkeyComponent extends Component {
+        final PublicKeyPacket packet;
+
+        SubkeyComponent(PublicKeyPacket packet) {
+            this.packet = packet;
+        }
+    }
+
+    /**
+     * Byte array with value semantics, used as hash key.
+     */
+    private static final class ByteArrayKey {
+        private final byte[] bytes;
+        private final int hashCode;
+
+        ByteArrayKey(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ByteArrayKey && Arrays.equals(bytes, ((ByteArrayKey) obj).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.merge;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.pgpainless.key.OpenPgpFingerprint;
+
+/**
+ * Merges a set of certificate updates (e.g. a keyserver delta) into a set of certificates (e.g. a local store)
+ * in bulk.
+ *
+ * Only the updates are held in memory: They are read first and indexed by the fingerprints of their primary keys.
+ * The certificates are then streamed past this index, so that the set of certificates can be much larger than the
+ * available memory. Each certificate, for which there are updates, is merged with all copies of it in the updates.
+ * Certificates are merged component by component, and signatures on a component are deduplicated by the digest of
+ * their encoding, so the merged certificates do not contain byte-identical signatures.
+ * The merges are distributed in batches over an {@link Executor}.
+ *
+ * Results are handed to a {@link Callback} on the calling thread as soon as they are available, so they are not
+ * retained either: Certificates, to which the updates do not contribute anything, are reported as unchanged right
+ * away. Merged certificates are reported along with the changes contributed by the updates, in the order of the
+ * certificates. Afterwards, certificates which only appear in the updates are reported as new certificates, in the
+ * order of the updates.
+ * Since the certificates are not indexed, multiple copies of the same certificate in the certificates are not merged
+ * with one another, but each of them is merged with the updates.
+ *
+ * Signatures are not verified, so callers should evaluate merged certificates (e.g. using
+ * {@link org.pgpainless.key.info.KeyRingInfo}) before using new components.
+ */
+public final class CertificateMerger {
+
+    /**
+     * Number of certificates, which are merged by a single task.
+     */
+    static final int BATCH_SIZE = 64;
+
+    /**
+     * Maximum number of batches, which are submitted to the executor but not yet reported.
+     */
+    static final int MAX_PENDING_BATCHES = 16;
+
+    private CertificateMerger() {
+
+    }
+
+    /**
+     * Receives the results of a merge.
+     */
+    public interface Callback {
+
+        /**
+         * Called for a certificate, to which the updates do not contribute anything.
+         *
+         * @param certificate certificate as it was read
+         * @throws IOException to abort the merge
+         */
+        void unchanged(@Nonnull PGPPublicKeyRing certificate) throws IOException;
+
+        /**
+         * Called for a certificate, to which the updates contribute new components or signatures,
+         * or for a new certificate, which only appears in the updates.
+         *
+         * @param certificate merged certificate
+         * @param change change contributed by the updates
+         * @throws IOException to abort the merge
+         */
+        void changed(@Nonnull PGPPublicKeyRing certificate, @Nonnull CertificateChange change) throws IOException;
+    }
+
+    /**
+     * Merge the updates into the certificates.
+     *
+     * @param certificates certificates
+     * @param updates updated copies of certificates and new certificates
+     * @param executor executor or null to merge on the calling thread
+     * @param callback callback receiving the results
+     * @throws IOException if a merged certificate cannot be encoded, or if the callback throws
+     */
+    public static void merge(@Nonnull Iterable<PGPPublicKeyRing> certificates,
+                             @Nonnull Iterable<PGPPublicKeyRing> updates,
+                             @Nullable Executor executor,
+                             @Nonnull Callback callback)
+            throws IOException {
+        merge(certificates.iterator(), updates.iterator(), executor, callback);
+    }
+
+    /**
+     * Merge the updates into the certificates.
+     * The updates are consumed completely before the certificates are read.
+     *
+     * @param certificates certificates
+     * @param updates updated copies of certificates and new certificates
+     * @param executor executor or null to merge on the calling thread
+     * @param callback callback receiving the results
+     * @throws IOException if a merged certificate cannot be encoded, or if the callback throws
+     */
+    public static void merge(@Nonnull Iterator<PGPPublicKeyRing> certificates,
+                             @Nonnull Iterator<PGPPublicKeyRing> updates,
+                             @Nullable Executor executor,
+                             @Nonnull Callback callback)
+            throws IOException {
+        Map<OpenPgpFingerprint, Updates> index = new LinkedHashMap<>();
+        while (updates.hasNext()) {
+            PGPPublicKeyRing update = updates.next();
+            OpenPgpFingerprint fingerprint = OpenPgpFingerprint.of(update);
+            Updates entry = index.get(fingerprint);
+            if (entry == null) {
+                entry = new Updates();
+                index.put(fingerprint, entry);
+            }
+            entry.updates.add(update);
+        }
+
+        Pipeline pipeline = new Pipeline(executor, callback);
+        boolean completed = false;
+        try {
+            while (certificates.hasNext()) {
+                PGPPublicKeyRing certificate = certificates.next();
+                Updates entry = index.get(OpenPgpFingerprint.of(certificate));
+                if (entry == null) {
+                    callback.unchanged(certificate);
+                    continue;
+                }
+                entry.matched = true;
+                pipeline.add(new Merge(certificate, entry.updates));
+            }
+            for (Updates entry : index.values()) {
+                if (!entry.matched) {
+                    pipeline.add(new Merge(null, entry.updates));
+                }
+            }
+            pipeline.finish();
+            completed = true;
+        } finally {
+            if (!completed) {
+                pipeline.cancel();
+            }
+        }
+    }
+
+    /**
+     * Copies of a certificate in the updates.
+     */
+    private static final class Updates {
+        final List<PGPPublicKeyRing> updates = new ArrayList<>(1);
+        boolean matched;
+    }
+
+    /**
+     * Merge of a certificate (or none, if the certificate is new) with its updates.
+     */
+    private static final class Merge {
+        final PGPPublicKeyRing certificate;
+        final List<PGPPublicKeyRing> updates;
+        PGPPublicKeyRing merged;
+        CertificateChange change;
+
+        Merge(@Nullable PGPPublicKeyRing certificate, List<PGPPublicKeyRing> updates) {
+            this.certificate = certificate;
+            this.updates = updates;
+        }
+
+        void merge(SHA256Digest digest) throws IOException {
+            CertificateMerge merge = new CertificateMerge(digest);
+            if (certificate != null) {
+                merge.add(certificate, false);
+            }
+            for (PGPPublicKeyRing update : updates) {
+                merge.add(update, true);
+            }
+
+            if (!merge.isChanged()) {
+                // the updates did not contribute anything, keep the original certificate
+                return;
+            }
+            merged = merge.build();
+            change = merge.getChange(merged);
+        }
+
+        void report(Callback callback) throws IOException {
+            if (change == null) {
+                callback.unchanged(certificate);
+            } else {
+                callback.changed(merged, change);
+            }
+        }
+    }
+
+    /**
+     * Merges, which are executed by one task.
+     */
+    private static final class Batch implements Callable<Batch> {
+        final List<Merge> merges = new ArrayList<>(BATCH_SIZE);
+
+        @Override
+        public Batch call() throws IOException {
+            SHA256Digest digest = new SHA256Digest();
+            for (Merge merge : merges) {
+                merge.merge(digest);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Collects merges in batches, executes them and reports their results in order.
+     * The number of pending batches is bounded, so that results do not pile up if the callback is slower than
+     * the executor.
+     */
+    private static final class Pipeline {
+        private final Executor executor;
+        private final Callback callback;
+        private final Deque<FutureTask<Batch>> pending = new ArrayDeque<>();
+        private Batch batch = new Batch();
+
+        Pipeline(@Nullable Executor executor, @Nonnull Callback callback) {
+            this.executor = executor;
+            this.callback = callback;
+        }
+
+        void add(Merge merge) throws IOException {
+            batch.merges.add(merge);
+            if (batch.merges.size() == BATCH_SIZE) {
+                submit();
+            }
+        }
+
+        void finish() throws IOException {
+            if (!batch.merges.isEmpty()) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                reportNext();
+            }
+        }
+
+        void cancel() {
+            for (FutureTask<Batch> task : pending) {
+                task.cancel(true);
+            }
+        }
+
+        private void submit() throws IOException {
+            Batch full = batch;
+            batch = new Batch();
+            if (executor == null) {
+                report(full.call());
+                return;
+            }
+
+            FutureTask<Batch> task = new FutureTask<>(full);
+            pending.add(task);
+            executor.execute(task);
+            while (!pending.isEmpty() && (pending.size() > MAX_PENDING_BATCHES || pending.peek().isDone())) {
+                reportNext();
+            }
+        }
+
+        private void reportNext() throws IOException {
+            Batch completed;
+            try {
+                completed = pending.peek().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while merging certificates.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+            pending.remove();
+            report(completed);
+        }
+
+        private void report(Batch completed) throws IOException {
+            for (Merge merge : completed.merges) {
+                merge.report(callback);
+            }
+        }
+    }
+}
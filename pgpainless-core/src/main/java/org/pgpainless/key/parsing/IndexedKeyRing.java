@@ -0,0 +1,105 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.parsing;
+
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import org.pgpainless.key.OpenPgpFingerprint;
+
+/**
+ * Index entry of a key ring in a keyring file, as produced by {@link KeyRingIndexer}.
+ * The entry contains the fingerprints and user-ids of the key ring, as well as the byte range of the key ring in the
+ * file. The key ring itself can be parsed from that range if needed.
+ *
+ * Note, that the entry is created from the raw packets without verifying any signatures, so neither the subkeys nor
+ * the user-ids are necessarily bound to the primary key.
+ */
+public final class IndexedKeyRing {
+
+    private final long offset;
+    private final long length;
+    private final boolean secretKeyRing;
+    private final OpenPgpFingerprint fingerprint;
+    private final List<OpenPgpFingerprint> subkeyFingerprints;
+    private final List<String> userIds;
+
+    IndexedKeyRing(long offset,
+                   long length,
+                   boolean secretKeyRing,
+                   @Nonnull OpenPgpFingerprint fingerprint,
+                   @Nonnull List<OpenPgpFingerprint> subkeyFingerprints,
+                   @Nonnull List<String> userIds) {
+        this.offset = offset;
+        this.length = length;
+        this.secretKeyRing = secretKeyRing;
+        this.fingerprint = fingerprint;
+        this.subkeyFingerprints = Collections.unmodifiableList(subkeyFingerprints);
+        this.userIds = Collections.unmodifiableList(userIds);
+    }
+
+    /**
+     * Return the offset of the first packet of the key ring in the file.
+     *
+     * @return offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Return the number of bytes of the key ring in the file.
+     *
+     * @return length
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Return true, if the key ring is a secret key ring.
+     *
+     * @return true if secret key ring
+     */
+    public boolean isSecretKeyRing() {
+        return secretKeyRing;
+    }
+
+    /**
+     * Return the fingerprint of the primary key.
+     *
+     * @return primary key fingerprint
+     */
+    @Nonnull
+    public OpenPgpFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Return the fingerprints of the subkeys in the order of the key ring.
+     *
+     * @return subkey fingerprints
+     */
+    @Nonnull
+    public List<OpenPgpFingerprint> getSubkeyFingerprints() {
+        return subkeyFingerprints;
+    }
+
+    /**
+     * Return the user-ids in the order of the key ring.
+     *
+     * @return user-ids
+     */
+    @Nonnull
+    public List<String> getUserIds() {
+        return userIds;
+    }
+
+    @Override
+    public String toString() {
+        return fingerprint + " " + userIds + " @" + offset;
+    }
+}
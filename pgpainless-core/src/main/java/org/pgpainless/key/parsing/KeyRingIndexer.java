@@ -0,0 +1,258 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.parsing;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.bcpg.PacketTags;
+import org.bouncycastle.bcpg.PublicKeyAlgorithmTags;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.OpenPgpV4Fingerprint;
+
+/**
+ * Indexer, which extracts the fingerprints and user-ids of the key rings in a binary keyring file directly from the
+ * raw packets, without constructing {@link org.bouncycastle.openpgp.PGPKeyRing PGPKeyRings}.
+ *
+ * The file is memory-mapped and walked packet by packet using the packet headers only.
+ * Bodies of signatures and other packets, which are not needed for the index, are skipped without being read.
+ * V4 fingerprints are computed from the public part of the key packets, and user-id packets are decoded as UTF-8.
+ * This is a lot cheaper than parsing the key rings via {@link KeyRingReader} and is meant for jobs like building
+ * key-id, fingerprint or user-id indexes and deduplicating large keyrings, which do not need any signatures.
+ *
+ * Since no signatures are verified, the entries contain all subkeys and user-ids, whether they are bound to the
+ * primary key or not. Key rings with a primary key of another version than 4 are skipped, as are subkeys of other
+ * versions than 4. The same goes for secret keys of unknown public key algorithms, since the public part of their
+ * key material cannot be determined. Key rings end at the next primary key or marker packet.
+ */
+public final class KeyRingIndexer {
+
+    /**
+     * Callback, which receives the index entries of the key rings in the order of the file.
+     */
+    public interface Callback {
+
+        /**
+         * Handle the index entry of a key ring.
+         *
+         * @param keyRing index entry
+         * @throws IOException to abort indexing
+         */
+        void onKeyRing(@Nonnull IndexedKeyRing keyRing) throws IOException;
+    }
+
+    private final MappedPacketScanner scanner;
+    private final SHA1Digest digest = new SHA1Digest();
+    private byte[] body = new byte[1024];
+
+    // key ring, which is currently indexed
+    private long start = -1;
+    private boolean secretKeyRing;
+    private OpenPgpFingerprint fingerprint;
+    private List<OpenPgpFingerprint> subkeyFingerprints;
+    private List<String> userIds;
+
+    private KeyRingIndexer(FileChannel channel) throws IOException {
+        this.scanner = new MappedPacketScanner(channel);
+    }
+
+    /**
+     * Index the key rings of the given binary keyring file.
+     *
+     * @param file binary keyring file
+     * @return index entries in the order of the file
+     * @throws IOException if the file cannot be read or contains invalid packets
+     */
+    public static List<IndexedKeyRing> index(@Nonnull File file) throws IOException {
+        final List<IndexedKeyRing> entries = new ArrayList<>();
+        index(file, new Callback() {
+            @Override
+            public void onKeyRing(@Nonnull IndexedKeyRing keyRing) {
+                entries.add(keyRing);
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Index the key rings of the given binary keyring file and pass the entries to the callback one by one, so that
+     * files with any number of key rings can be indexed with constant memory.
+     *
+     * @param file binary keyring file
+     * @param callback callback
+     * @throws IOException if the file cannot be read or contains invalid packets
+     */
+    public static void index(@Nonnull File file, @Nonnull Callback callback) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            new KeyRingIndexer(randomAccessFile.getChannel()).run(callback);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void run(Callback callback) throws IOException {
+        while (scanner.next()) {
+            int tag = scanner.getTag();
+            switch (tag) {
+                case PacketTags.PUBLIC_KEY:
+                case PacketTags.SECRET_KEY:
+                    finishKeyRing(callback, scanner.getPacketOffset());
+                    byte[] primaryKeyFingerprint = fingerprint(tag == PacketTags.SECRET_KEY);
+                    if (primaryKeyFingerprint != null) {
+                        start = scanner.getPacketOffset();
+                        secretKeyRing = tag == PacketTags.SECRET_KEY;
+                        fingerprint = new OpenPgpV4Fingerprint(primaryKeyFingerprint);
+                        subkeyFingerprints = new ArrayList<>();
+                        userIds = new ArrayList<>();
+                    }
+                    break;
+
+                case PacketTags.PUBLIC_SUBKEY:
+                case PacketTags.SECRET_SUBKEY:
+                    if (start >= 0) {
+                        byte[] subkeyFingerprint = fingerprint(tag == PacketTags.SECRET_SUBKEY);
+                        if (subkeyFingerprint != null) {
+                            subkeyFingerprints.add(new OpenPgpV4Fingerprint(subkeyFingerprint));
+                        }
+                    }
+                    break;
+
+                case PacketTags.USER_ID:
+                    if (start >= 0) {
+                        int length = readBody();
+                        userIds.add(new String(body, 0, length, KeyRingReader.UTF8));
+                    }
+                    break;
+
+                case PacketTags.MARKER:
+                    finishKeyRing(callback, scanner.getPacketOffset());
+                    break;
+
+                default:
+                    // signatures, user attributes, trust packets etc. are not needed
+                    break;
+            }
+        }
+        finishKeyRing(callback, scanner.getSize());
+    }
+
+    private void finishKeyRing(Callback callback, long end) throws IOException {
+        if (start < 0) {
+            return;
+        }
+        IndexedKeyRing keyRing = new IndexedKeyRing(start, end - start, secretKeyRing, fingerprint,
+                subkeyFingerprints, userIds);
+        start = -1;
+        callback.onKeyRing(keyRing);
+    }
+
+    /**
+     * Compute the V4 fingerprint of the current key packet.
+     *
+     * @param secretKey true if the packet is a secret key packet
+     * @return fingerprint or null if the key is not a V4 key or is a secret key of an unknown algorithm
+     */
+    private byte[] fingerprint(boolean secretKey) throws IOException {
+        int length = readBody();
+        if (length == 0) {
+            throw new EOFException("Empty key packet at offset " + scanner.getPacketOffset() + ".");
+        }
+        if (body[0] != 4) {
+            return null;
+        }
+        int publicKeyLength = secretKey ? publicKeyLength(length) : length;
+        if (publicKeyLength < 0) {
+            return null;
+        }
+
+        digest.update((byte) 0x99);
+        digest.update((byte) (publicKeyLength >> 8));
+        digest.update((byte) publicKeyLength);
+        digest.update(body, 0, publicKeyLength);
+        byte[] fingerprint = new byte[digest.getDigestSize()];
+        digest.doFinal(fingerprint, 0);
+        return fingerprint;
+    }
+
+    /**
+     * Determine the length of the public part of the V4 secret key packet in the body buffer.
+     *
+     * @return length or -1 if the public key algorithm is unknown
+     */
+    private int publicKeyLength(int length) throws IOException {
+        // version, creation time, algorithm
+        int pos = checkLength(6, length);
+        int algorithm = body[5] & 0xff;
+        switch (algorithm) {
+            case PublicKeyAlgorithmTags.RSA_GENERAL:
+            case PublicKeyAlgorithmTags.RSA_ENCRYPT:
+            case PublicKeyAlgorithmTags.RSA_SIGN:
+                // n, e
+                return skipMpis(pos, 2, length);
+            case PublicKeyAlgorithmTags.DSA:
+                // p, q, g, y
+                return skipMpis(pos, 4, length);
+            case PublicKeyAlgorithmTags.ELGAMAL_ENCRYPT:
+            case PublicKeyAlgorithmTags.ELGAMAL_GENERAL:
+                // p, g, y
+                return skipMpis(pos, 3, length);
+            case PublicKeyAlgorithmTags.ECDSA:
+            case PublicKeyAlgorithmTags.EDDSA:
+                // curve oid, point
+                return skipMpis(skipLengthPrefixed(pos, length), 1, length);
+            case PublicKeyAlgorithmTags.ECDH:
+                // curve oid, point, kdf parameters
+                return skipLengthPrefixed(skipMpis(skipLengthPrefixed(pos, length), 1, length), length);
+            default:
+                return -1;
+        }
+    }
+
+    private int skipMpis(int pos, int count, int length) throws IOException {
+        for (int i = 0; i < count; i++) {
+            checkLength(pos + 2, length);
+            int bits = ((body[pos] & 0xff) << 8) | (body[pos + 1] & 0xff);
+            pos = checkLength(pos + 2 + (bits + 7) / 8, length);
+        }
+        return pos;
+    }
+
+    private int skipLengthPrefixed(int pos, int length) throws IOException {
+        checkLength(pos + 1, length);
+        return checkLength(pos + 1 + (body[pos] & 0xff), length);
+    }
+
+    private int checkLength(int pos, int length) throws IOException {
+        if (pos > length) {
+            throw new EOFException("Truncated key packet at offset " + scanner.getPacketOffset() + ".");
+        }
+        return pos;
+    }
+
+    /**
+     * Read the body of the current packet into the reused body buffer.
+     *
+     * @return body length
+     */
+    private int readBody() throws IOException {
+        long length = scanner.getBodyLength();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Packet at offset " + scanner.getPacketOffset() + " is too large.");
+        }
+        if (body.length < length) {
+            body = new byte[(int) length];
+        }
+        scanner.get(scanner.getBodyOffset(), body, 0, (int) length);
+        return (int) length;
+    }
+}
@@ -0,0 +1,139 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.parsing;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPKeyRing;
+import org.bouncycastle.openpgp.PGPObjectFactory;
+import org.bouncycastle.openpgp.PGPRuntimeOperationException;
+import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.util.KeyRingUtils;
+import org.pgpainless.policy.Policy;
+import org.pgpainless.util.ArmoredInputStreamFactory;
+
+/**
+ * {@link Iterator} which reads key rings one at a time from an {@link InputStream}.
+ * In contrast to the collection methods of {@link KeyRingReader}, key rings are parsed lazily and only the
+ * current key ring is held in memory, and there is no limit on the number of key rings or other objects in the stream.
+ *
+ * The stream may consist of any number of concatenated ASCII armored and binary blocks.
+ * Key rings of other types than the requested one, as well as other OpenPGP objects (e.g. marker packets) are skipped.
+ *
+ * Since the {@link Iterator} interface does not allow for checked exceptions, {@link IOException IOExceptions}
+ * are rethrown as {@link PGPRuntimeOperationException PGPRuntimeOperationExceptions}.
+ * The iterator should be closed after use, which closes the underlying {@link InputStream}.
+ *
+ * @param <T> type of the key rings
+ */
+public final class KeyRingIterator<T extends PGPKeyRing> implements Iterator<T>, Closeable {
+
+    private final InputStream in;
+    private final Class<T> type;
+    private final Policy thirdPartyCertificationPolicy;
+
+    private PGPObjectFactory blockObjectFactory;
+    private T next;
+    private boolean exhausted = false;
+
+    KeyRingIterator(@Nonnull InputStream inputStream, @Nonnull Class<T> type,
+                    @Nullable Policy thirdPartyCertificationPolicy) {
+        this.in = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        this.type = type;
+        this.thirdPartyCertificationPolicy = thirdPartyCertificationPolicy;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !exhausted) {
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                throw new PGPRuntimeOperationException("Cannot read key ring: " + e.getMessage(), e);
+            }
+            exhausted = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T keyRing = next;
+        next = null;
+        return keyRing;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Key rings cannot be removed from the stream.");
+    }
+
+    @Override
+    public void close() throws IOException {
+        exhausted = true;
+        next = null;
+        in.close();
+    }
+
+    @Nullable
+    private T readNext() throws IOException {
+        while (true) {
+            if (blockObjectFactory == null && !nextBlock()) {
+                return null;
+            }
+            Object object = blockObjectFactory.nextObject();
+            if (object == null) {
+                // end of the current block
+                blockObjectFactory = null;
+                continue;
+            }
+            if (type.isInstance(object)) {
+                T keyRing = type.cast(object);
+                if (thirdPartyCertificationPolicy != null) {
+                    keyRing = KeyRingUtils.limitThirdPartyCertifications(keyRing, thirdPartyCertificationPolicy);
+                }
+                return keyRing;
+            }
+        }
+    }
+
+    /**
+     * Set up an object factory for the next armored or binary block of the stream.
+     *
+     * @return false if the end of the stream is reached
+     */
+    private boolean nextBlock() throws IOException {
+        int b;
+        do {
+            in.mark(1);
+            b = in.read();
+        } while (b == ' ' || b == '\t' || b == '\r' || b == '\n');
+        if (b < 0) {
+            return false;
+        }
+        in.reset();
+
+        InputStream block;
+        if ((b & 0x80) != 0) {
+            // binary packets, up to the next non-packet data
+            block = new PacketSequenceInputStream(in);
+        } else {
+            // armored block, the armored input stream stops reading after the armor tail
+            block = ArmoredInputStreamFactory.get(in);
+        }
+        blockObjectFactory = ImplementationFactory.getInstance().getPGPObjectFactory(block);
+        return true;
+    }
+}
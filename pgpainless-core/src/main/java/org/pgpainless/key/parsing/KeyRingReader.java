@@ -5,13 +5,17 @@
 package org.pgpainless.key.parsing;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPKeyRing;
@@ -22,8 +26,12 @@ import org.bouncycastle.openpgp.PGPPublicKeyRingCollection;
 import org.bouncycastle.openpgp.PGPSecretKeyRing;
 import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
 import org.bouncycastle.util.io.Streams;
+import org.pgpainless.PGPainless;
 import org.pgpainless.implementation.ImplementationFactory;
 import org.pgpainless.key.collection.PGPKeyRingCollection;
+import org.pgpainless.key.info.KeyRingInfo;
+import org.pgpainless.key.util.KeyRingUtils;
+import org.pgpainless.policy.Policy;
 import org.pgpainless.util.ArmorUtils;
 
 public class KeyRingReader {
@@ -33,6 +41,34 @@ public class KeyRingReader {
     @SuppressWarnings("CharsetObjectCanBeUsed")
     public static final Charset UTF8 = Charset.forName("UTF-8");
 
+    private Policy thirdPartyCertificationPolicy;
+
+    /**
+     * Limit the number of third-party signatures on the components of the read key rings to the
+     * {@link Policy#getThirdPartyCertificationLimits() third-party certification limits} of PGPainless' policy.
+     * Key rings of collections are limited one by one while reading, so that flooded certificates from untrusted
+     * sources do not accumulate in memory.
+     *
+     * @return this
+     * @see KeyRingUtils#limitThirdPartyCertifications(PGPKeyRing, Policy)
+     */
+    public KeyRingReader limitThirdPartyCertifications() {
+        return limitThirdPartyCertifications(PGPainless.getPolicy());
+    }
+
+    /**
+     * Limit the number of third-party signatures on the components of the read key rings to the
+     * {@link Policy#getThirdPartyCertificationLimits() third-party certification limits} of the given policy.
+     *
+     * @param policy policy containing the limits
+     * @return this
+     * @see KeyRingUtils#limitThirdPartyCertifications(PGPKeyRing, Policy)
+     */
+    public KeyRingReader limitThirdPartyCertifications(@Nonnull Policy policy) {
+        this.thirdPartyCertificationPolicy = policy;
+        return this;
+    }
+
     /**
      * Read a {@link PGPKeyRing} (either {@link PGPSecretKeyRing} or {@link PGPPublicKeyRing}) from the given
      * {@link InputStream}.
@@ -43,7 +79,7 @@ public class KeyRingReader {
      */
     public PGPKeyRing keyRing(@Nonnull InputStream inputStream)
             throws IOException {
-        return readKeyRing(inputStream);
+        return limit(readKeyRing(inputStream), thirdPartyCertificationPolicy);
     }
 
     /**
@@ -74,7 +110,7 @@ public class KeyRingReader {
 
     public PGPPublicKeyRing publicKeyRing(@Nonnull InputStream inputStream)
             throws IOException {
-        return readPublicKeyRing(inputStream);
+        return limit(readPublicKeyRing(inputStream), thirdPartyCertificationPolicy);
     }
 
     public PGPPublicKeyRing publicKeyRing(@Nonnull byte[] bytes)
@@ -89,7 +125,7 @@ public class KeyRingReader {
 
     public PGPPublicKeyRingCollection publicKeyRingCollection(@Nonnull InputStream inputStream)
             throws IOException, PGPException {
-        return readPublicKeyRingCollection(inputStream);
+        return readPublicKeyRingCollection(inputStream, MAX_ITERATIONS, thirdPartyCertificationPolicy);
     }
 
     public PGPPublicKeyRingCollection publicKeyRingCollection(@Nonnull byte[] bytes)
@@ -104,7 +140,7 @@ public class KeyRingReader {
 
     public PGPSecretKeyRing secretKeyRing(@Nonnull InputStream inputStream)
             throws IOException {
-        return readSecretKeyRing(inputStream);
+        return limit(readSecretKeyRing(inputStream), thirdPartyCertificationPolicy);
     }
 
     public PGPSecretKeyRing secretKeyRing(@Nonnull byte[] bytes)
@@ -119,7 +155,7 @@ public class KeyRingReader {
 
     public PGPSecretKeyRingCollection secretKeyRingCollection(@Nonnull InputStream inputStream)
             throws IOException, PGPException {
-        return readSecretKeyRingCollection(inputStream);
+        return readSecretKeyRingCollection(inputStream, MAX_ITERATIONS, thirdPartyCertificationPolicy);
     }
 
     public PGPSecretKeyRingCollection secretKeyRingCollection(@Nonnull byte[] bytes)
@@ -134,7 +170,18 @@ public class KeyRingReader {
 
     public PGPKeyRingCollection keyRingCollection(@Nonnull InputStream inputStream, boolean isSilent)
             throws IOException, PGPException {
-        return readKeyRingCollection(inputStream, isSilent);
+        PGPKeyRingCollection collection = readKeyRingCollection(inputStream, isSilent);
+        if (thirdPartyCertificationPolicy == null) {
+            return collection;
+        }
+        List<PGPKeyRing> keyRings = new ArrayList<>();
+        for (PGPSecretKeyRing secretKeys : collection.getPGPSecretKeyRingCollection()) {
+            keyRings.add(limit(secretKeys, thirdPartyCertificationPolicy));
+        }
+        for (PGPPublicKeyRing publicKeys : collection.getPgpPublicKeyRingCollection()) {
+            keyRings.add(limit(publicKeys, thirdPartyCertificationPolicy));
+        }
+        return new PGPKeyRingCollection(keyRings, isSilent);
     }
 
     public PGPKeyRingCollection keyRingCollection(@Nonnull byte[] bytes, boolean isSilent)
@@ -147,6 +194,120 @@ public class KeyRingReader {
         return keyRingCollection(asciiArmored.getBytes(UTF8), isSilent);
     }
 
+    /**
+     * Return an iterator over the {@link PGPPublicKeyRing PGPPublicKeyRings} in the given {@link InputStream}.
+     * Certificates are read one at a time, so arbitrarily large keyring files can be processed with constant memory.
+     * The stream may contain any number of concatenated ASCII armored and binary blocks.
+     * Secret key rings in the stream are skipped.
+     *
+     * @param inputStream input stream
+     * @return iterator, which must be closed after use
+     * @see KeyRingIterator
+     */
+    public KeyRingIterator<PGPPublicKeyRing> publicKeyRingStream(@Nonnull InputStream inputStream) {
+        return new KeyRingIterator<>(inputStream, PGPPublicKeyRing.class, thirdPartyCertificationPolicy);
+    }
+
+    /**
+     * Return an iterator over the {@link PGPSecretKeyRing PGPSecretKeyRings} in the given {@link InputStream}.
+     * Keys are read one at a time, so arbitrarily large keyring files can be processed with constant memory.
+     * The stream may contain any number of concatenated ASCII armored and binary blocks.
+     * Public key rings in the stream are skipped.
+     *
+     * @param inputStream input stream
+     * @return iterator, which must be closed after use
+     * @see KeyRingIterator
+     */
+    public KeyRingIterator<PGPSecretKeyRing> secretKeyRingStream(@Nonnull InputStream inputStream) {
+        return new KeyRingIterator<>(inputStream, PGPSecretKeyRing.class, thirdPartyCertificationPolicy);
+    }
+
+    /**
+     * Return an iterator over the {@link PGPKeyRing PGPKeyRings} (either {@link PGPSecretKeyRing} or
+     * {@link PGPPublicKeyRing}) in the given {@link InputStream}.
+     * Key rings are read one at a time, so arbitrarily large keyring files can be processed with constant memory.
+     * The stream may contain any number of concatenated ASCII armored and binary blocks.
+     *
+     * @param inputStream input stream
+     * @return iterator, which must be closed after use
+     * @see KeyRingIterator
+     */
+    public KeyRingIterator<PGPKeyRing> keyRingStream(@Nonnull InputStream inputStream) {
+        return new KeyRingIterator<>(inputStream, PGPKeyRing.class, thirdPartyCertificationPolicy);
+    }
+
+    /**
+     * Read all {@link PGPPublicKeyRing PGPPublicKeyRings} from the given binary keyring file in parallel.
+     * The file is memory-mapped and split into the individual certificates by a fast scan over the packet headers,
+     * before the certificates are parsed in batches on the given {@link Executor}.
+     * The result contains the certificates in the order of the file. Secret key rings in the file are skipped.
+     *
+     * The file MUST consist of binary OpenPGP packets. ASCII armored files can be read using
+     * {@link #publicKeyRingStream(InputStream)}.
+     *
+     * @param file binary keyring file
+     * @param executor executor (e.g. a {@link java.util.concurrent.ForkJoinPool}) or null to parse on the calling thread
+     * @return certificates
+     * @throws IOException if the file cannot be read or contains invalid packets
+     */
+    public List<PGPPublicKeyRing> publicKeyRings(@Nonnull File file, @Nullable Executor executor)
+            throws IOException {
+        return castAll(new ParallelKeyRingParser(PGPPublicKeyRing.class, thirdPartyCertificationPolicy)
+                .parse(file, executor), PGPPublicKeyRing.class);
+    }
+
+    /**
+     * Read all {@link PGPSecretKeyRing PGPSecretKeyRings} from the given binary keyring file in parallel.
+     * The result contains the keys in the order of the file. Public key rings in the file are skipped.
+     *
+     * The file MUST consist of binary OpenPGP packets. ASCII armored files can be read using
+     * {@link #secretKeyRingStream(InputStream)}.
+     *
+     * @param file binary keyring file
+     * @param executor executor (e.g. a {@link java.util.concurrent.ForkJoinPool}) or null to parse on the calling thread
+     * @return secret keys
+     * @throws IOException if the file cannot be read or contains invalid packets
+     * @see #publicKeyRings(File, Executor)
+     */
+    public List<PGPSecretKeyRing> secretKeyRings(@Nonnull File file, @Nullable Executor executor)
+            throws IOException {
+        return castAll(new ParallelKeyRingParser(PGPSecretKeyRing.class, thirdPartyCertificationPolicy)
+                .parse(file, executor), PGPSecretKeyRing.class);
+    }
+
+    /**
+     * Read all {@link PGPKeyRing PGPKeyRings} (either {@link PGPSecretKeyRing} or {@link PGPPublicKeyRing}) from
+     * the given binary keyring file in parallel and evaluate them against the given policy at the reference date.
+     * In addition to parsing, the tasks on the {@link Executor} verify the self-signatures of all components of the
+     * key rings, so the returned {@link KeyRingInfo KeyRingInfos} are fully evaluated.
+     * The result contains the evaluations in the order of the file.
+     *
+     * @param file binary keyring file
+     * @param policy policy
+     * @param referenceDate validation date
+     * @param executor executor (e.g. a {@link java.util.concurrent.ForkJoinPool}) or null to parse on the calling thread
+     * @return evaluated key rings
+     * @throws IOException if the file cannot be read or contains invalid packets
+     * @see #publicKeyRings(File, Executor)
+     */
+    public List<KeyRingInfo> inspectKeyRings(@Nonnull File file,
+                                             @Nonnull Policy policy,
+                                             @Nonnull Date referenceDate,
+                                             @Nullable Executor executor)
+            throws IOException {
+        return castAll(new ParallelKeyRingParser(PGPKeyRing.class, thirdPartyCertificationPolicy)
+                .evaluate(policy, referenceDate)
+                .parse(file, executor), KeyRingInfo.class);
+    }
+
+    private static <T> List<T> castAll(List<Object> objects, Class<T> type) {
+        List<T> list = new ArrayList<>(objects.size());
+        for (Object object : objects) {
+            list.add(type.cast(object));
+        }
+        return list;
+    }
+
     /**
      * Read a {@link PGPKeyRing} (either {@link PGPSecretKeyRing} or {@link PGPPublicKeyRing}) from the given
      * {@link InputStream}.
@@ -254,6 +415,13 @@ public class KeyRingReader {
      */
     public static PGPPublicKeyRingCollection readPublicKeyRingCollection(@Nonnull InputStream inputStream, int maxIterations)
             throws IOException {
+        return readPublicKeyRingCollection(inputStream, maxIterations, null);
+    }
+
+    private static PGPPublicKeyRingCollection readPublicKeyRingCollection(@Nonnull InputStream inputStream,
+                                                                          int maxIterations,
+                                                                          @Nullable Policy policy)
+            throws IOException {
         PGPObjectFactory objectFactory = ImplementationFactory.getInstance().getPGPObjectFactory(
                 ArmorUtils.getDecoderStream(inputStream));
 
@@ -269,13 +437,13 @@ public class KeyRingReader {
                 continue;
             }
             if (next instanceof PGPPublicKeyRing) {
-                rings.add((PGPPublicKeyRing) next);
+                rings.add(limit((PGPPublicKeyRing) next, policy));
             }
             if (next instanceof PGPPublicKeyRingCollection) {
                 PGPPublicKeyRingCollection collection = (PGPPublicKeyRingCollection) next;
                 Iterator<PGPPublicKeyRing> iterator = collection.getKeyRings();
                 while (iterator.hasNext()) {
-                    rings.add(iterator.next());
+                    rings.add(limit(iterator.next(), policy));
                 }
             }
         } while (++i < maxIterations);
@@ -341,6 +509,13 @@ public class KeyRingReader {
     public static PGPSecretKeyRingCollection readSecretKeyRingCollection(@Nonnull InputStream inputStream,
                                                                          int maxIterations)
             throws IOException {
+        return readSecretKeyRingCollection(inputStream, maxIterations, null);
+    }
+
+    private static PGPSecretKeyRingCollection readSecretKeyRingCollection(@Nonnull InputStream inputStream,
+                                                                          int maxIterations,
+                                                                          @Nullable Policy policy)
+            throws IOException {
         PGPObjectFactory objectFactory = ImplementationFactory.getInstance().getPGPObjectFactory(
                 ArmorUtils.getDecoderStream(inputStream));
 
@@ -356,13 +531,13 @@ public class KeyRingReader {
                 continue;
             }
             if (next instanceof PGPSecretKeyRing) {
-                rings.add((PGPSecretKeyRing) next);
+                rings.add(limit((PGPSecretKeyRing) next, policy));
             }
             if (next instanceof PGPSecretKeyRingCollection) {
                 PGPSecretKeyRingCollection collection = (PGPSecretKeyRingCollection) next;
                 Iterator<PGPSecretKeyRing> iterator = collection.getKeyRings();
                 while (iterator.hasNext()) {
-                    rings.add(iterator.next());
+                    rings.add(limit(iterator.next(), policy));
                 }
             }
         } while (++i < maxIterations);
@@ -374,4 +549,11 @@ public class KeyRingReader {
             throws IOException, PGPException {
         return new PGPKeyRingCollection(inputStream, isSilent);
     }
+
+    private static <T extends PGPKeyRing> T limit(@Nullable T keyRing, @Nullable Policy policy) {
+        if (keyRing == null || policy == null) {
+            return keyRing;
+        }
+        return KeyRingUtils.limitThirdPartyCertifications(keyRing, policy);
+    }
 }
@@ -0,0 +1,188 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.parsing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import javax.annotation.Nonnull;
+
+/**
+ * Scanner, which walks the packet headers of a memory-mapped file of binary OpenPGP packets without parsing packet
+ * bodies.
+ * The file is mapped in windows of limited size, so that files larger than the maximum size of a single mapping
+ * (2 GiB) can be scanned.
+ *
+ * Partial body lengths are rejected, since they are not allowed for the packets of key rings.
+ * This class is not thread-safe.
+ */
+final class MappedPacketScanner {
+
+    static final int WINDOW_SIZE = 1 << 26;
+
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long position = 0;
+
+    private int tag;
+    private long packetOffset;
+    private long bodyOffset;
+    private long bodyLength;
+
+    MappedPacketScanner(@Nonnull FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Advance to the next packet.
+     *
+     * @return false if the end of the file is reached
+     * @throws IOException if the file does not consist of binary OpenPGP packets
+     */
+    boolean next() throws IOException {
+        if (position >= size) {
+            return false;
+        }
+        packetOffset = position;
+        int header = get(position++);
+        if ((header & 0x80) == 0) {
+            throw new IOException("Invalid packet header at offset " + packetOffset + ". Not a binary OpenPGP file?");
+        }
+
+        if ((header & 0x40) != 0) {
+            // new packet format
+            tag = header & 0x3f;
+            int first = nextHeaderByte();
+            if (first < 192) {
+                bodyLength = first;
+            } else if (first < 224) {
+                bodyLength = ((first - 192) << 8) + nextHeaderByte() + 192;
+            } else if (first == 255) {
+                bodyLength = ((long) nextHeaderByte() << 24) | (nextHeaderByte() << 16)
+                        | (nextHeaderByte() << 8) | nextHeaderByte();
+            } else {
+                throw new IOException("Unsupported partial body length in packet at offset " + packetOffset + ".");
+            }
+        } else {
+            // old packet format
+            tag = (header & 0x3c) >> 2;
+            int lengthType = header & 0x03;
+            if (lengthType == 3) {
+                // indeterminate length
+                bodyLength = size - position;
+            } else {
+                bodyLength = 0;
+                for (int i = 0; i < 1 << lengthType; i++) {
+                    bodyLength = (bodyLength << 8) | nextHeaderByte();
+                }
+            }
+        }
+
+        bodyOffset = position;
+        if (bodyOffset + bodyLength > size) {
+            throw new EOFException("Truncated packet at offset " + packetOffset + ".");
+        }
+        position = bodyOffset + bodyLength;
+        return true;
+    }
+
+    /**
+     * Return the tag of the current packet.
+     *
+     * @return packet tag
+     */
+    int getTag() {
+        return tag;
+    }
+
+    /**
+     * Return the offset of the header of the current packet.
+     *
+     * @return packet offset
+     */
+    long getPacketOffset() {
+        return packetOffset;
+    }
+
+    /**
+     * Return the offset of the body of the current packet.
+     *
+     * @return body offset
+     */
+    long getBodyOffset() {
+        return bodyOffset;
+    }
+
+    /**
+     * Return the length of the body of the current packet.
+     *
+     * @return body length
+     */
+    long getBodyLength() {
+        return bodyLength;
+    }
+
+    /**
+     * Return the size of the file.
+     *
+     * @return file size
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Return the byte at the given offset of the file.
+     *
+     * @param offset offset
+     * @return unsigned byte value
+     * @throws IOException in case of an IO error
+     */
+    int get(long offset) throws IOException {
+        if (window == null || offset < windowStart || offset >= windowStart + window.limit()) {
+            windowStart = offset - offset % WINDOW_SIZE;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(WINDOW_SIZE, size - windowStart));
+        }
+        return window.get((int) (offset - windowStart)) & 0xff;
+    }
+
+    /**
+     * Copy bytes of the file into the given array.
+     *
+     * @param offset offset of the first byte
+     * @param bytes target array
+     * @param off offset in the target array
+     * @param len number of bytes
+     * @throws IOException in case of an IO error
+     */
+    void get(long offset, @Nonnull byte[] bytes, int off, int len) throws IOException {
+        while (len > 0) {
+            // map the window containing the offset
+            get(offset);
+            int start = (int) (offset - windowStart);
+            int n = Math.min(len, window.limit() - start);
+            ByteBuffer view = window.duplicate();
+            view.position(start);
+            view.get(bytes, off, n);
+            offset += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private int nextHeaderByte() throws IOException {
+        if (position >= size) {
+            throw new EOFException("Truncated packet header at offset " + packetOffset + ".");
+        }
+        return get(position++);
+    }
+}
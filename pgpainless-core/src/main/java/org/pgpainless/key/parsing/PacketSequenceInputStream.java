@@ -0,0 +1,179 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.parsing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nonnull;
+
+/**
+ * {@link InputStream} which passes through a sequence of binary OpenPGP packets from the underlying stream, and
+ * ends at the first byte which is not the start of a packet header.
+ * That byte is not consumed, so that the underlying stream can be used to read the data following the packets,
+ * e.g. an ASCII armored block in a file of concatenated binary and armored key rings.
+ *
+ * Packet bodies are not buffered. The underlying stream MUST support {@link InputStream#mark(int)}.
+ */
+final class PacketSequenceInputStream extends InputStream {
+
+    private final InputStream in;
+
+    // header (including length octets of partial body chunks), which was read but not yet returned
+    private final byte[] header = new byte[6];
+    private int headerPos = 0;
+    private int headerLen = 0;
+
+    // remaining bytes of the current body chunk
+    private long remaining = 0;
+    private boolean partial = false;
+    private boolean indeterminate = false;
+    private boolean end = false;
+
+    PacketSequenceInputStream(@Nonnull InputStream in) {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("Underlying input stream must support mark().");
+        }
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        if (headerPos < headerLen) {
+            return header[headerPos++] & 0xff;
+        }
+        int b = in.read();
+        if (b < 0) {
+            return endOfBody();
+        }
+        remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        if (headerPos < headerLen) {
+            int n = Math.min(len, headerLen - headerPos);
+            System.arraycopy(header, headerPos, b, off, n);
+            headerPos += n;
+            return n;
+        }
+        int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read < 0) {
+            return endOfBody();
+        }
+        remaining -= read;
+        return read;
+    }
+
+    /**
+     * Make sure that there are header or body bytes to return.
+     *
+     * @return false if the end of the packet sequence is reached
+     */
+    private boolean ensureData() throws IOException {
+        while (!end && headerPos == headerLen && remaining == 0) {
+            if (partial) {
+                headerPos = 0;
+                headerLen = 0;
+                readBodyLength();
+            } else {
+                readPacketHeader();
+            }
+        }
+        return !end;
+    }
+
+    private void readPacketHeader() throws IOException {
+        in.mark(1);
+        int tag = in.read();
+        if (tag < 0 || (tag & 0x80) == 0) {
+            // not a packet, leave the byte to the underlying stream
+            if (tag >= 0) {
+                in.reset();
+            }
+            end = true;
+            return;
+        }
+
+        headerPos = 0;
+        headerLen = 0;
+        header[headerLen++] = (byte) tag;
+        if ((tag & 0x40) != 0) {
+            // new packet format
+            readBodyLength();
+            return;
+        }
+
+        // old packet format
+        int lengthType = tag & 0x03;
+        if (lengthType == 3) {
+            // indeterminate length, the packet extends to the end of the stream
+            indeterminate = true;
+            remaining = Long.MAX_VALUE;
+            return;
+        }
+        int octets = 1 << lengthType;
+        remaining = 0;
+        for (int i = 0; i < octets; i++) {
+            remaining = (remaining << 8) | readHeaderByte();
+        }
+        partial = false;
+    }
+
+    /**
+     * Read a new format body length (possibly a partial body length).
+     */
+    private void readBodyLength() throws IOException {
+        int first = readHeaderByte();
+        partial = false;
+        if (first < 192) {
+            remaining = first;
+        } else if (first < 224) {
+            remaining = ((first - 192) << 8) + readHeaderByte() + 192;
+        } else if (first == 255) {
+            remaining = ((long) readHeaderByte() << 24) | (readHeaderByte() << 16)
+                    | (readHeaderByte() << 8) | readHeaderByte();
+        } else {
+            remaining = 1L << (first & 0x1f);
+            partial = true;
+        }
+    }
+
+    private int readHeaderByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated packet header.");
+        }
+        header[headerLen++] = (byte) b;
+        return b;
+    }
+
+    private int endOfBody() throws IOException {
+        if (indeterminate) {
+            end = true;
+            remaining = 0;
+            return -1;
+        }
+        throw new EOFException("Truncated packet body.");
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (headerPos < headerLen) {
+            return headerLen - headerPos;
+        }
+        return (int) Math.min(remaining, in.available());
+    }
+}
@@ -0,0 +1,267 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.parsing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.bcpg.PacketTags;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.info.KeyRingInfo;
+import org.pgpainless.key.util.KeyRingUtils;
+import org.pgpainless.policy.Policy;
+
+/**
+ * Parser, which reads the key rings of a binary keyring file in parallel.
+ *
+ * The file is memory-mapped and split into the byte ranges of its key rings by a scan over the packet headers, which
+ * does not parse any packet bodies. Each key ring starts with a Public-Key or Secret-Key packet and extends up to the
+ * next one. The ranges are then parsed (and optionally evaluated) in batches on an {@link Executor}.
+ * Marker packets and other packets outside of key rings are skipped.
+ */
+final class ParallelKeyRingParser {
+
+    /**
+     * Default minimum number of bytes of key rings, which are parsed by a single task.
+     */
+    static final int DEFAULT_BATCH_SIZE = 1 << 20;
+
+    private static final Executor CALLING_THREAD = new Executor() {
+        @Override
+        public void execute(@Nonnull Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Class<? extends PGPKeyRing> type;
+    private final Policy thirdPartyCertificationPolicy;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    // evaluation parameters, null if key rings are not evaluated
+    private Policy policy;
+    private Date referenceDate;
+
+    ParallelKeyRingParser(@Nonnull Class<? extends PGPKeyRing> type, @Nullable Policy thirdPartyCertificationPolicy) {
+        this.type = type;
+        this.thirdPartyCertificationPolicy = thirdPartyCertificationPolicy;
+    }
+
+    /**
+     * Set the minimum number of bytes of key rings, which are parsed by a single task.
+     *
+     * @param bytes batch size
+     * @return this
+     */
+    ParallelKeyRingParser batchSize(int bytes) {
+        this.batchSize = bytes;
+        return this;
+    }
+
+    /**
+     * Evaluate the parsed key rings against the given policy at the given reference date.
+     *
+     * @param evaluationPolicy policy
+     * @param evaluationDate reference date
+     * @return this
+     */
+    ParallelKeyRingParser evaluate(@Nonnull Policy evaluationPolicy, @Nonnull Date evaluationDate) {
+        this.policy = evaluationPolicy;
+        this.referenceDate = evaluationDate;
+        return this;
+    }
+
+    /**
+     * Parse the key rings of the given file.
+     * The result contains either {@link PGPKeyRing PGPKeyRings} or, if the parser evaluates the key rings,
+     * {@link KeyRingInfo KeyRingInfos} in the order of the key rings in the file.
+     *
+     * @param file binary keyring file
+     * @param executor executor or null to parse on the calling thread
+     * @return parsed key rings or their evaluations
+     * @throws IOException if the file cannot be read or contains invalid key rings
+     */
+    List<Object> parse(@Nonnull File file, @Nullable Executor executor) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            List<Batch> batches = split(channel);
+            if (executor == null) {
+                for (Batch batch : batches) {
+                    batch.call();
+                }
+            } else {
+                runAll(batches, executor);
+            }
+
+            List<Object> results = new ArrayList<>();
+            for (Batch batch : batches) {
+                results.addAll(Arrays.asList(batch.results));
+            }
+            return results;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Scan the packet headers of the file and split it into batches of key ring ranges.
+     */
+    private List<Batch> split(FileChannel channel) throws IOException {
+        MappedPacketScanner scanner = new MappedPacketScanner(channel);
+        List<Batch> batches = new ArrayList<>();
+        Batch batch = new Batch(channel);
+        long start = -1;
+        int tag = 0;
+        while (scanner.next()) {
+            int packetTag = scanner.getTag();
+            boolean primaryKey = packetTag == PacketTags.PUBLIC_KEY || packetTag == PacketTags.SECRET_KEY;
+            if (start >= 0 && (primaryKey || packetTag == PacketTags.MARKER)) {
+                batch.add(tag, start, scanner.getPacketOffset());
+                start = -1;
+                if (batch.length() >= batchSize) {
+                    batches.add(batch);
+                    batch = new Batch(channel);
+                }
+            }
+            if (primaryKey && isRequested(packetTag)) {
+                start = scanner.getPacketOffset();
+                tag = packetTag;
+            }
+        }
+        if (start >= 0) {
+            batch.add(tag, start, scanner.getSize());
+        }
+        if (batch.size() != 0) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private boolean isRequested(int tag) {
+        if (tag == PacketTags.PUBLIC_KEY) {
+            return type.isAssignableFrom(PGPPublicKeyRing.class);
+        }
+        return type.isAssignableFrom(PGPSecretKeyRing.class);
+    }
+
+    private static void runAll(List<Batch> batches, Executor executor) throws IOException {
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        for (Batch batch : batches) {
+            FutureTask<Void> task = new FutureTask<>(batch);
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        for (FutureTask<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                for (FutureTask<Void> t : tasks) {
+                    t.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while parsing key rings.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * Consecutive key ring ranges, which are mapped and parsed by one task.
+     */
+    private final class Batch implements Callable<Void> {
+
+        private final FileChannel channel;
+        private final List<long[]> ranges = new ArrayList<>();
+        private Object[] results;
+
+        Batch(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void add(int tag, long start, long end) {
+            ranges.add(new long[] {tag, start, end});
+        }
+
+        int size() {
+            return ranges.size();
+        }
+
+        long length() {
+            return ranges.get(ranges.size() - 1)[2] - ranges.get(0)[1];
+        }
+
+        @Override
+        public Void call() throws IOException {
+            long length = length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Key ring at offset " + ranges.get(0)[1] + " is too large.");
+            }
+            long batchStart = ranges.get(0)[1];
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, batchStart, length);
+
+            Object[] parsed = new Object[ranges.size()];
+            for (int i = 0; i < parsed.length; i++) {
+                long[] range = ranges.get(i);
+                byte[] encoding = new byte[(int) (range[2] - range[1])];
+                buffer.position((int) (range[1] - batchStart));
+                buffer.get(encoding);
+
+                PGPKeyRing keyRing = parseKeyRing((int) range[0], encoding, range[1]);
+                if (thirdPartyCertificationPolicy != null) {
+                    keyRing = KeyRingUtils.limitThirdPartyCertifications(keyRing, thirdPartyCertificationPolicy);
+                }
+                // evaluate all components right away, since this is what the task is for
+                parsed[i] = policy == null ? keyRing
+                        : KeyRingInfo.evaluate(keyRing, policy, referenceDate, CALLING_THREAD);
+            }
+            results = parsed;
+            return null;
+        }
+
+        private PGPKeyRing parseKeyRing(int tag, byte[] encoding, long offset) throws IOException {
+            try {
+                if (tag == PacketTags.PUBLIC_KEY) {
+                    return new PGPPublicKeyRing(encoding,
+                            ImplementationFactory.getInstance().getKeyFingerprintCalculator());
+                }
+                return new PGPSecretKeyRing(encoding, ImplementationFactory.getInstance().getKeyFingerprintCalculator());
+            } catch (PGPException e) {
+                throw new IOException("Cannot parse key ring at offset " + offset + ".", e);
+            } catch (RuntimeException e) {
+                throw new IOException("Cannot parse key ring at offset " + offset + ".", e);
+            }
+        }
+    }
+}
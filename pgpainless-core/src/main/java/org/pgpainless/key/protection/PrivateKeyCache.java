@@ -0,0 +1,247 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.protection;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.openpgp.PGPKeyRing;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.util.Arrays;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.key.info.KeyInfo;
+
+/**
+ * Bounded, thread-safe cache of unlocked {@link PGPPrivateKey PGPPrivateKeys}.
+ * Unlocking a secret key runs the (potentially expensive) S2K derivation and, if enabled in the policy,
+ * a validation of the public key parameters. Applications which repeatedly unlock the same keys (e.g. to decrypt
+ * many messages) can share a cache between {@link org.pgpainless.decryption_verification.ConsumerOptions} and
+ * {@link org.pgpainless.encryption_signing.SigningOptions} instances to skip those steps.
+ *
+ * Entries expire after a fixed time-to-live after they were added. If the cache exceeds its maximum size, the least
+ * recently used entry is evicted.
+ * A cached private key is only returned for the exact same secret key packet that it was unlocked from.
+ *
+ * Trust boundary: The private key of a passphrase protected secret key is only returned to the same
+ * {@link SecretKeyRingProtector} instance which unlocked it. A hit does not consult the protector again, so a
+ * protector, which forgets its passphrase after unlocking a key, still gets the cached private key until the entry
+ * expires or is invalidated. Any other protector (e.g. one with a wrong passphrase, or
+ * {@link SecretKeyRingProtector#unprotectedKeys()}) misses the cache and has to unlock the secret key itself.
+ * Private keys of unprotected secret keys are returned to any caller, since those can be extracted from the
+ * secret key packet without a secret anyway.
+ *
+ * When an entry is evicted or invalidated, the cache drops its reference to the private key. Note, that BCs private
+ * key objects hold their key material in immutable {@link java.math.BigInteger} objects, which cannot be overwritten,
+ * so the key material stays in memory until it is garbage collected.
+ *
+ * Caching unlocked private keys is a trade-off between performance and the exposure of secret key material
+ * in memory. Therefore, this cache is opt-in.
+ */
+public class PrivateKeyCache {
+
+    private final int maxSize;
+    private final long timeToLiveMillis;
+    private final Map<SubkeyIdentifier, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize maximum number of cached private keys
+     * @param timeToLive duration after which a cached private key expires
+     * @param unit unit of the time-to-live
+     */
+    public PrivateKeyCache(int maxSize, long timeToLive, @Nonnull TimeUnit unit) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum size MUST be positive.");
+        }
+        if (timeToLive < 1) {
+            throw new IllegalArgumentException("Time-to-live MUST be positive.");
+        }
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = unit.toMillis(timeToLive);
+    }
+
+    /**
+     * Return the cached private key of the given secret key, or null if there is no (valid) cache entry.
+     * If the secret key is protected, the private key is only returned if it was unlocked using the given protector
+     * instance.
+     *
+     * @param identifier identifier of the secret key
+     * @param secretKey secret key
+     * @param protector protector, which is used to unlock the secret key
+     * @return cached private key or null
+     */
+    @Nullable
+    public synchronized PGPPrivateKey get(@Nonnull SubkeyIdentifier identifier,
+                                          @Nonnull PGPSecretKey secretKey,
+                                          @Nonnull SecretKeyRingProtector protector) {
+        Entry entry = entries.get(identifier);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiration <= currentTimeMillis()) {
+            remove(identifier);
+            return null;
+        }
+
+        byte[] digest = digest(secretKey);
+        if (digest == null || !Arrays.constantTimeAreEqual(entry.secretKeyDigest, digest)) {
+            // Different secret key packet (e.g. changed passphrase) with the same identifier
+            return null;
+        }
+        if (KeyInfo.isEncrypted(secretKey) && entry.protector.get() != protector) {
+            // The private key was unlocked by another protector, which might know a passphrase this one does not
+            return null;
+        }
+        return entry.privateKey;
+    }
+
+    /**
+     * Add an unlocked private key to the cache.
+     *
+     * @param identifier identifier of the secret key
+     * @param secretKey secret key which was unlocked
+     * @param protector protector, which was used to unlock the secret key
+     * @param privateKey unlocked private key
+     */
+    public synchronized void put(@Nonnull SubkeyIdentifier identifier,
+                                 @Nonnull PGPSecretKey secretKey,
+                                 @Nonnull SecretKeyRingProtector protector,
+                                 @Nonnull PGPPrivateKey privateKey) {
+        byte[] digest = digest(secretKey);
+        if (digest == null) {
+            return;
+        }
+
+        remove(identifier);
+        entries.put(identifier, new Entry(digest, protector, privateKey, currentTimeMillis() + timeToLiveMillis));
+
+        Iterator<Map.Entry<SubkeyIdentifier, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            eldest.clear();
+        }
+    }
+
+    /**
+     * Remove the private key of the given subkey from the cache.
+     *
+     * @param identifier identifier of the subkey
+     */
+    public synchronized void invalidate(@Nonnull SubkeyIdentifier identifier) {
+        remove(identifier);
+    }
+
+    /**
+     * Remove the private keys of all subkeys of the given key ring from the cache.
+     *
+     * @param keyRing key ring
+     */
+    public synchronized void invalidate(@Nonnull PGPKeyRing keyRing) {
+        Iterator<PGPPublicKey> publicKeys = keyRing.getPublicKeys();
+        while (publicKeys.hasNext()) {
+            PGPPublicKey publicKey = publicKeys.next();
+            remove(new SubkeyIdentifier(OpenPgpFingerprint.of(keyRing), OpenPgpFingerprint.of(publicKey)));
+        }
+    }
+
+    /**
+     * Remove all private keys from the cache.
+     */
+    public synchronized void invalidateAll() {
+        for (Entry entry : entries.values()) {
+            entry.clear();
+        }
+        entries.clear();
+    }
+
+    /**
+     * Remove all expired private keys from the cache.
+     */
+    public synchronized void evictExpired() {
+        long now = currentTimeMillis();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiration <= now) {
+                iterator.remove();
+                entry.clear();
+            }
+        }
+    }
+
+    /**
+     * Return the number of cached private keys, including expired ones which were not yet evicted.
+     *
+     * @return size
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Return the current time in milliseconds.
+     * Tests can override this method to simulate the passing of time.
+     *
+     * @return current time
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void remove(SubkeyIdentifier identifier) {
+        Entry entry = entries.remove(identifier);
+        if (entry != null) {
+            entry.clear();
+        }
+    }
+
+    @Nullable
+    private static byte[] digest(PGPSecretKey secretKey) {
+        byte[] encoded;
+        try {
+            encoded = secretKey.getEncoded();
+        } catch (IOException e) {
+            return null;
+        }
+        SHA256Digest sha256 = new SHA256Digest();
+        byte[] digest = new byte[sha256.getDigestSize()];
+        sha256.update(encoded, 0, encoded.length);
+        sha256.doFinal(digest, 0);
+        return digest;
+    }
+
+    private static final class Entry {
+        private final byte[] secretKeyDigest;
+        // weak, so that the cache does not keep protectors (and their passphrases) alive
+        private final WeakReference<SecretKeyRingProtector> protector;
+        private PGPPrivateKey privateKey;
+        private final long expiration;
+
+        Entry(byte[] secretKeyDigest, SecretKeyRingProtector protector, PGPPrivateKey privateKey, long expiration) {
+            this.secretKeyDigest = secretKeyDigest;
+            this.protector = new WeakReference<>(protector);
+            this.privateKey = privateKey;
+            this.expiration = expiration;
+        }
+
+        void clear() {
+            protector.clear();
+            privateKey = null;
+        }
+    }
+}
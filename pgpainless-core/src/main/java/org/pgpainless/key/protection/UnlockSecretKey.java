@@ -5,6 +5,9 @@
 
 package org.pgpainless.key.protection;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
 import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPPrivateKey;
 import org.bouncycastle.openpgp.PGPSecretKey;
@@ -12,6 +15,7 @@ import org.bouncycastle.openpgp.operator.PBESecretKeyDecryptor;
 import org.pgpainless.PGPainless;
 import org.pgpainless.exception.KeyIntegrityException;
 import org.pgpainless.exception.WrongPassphraseException;
+import org.pgpainless.key.SubkeyIdentifier;
 import org.pgpainless.key.info.KeyInfo;
 import org.pgpainless.key.util.PublicKeyParameterValidationUtil;
 import org.pgpainless.util.Passphrase;
@@ -33,6 +37,37 @@ public final class UnlockSecretKey {
         return privateKey;
     }
 
+    /**
+     * Unlock the given secret key using the protector.
+     * If a {@link PrivateKeyCache} is given, the private key is taken from the cache if possible, and newly unlocked
+     * private keys are added to it.
+     * Cached private keys of protected secret keys are only reused, if they were unlocked by the same protector.
+     *
+     * @param secretKey secret key
+     * @param identifier identifier of the secret key
+     * @param protector protector to unlock the secret key
+     * @param cache optional private key cache
+     * @return private key
+     * @throws PGPException if the secret key cannot be unlocked
+     * @throws KeyIntegrityException if the public key parameters of the key are invalid
+     */
+    public static PGPPrivateKey unlockSecretKey(@Nonnull PGPSecretKey secretKey,
+                                                @Nonnull SubkeyIdentifier identifier,
+                                                @Nonnull SecretKeyRingProtector protector,
+                                                @Nullable PrivateKeyCache cache)
+            throws PGPException, KeyIntegrityException {
+        if (cache == null) {
+            return unlockSecretKey(secretKey, protector);
+        }
+
+        PGPPrivateKey privateKey = cache.get(identifier, secretKey, protector);
+        if (privateKey == null) {
+            privateKey = unlockSecretKey(secretKey, protector);
+            cache.put(identifier, secretKey, protector, privateKey);
+        }
+        return privateKey;
+    }
+
     public static PGPPrivateKey unlockSecretKey(PGPSecretKey secretKey, PBESecretKeyDecryptor decryptor)
             throws PGPException {
         PGPPrivateKey privateKey;
@@ -0,0 +1,189 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.util.Strings;
+import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.OpenPgpFingerprint;
+
+/**
+ * Immutable, compact representation of the validated state of a certificate at a reference date, as created by
+ * {@link KeyRingUtils#compact(org.bouncycastle.openpgp.PGPKeyRing, org.pgpainless.policy.Policy, Date)}.
+ *
+ * The certificate is held as a few flat arrays instead of a tree of parsed keys, signatures and subpackets, which
+ * makes it suitable for keeping large numbers of certificates in memory, e.g. in a recipient directory.
+ * The binary encoding contains the primary key, its current self-signatures, the valid user-ids with their current
+ * certifications and the valid signing and encryption subkeys with their current binding signatures.
+ * It can be expanded to a {@link PGPPublicKeyRing} via {@link #toPublicKeyRing()} when needed.
+ */
+public final class CompactCertificate {
+
+    private final byte[] fingerprint;
+    private final long referenceTime;
+    private final long[] encryptionKeyIds;
+    private final long[] signingKeyIds;
+    // UTF-8 encoded user-ids, back to back
+    private final byte[] userIds;
+    private final int[] userIdEnds;
+    private final byte[] encoding;
+
+    CompactCertificate(@Nonnull byte[] fingerprint,
+                       @Nonnull Date referenceDate,
+                       @Nonnull long[] encryptionKeyIds,
+                       @Nonnull long[] signingKeyIds,
+                       @Nonnull byte[] userIds,
+                       @Nonnull int[] userIdEnds,
+                       @Nonnull byte[] encoding) {
+        this.fingerprint = fingerprint;
+        this.referenceTime = referenceDate.getTime();
+        this.encryptionKeyIds = encryptionKeyIds;
+        this.signingKeyIds = signingKeyIds;
+        this.userIds = userIds;
+        this.userIdEnds = userIdEnds;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Return the fingerprint of the primary key.
+     *
+     * @return fingerprint
+     */
+    @Nonnull
+    public OpenPgpFingerprint getFingerprint() {
+        return OpenPgpFingerprint.parseFromBinary(fingerprint);
+    }
+
+    /**
+     * Return the date at which the certificate was evaluated.
+     *
+     * @return reference date
+     */
+    @Nonnull
+    public Date getReferenceDate() {
+        return new Date(referenceTime);
+    }
+
+    /**
+     * Return the key-ids of the keys, which were valid for encryption at the reference date.
+     *
+     * @return encryption key-ids
+     */
+    @Nonnull
+    public long[] getEncryptionKeyIds() {
+        return encryptionKeyIds.clone();
+    }
+
+    /**
+     * Return the key-ids of the keys, which were valid for signing at the reference date.
+     *
+     * @return signing key-ids
+     */
+    @Nonnull
+    public long[] getSigningKeyIds() {
+        return signingKeyIds.clone();
+    }
+
+    /**
+     * Return true, if the certificate contains a key with the given key-id, which was valid for encryption at the
+     * reference date.
+     *
+     * @param keyId key-id
+     * @return true if the key is an encryption key
+     */
+    public boolean isEncryptionKey(long keyId) {
+        return contains(encryptionKeyIds, keyId);
+    }
+
+    /**
+     * Return true, if the certificate contains a key with the given key-id, which was valid for signing at the
+     * reference date.
+     *
+     * @param keyId key-id
+     * @return true if the key is a signing key
+     */
+    public boolean isSigningKey(long keyId) {
+        return contains(signingKeyIds, keyId);
+    }
+
+    /**
+     * Return the user-ids, which were valid at the reference date.
+     *
+     * @return valid user-ids
+     */
+    @Nonnull
+    public List<String> getUserIds() {
+        List<String> list = new ArrayList<>(userIdEnds.length);
+        int start = 0;
+        for (int end : userIdEnds) {
+            list.add(Strings.fromUTF8ByteArray(Arrays.copyOfRange(userIds, start, end)));
+            start = end;
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Return the binary encoding of the compacted certificate.
+     *
+     * @return encoding
+     */
+    @Nonnull
+    public byte[] getEncoded() {
+        return encoding.clone();
+    }
+
+    /**
+     * Expand the compacted certificate to a {@link PGPPublicKeyRing}.
+     *
+     * @return certificate
+     */
+    @Nonnull
+    public PGPPublicKeyRing toPublicKeyRing() {
+        try {
+            return new PGPPublicKeyRing(encoding, ImplementationFactory.getInstance().getKeyFingerprintCalculator());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static boolean contains(long[] keyIds, long keyId) {
+        for (long id : keyIds) {
+            if (id == keyId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompactCertificate)) {
+            return false;
+        }
+        CompactCertificate other = (CompactCertificate) obj;
+        return referenceTime == other.referenceTime && Arrays.equals(encoding, other.encoding);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(encoding);
+    }
+
+    @Override
+    public String toString() {
+        return getFingerprint() + " " + getUserIds();
+    }
+}
@@ -8,12 +8,18 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.bouncycastle.bcpg.BCPGOutputStream;
+import org.bouncycastle.bcpg.UserIDPacket;
 import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPKeyRing;
 import org.bouncycastle.openpgp.PGPPrivateKey;
@@ -25,10 +31,18 @@ import org.bouncycastle.openpgp.PGPSecretKeyRing;
 import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
 import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.openpgp.PGPUserAttributeSubpacketVector;
+import org.bouncycastle.util.Strings;
 import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.EncryptionPurpose;
+import org.pgpainless.algorithm.SignatureType;
 import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.info.KeyRingInfo;
 import org.pgpainless.key.protection.SecretKeyRingProtector;
 import org.pgpainless.key.protection.UnlockSecretKey;
+import org.pgpainless.policy.Policy;
+import org.pgpainless.signature.SignatureUtils;
+import org.pgpainless.signature.consumer.SignatureCreationDateComparator;
 
 public final class KeyRingUtils {
 
@@ -509,4 +523,332 @@ public final class KeyRingUtils {
         // Parse the key back into an object
         return new PGPSecretKeyRing(encoded.toByteArray(), ImplementationFactory.getInstance().getKeyFingerprintCalculator());
     }
+
+    /**
+     * Reduce the given key ring to a {@link CompactCertificate}, which represents the validated state of the
+     * certificate right now according to PGPainless' policy.
+     *
+     * @param keyRing key ring
+     * @return compact certificate
+     * @see #compact(PGPKeyRing, Policy, Date)
+     */
+    @Nonnull
+    public static CompactCertificate compact(@Nonnull PGPKeyRing keyRing) {
+        return compact(keyRing, PGPainless.getPolicy(), new Date());
+    }
+
+    /**
+     * Reduce the given key ring to a {@link CompactCertificate}, which represents the validated state of the
+     * certificate at the given reference date.
+     * The compact certificate retains the primary key with its revocation and current direct-key self-signature,
+     * the user-ids which are valid at the reference date with their current certifications, and the subkeys which are
+     * valid for encryption or signing at the reference date with their current binding signatures.
+     * If the primary key is revoked, only the primary key and its revocation are retained.
+     * Any other signatures (historic self-signatures, third-party certifications), user-attributes and secret key
+     * material are dropped.
+     *
+     * @param keyRing key ring
+     * @param policy policy
+     * @param referenceDate reference date
+     * @return compact certificate
+     */
+    @Nonnull
+    public static CompactCertificate compact(@Nonnull PGPKeyRing keyRing,
+                                             @Nonnull Policy policy,
+                                             @Nonnull Date referenceDate) {
+        KeyRingInfo info = KeyRingInfo.evaluate(keyRing, policy, referenceDate);
+        PGPPublicKey primaryKey = keyRing.getPublicKey();
+        ByteArrayOutputStream encoding = new ByteArrayOutputStream();
+        ByteArrayOutputStream userIds = new ByteArrayOutputStream();
+        List<byte[]> validUserIds = new ArrayList<>();
+        // components of a revoked key are not valid
+        boolean primaryKeyValid = info.isKeyValidlyBound(primaryKey.getKeyID());
+        long[] encryptionKeyIds = primaryKeyValid
+                ? keyIds(info.getEncryptionSubkeys(EncryptionPurpose.ANY)) : new long[0];
+        long[] signingKeyIds = primaryKeyValid ? keyIds(info.getSigningSubkeys()) : new long[0];
+
+        try {
+            BCPGOutputStream out = new BCPGOutputStream(encoding);
+            primaryKey.getPublicKeyPacket().encode(out);
+            PGPSignature revocation = info.getRevocationSelfSignature();
+            if (revocation != null) {
+                revocation.encode(out);
+            }
+            PGPSignature directKeySignature = info.getLatestDirectKeySelfSignature();
+            if (directKeySignature != null) {
+                directKeySignature.encode(out);
+            }
+
+            Iterator<byte[]> rawUserIds = primaryKey.getRawUserIDs();
+            while (primaryKeyValid && rawUserIds.hasNext()) {
+                byte[] rawUserId = rawUserIds.next();
+                String userId = Strings.fromUTF8ByteArray(rawUserId);
+                if (containsUserId(validUserIds, rawUserId) || !info.isUserIdValid(userId)) {
+                    continue;
+                }
+                PGPSignature certification = info.getLatestUserIdCertification(userId);
+                if (certification == null) {
+                    continue;
+                }
+                validUserIds.add(rawUserId);
+                userIds.write(rawUserId);
+                new UserIDPacket(rawUserId).encode(out);
+                certification.encode(out);
+            }
+
+            Iterator<PGPPublicKey> keys = keyRing.getPublicKeys();
+            while (keys.hasNext()) {
+                PGPPublicKey key = keys.next();
+                if (key.isMasterKey()
+                        || !(containsKeyId(encryptionKeyIds, key.getKeyID())
+                        || containsKeyId(signingKeyIds, key.getKeyID()))) {
+                    continue;
+                }
+                PGPSignature binding = info.getCurrentSubkeyBindingSignature(key.getKeyID());
+                if (binding == null) {
+                    continue;
+                }
+                key.getPublicKeyPacket().encode(out);
+                binding.encode(out);
+            }
+            out.close();
+        } catch (IOException e) {
+            // cannot happen when writing to a ByteArrayOutputStream
+            throw new AssertionError(e);
+        }
+
+        int[] userIdEnds = new int[validUserIds.size()];
+        int end = 0;
+        for (int i = 0; i < userIdEnds.length; i++) {
+            end += validUserIds.get(i).length;
+            userIdEnds[i] = end;
+        }
+        return new CompactCertificate(primaryKey.getFingerprint(), referenceDate,
+                encryptionKeyIds, signingKeyIds, userIds.toByteArray(), userIdEnds,
+                encoding.toByteArray());
+    }
+
+    private static long[] keyIds(List<PGPPublicKey> keys) {
+        long[] keyIds = new long[keys.size()];
+        for (int i = 0; i < keyIds.length; i++) {
+            keyIds[i] = keys.get(i).getKeyID();
+        }
+        return keyIds;
+    }
+
+    private static boolean containsKeyId(long[] keyIds, long keyId) {
+        for (long id : keyIds) {
+            if (id == keyId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Limit the number of third-party signatures on the components of the given key ring to the
+     * {@link Policy#getThirdPartyCertificationLimits() third-party certification limits} of the given policy.
+     * Third-party signatures are signatures which were not issued by the primary key, e.g. certifications by other
+     * keys. Signatures without issuer information are considered possible self-signatures and are always retained.
+     *
+     * If a component carries more third-party signatures than allowed, only the most recent ones are retained.
+     * Since a revocation is younger than the certification it revokes, a retained third-party certification
+     * is never stripped of its revocation.
+     * Third-party key revocations might have been issued by a designated revoker, so they are limited separately
+     * by {@link Policy.ThirdPartyCertificationLimits#getMaxRevocationsPerKey()}.
+     *
+     * This method is intended to bound the memory consumption and evaluation time of certificates from untrusted
+     * sources, which might have been flooded with third-party certifications.
+     * If no component exceeds its limit, the given key ring is returned unchanged.
+     * Otherwise, the key ring is rebuilt in a single pass from the retained signatures, merging duplicate user-ids.
+     *
+     * @param keyRing key ring
+     * @param policy policy containing the limits
+     * @param <T> either {@link PGPPublicKeyRing} or {@link PGPSecretKeyRing}
+     * @return key ring with limited third-party signatures
+     */
+    @Nonnull
+    public static <T extends PGPKeyRing> T limitThirdPartyCertifications(@Nonnull T keyRing,
+                                                                         @Nonnull Policy policy) {
+        Policy.ThirdPartyCertificationLimits limits = policy.getThirdPartyCertificationLimits();
+        PGPSecretKeyRing secretKeys = null;
+        PGPPublicKeyRing publicKeys;
+        if (keyRing instanceof PGPSecretKeyRing) {
+            secretKeys = (PGPSecretKeyRing) keyRing;
+            publicKeys = PGPainless.extractCertificate(secretKeys);
+        } else {
+            publicKeys = (PGPPublicKeyRing) keyRing;
+        }
+
+        PGPPublicKey primaryKey = publicKeys.getPublicKey();
+        long primaryKeyId = primaryKey.getKeyID();
+        OpenPgpFingerprint primaryKeyFingerprint = OpenPgpFingerprint.of(primaryKey);
+
+        // Modifying a PGPPublicKey copies all of its signatures, so instead of removing signatures one by one,
+        //  the retained packets are written out once and parsed back into a new key ring.
+        boolean modified = false;
+        ByteArrayOutputStream encoding = new ByteArrayOutputStream();
+        List<PGPUserAttributeSubpacketVector> userAttributes = new ArrayList<>();
+        List<List<PGPSignature>> userAttributeSignatures = new ArrayList<>();
+        try {
+            BCPGOutputStream out = new BCPGOutputStream(encoding);
+            Iterator<PGPPublicKey> publicKeyIterator = publicKeys.iterator();
+            while (publicKeyIterator.hasNext()) {
+                PGPPublicKey key = publicKeyIterator.next();
+                key.getPublicKeyPacket().encode(out);
+                List<PGPSignature> signatures = toList(key.getKeySignatures());
+                Set<PGPSignature> dropped = droppedThirdPartySignatures(signatures, primaryKeyId,
+                        primaryKeyFingerprint, limits.getMaxPerKey(), limits.getMaxRevocationsPerKey());
+                modified |= encodeRetained(out, signatures, dropped);
+                if (!key.isMasterKey()) {
+                    continue;
+                }
+
+                List<byte[]> userIds = new ArrayList<>();
+                Iterator<byte[]> userIdIterator = key.getRawUserIDs();
+                while (userIdIterator.hasNext()) {
+                    byte[] userId = userIdIterator.next();
+                    if (containsUserId(userIds, userId)) {
+                        // getSignaturesForID() returns the signatures of all duplicates of the user-id
+                        continue;
+                    }
+                    userIds.add(userId);
+                    signatures = toList(key.getSignaturesForID(userId));
+                    dropped = droppedThirdPartySignatures(signatures, primaryKeyId, primaryKeyFingerprint,
+                            limits.getMaxPerUserId(), limits.getMaxRevocationsPerKey());
+                    new UserIDPacket(userId).encode(out);
+                    modified |= encodeRetained(out, signatures, dropped);
+                }
+
+                // User attribute packets cannot be re-encoded from their parsed form, so they are re-added later
+                Iterator<PGPUserAttributeSubpacketVector> userAttributeIterator = key.getUserAttributes();
+                while (userAttributeIterator.hasNext()) {
+                    PGPUserAttributeSubpacketVector userAttribute = userAttributeIterator.next();
+                    if (userAttributes.contains(userAttribute)) {
+                        continue;
+                    }
+                    signatures = toList(key.getSignaturesForUserAttribute(userAttribute));
+                    dropped = droppedThirdPartySignatures(signatures, primaryKeyId, primaryKeyFingerprint,
+                            limits.getMaxPerUserAttribute(), limits.getMaxRevocationsPerKey());
+                    modified |= !dropped.isEmpty();
+                    List<PGPSignature> retained = new ArrayList<>();
+                    for (PGPSignature signature : signatures) {
+                        if (!dropped.contains(signature)) {
+                            retained.add(signature);
+                        }
+                    }
+                    userAttributes.add(userAttribute);
+                    userAttributeSignatures.add(retained);
+                }
+            }
+            out.close();
+        } catch (IOException e) {
+            // cannot happen when writing to a ByteArrayOutputStream
+            throw new AssertionError(e);
+        }
+        if (!modified) {
+            return keyRing;
+        }
+
+        try {
+            publicKeys = new PGPPublicKeyRing(encoding.toByteArray(),
+                    ImplementationFactory.getInstance().getKeyFingerprintCalculator());
+        } catch (IOException e) {
+            // the encoding consists of packets which were parsed before
+            throw new AssertionError(e);
+        }
+        if (!userAttributes.isEmpty()) {
+            PGPPublicKey key = publicKeys.getPublicKey();
+            for (int i = 0; i < userAttributes.size(); i++) {
+                for (PGPSignature signature : userAttributeSignatures.get(i)) {
+                    key = PGPPublicKey.addCertification(key, userAttributes.get(i), signature);
+                }
+            }
+            publicKeys = PGPPublicKeyRing.insertPublicKey(publicKeys, key);
+        }
+
+        if (secretKeys == null) {
+            return (T) publicKeys;
+        } else {
+            secretKeys = PGPSecretKeyRing.replacePublicKeys(secretKeys, publicKeys);
+            return (T) secretKeys;
+        }
+    }
+
+    /**
+     * Encode the signatures, which are not dropped.
+     *
+     * @return true if any signature was dropped
+     */
+    private static boolean encodeRetained(BCPGOutputStream out, List<PGPSignature> signatures,
+                                          Set<PGPSignature> dropped)
+            throws IOException {
+        for (PGPSignature signature : signatures) {
+            if (!dropped.contains(signature)) {
+                signature.encode(out);
+            }
+        }
+        return !dropped.isEmpty();
+    }
+
+    /**
+     * Return the third-party signatures which exceed the given limits, leaving the most recent ones.
+     * Key revocations and other third-party signatures are limited separately.
+     */
+    private static Set<PGPSignature> droppedThirdPartySignatures(List<PGPSignature> signatures,
+                                                                 long primaryKeyId,
+                                                                 OpenPgpFingerprint primaryKeyFingerprint,
+                                                                 int limit,
+                                                                 int revocationLimit) {
+        List<PGPSignature> thirdPartySignatures = new ArrayList<>();
+        List<PGPSignature> thirdPartyRevocations = new ArrayList<>();
+        for (PGPSignature signature : signatures) {
+            if (SignatureUtils.wasPossiblyIssuedBy(primaryKeyId, primaryKeyFingerprint, signature)) {
+                continue;
+            }
+            int type = signature.getSignatureType();
+            if (type == SignatureType.KEY_REVOCATION.getCode() || type == SignatureType.SUBKEY_REVOCATION.getCode()) {
+                thirdPartyRevocations.add(signature);
+            } else {
+                thirdPartySignatures.add(signature);
+            }
+        }
+        if (thirdPartySignatures.size() <= limit && thirdPartyRevocations.size() <= revocationLimit) {
+            return Collections.emptySet();
+        }
+
+        Set<PGPSignature> dropped = Collections.newSetFromMap(new IdentityHashMap<PGPSignature, Boolean>());
+        addExceeding(dropped, thirdPartySignatures, limit);
+        addExceeding(dropped, thirdPartyRevocations, revocationLimit);
+        return dropped;
+    }
+
+    private static void addExceeding(Set<PGPSignature> dropped, List<PGPSignature> signatures, int limit) {
+        if (signatures.size() <= limit) {
+            return;
+        }
+        Collections.sort(signatures,
+                new SignatureCreationDateComparator(SignatureCreationDateComparator.Order.NEW_TO_OLD));
+        dropped.addAll(signatures.subList(limit, signatures.size()));
+    }
+
+    private static List<PGPSignature> toList(Iterator<PGPSignature> iterator) {
+        List<PGPSignature> list = new ArrayList<>();
+        if (iterator == null) {
+            return list;
+        }
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
+        }
+        return list;
+    }
+
+    private static boolean containsUserId(List<byte[]> userIds, byte[] userId) {
+        for (byte[] existing : userIds) {
+            if (Arrays.equals(existing, userId)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -51,6 +51,9 @@ public final class Policy {
 
     private boolean enableKeyParameterValidation = false;
 
+    private ThirdPartyCertificationLimits thirdPartyCertificationLimits =
+            ThirdPartyCertificationLimits.defaultThirdPartyCertificationLimits();
+
     public enum SignerUserIdValidationLevel {
         /**
          * PGPainless will verify {@link org.bouncycastle.bcpg.sig.SignerUserID} subpackets in signatures strictly.
@@ -651,6 +654,133 @@ public final class Policy {
         }
     }
 
+    /**
+     * Limits for the number of third-party signatures which are retained per component of a certificate when
+     * importing certificates from untrusted sources.
+     * Third-party signatures are signatures, which were not issued by the primary key of the certificate,
+     * e.g. certifications of user-ids by other keys.
+     * Publicly writable keyservers allowed attackers to flood certificates with tens of thousands of such signatures,
+     * which makes parsing and evaluating the certificates very expensive.
+     *
+     * @see org.pgpainless.key.util.KeyRingUtils#limitThirdPartyCertifications(org.bouncycastle.openpgp.PGPKeyRing, Policy)
+     */
+    public static final class ThirdPartyCertificationLimits {
+
+        /**
+         * Limit value which disables the limit.
+         */
+        public static final int UNLIMITED = Integer.MAX_VALUE;
+
+        /**
+         * Default maximum number of third-party key revocations retained per key.
+         */
+        public static final int DEFAULT_MAX_REVOCATIONS_PER_KEY = 10;
+
+        private final int maxPerUserId;
+        private final int maxPerUserAttribute;
+        private final int maxPerKey;
+        private final int maxRevocationsPerKey;
+
+        /**
+         * Create custom limits, retaining up to {@link #DEFAULT_MAX_REVOCATIONS_PER_KEY} third-party key revocations
+         * per key.
+         *
+         * @param maxPerUserId maximum number of third-party signatures per user-id
+         * @param maxPerUserAttribute maximum number of third-party signatures per user-attribute
+         * @param maxPerKey maximum number of third-party signatures directly on the primary key or a subkey
+         */
+        public ThirdPartyCertificationLimits(int maxPerUserId, int maxPerUserAttribute, int maxPerKey) {
+            this(maxPerUserId, maxPerUserAttribute, maxPerKey, DEFAULT_MAX_REVOCATIONS_PER_KEY);
+        }
+
+        /**
+         * Create custom limits.
+         *
+         * @param maxPerUserId maximum number of third-party signatures per user-id
+         * @param maxPerUserAttribute maximum number of third-party signatures per user-attribute
+         * @param maxPerKey maximum number of third-party signatures directly on the primary key or a subkey
+         * @param maxRevocationsPerKey maximum number of third-party key revocations on the primary key or a subkey
+         */
+        public ThirdPartyCertificationLimits(int maxPerUserId, int maxPerUserAttribute, int maxPerKey,
+                                             int maxRevocationsPerKey) {
+            if (maxPerUserId < 0 || maxPerUserAttribute < 0 || maxPerKey < 0 || maxRevocationsPerKey < 0) {
+                throw new IllegalArgumentException("Third-party certification limits cannot be negative.");
+            }
+            this.maxPerUserId = maxPerUserId;
+            this.maxPerUserAttribute = maxPerUserAttribute;
+            this.maxPerKey = maxPerKey;
+            this.maxRevocationsPerKey = maxRevocationsPerKey;
+        }
+
+        /**
+         * Return the maximum number of third-party signatures retained per user-id.
+         *
+         * @return limit
+         */
+        public int getMaxPerUserId() {
+            return maxPerUserId;
+        }
+
+        /**
+         * Return the maximum number of third-party signatures retained per user-attribute.
+         *
+         * @return limit
+         */
+        public int getMaxPerUserAttribute() {
+            return maxPerUserAttribute;
+        }
+
+        /**
+         * Return the maximum number of third-party signatures retained directly on the primary key or a subkey.
+         * Key revocations are not counted, see {@link #getMaxRevocationsPerKey()}.
+         *
+         * @return limit
+         */
+        public int getMaxPerKey() {
+            return maxPerKey;
+        }
+
+        /**
+         * Return the maximum number of third-party key revocations retained on the primary key or a subkey.
+         * Key revocations are limited separately, since they might have been issued by a designated revoker.
+         *
+         * @return limit
+         */
+        public int getMaxRevocationsPerKey() {
+            return maxRevocationsPerKey;
+        }
+
+        /**
+         * Return PGPainless' default limits, which retain up to 1000 third-party signatures per user-id, up to
+         * 100 third-party signatures per user-attribute and per key, and up to
+         * {@link #DEFAULT_MAX_REVOCATIONS_PER_KEY} third-party key revocations per key.
+         *
+         * @return default limits
+         */
+        public static ThirdPartyCertificationLimits defaultThirdPartyCertificationLimits() {
+            return new ThirdPartyCertificationLimits(1000, 100, 100);
+        }
+
+        /**
+         * Return limits which retain all third-party signatures.
+         *
+         * @return unlimited limits
+         */
+        public static ThirdPartyCertificationLimits unlimited() {
+            return new ThirdPartyCertificationLimits(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED);
+        }
+
+        /**
+         * Return limits which drop all third-party signatures, except for up to
+         * {@link #DEFAULT_MAX_REVOCATIONS_PER_KEY} key revocations per key.
+         *
+         * @return limits dropping third-party signatures
+         */
+        public static ThirdPartyCertificationLimits noThirdPartyCertifications() {
+            return new ThirdPartyCertificationLimits(0, 0, 0);
+        }
+    }
+
     /**
      * Return the {@link NotationRegistry} of PGPainless.
      * The notation registry is used to decide, whether a Notation is known or not.
@@ -730,4 +860,30 @@ public final class Policy {
     public boolean isEnableKeyParameterValidation() {
         return enableKeyParameterValidation;
     }
+
+    /**
+     * Return the limits for the number of third-party signatures per certificate component, which are applied when
+     * third-party certifications are limited on import.
+     * By default, this value is {@link ThirdPartyCertificationLimits#defaultThirdPartyCertificationLimits()}.
+     *
+     * @return third-party certification limits
+     */
+    public ThirdPartyCertificationLimits getThirdPartyCertificationLimits() {
+        return thirdPartyCertificationLimits;
+    }
+
+    /**
+     * Set the limits for the number of third-party signatures per certificate component, which are applied when
+     * third-party certifications are limited on import.
+     *
+     * @param limits third-party certification limits
+     * @return policy instance
+     */
+    public Policy setThirdPartyCertificationLimits(ThirdPartyCertificationLimits limits) {
+        if (limits == null) {
+            throw new NullPointerException("ThirdPartyCertificationLimits cannot be null.");
+        }
+        this.thirdPartyCertificationLimits = limits;
+        return this;
+    }
 }
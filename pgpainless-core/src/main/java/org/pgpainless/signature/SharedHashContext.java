@@ -0,0 +1,340 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.signature;
+
+import java.io.OutputStream;
+
+import org.bouncycastle.crypto.CipherParameters;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.Signer;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPOnePassSignature;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.operator.PGPContentSigner;
+import org.bouncycastle.openpgp.operator.PGPContentSignerBuilder;
+import org.bouncycastle.openpgp.operator.PGPContentVerifier;
+import org.bouncycastle.openpgp.operator.PGPContentVerifierBuilder;
+import org.bouncycastle.openpgp.operator.PGPContentVerifierBuilderProvider;
+import org.bouncycastle.openpgp.operator.bc.BcPGPKeyConverter;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Memoable;
+import org.pgpainless.implementation.BcImplementationFactory;
+import org.pgpainless.implementation.BcSignerFactory;
+import org.pgpainless.implementation.ImplementationFactory;
+
+/**
+ * Hash context, which is shared by multiple signatures with the same hash algorithm and signature type.
+ * The signed data is only hashed once. When a signature is generated or verified, the state of the shared digest
+ * is copied, and the signature trailer is only hashed into the copy.
+ *
+ * Signatures of type {@link PGPSignature#CANONICAL_TEXT_DOCUMENT} are hashed with line endings normalized
+ * to CR/LF, the same way BC does it.
+ */
+public final class SharedHashContext {
+
+    private final Digest digest;
+    private final int hashAlgorithm;
+    private final boolean canonicalText;
+    private byte lastb;
+
+    private SharedHashContext(Digest digest, int hashAlgorithm, boolean canonicalText) {
+        this.digest = digest;
+        this.hashAlgorithm = hashAlgorithm;
+        this.canonicalText = canonicalText;
+    }
+
+    /**
+     * Return true, if signatures with the given public key and hash algorithm can be generated or verified using a
+     * shared hash context.
+     * Shared hash contexts are built on BCs lightweight API, so they are only used if the configured
+     * {@link ImplementationFactory} is the {@link BcImplementationFactory}. Otherwise, signatures are processed
+     * individually by the configured implementation.
+     *
+     * @param keyAlgorithm public key algorithm id
+     * @param hashAlgorithm hash algorithm id
+     * @return true if a shared hash context can be used
+     */
+    public static boolean isSupported(int keyAlgorithm, int hashAlgorithm) {
+        return ImplementationFactory.getInstance() instanceof BcImplementationFactory &&
+                BcSignerFactory.isSupportedKeyAlgorithm(keyAlgorithm) &&
+                BcSignerFactory.createDigest(hashAlgorithm) != null;
+    }
+
+    /**
+     * Create a shared hash context for signatures with the given hash algorithm and signature type.
+     *
+     * @param hashAlgorithm hash algorithm id
+     * @param signatureType signature type
+     * @return hash context, or null if the hash algorithm is not supported
+     */
+    public static SharedHashContext create(int hashAlgorithm, int signatureType) {
+        Digest digest = BcSignerFactory.createDigest(hashAlgorithm);
+        if (digest == null) {
+            return null;
+        }
+        return new SharedHashContext(digest, hashAlgorithm, signatureType == PGPSignature.CANONICAL_TEXT_DOCUMENT);
+    }
+
+    /**
+     * Hash the given data.
+     *
+     * @param b buffer
+     * @param off offset
+     * @param len length
+     */
+    public void update(byte[] b, int off, int len) {
+        if (!canonicalText) {
+            digest.update(b, off, len);
+            return;
+        }
+
+        for (int i = off; i < off + len; i++) {
+            byte c = b[i];
+            if (c == '\r') {
+                digest.update((byte) '\r');
+                digest.update((byte) '\n');
+            } else if (c == '\n') {
+                if (lastb != '\r') {
+                    digest.update((byte) '\r');
+                    digest.update((byte) '\n');
+                }
+            } else {
+                digest.update(c);
+            }
+            lastb = c;
+        }
+    }
+
+    /**
+     * Initialize the given signature with a copy of the current state of the hash context.
+     * The signature can then be verified without updating it with the signed data.
+     *
+     * @param signature signature
+     * @param verificationKey verification key
+     * @throws PGPException if the signature cannot be initialized
+     */
+    public void initialize(PGPSignature signature, PGPPublicKey verificationKey) throws PGPException {
+        signature.init(new ForkedVerifierBuilderProvider(fork()), verificationKey);
+    }
+
+    /**
+     * Initialize the given one-pass-signature with a copy of the current state of the hash context.
+     *
+     * @param onePassSignature one-pass-signature
+     * @param verificationKey verification key
+     * @throws PGPException if the one-pass-signature cannot be initialized
+     */
+    public void initialize(PGPOnePassSignature onePassSignature, PGPPublicKey verificationKey) throws PGPException {
+        onePassSignature.init(new ForkedVerifierBuilderProvider(fork()), verificationKey);
+    }
+
+    /**
+     * Return a {@link PGPContentSignerBuilder}, which creates signers operating on a copy of the current state
+     * of the hash context.
+     * A {@link org.bouncycastle.openpgp.PGPSignatureGenerator} using this builder can be used to generate
+     * a signature without updating it with the signed data.
+     *
+     * @return content signer builder
+     */
+    public PGPContentSignerBuilder getContentSignerBuilder() {
+        return new ForkedSignerBuilder();
+    }
+
+    private ForkedDigest fork() {
+        return new ForkedDigest((Digest) ((Memoable) digest).copy());
+    }
+
+    private final class ForkedSignerBuilder implements PGPContentSignerBuilder {
+
+        private final BcPGPKeyConverter keyConverter = new BcPGPKeyConverter();
+
+        @Override
+        public PGPContentSigner build(int signatureType, PGPPrivateKey privateKey) throws PGPException {
+            int keyAlgorithm = privateKey.getPublicKeyPacket().getAlgorithm();
+            CipherParameters keyParam = keyConverter.getPrivateKey(privateKey);
+            ForkedDigest forkedDigest = fork();
+            Signer signer = BcSignerFactory.createSigner(keyAlgorithm, forkedDigest, keyParam);
+            signer.init(true, keyParam);
+
+            return new PGPContentSigner() {
+                @Override
+                public OutputStream getOutputStream() {
+                    return new SignerOutputStream(signer);
+                }
+
+                @Override
+                public byte[] getSignature() {
+                    try {
+                        return signer.generateSignature();
+                    } catch (CryptoException e) {
+                        throw new IllegalStateException("unable to create signature", e);
+                    }
+                }
+
+                @Override
+                public byte[] getDigest() {
+                    return forkedDigest.getResult();
+                }
+
+                @Override
+                public int getType() {
+                    return signatureType;
+                }
+
+                @Override
+                public int getHashAlgorithm() {
+                    return hashAlgorithm;
+                }
+
+                @Override
+                public int getKeyAlgorithm() {
+                    return keyAlgorithm;
+                }
+
+                @Override
+                public long getKeyID() {
+                    return privateKey.getKeyID();
+                }
+            };
+        }
+    }
+
+    private static final class ForkedVerifierBuilderProvider implements PGPContentVerifierBuilderProvider {
+
+        private final BcPGPKeyConverter keyConverter = new BcPGPKeyConverter();
+        private final Digest digest;
+
+        ForkedVerifierBuilderProvider(Digest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public PGPContentVerifierBuilder get(int keyAlgorithm, int hashAlgorithm) {
+            return new PGPContentVerifierBuilder() {
+                @Override
+                public PGPContentVerifier build(PGPPublicKey publicKey) throws PGPException {
+                    CipherParameters keyParam = keyConverter.getPublicKey(publicKey);
+                    Signer signer = BcSignerFactory.createSigner(keyAlgorithm, digest, keyParam);
+                    signer.init(false, keyParam);
+                    return new ForkedVerifier(signer, keyAlgorithm, hashAlgorithm, publicKey.getKeyID());
+                }
+            };
+        }
+    }
+
+    private static final class ForkedVerifier implements PGPContentVerifier {
+
+        private final Signer signer;
+        private final int keyAlgorithm;
+        private final int hashAlgorithm;
+        private final long keyId;
+
+        ForkedVerifier(Signer signer, int keyAlgorithm, int hashAlgorithm, long keyId) {
+            this.signer = signer;
+            this.keyAlgorithm = keyAlgorithm;
+            this.hashAlgorithm = hashAlgorithm;
+            this.keyId = keyId;
+        }
+
+        @Override
+        public int getHashAlgorithm() {
+            return hashAlgorithm;
+        }
+
+        @Override
+        public int getKeyAlgorithm() {
+            return keyAlgorithm;
+        }
+
+        @Override
+        public long getKeyID() {
+            return keyId;
+        }
+
+        @Override
+        public boolean verify(byte[] expected) {
+            return signer.verifySignature(expected);
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new SignerOutputStream(signer);
+        }
+    }
+
+    private static final class SignerOutputStream extends OutputStream {
+
+        private final Signer signer;
+
+        SignerOutputStream(Signer signer) {
+            this.signer = signer;
+        }
+
+        @Override
+        public void write(int b) {
+            signer.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            signer.update(b, off, len);
+        }
+    }
+
+    /**
+     * Copy of the shared digest.
+     * Since BCs signers reset their digest upon initialization, resetting is ignored.
+     * The final hash value is kept, since {@link PGPContentSigner#getDigest()} is called after the signature
+     * was generated.
+     */
+    private static final class ForkedDigest implements Digest {
+
+        private final Digest digest;
+        private byte[] result;
+
+        ForkedDigest(Digest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public String getAlgorithmName() {
+            return digest.getAlgorithmName();
+        }
+
+        @Override
+        public int getDigestSize() {
+            return digest.getDigestSize();
+        }
+
+        @Override
+        public void update(byte in) {
+            digest.update(in);
+        }
+
+        @Override
+        public void update(byte[] in, int inOff, int len) {
+            digest.update(in, inOff, len);
+        }
+
+        @Override
+        public int doFinal(byte[] out, int outOff) {
+            int len = digest.doFinal(out, outOff);
+            result = Arrays.copyOfRange(out, outOff, outOff + len);
+            return len;
+        }
+
+        byte[] getResult() {
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            // Resetting would discard the copied state.
+        }
+    }
+}
@@ -336,6 +336,26 @@ public final class SignatureUtils {
         }
     }
 
+    /**
+     * Return true, if the signature was possibly issued by the key with the given key-id and fingerprint.
+     * This mirrors {@link org.pgpainless.signature.consumer.SignatureValidator#wasPossiblyMadeByKey(PGPPublicKey)},
+     * so signatures without any issuer information are considered to be possibly issued by the key.
+     *
+     * @param keyId key-id of the key
+     * @param fingerprint fingerprint of the key
+     * @param signature signature
+     * @return true if the signature was possibly issued by the key
+     */
+    public static boolean wasPossiblyIssuedBy(long keyId, @Nonnull OpenPgpFingerprint fingerprint,
+                                              @Nonnull PGPSignature signature) {
+        Long issuer = SignatureSubpacketsUtil.getIssuerKeyIdAsLong(signature);
+        if (issuer != null && issuer != keyId) {
+            return false;
+        }
+        OpenPgpFingerprint issuerFingerprint = SignatureSubpacketsUtil.getIssuerFingerprintAsOpenPgpFingerprint(signature);
+        return issuerFingerprint == null || issuerFingerprint.equals(fingerprint);
+    }
+
     /**
      * Extract all signatures from the given <pre>key</pre> which were issued by <pre>issuerKeyId</pre>
      * over <pre>userId</pre>.
@@ -5,15 +5,24 @@
 package org.pgpainless.signature.consumer;
 
 import static org.pgpainless.signature.consumer.SignatureVerifier.verifyOnePassSignature;
+import static org.pgpainless.util.CollectionUtils.iteratorToList;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import javax.annotation.Nullable;
 
 import org.bouncycastle.bcpg.sig.KeyFlags;
 import org.bouncycastle.bcpg.sig.SignerUserID;
@@ -57,6 +66,27 @@ public final class CertificateValidator {
      */
     public static boolean validateCertificate(PGPSignature signature, PGPPublicKeyRing signingKeyRing, Policy policy)
             throws SignatureValidationException {
+        return validateCertificate(signature, signingKeyRing, policy, null);
+    }
+
+    /**
+     * Check if the signing key was eligible to create the provided signature.
+     * If an {@link Executor} is given, the signatures on the individual user-ids and the signing subkey are
+     * verified concurrently, which speeds up the validation of certificates carrying many user-ids and signatures
+     * (e.g. certificates obtained from public keyservers).
+     *
+     * @param signature signature
+     * @param signingKeyRing signing key ring
+     * @param policy validation policy
+     * @param executor executor used to verify self-signatures concurrently, or null to verify them sequentially
+     * @return true if the signing key was eligible to create the signature
+     * @throws SignatureValidationException in case of a validation constraint violation
+     */
+    public static boolean validateCertificate(PGPSignature signature,
+                                              PGPPublicKeyRing signingKeyRing,
+                                              Policy policy,
+                                              @Nullable Executor executor)
+            throws SignatureValidationException {
 
         Map<PGPSignature, Exception> rejections = new ConcurrentHashMap<>();
         long keyId = SignatureUtils.determineIssuerKeyId(signature);
@@ -111,30 +141,31 @@ public final class CertificateValidator {
             }
         }
 
-        // User-ID signatures (certifications, revocations)
-        Iterator<String> userIds = primaryKey.getUserIDs();
+        // User-ID signatures (certifications, revocations) and subkey signatures (bindings, revocations)
         Map<String, List<PGPSignature>> userIdSignatures = new ConcurrentHashMap<>();
-        while (userIds.hasNext()) {
-            List<PGPSignature> signaturesOnUserId = new ArrayList<>();
-            String userId = userIds.next();
-            Iterator<PGPSignature> userIdSigs = primaryKey.getSignaturesForID(userId);
-            while (userIdSigs.hasNext()) {
-                PGPSignature userIdSig = userIdSigs.next();
-                if (userIdSig.getKeyID() != primaryKey.getKeyID()) {
-                    // Sig was made by external key, skip
-                    continue;
-                }
-                try {
-                    if (SignatureVerifier.verifySignatureOverUserId(userId, userIdSig, primaryKey, policy, signature.getCreationTime())) {
-                        signaturesOnUserId.add(userIdSig);
-                    }
-                } catch (SignatureValidationException e) {
-                    rejections.put(userIdSig, e);
-                    LOGGER.debug("Rejecting user-id signature: {}", e.getMessage(), e);
-                }
+        List<PGPSignature> subkeySigs;
+        List<String> userIds = iteratorToList(primaryKey.getUserIDs());
+        if (executor == null || userIds.isEmpty()) {
+            for (String userId : userIds) {
+                userIdSignatures.put(userId,
+                        verifyUserIdSignatures(userId, primaryKey, policy, signature.getCreationTime(), rejections));
+            }
+            subkeySigs = signingSubkey == primaryKey ? null :
+                    verifySubkeySignatures(signingSubkey, primaryKey, policy, signature.getCreationTime(), rejections);
+        } else {
+            Map<String, FutureTask<List<PGPSignature>>> userIdTasks = new LinkedHashMap<>();
+            for (String userId : userIds) {
+                FutureTask<List<PGPSignature>> task = new FutureTask<>(new UserIdSignaturesVerification(
+                        userId, primaryKey, policy, signature.getCreationTime(), rejections));
+                userIdTasks.put(userId, task);
+                executor.execute(task);
+            }
+            // Verify subkey signatures on the calling thread in the meantime
+            subkeySigs = signingSubkey == primaryKey ? null :
+                    verifySubkeySignatures(signingSubkey, primaryKey, policy, signature.getCreationTime(), rejections);
+            for (Map.Entry<String, FutureTask<List<PGPSignature>>> entry : userIdTasks.entrySet()) {
+                userIdSignatures.put(entry.getKey(), await(entry.getValue(), userIdTasks.values()));
             }
-            Collections.sort(signaturesOnUserId, new SignatureValidityComparator(SignatureCreationDateComparator.Order.NEW_TO_OLD));
-            userIdSignatures.put(userId, signaturesOnUserId);
         }
 
         boolean anyUserIdValid = false;
@@ -179,38 +210,6 @@ public final class CertificateValidator {
             }
         } // Subkey Binding Signatures / Subkey Revocation Signatures
         else {
-            List<PGPSignature> subkeySigs = new ArrayList<>();
-            Iterator<PGPSignature> bindingRevocations = signingSubkey.getSignaturesOfType(SignatureType.SUBKEY_REVOCATION.getCode());
-            while (bindingRevocations.hasNext()) {
-                PGPSignature revocation = bindingRevocations.next();
-                if (revocation.getKeyID() != primaryKey.getKeyID()) {
-                    // Subkey Revocation was not made by primary key, skip
-                    continue;
-                }
-                try {
-                    if (SignatureVerifier.verifySubkeyBindingRevocation(revocation, primaryKey, signingSubkey, policy, signature.getCreationTime())) {
-                        subkeySigs.add(revocation);
-                    }
-                } catch (SignatureValidationException e) {
-                    rejections.put(revocation, e);
-                    LOGGER.debug("Rejecting subkey revocation signature: {}", e.getMessage(), e);
-                }
-            }
-
-            Iterator<PGPSignature> bindingSigs = signingSubkey.getSignaturesOfType(SignatureType.SUBKEY_BINDING.getCode());
-            while (bindingSigs.hasNext()) {
-                PGPSignature bindingSig = bindingSigs.next();
-                try {
-                    if (SignatureVerifier.verifySubkeyBindingSignature(bindingSig, primaryKey, signingSubkey, policy, signature.getCreationTime())) {
-                        subkeySigs.add(bindingSig);
-                    }
-                } catch (SignatureValidationException e) {
-                    rejections.put(bindingSig, e);
-                    LOGGER.debug("Rejecting subkey binding signature: {}", e.getMessage(), e);
-                }
-            }
-
-            Collections.sort(subkeySigs, new SignatureValidityComparator(SignatureCreationDateComparator.Order.NEW_TO_OLD));
             if (subkeySigs.isEmpty()) {
                 throw new SignatureValidationException("Subkey is not bound.", rejections);
             }
@@ -237,6 +236,124 @@ public final class CertificateValidator {
         return true;
     }
 
+    /**
+     * Verify all self-signatures (certifications and revocations) on the given user-id.
+     *
+     * @param userId user-id
+     * @param primaryKey primary key
+     * @param policy policy
+     * @param referenceDate reference date
+     * @param rejections map to which rejected signatures are added
+     * @return list of valid signatures, sorted from new to old
+     */
+    private static List<PGPSignature> verifyUserIdSignatures(String userId,
+                                                             PGPPublicKey primaryKey,
+                                                             Policy policy,
+                                                             Date referenceDate,
+                                                             Map<PGPSignature, Exception> rejections) {
+        List<PGPSignature> signaturesOnUserId = new ArrayList<>();
+        Iterator<PGPSignature> userIdSigs = primaryKey.getSignaturesForID(userId);
+        while (userIdSigs.hasNext()) {
+            PGPSignature userIdSig = userIdSigs.next();
+            if (userIdSig.getKeyID() != primaryKey.getKeyID()) {
+                // Sig was made by external key, skip
+                continue;
+            }
+            try {
+                if (SignatureVerifier.verifySignatureOverUserId(userId, userIdSig, primaryKey, policy, referenceDate)) {
+                    signaturesOnUserId.add(userIdSig);
+                }
+            } catch (SignatureValidationException e) {
+                rejections.put(userIdSig, e);
+                LOGGER.debug("Rejecting user-id signature: {}", e.getMessage(), e);
+            }
+        }
+        Collections.sort(signaturesOnUserId, new SignatureValidityComparator(SignatureCreationDateComparator.Order.NEW_TO_OLD));
+        return signaturesOnUserId;
+    }
+
+    /**
+     * Verify all binding signatures and binding revocations on the given subkey.
+     *
+     * @param subkey subkey
+     * @param primaryKey primary key
+     * @param policy policy
+     * @param referenceDate reference date
+     * @param rejections map to which rejected signatures are added
+     * @return list of valid signatures, sorted from new to old
+     */
+    private static List<PGPSignature> verifySubkeySignatures(PGPPublicKey subkey,
+                                                             PGPPublicKey primaryKey,
+                                                             Policy policy,
+                                                             Date referenceDate,
+                                                             Map<PGPSignature, Exception> rejections) {
+        List<PGPSignature> subkeySigs = new ArrayList<>();
+        Iterator<PGPSignature> bindingRevocations = subkey.getSignaturesOfType(SignatureType.SUBKEY_REVOCATION.getCode());
+        while (bindingRevocations.hasNext()) {
+            PGPSignature revocation = bindingRevocations.next();
+            if (revocation.getKeyID() != primaryKey.getKeyID()) {
+                // Subkey Revocation was not made by primary key, skip
+                continue;
+            }
+            try {
+                if (SignatureVerifier.verifySubkeyBindingRevocation(revocation, primaryKey, subkey, policy, referenceDate)) {
+                    subkeySigs.add(revocation);
+                }
+            } catch (SignatureValidationException e) {
+                rejections.put(revocation, e);
+                LOGGER.debug("Rejecting subkey revocation signature: {}", e.getMessage(), e);
+            }
+        }
+
+        Iterator<PGPSignature> bindingSigs = subkey.getSignaturesOfType(SignatureType.SUBKEY_BINDING.getCode());
+        while (bindingSigs.hasNext()) {
+            PGPSignature bindingSig = bindingSigs.next();
+            try {
+                if (SignatureVerifier.verifySubkeyBindingSignature(bindingSig, primaryKey, subkey, policy, referenceDate)) {
+                    subkeySigs.add(bindingSig);
+                }
+            } catch (SignatureValidationException e) {
+                rejections.put(bindingSig, e);
+                LOGGER.debug("Rejecting subkey binding signature: {}", e.getMessage(), e);
+            }
+        }
+
+        Collections.sort(subkeySigs, new SignatureValidityComparator(SignatureCreationDateComparator.Order.NEW_TO_OLD));
+        return subkeySigs;
+    }
+
+    /**
+     * Wait for the given task to complete and return its result.
+     * If the calling thread is interrupted while waiting, all tasks are cancelled and validation fails.
+     *
+     * @param task task
+     * @param allTasks all tasks of the current validation
+     * @param <T> result type
+     * @return result of the task
+     * @throws SignatureValidationException if the calling thread was interrupted
+     */
+    private static <T> T await(FutureTask<T> task, Collection<? extends Future<?>> allTasks)
+            throws SignatureValidationException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            for (Future<?> future : allTasks) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new SignatureValidationException("Interrupted while validating certificate.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SignatureValidationException("Could not verify user-id signatures.", (Exception) cause);
+        }
+    }
+
     /**
      * Validate the given signing key and then verify the given signature while parsing out the signed data.
      * Uninitialized means that no signed data has been read and the hash generators state has not yet been updated.
@@ -272,7 +389,26 @@ public final class CertificateValidator {
      */
     public static boolean validateCertificateAndVerifyInitializedSignature(PGPSignature signature, PGPPublicKeyRing verificationKeys, Policy policy)
             throws SignatureValidationException {
-        validateCertificate(signature, verificationKeys, policy);
+        return validateCertificateAndVerifyInitializedSignature(signature, verificationKeys, policy, null);
+    }
+
+    /**
+     * Validate the signing key and the given initialized signature.
+     * Initialized means that the signatures hash generator has already been updated by reading the signed data completely.
+     *
+     * @param signature initialized signature
+     * @param verificationKeys key ring containing the verification key
+     * @param policy validation policy
+     * @param executor executor used to verify self-signatures concurrently, or null
+     * @return true if the signature is valid, false otherwise
+     * @throws SignatureValidationException in case of a validation constraint violation
+     */
+    public static boolean validateCertificateAndVerifyInitializedSignature(PGPSignature signature,
+                                                                           PGPPublicKeyRing verificationKeys,
+                                                                           Policy policy,
+                                                                           @Nullable Executor executor)
+            throws SignatureValidationException {
+        validateCertificate(signature, verificationKeys, policy, executor);
         long keyId = SignatureUtils.determineIssuerKeyId(signature);
         PGPPublicKey signingKey = verificationKeys.getPublicKey(keyId);
         SignatureVerifier.verifyInitializedSignature(signature, signingKey, policy, signature.getCreationTime());
@@ -289,10 +425,64 @@ public final class CertificateValidator {
      */
     public static boolean validateCertificateAndVerifyOnePassSignature(OnePassSignatureCheck onePassSignature, Policy policy)
             throws SignatureValidationException {
+        return validateCertificateAndVerifyOnePassSignature(onePassSignature, policy, null);
+    }
+
+    /**
+     * Validate the signing key certificate and the given {@link OnePassSignatureCheck}.
+     *
+     * @param onePassSignature corresponding one-pass-signature
+     * @param policy policy
+     * @param executor executor used to verify self-signatures concurrently, or null
+     * @return true if the certificate is valid and the signature is correct, false otherwise.
+     * @throws SignatureValidationException in case of a validation error
+     */
+    public static boolean validateCertificateAndVerifyOnePassSignature(OnePassSignatureCheck onePassSignature,
+                                                                       Policy policy,
+                                                                       @Nullable Executor executor)
+            throws SignatureValidationException {
         PGPSignature signature = onePassSignature.getSignature();
-        validateCertificate(signature, onePassSignature.getVerificationKeys(), policy);
+        validateCertificate(signature, onePassSignature.getVerificationKeys(), policy, executor);
         PGPPublicKey signingKey = onePassSignature.getVerificationKeys().getPublicKey(signature.getKeyID());
         verifyOnePassSignature(signature, signingKey, onePassSignature, policy);
         return true;
     }
+
+    /**
+     * Verification of the self-signatures on a single user-id.
+     * The task uses the {@link SignatureVerificationCache} of the thread which created it, so that a cache installed
+     * via {@link SignatureVerificationCache#setThreadInstance(SignatureVerificationCache)} is also used by the
+     * executor's threads.
+     */
+    private static final class UserIdSignaturesVerification implements Callable<List<PGPSignature>> {
+
+        private final String userId;
+        private final PGPPublicKey primaryKey;
+        private final Policy policy;
+        private final Date referenceDate;
+        private final Map<PGPSignature, Exception> rejections;
+        private final SignatureVerificationCache cache = SignatureVerificationCache.getInstance();
+
+        UserIdSignaturesVerification(String userId,
+                                     PGPPublicKey primaryKey,
+                                     Policy policy,
+                                     Date referenceDate,
+                                     Map<PGPSignature, Exception> rejections) {
+            this.userId = userId;
+            this.primaryKey = primaryKey;
+            this.policy = policy;
+            this.referenceDate = referenceDate;
+            this.rejections = rejections;
+        }
+
+        @Override
+        public List<PGPSignature> call() {
+            SignatureVerificationCache previous = SignatureVerificationCache.setThreadInstance(cache);
+            try {
+                return verifyUserIdSignatures(userId, primaryKey, policy, referenceDate, rejections);
+            } finally {
+                SignatureVerificationCache.setThreadInstance(previous);
+            }
+        }
+    }
 }
@@ -0,0 +1,269 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.signature.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.openpgp.PGPKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.pgpainless.algorithm.SignatureType;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.signature.SignatureUtils;
+
+/**
+ * Index of the signatures of a {@link PGPKeyRing}.
+ *
+ * The index is built in a single pass over the key ring, classifying every signature by the component it is
+ * attached to (key or user-id), its {@link SignatureType} and whether it was possibly issued by the primary key
+ * (self-signature) or by another key (third-party signature).
+ * Within each bucket, signatures are sorted by ascending creation time, which is extracted only once per signature.
+ *
+ * The {@link SignaturePicker} methods which accept a {@link SignatureIndex} only consider the matching buckets,
+ * so that picking the signatures of all components of a certificate does not repeatedly iterate, filter and sort
+ * all signatures of the certificate.
+ * This is especially beneficial for certificates carrying many third-party certifications.
+ *
+ * Instances are immutable and thread-safe.
+ */
+public final class SignatureIndex {
+
+    private static final int CERTIFICATIONS = -1;
+
+    private final PGPKeyRing keyRing;
+    private final Map<Long, Map<Integer, List<PGPSignature>>> keySelfSignatures = new HashMap<>();
+    private final Map<Long, Map<Integer, List<PGPSignature>>> keyThirdPartySignatures = new HashMap<>();
+    private final Map<String, Map<Integer, List<PGPSignature>>> userIdSelfSignatures = new HashMap<>();
+    private final Map<String, Map<Integer, List<PGPSignature>>> userIdThirdPartySignatures = new HashMap<>();
+
+    private SignatureIndex(PGPKeyRing keyRing) {
+        this.keyRing = keyRing;
+        PGPPublicKey primaryKey = keyRing.getPublicKey();
+        long primaryKeyId = primaryKey.getKeyID();
+        OpenPgpFingerprint primaryKeyFingerprint = OpenPgpFingerprint.of(primaryKey);
+
+        Iterator<PGPPublicKey> keys = keyRing.getPublicKeys();
+        while (keys.hasNext()) {
+            PGPPublicKey key = keys.next();
+            Buckets buckets = new Buckets();
+            Iterator<PGPSignature> signatures = key.getKeySignatures();
+            while (signatures.hasNext()) {
+                buckets.add(signatures.next(), primaryKeyId, primaryKeyFingerprint);
+            }
+            buckets.sortInto(key.getKeyID(), keySelfSignatures, keyThirdPartySignatures);
+        }
+
+        Iterator<String> userIds = primaryKey.getUserIDs();
+        while (userIds.hasNext()) {
+            String userId = userIds.next();
+            if (userIdSelfSignatures.containsKey(userId)) {
+                // duplicate user-id, getSignaturesForID() already returned its signatures
+                continue;
+            }
+            Buckets buckets = new Buckets();
+            Iterator<PGPSignature> signatures = primaryKey.getSignaturesForID(userId);
+            while (signatures.hasNext()) {
+                buckets.add(signatures.next(), primaryKeyId, primaryKeyFingerprint);
+            }
+            buckets.sortInto(userId, userIdSelfSignatures, userIdThirdPartySignatures);
+        }
+    }
+
+    /**
+     * Index the signatures of the given key ring.
+     *
+     * @param keyRing key ring
+     * @return index
+     */
+    public static SignatureIndex of(@Nonnull PGPKeyRing keyRing) {
+        return new SignatureIndex(keyRing);
+    }
+
+    /**
+     * Return the indexed key ring.
+     *
+     * @return key ring
+     */
+    public PGPKeyRing getKeyRing() {
+        return keyRing;
+    }
+
+    /**
+     * Return true if the given user-id is present on the primary key of the indexed key ring.
+     *
+     * @param userId user-id
+     * @return true if the user-id is present
+     */
+    public boolean hasUserId(@Nonnull String userId) {
+        return userIdSelfSignatures.containsKey(userId);
+    }
+
+    /**
+     * Return the signatures of the given type on the key with the given key-id, which were possibly issued by the
+     * primary key, sorted by ascending creation time.
+     * For the primary key, these are direct-key signatures and key revocations,
+     * for subkeys these are subkey binding signatures and subkey revocations.
+     *
+     * @param keyId key-id of the key carrying the signatures
+     * @param type signature type
+     * @return unmodifiable list of signatures
+     */
+    public @Nonnull List<PGPSignature> getSelfSignatures(long keyId, @Nonnull SignatureType type) {
+        return get(keySelfSignatures, keyId, type.getCode());
+    }
+
+    /**
+     * Return the signatures of the given type on the key with the given key-id, which were issued by other keys than
+     * the primary key, sorted by ascending creation time.
+     *
+     * @param keyId key-id of the key carrying the signatures
+     * @param type signature type
+     * @return unmodifiable list of signatures
+     */
+    public @Nonnull List<PGPSignature> getThirdPartySignatures(long keyId, @Nonnull SignatureType type) {
+        return get(keyThirdPartySignatures, keyId, type.getCode());
+    }
+
+    /**
+     * Return the signatures of the given type on the given user-id, which were possibly issued by the primary key,
+     * sorted by ascending creation time.
+     *
+     * @param userId user-id
+     * @param type signature type
+     * @return unmodifiable list of signatures
+     */
+    public @Nonnull List<PGPSignature> getSelfSignatures(@Nonnull String userId, @Nonnull SignatureType type) {
+        return get(userIdSelfSignatures, userId, type.getCode());
+    }
+
+    /**
+     * Return the signatures of the given type on the given user-id, which were issued by other keys than the
+     * primary key, sorted by ascending creation time.
+     *
+     * @param userId user-id
+     * @param type signature type
+     * @return unmodifiable list of signatures
+     */
+    public @Nonnull List<PGPSignature> getThirdPartySignatures(@Nonnull String userId, @Nonnull SignatureType type) {
+        return get(userIdThirdPartySignatures, userId, type.getCode());
+    }
+
+    /**
+     * Return the certifications (generic, persona, casual or positive) on the given user-id, which were possibly
+     * issued by the primary key, sorted by ascending creation time.
+     *
+     * @param userId user-id
+     * @return unmodifiable list of certification self-signatures
+     */
+    public @Nonnull List<PGPSignature> getSelfCertifications(@Nonnull String userId) {
+        return get(userIdSelfSignatures, userId, CERTIFICATIONS);
+    }
+
+    /**
+     * Return the certifications (generic, persona, casual or positive) on the given user-id, which were issued by
+     * other keys than the primary key, sorted by ascending creation time.
+     *
+     * @param userId user-id
+     * @return unmodifiable list of third-party certifications
+     */
+    public @Nonnull List<PGPSignature> getThirdPartyCertifications(@Nonnull String userId) {
+        return get(userIdThirdPartySignatures, userId, CERTIFICATIONS);
+    }
+
+    private static <K> List<PGPSignature> get(Map<K, Map<Integer, List<PGPSignature>>> index, K component, int type) {
+        Map<Integer, List<PGPSignature>> buckets = index.get(component);
+        if (buckets == null) {
+            return Collections.emptyList();
+        }
+        List<PGPSignature> signatures = buckets.get(type);
+        return signatures == null ? Collections.<PGPSignature>emptyList() : signatures;
+    }
+
+    private static boolean isCertification(int type) {
+        return type == SignatureType.GENERIC_CERTIFICATION.getCode()
+                || type == SignatureType.NO_CERTIFICATION.getCode()
+                || type == SignatureType.CASUAL_CERTIFICATION.getCode()
+                || type == SignatureType.POSITIVE_CERTIFICATION.getCode();
+    }
+
+    /**
+     * Signatures of a single component, bucketed by issuer and type.
+     */
+    private static final class Buckets {
+
+        private final Map<Integer, List<Indexed>> self = new HashMap<>();
+        private final Map<Integer, List<Indexed>> thirdParty = new HashMap<>();
+
+        void add(PGPSignature signature, long primaryKeyId, OpenPgpFingerprint primaryKeyFingerprint) {
+            Map<Integer, List<Indexed>> target = SignatureUtils.wasPossiblyIssuedBy(
+                    primaryKeyId, primaryKeyFingerprint, signature) ? self : thirdParty;
+            Indexed indexed = new Indexed(signature);
+            int type = signature.getSignatureType();
+            addTo(target, type, indexed);
+            if (isCertification(type)) {
+                addTo(target, CERTIFICATIONS, indexed);
+            }
+        }
+
+        private static void addTo(Map<Integer, List<Indexed>> buckets, int type, Indexed indexed) {
+            List<Indexed> bucket = buckets.get(type);
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                buckets.put(type, bucket);
+            }
+            bucket.add(indexed);
+        }
+
+        <K> void sortInto(K component,
+                          Map<K, Map<Integer, List<PGPSignature>>> selfIndex,
+                          Map<K, Map<Integer, List<PGPSignature>>> thirdPartyIndex) {
+            selfIndex.put(component, sorted(self));
+            thirdPartyIndex.put(component, sorted(thirdParty));
+        }
+
+        private static Map<Integer, List<PGPSignature>> sorted(Map<Integer, List<Indexed>> buckets) {
+            Map<Integer, List<PGPSignature>> sorted = new HashMap<>();
+            for (Map.Entry<Integer, List<Indexed>> bucket : buckets.entrySet()) {
+                List<Indexed> entries = bucket.getValue();
+                // stable sort, equal to sorting with SignatureCreationDateComparator
+                Collections.sort(entries, Indexed.BY_CREATION_TIME);
+                List<PGPSignature> signatures = new ArrayList<>(entries.size());
+                for (Indexed entry : entries) {
+                    signatures.add(entry.signature);
+                }
+                sorted.put(bucket.getKey(), Collections.unmodifiableList(signatures));
+            }
+            return sorted;
+        }
+    }
+
+    /**
+     * Signature with its creation time, which is extracted only once.
+     */
+    private static final class Indexed {
+
+        static final Comparator<Indexed> BY_CREATION_TIME = new Comparator<Indexed>() {
+            @Override
+            public int compare(Indexed one, Indexed two) {
+                return one.creationTime < two.creationTime ? -1 : (one.creationTime == two.creationTime ? 0 : 1);
+            }
+        };
+
+        private final PGPSignature signature;
+        private final long creationTime;
+
+        Indexed(PGPSignature signature) {
+            this.signature = signature;
+            this.creationTime = signature.getCreationTime().getTime();
+        }
+    }
+}
@@ -49,8 +49,29 @@ public final class SignaturePicker {
      */
     public static PGPSignature pickCurrentRevocationSelfSignature(PGPKeyRing keyRing, Policy policy, Date validationDate) {
         PGPPublicKey primaryKey = keyRing.getPublicKey();
-
         List<PGPSignature> signatures = getSortedSignaturesOfType(primaryKey, SignatureType.KEY_REVOCATION);
+        return selectCurrentRevocationSelfSignature(signatures, primaryKey, policy, validationDate);
+    }
+
+    /**
+     * Pick the at validation date most recent valid key revocation signature from the given {@link SignatureIndex}.
+     *
+     * @param index signature index of the key ring
+     * @param policy policy
+     * @param validationDate date of signature validation
+     * @return most recent, valid key revocation signature
+     * @see #pickCurrentRevocationSelfSignature(PGPKeyRing, Policy, Date)
+     */
+    public static PGPSignature pickCurrentRevocationSelfSignature(SignatureIndex index, Policy policy, Date validationDate) {
+        PGPPublicKey primaryKey = index.getKeyRing().getPublicKey();
+        List<PGPSignature> signatures = index.getSelfSignatures(primaryKey.getKeyID(), SignatureType.KEY_REVOCATION);
+        return selectCurrentRevocationSelfSignature(signatures, primaryKey, policy, validationDate);
+    }
+
+    private static PGPSignature selectCurrentRevocationSelfSignature(List<PGPSignature> signatures,
+                                                                     PGPPublicKey primaryKey,
+                                                                     Policy policy,
+                                                                     Date validationDate) {
         PGPSignature mostCurrentValidSig = null;
 
         for (PGPSignature signature : signatures) {
@@ -80,6 +101,21 @@ public final class SignaturePicker {
         return pickCurrentDirectKeySignature(primaryKey, primaryKey, policy, validationDate);
     }
 
+    /**
+     * Pick the at validationDate most recent, valid direct key self-signature from the given {@link SignatureIndex}.
+     *
+     * @param index signature index of the key ring
+     * @param policy policy
+     * @param validationDate validation date
+     * @return direct-key self-signature
+     * @see #pickCurrentDirectKeySelfSignature(PGPKeyRing, Policy, Date)
+     */
+    public static PGPSignature pickCurrentDirectKeySelfSignature(SignatureIndex index, Policy policy, Date validationDate) {
+        PGPPublicKey primaryKey = index.getKeyRing().getPublicKey();
+        List<PGPSignature> signatures = index.getSelfSignatures(primaryKey.getKeyID(), SignatureType.DIRECT_KEY);
+        return selectCurrentDirectKeySignature(signatures, primaryKey, primaryKey, policy, validationDate);
+    }
+
     /**
      * Pick the at validationDate, latest, valid direct key signature made by signingKey on signedKey.
      * This method might return null, if there is no direct key self signature which is valid at validationDate.
@@ -92,7 +128,14 @@ public final class SignaturePicker {
      */
     public static PGPSignature pickCurrentDirectKeySignature(PGPPublicKey signingKey, PGPPublicKey signedKey, Policy policy, Date validationDate) {
         List<PGPSignature> directKeySignatures = getSortedSignaturesOfType(signedKey, SignatureType.DIRECT_KEY);
+        return selectCurrentDirectKeySignature(directKeySignatures, signingKey, signedKey, policy, validationDate);
+    }
 
+    private static PGPSignature selectCurrentDirectKeySignature(List<PGPSignature> directKeySignatures,
+                                                                PGPPublicKey signingKey,
+                                                                PGPPublicKey signedKey,
+                                                                Policy policy,
+                                                                Date validationDate) {
         PGPSignature mostRecentDirectKeySigBySigningKey = null;
         for (PGPSignature signature : directKeySignatures) {
             try {
@@ -123,6 +166,22 @@ public final class SignaturePicker {
         return pickLatestDirectKeySignature(primaryKey, primaryKey, policy, validationDate);
     }
 
+    /**
+     * Pick the at validationDate latest direct key self-signature from the given {@link SignatureIndex}.
+     * This method might return an expired signature.
+     *
+     * @param index signature index of the key ring
+     * @param policy policy
+     * @param validationDate validation date
+     * @return latest direct key signature
+     * @see #pickLatestDirectKeySignature(PGPKeyRing, Policy, Date)
+     */
+    public static PGPSignature pickLatestDirectKeySignature(SignatureIndex index, Policy policy, Date validationDate) {
+        PGPPublicKey primaryKey = index.getKeyRing().getPublicKey();
+        List<PGPSignature> signatures = index.getSelfSignatures(primaryKey.getKeyID(), SignatureType.DIRECT_KEY);
+        return selectLatestDirectKeySignature(signatures, primaryKey, primaryKey, policy, validationDate);
+    }
+
     /**
      * Pick the at validationDate latest direct key signature made by signingKey on signedKey.
      * This method might return an expired signature.
@@ -137,7 +196,14 @@ public final class SignaturePicker {
      */
     public static PGPSignature pickLatestDirectKeySignature(PGPPublicKey signingKey, PGPPublicKey signedKey, Policy policy, Date validationDate) {
         List<PGPSignature> signatures = getSortedSignaturesOfType(signedKey, SignatureType.DIRECT_KEY);
+        return selectLatestDirectKeySignature(signatures, signingKey, signedKey, policy, validationDate);
+    }
 
+    private static PGPSignature selectLatestDirectKeySignature(List<PGPSignature> signatures,
+                                                               PGPPublicKey signingKey,
+                                                               PGPPublicKey signedKey,
+                                                               Policy policy,
+                                                               Date validationDate) {
         PGPSignature latestDirectKeySignature = null;
         for (PGPSignature signature : signatures) {
             try {
@@ -173,7 +239,32 @@ public final class SignaturePicker {
     public static PGPSignature pickCurrentUserIdRevocationSignature(PGPKeyRing keyRing, String userId, Policy policy, Date validationDate) {
         PGPPublicKey primaryKey = keyRing.getPublicKey();
         List<PGPSignature> signatures = getSortedSignaturesOfType(primaryKey, SignatureType.CERTIFICATION_REVOCATION);
+        return selectCurrentUserIdRevocationSignature(signatures, keyRing, userId, policy, validationDate);
+    }
+
+    /**
+     * Pick the at validationDate most recent, valid user-id revocation signature from the given
+     * {@link SignatureIndex}.
+     * Only revocations attached to the given user-id are considered.
+     *
+     * @param index signature index of the key ring
+     * @param userId user-Id that gets revoked
+     * @param policy policy
+     * @param validationDate validation date
+     * @return revocation signature
+     * @see #pickCurrentUserIdRevocationSignature(PGPKeyRing, String, Policy, Date)
+     */
+    public static PGPSignature pickCurrentUserIdRevocationSignature(SignatureIndex index, String userId, Policy policy, Date validationDate) {
+        List<PGPSignature> signatures = index.getSelfSignatures(userId, SignatureType.CERTIFICATION_REVOCATION);
+        return selectCurrentUserIdRevocationSignature(signatures, index.getKeyRing(), userId, policy, validationDate);
+    }
 
+    private static PGPSignature selectCurrentUserIdRevocationSignature(List<PGPSignature> signatures,
+                                                                       PGPKeyRing keyRing,
+                                                                       String userId,
+                                                                       Policy policy,
+                                                                       Date validationDate) {
+        PGPPublicKey primaryKey = keyRing.getPublicKey();
         PGPSignature latestUserIdRevocation = null;
         for (PGPSignature signature : signatures) {
             PGPPublicKey signer = keyRing.getPublicKey(signature.getKeyID());
@@ -211,7 +302,31 @@ public final class SignaturePicker {
         List<PGPSignature> signatures = CollectionUtils.iteratorToList(userIdSigIterator);
 
         Collections.sort(signatures, new SignatureCreationDateComparator());
+        return selectCurrentUserIdCertificationSignature(signatures, primaryKey, userId, policy, validationDate);
+    }
 
+    /**
+     * Pick the at validationDate latest, valid certification self-signature for the given user-id from the given
+     * {@link SignatureIndex}.
+     *
+     * @param index signature index of the key ring
+     * @param userId userid
+     * @param policy policy
+     * @param validationDate validation date
+     * @return user-id certification
+     * @see #pickCurrentUserIdCertificationSignature(PGPKeyRing, String, Policy, Date)
+     */
+    public static PGPSignature pickCurrentUserIdCertificationSignature(SignatureIndex index, String userId, Policy policy, Date validationDate) {
+        PGPPublicKey primaryKey = index.getKeyRing().getPublicKey();
+        List<PGPSignature> signatures = index.getSelfCertifications(userId);
+        return selectCurrentUserIdCertificationSignature(signatures, primaryKey, userId, policy, validationDate);
+    }
+
+    private static PGPSignature selectCurrentUserIdCertificationSignature(List<PGPSignature> signatures,
+                                                                          PGPPublicKey primaryKey,
+                                                                          String userId,
+                                                                          Policy policy,
+                                                                          Date validationDate) {
         PGPSignature mostRecentUserIdCertification = null;
         for (PGPSignature signature : signatures) {
             if (primaryKey.getKeyID() != signature.getKeyID()) {
@@ -248,7 +363,33 @@ public final class SignaturePicker {
         Iterator<PGPSignature> userIdSigIterator = primaryKey.getSignaturesForID(userId);
         List<PGPSignature> signatures = CollectionUtils.iteratorToList(userIdSigIterator);
         Collections.sort(signatures, new SignatureCreationDateComparator());
+        return selectLatestUserIdCertificationSignature(signatures, primaryKey, userId, policy, validationDate);
+    }
 
+    /**
+     * Pick the at validationDate latest certification self-signature for the given user-id from the given
+     * {@link SignatureIndex}.
+     * This method might return an expired signature.
+     * Third-party certifications are not considered at all.
+     *
+     * @param index signature index of the key ring
+     * @param userId userid
+     * @param policy policy
+     * @param validationDate validation date
+     * @return user-id certification
+     * @see #pickLatestUserIdCertificationSignature(PGPKeyRing, String, Policy, Date)
+     */
+    public static PGPSignature pickLatestUserIdCertificationSignature(SignatureIndex index, String userId, Policy policy, Date validationDate) {
+        PGPPublicKey primaryKey = index.getKeyRing().getPublicKey();
+        List<PGPSignature> signatures = index.getSelfCertifications(userId);
+        return selectLatestUserIdCertificationSignature(signatures, primaryKey, userId, policy, validationDate);
+    }
+
+    private static PGPSignature selectLatestUserIdCertificationSignature(List<PGPSignature> signatures,
+                                                                         PGPPublicKey primaryKey,
+                                                                         String userId,
+                                                                         Policy policy,
+                                                                         Date validationDate) {
         PGPSignature latestUserIdCert = null;
         for (PGPSignature signature : signatures) {
             try {
@@ -286,6 +427,34 @@ public final class SignaturePicker {
         }
 
         List<PGPSignature> signatures = getSortedSignaturesOfType(subkey, SignatureType.SUBKEY_REVOCATION);
+        return selectCurrentSubkeyBindingRevocationSignature(signatures, primaryKey, subkey, policy, validationDate);
+    }
+
+    /**
+     * Pick the at validationDate most recent, valid subkey revocation signature from the given
+     * {@link SignatureIndex}.
+     *
+     * @param index signature index of the key ring
+     * @param subkey subkey
+     * @param policy policy
+     * @param validationDate validation date
+     * @return subkey revocation signature
+     * @see #pickCurrentSubkeyBindingRevocationSignature(PGPKeyRing, PGPPublicKey, Policy, Date)
+     */
+    public static PGPSignature pickCurrentSubkeyBindingRevocationSignature(SignatureIndex index, PGPPublicKey subkey, Policy policy, Date validationDate) {
+        PGPPublicKey primaryKey = index.getKeyRing().getPublicKey();
+        if (primaryKey.getKeyID() == subkey.getKeyID()) {
+            throw new IllegalArgumentException("Primary key cannot have subkey binding revocations.");
+        }
+        List<PGPSignature> signatures = index.getSelfSignatures(subkey.getKeyID(), SignatureType.SUBKEY_REVOCATION);
+        return selectCurrentSubkeyBindingRevocationSignature(signatures, primaryKey, subkey, policy, validationDate);
+    }
+
+    private static PGPSignature selectCurrentSubkeyBindingRevocationSignature(List<PGPSignature> signatures,
+                                                                              PGPPublicKey primaryKey,
+                                                                              PGPPublicKey subkey,
+                                                                              Policy policy,
+                                                                              Date validationDate) {
         PGPSignature latestSubkeyRevocation = null;
 
         for (PGPSignature signature : signatures) {
@@ -319,6 +488,34 @@ public final class SignaturePicker {
         }
 
         List<PGPSignature> subkeyBindingSigs = getSortedSignaturesOfType(subkey, SignatureType.SUBKEY_BINDING);
+        return selectCurrentSubkeyBindingSignature(subkeyBindingSigs, primaryKey, subkey, policy, validationDate);
+    }
+
+    /**
+     * Pick the at validationDate latest, valid subkey binding signature for the given subkey from the given
+     * {@link SignatureIndex}.
+     *
+     * @param index signature index of the key ring
+     * @param subkey subkey
+     * @param policy policy
+     * @param validationDate date of validation
+     * @return most recent valid subkey binding signature
+     * @see #pickCurrentSubkeyBindingSignature(PGPKeyRing, PGPPublicKey, Policy, Date)
+     */
+    public static PGPSignature pickCurrentSubkeyBindingSignature(SignatureIndex index, PGPPublicKey subkey, Policy policy, Date validationDate) {
+        PGPPublicKey primaryKey = index.getKeyRing().getPublicKey();
+        if (primaryKey.getKeyID() == subkey.getKeyID()) {
+            throw new IllegalArgumentException("Primary key cannot have subkey binding signature.");
+        }
+        List<PGPSignature> subkeyBindingSigs = index.getSelfSignatures(subkey.getKeyID(), SignatureType.SUBKEY_BINDING);
+        return selectCurrentSubkeyBindingSignature(subkeyBindingSigs, primaryKey, subkey, policy, validationDate);
+    }
+
+    private static PGPSignature selectCurrentSubkeyBindingSignature(List<PGPSignature> subkeyBindingSigs,
+                                                                    PGPPublicKey primaryKey,
+                                                                    PGPPublicKey subkey,
+                                                                    Policy policy,
+                                                                    Date validationDate) {
         PGPSignature mostCurrentValidSig = null;
 
         for (PGPSignature signature : subkeyBindingSigs) {
@@ -353,6 +550,35 @@ public final class SignaturePicker {
         }
 
         List<PGPSignature> signatures = getSortedSignaturesOfType(subkey, SignatureType.SUBKEY_BINDING);
+        return selectLatestSubkeyBindingSignature(signatures, primaryKey, subkey, policy, validationDate);
+    }
+
+    /**
+     * Pick the at validationDate latest subkey binding signature for the given subkey from the given
+     * {@link SignatureIndex}.
+     * This method might return an expired signature.
+     *
+     * @param index signature index of the key ring
+     * @param subkey subkey
+     * @param policy policy
+     * @param validationDate validationDate
+     * @return subkey binding signature
+     * @see #pickLatestSubkeyBindingSignature(PGPKeyRing, PGPPublicKey, Policy, Date)
+     */
+    public static PGPSignature pickLatestSubkeyBindingSignature(SignatureIndex index, PGPPublicKey subkey, Policy policy, Date validationDate) {
+        PGPPublicKey primaryKey = index.getKeyRing().getPublicKey();
+        if (primaryKey.getKeyID() == subkey.getKeyID()) {
+            throw new IllegalArgumentException("Primary key cannot have subkey binding signature.");
+        }
+        List<PGPSignature> signatures = index.getSelfSignatures(subkey.getKeyID(), SignatureType.SUBKEY_BINDING);
+        return selectLatestSubkeyBindingSignature(signatures, primaryKey, subkey, policy, validationDate);
+    }
+
+    private static PGPSignature selectLatestSubkeyBindingSignature(List<PGPSignature> signatures,
+                                                                   PGPPublicKey primaryKey,
+                                                                   PGPPublicKey subkey,
+                                                                   Policy policy,
+                                                                   Date validationDate) {
         PGPSignature latestSubkeyBinding = null;
 
         for (PGPSignature signature : signatures) {
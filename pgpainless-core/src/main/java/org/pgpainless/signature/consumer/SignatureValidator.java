@@ -4,6 +4,8 @@
 
 package org.pgpainless.signature.consumer;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
@@ -21,6 +23,7 @@ import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.openpgp.PGPSignatureList;
 import org.bouncycastle.openpgp.PGPSignatureSubpacketVector;
 import org.bouncycastle.openpgp.PGPUserAttributeSubpacketVector;
+import org.bouncycastle.util.Strings;
 import org.pgpainless.algorithm.HashAlgorithm;
 import org.pgpainless.algorithm.KeyFlag;
 import org.pgpainless.algorithm.PublicKeyAlgorithm;
@@ -476,12 +479,22 @@ public abstract class SignatureValidator {
      * @return validator
      */
     public static SignatureValidator correctSubkeyBindingSignature(PGPPublicKey primaryKey, PGPPublicKey subkey) {
-        return new SignatureValidator() {
+        return new CorrectnessValidator(CorrectnessValidator.SUBKEY_BINDING, primaryKey) {
+            @Override
+            byte[][] getSignedData() throws IOException {
+                return new byte[][] {subkey.getPublicKeyPacket().getEncodedContents()};
+            }
+
             @Override
             public void verify(PGPSignature signature) throws SignatureValidationException {
                 if (primaryKey.getKeyID() == subkey.getKeyID()) {
                     throw new SignatureValidationException("Primary key cannot be its own subkey.");
                 }
+                super.verify(signature);
+            }
+
+            @Override
+            void verifyCorrectness(PGPSignature signature) throws SignatureValidationException {
                 try {
                     signature.init(ImplementationFactory.getInstance()
                             .getPGPContentVerifierBuilderProvider(), primaryKey);
@@ -504,9 +517,14 @@ public abstract class SignatureValidator {
      * @return validator
      */
     public static SignatureValidator correctPrimaryKeyBindingSignature(PGPPublicKey primaryKey, PGPPublicKey subkey) {
-        return new SignatureValidator() {
+        return new CorrectnessValidator(CorrectnessValidator.PRIMARY_KEY_BINDING, subkey) {
             @Override
-            public void verify(PGPSignature signature) throws SignatureValidationException {
+            byte[][] getSignedData() throws IOException {
+                return new byte[][] {primaryKey.getPublicKeyPacket().getEncodedContents()};
+            }
+
+            @Override
+            void verifyCorrectness(PGPSignature signature) throws SignatureValidationException {
                 try {
                     signature.init(ImplementationFactory.getInstance().getPGPContentVerifierBuilderProvider(), subkey);
                     boolean valid = signature.verifyCertification(primaryKey, subkey);
@@ -529,9 +547,14 @@ public abstract class SignatureValidator {
      * @return validator
      */
     public static SignatureValidator correctSignatureOverKey(PGPPublicKey signer, PGPPublicKey signee) {
-        return new SignatureValidator() {
+        return new CorrectnessValidator(CorrectnessValidator.SIGNATURE_OVER_KEY, signer) {
             @Override
-            public void verify(PGPSignature signature) throws SignatureValidationException {
+            byte[][] getSignedData() throws IOException {
+                return new byte[][] {signee.getPublicKeyPacket().getEncodedContents()};
+            }
+
+            @Override
+            void verifyCorrectness(PGPSignature signature) throws SignatureValidationException {
                 try {
                     signature.init(ImplementationFactory.getInstance().getPGPContentVerifierBuilderProvider(), signer);
                     boolean valid;
@@ -599,9 +622,17 @@ public abstract class SignatureValidator {
      */
     public static SignatureValidator correctSignatureOverUserId(String userId, PGPPublicKey certifiedKey,
                                                                 PGPPublicKey certifyingKey) {
-        return new SignatureValidator() {
+        return new CorrectnessValidator(CorrectnessValidator.SIGNATURE_OVER_USER_ID, certifyingKey) {
             @Override
-            public void verify(PGPSignature signature) throws SignatureValidationException {
+            byte[][] getSignedData() throws IOException {
+                return new byte[][] {
+                        certifiedKey.getPublicKeyPacket().getEncodedContents(),
+                        Strings.toUTF8ByteArray(userId)
+                };
+            }
+
+            @Override
+            void verifyCorrectness(PGPSignature signature) throws SignatureValidationException {
                 try {
                     signature.init(ImplementationFactory.getInstance()
                             .getPGPContentVerifierBuilderProvider(), certifyingKey);
@@ -646,6 +677,81 @@ public abstract class SignatureValidator {
         };
     }
 
+    /**
+     * Validator which verifies the cryptographic correctness of a certification signature.
+     * Outcomes are looked up in and stored to the {@link SignatureVerificationCache}, if caching is enabled.
+     */
+    private abstract static class CorrectnessValidator extends SignatureValidator {
+
+        static final int SUBKEY_BINDING = 1;
+        static final int PRIMARY_KEY_BINDING = 2;
+        static final int SIGNATURE_OVER_KEY = 3;
+        static final int SIGNATURE_OVER_USER_ID = 4;
+
+        private final int check;
+        private final PGPPublicKey signingKey;
+
+        CorrectnessValidator(int check, PGPPublicKey signingKey) {
+            this.check = check;
+            this.signingKey = signingKey;
+        }
+
+        /**
+         * Return the encodings of the data covered by the signature, which become part of the cache key.
+         *
+         * @return signed data
+         * @throws IOException if the data cannot be encoded
+         */
+        abstract byte[][] getSignedData() throws IOException;
+
+        /**
+         * Perform the (expensive) cryptographic verification of the signature.
+         *
+         * @param signature signature
+         * @throws SignatureValidationException if the signature is not correct
+         */
+        abstract void verifyCorrectness(PGPSignature signature) throws SignatureValidationException;
+
+        @Override
+        public void verify(PGPSignature signature) throws SignatureValidationException {
+            SignatureVerificationCache cache = SignatureVerificationCache.getInstance();
+            if (cache == null) {
+                verifyCorrectness(signature);
+                return;
+            }
+
+            ByteBuffer key;
+            try {
+                key = SignatureVerificationCache.computeKey(check, signature, signingKey, getSignedData());
+            } catch (IOException e) {
+                verifyCorrectness(signature);
+                return;
+            }
+
+            SignatureVerificationCache.Outcome outcome = cache.get(key);
+            if (outcome != null) {
+                outcome.throwIfIncorrect();
+                return;
+            }
+
+            try {
+                verifyCorrectness(signature);
+            } catch (SignatureValidationException e) {
+                // Other errors (e.g. unsupported algorithms) depend on the environment and are not cached
+                if (isIncorrectSignature(e)) {
+                    cache.put(key, SignatureVerificationCache.Outcome.incorrect(e));
+                }
+                throw e;
+            }
+            cache.put(key, SignatureVerificationCache.Outcome.CORRECT);
+        }
+
+        private static boolean isIncorrectSignature(SignatureValidationException e) {
+            Throwable cause = e.getCause();
+            return cause == null || (cause instanceof SignatureValidationException && cause.getCause() == null);
+        }
+    }
+
     public static SignatureValidator signatureWasCreatedInBounds(Date notBefore, Date notAfter) {
         return new SignatureValidator() {
             @Override
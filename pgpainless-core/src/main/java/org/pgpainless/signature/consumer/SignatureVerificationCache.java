@@ -0,0 +1,298 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.signature.consumer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.util.Pack;
+import org.pgpainless.exception.SignatureValidationException;
+
+/**
+ * Bounded, thread-safe cache of the outcomes of cryptographic correctness checks of certification signatures
+ * (self-signatures, binding signatures, revocations).
+ *
+ * When verifying many signatures made by the same set of signers, the self-signatures on the signers certificates
+ * would otherwise be verified over and over again for every single data signature.
+ * Entries are keyed by a digest over the encoding of the signature, the signing key and the signed data
+ * (key or user-id), so the cache never returns the outcome of a different signature.
+ *
+ * The cache is opt-in and needs to be installed using {@link #setInstance(SignatureVerificationCache)}.
+ * Afterwards it is used whenever certification signatures are verified, e.g. by
+ * {@link org.pgpainless.key.info.KeyRingInfo}.
+ *
+ * Only the mathematical correctness of signatures is cached.
+ * Checks which depend on the {@link org.pgpainless.policy.Policy} or on the reference date (acceptable algorithms,
+ * expiration, etc.) are cheap and are always performed, so changes to the policy take effect immediately.
+ *
+ * The cache is split into independently locked segments, so that many verifying threads can access it concurrently.
+ * Within each segment, the least recently used entry is evicted once the segment is full.
+ */
+public class SignatureVerificationCache {
+
+    /**
+     * Default maximum number of cached verification outcomes.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private static volatile SignatureVerificationCache INSTANCE;
+    private static final ThreadLocal<SignatureVerificationCache> THREAD_INSTANCE =
+            new ThreadLocal<SignatureVerificationCache>();
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a cache holding up to {@link #DEFAULT_MAX_SIZE} verification outcomes.
+     */
+    public SignatureVerificationCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a cache holding up to (roughly) maxSize verification outcomes.
+     * Since eviction happens per segment, the cache may evict entries before maxSize is reached.
+     *
+     * @param maxSize maximum number of cached verification outcomes
+     */
+    public SignatureVerificationCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum size MUST be positive.");
+        }
+        int segmentCount = Math.min(MAX_SEGMENTS, maxSize);
+        int segmentSize = (maxSize + segmentCount - 1) / segmentCount;
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Install the process-wide cache, which is used when verifying certification signatures.
+     * Passing null disables caching, which is the default.
+     *
+     * @param cache cache or null
+     */
+    public static void setInstance(@Nullable SignatureVerificationCache cache) {
+        INSTANCE = cache;
+    }
+
+    /**
+     * Install a cache, which is used instead of the process-wide cache when verifying certification signatures on
+     * the calling thread.
+     * This allows to scope a cache to a single task, e.g. evaluating the same certificate at many reference dates,
+     * without sharing verification outcomes with other threads.
+     * Passing null removes the thread-local cache again.
+     *
+     * @param cache cache or null
+     * @return the previously installed thread-local cache or null
+     */
+    @Nullable
+    public static SignatureVerificationCache setThreadInstance(@Nullable SignatureVerificationCache cache) {
+        SignatureVerificationCache previous = THREAD_INSTANCE.get();
+        if (cache == null) {
+            THREAD_INSTANCE.remove();
+        } else {
+            THREAD_INSTANCE.set(cache);
+        }
+        return previous;
+    }
+
+    /**
+     * Return the cache which is used when verifying certification signatures on the calling thread, or null if
+     * caching is disabled.
+     * A cache installed via {@link #setThreadInstance(SignatureVerificationCache)} takes precedence over the
+     * process-wide cache.
+     *
+     * @return cache or null
+     */
+    @Nullable
+    public static SignatureVerificationCache getInstance() {
+        SignatureVerificationCache cache = THREAD_INSTANCE.get();
+        return cache != null ? cache : INSTANCE;
+    }
+
+    /**
+     * Remove all verification outcomes from the cache.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Return the number of cached verification outcomes.
+     *
+     * @return size
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Return the number of lookups which were answered from the cache.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Return the number of lookups which could not be answered from the cache.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Compute the cache key for a correctness check.
+     *
+     * @param check identifier of the kind of correctness check
+     * @param signature signature
+     * @param signingKey key that created the signature
+     * @param signedData encodings of the data covered by the signature
+     * @return cache key
+     * @throws IOException if the signature or key cannot be encoded
+     */
+    static ByteBuffer computeKey(int check,
+                                 @Nonnull PGPSignature signature,
+                                 @Nonnull PGPPublicKey signingKey,
+                                 @Nonnull byte[]... signedData)
+            throws IOException {
+        SHA256Digest digest = new SHA256Digest();
+        digest.update((byte) check);
+        updateWithLengthPrefix(digest, signature.getEncoded());
+        updateWithLengthPrefix(digest, signingKey.getPublicKeyPacket().getEncodedContents());
+        for (byte[] data : signedData) {
+            updateWithLengthPrefix(digest, data);
+        }
+        byte[] key = new byte[digest.getDigestSize()];
+        digest.doFinal(key, 0);
+        return ByteBuffer.wrap(key);
+    }
+
+    private static void updateWithLengthPrefix(SHA256Digest digest, byte[] data) {
+        digest.update(Pack.intToBigEndian(data.length), 0, 4);
+        digest.update(data, 0, data.length);
+    }
+
+    /**
+     * Return the cached outcome for the given key, or null if there is no cache hit.
+     *
+     * @param key cache key
+     * @return outcome or null
+     */
+    @Nullable
+    Outcome get(@Nonnull ByteBuffer key) {
+        Outcome outcome = segmentFor(key).get(key);
+        if (outcome == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return outcome;
+    }
+
+    /**
+     * Add the outcome of a correctness check to the cache.
+     *
+     * @param key cache key
+     * @param outcome outcome
+     */
+    void put(@Nonnull ByteBuffer key, @Nonnull Outcome outcome) {
+        segmentFor(key).put(key, outcome);
+    }
+
+    private Segment segmentFor(ByteBuffer key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    /**
+     * Outcome of a correctness check.
+     */
+    static final class Outcome {
+
+        static final Outcome CORRECT = new Outcome(null, null);
+
+        private final String failureMessage;
+        private final String causeMessage;
+
+        private Outcome(String failureMessage, String causeMessage) {
+            this.failureMessage = failureMessage;
+            this.causeMessage = causeMessage;
+        }
+
+        static Outcome incorrect(@Nonnull SignatureValidationException failure) {
+            Throwable cause = failure.getCause();
+            return new Outcome(failure.getMessage(), cause == null ? null : cause.getMessage());
+        }
+
+        /**
+         * Throw an exception equivalent to the one thrown by the original check, if the signature was incorrect.
+         *
+         * @throws SignatureValidationException if the signature was incorrect
+         */
+        void throwIfIncorrect() throws SignatureValidationException {
+            if (failureMessage == null) {
+                return;
+            }
+            if (causeMessage == null) {
+                throw new SignatureValidationException(failureMessage);
+            }
+            throw new SignatureValidationException(failureMessage, new SignatureValidationException(causeMessage));
+        }
+    }
+
+    private static final class Segment {
+
+        private final LinkedHashMap<ByteBuffer, Outcome> entries;
+
+        Segment(final int maxSize) {
+            this.entries = new LinkedHashMap<ByteBuffer, Outcome>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Outcome> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized Outcome get(ByteBuffer key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(ByteBuffer key, Outcome outcome) {
+            entries.put(key, outcome);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Hash map with primitive long keys, such as key-ids.
+ * In contrast to a {@link java.util.HashMap HashMap&lt;Long, V&gt;}, keys are not boxed and entries do not require
+ * separate objects, which significantly reduces the memory footprint and improves lookup times of large maps.
+ *
+ * The map uses open addressing with linear probing. It does not support removal of entries or null values.
+ * This class is not thread-safe.
+ *
+ * @param <V> value type
+ */
+public final class LongMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Create an empty map.
+     */
+    public LongMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty map, which can hold the given number of entries without being resized.
+     *
+     * @param expectedSize expected number of entries
+     */
+    public LongMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative.");
+        }
+        int capacity = DEFAULT_CAPACITY;
+        // keep the load factor at or below 0.5
+        while (capacity < expectedSize * 2L) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Return the value associated with the given key, or null if the map does not contain the key.
+     *
+     * @param key key
+     * @return value or null
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index = indexOf(key);
+        return (V) values[index];
+    }
+
+    /**
+     * Return true, if the map contains the given key.
+     *
+     * @param key key
+     * @return true if the key is present
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associate the given value with the given key.
+     *
+     * @param key key
+     * @param value value
+     * @return previous value associated with the key, or null
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V put(long key, @Nonnull V value) {
+        if (value == null) {
+            throw new NullPointerException("LongMap does not support null values.");
+        }
+        int index = indexOf(key);
+        V previous = (V) values[index];
+        keys[index] = key;
+        values[index] = value;
+        if (previous == null && ++size * 2 > values.length) {
+            allocate(values.length * 2);
+        }
+        return previous;
+    }
+
+    /**
+     * Associate the given value with the given key, unless the map already contains the key.
+     *
+     * @param key key
+     * @param value value
+     * @return the existing value associated with the key, or null if the value was inserted
+     */
+    @Nullable
+    public V putIfAbsent(long key, @Nonnull V value) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        put(key, value);
+        return null;
+    }
+
+    /**
+     * Return the number of entries.
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return true, if the map is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the slot of the given key, or the empty slot at which the key would be inserted.
+     */
+    private int indexOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int index = (int) (hash ^ (hash >>> 32)) & mask;
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void allocate(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        if (oldValues == null) {
+            return;
+        }
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(keys[i]).append('=').append(values[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -26,6 +26,7 @@ import org.pgpainless.key.protection.SecretKeyRingProtector;
 import org.pgpainless.key.protection.UnlockSecretKey;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CachingBcPublicKeyDataDecryptorFactoryTest {
 
@@ -96,7 +97,10 @@ public class CachingBcPublicKeyDataDecryptorFactoryTest {
         Streams.pipeAll(decryptionStream, out);
         decryptionStream.close();
         assertEquals("Hello, World!\n", out.toString());
+        assertEquals(1, cachingFactory.getCache().getMissCount());
+        assertTrue(cachingFactory.getCache().getHitCount() >= 1);
 
         cachingFactory.clear();
+        assertEquals(0, cachingFactory.getCache().size());
     }
 }
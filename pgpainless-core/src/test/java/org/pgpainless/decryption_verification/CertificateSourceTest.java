@@ -0,0 +1,125 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.DocumentSignatureType;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.encryption_signing.SigningOptions;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+
+public class CertificateSourceTest {
+
+    @Test
+    public void testInMemoryCertificateSourceIndexesSubkeys()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPPublicKeyRing alice = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>"));
+        PGPPublicKeyRing bob = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>"));
+
+        InMemoryCertificateSource source = new InMemoryCertificateSource();
+        source.addCertificate(alice);
+        source.addCertificate(bob);
+        source.addCertificate(alice);
+        assertEquals(Arrays.asList(alice, bob), new ArrayList<>(source.getExplicitCertificates()));
+
+        for (PGPPublicKeyRing certificate : Arrays.asList(alice, bob)) {
+            Iterator<PGPPublicKey> keys = certificate.getPublicKeys();
+            while (keys.hasNext()) {
+                PGPPublicKey key = keys.next();
+                assertSame(certificate, source.getCertificate(key.getKeyID()));
+                assertSame(certificate, source.getCertificate(OpenPgpFingerprint.of(key)));
+            }
+        }
+        assertNull(source.getCertificate(0L));
+    }
+
+    @Test
+    public void testCertificateSourceIsConsultedForMissingCertificates()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing aliceKey = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPPublicKeyRing alice = PGPainless.extractCertificate(aliceKey);
+        byte[] message = "Hello, World!\n".getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream signed = new ByteArrayOutputStream();
+        EncryptionStream signingStream = PGPainless.encryptAndOrSign().onOutputStream(signed)
+                .withOptions(ProducerOptions.sign(SigningOptions.get().addInlineSignature(
+                        SecretKeyRingProtector.unprotectedKeys(), aliceKey, DocumentSignatureType.BINARY_DOCUMENT)));
+        signingStream.write(message);
+        signingStream.close();
+
+        // Store which only knows Alice
+        final List<Object> lookups = new ArrayList<>();
+        ConsumerOptions.CertificateSource store = new ConsumerOptions.CertificateSource() {
+            @Nullable
+            @Override
+            public PGPPublicKeyRing getCertificate(long keyId) {
+                lookups.add(keyId);
+                return alice.getPublicKey(keyId) != null ? alice : null;
+            }
+
+            @Nullable
+            @Override
+            public PGPPublicKeyRing getCertificate(@Nonnull OpenPgpFingerprint fingerprint) {
+                lookups.add(fingerprint);
+                return alice.getPublicKey(fingerprint.getKeyId()) != null ? alice : null;
+            }
+        };
+
+        PGPPublicKeyRing bob = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>"));
+        DecryptionStream verificationStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(signed.toByteArray()))
+                .withOptions(new ConsumerOptions()
+                        .addVerificationCert(bob)
+                        .addCertificateSource(store));
+        Streams.drain(verificationStream);
+        verificationStream.close();
+
+        assertTrue(verificationStream.getMetadata().isVerifiedSignedBy(alice));
+        assertFalse(lookups.isEmpty());
+
+        // Explicitly added certificates take precedence
+        lookups.clear();
+        verificationStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(signed.toByteArray()))
+                .withOptions(new ConsumerOptions()
+                        .addVerificationCert(alice)
+                        .addCertificateSource(store));
+        Streams.drain(verificationStream);
+        verificationStream.close();
+
+        assertTrue(verificationStream.getMetadata().isVerifiedSignedBy(alice));
+        assertTrue(lookups.isEmpty());
+    }
+}
@@ -0,0 +1,290 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.operator.PBEDataDecryptorFactory;
+import org.bouncycastle.openpgp.operator.PBESecretKeyDecryptor;
+import org.bouncycastle.openpgp.operator.PBESecretKeyEncryptor;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.EncryptionPurpose;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.exception.MissingDecryptionMethodException;
+import org.pgpainless.implementation.BcImplementationFactory;
+import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.util.Passphrase;
+
+public class ConcurrentTrialDecryptionTest {
+
+    private static final String PLAINTEXT = "Hello, World!\n";
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentTrialDecryptionOfAnonymousPKESK()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        List<PGPSecretKeyRing> keys = generateKeys(6);
+        PGPSecretKeyRing recipient = keys.get(4);
+        byte[] ciphertext = encryptForAnonymousRecipient(PGPainless.extractCertificate(recipient));
+
+        ConsumerOptions options = ConsumerOptions.get()
+                .setTrialDecryptionExecutor(executor);
+        for (PGPSecretKeyRing key : keys) {
+            options.addDecryptionKey(key);
+        }
+
+        MessageMetadata metadata = decrypt(ciphertext, options);
+        PGPPublicKey encryptionKey = PGPainless.inspectKeyRing(recipient)
+                .getEncryptionSubkeys(EncryptionPurpose.ANY).get(0);
+        assertEquals(new SubkeyIdentifier(recipient, encryptionKey.getKeyID()), metadata.getDecryptionKey());
+    }
+
+    @Test
+    public void testWrongPassphraseOfOtherCandidateDoesNotPreventDecryption()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing recipient = PGPainless.generateKeyRing().modernKeyRing("Recipient");
+        PGPSecretKeyRing locked = PGPainless.generateKeyRing().modernKeyRing("Locked", "sw0rdf1sh");
+        byte[] ciphertext = encryptForAnonymousRecipient(PGPainless.extractCertificate(recipient));
+
+        ConsumerOptions options = ConsumerOptions.get()
+                .setTrialDecryptionExecutor(executor)
+                .addDecryptionKey(locked, SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword("wrong")))
+                .addDecryptionKey(recipient);
+
+        MessageMetadata metadata = decrypt(ciphertext, options);
+        assertEquals(recipient.getPublicKey().getKeyID(), metadata.getDecryptionKey().getPrimaryKeyId());
+    }
+
+    @Test
+    public void testProtectorsAreCalledOnCallingThread()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        List<PGPSecretKeyRing> keys = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            keys.add(PGPainless.generateKeyRing().modernKeyRing("Key " + i, "sw0rdf1sh"));
+        }
+        byte[] ciphertext = encryptForAnonymousRecipient(PGPainless.extractCertificate(keys.get(2)));
+
+        SecretKeyRingProtector delegate = SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword("sw0rdf1sh"));
+        Set<Thread> callingThreads = Collections.synchronizedSet(new HashSet<>());
+        SecretKeyRingProtector protector = new SecretKeyRingProtector() {
+            @Override
+            public boolean hasPassphraseFor(Long keyId) {
+                callingThreads.add(Thread.currentThread());
+                return delegate.hasPassphraseFor(keyId);
+            }
+
+            @Nullable
+            @Override
+            public PBESecretKeyDecryptor getDecryptor(Long keyId) throws PGPException {
+                callingThreads.add(Thread.currentThread());
+                return delegate.getDecryptor(keyId);
+            }
+
+            @Nullable
+            @Override
+            public PBESecretKeyEncryptor getEncryptor(Long keyId) throws PGPException {
+                return delegate.getEncryptor(keyId);
+            }
+        };
+        ConsumerOptions options = ConsumerOptions.get()
+                .setTrialDecryptionExecutor(executor);
+        for (PGPSecretKeyRing key : keys) {
+            options.addDecryptionKey(key, protector);
+        }
+
+        decrypt(ciphertext, options);
+        assertEquals(Collections.singleton(Thread.currentThread()), callingThreads);
+    }
+
+    @Test
+    public void testNoMatchingCandidate()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        List<PGPSecretKeyRing> keys = generateKeys(3);
+        PGPSecretKeyRing recipient = PGPainless.generateKeyRing().modernKeyRing("Recipient");
+        byte[] ciphertext = encryptForAnonymousRecipient(PGPainless.extractCertificate(recipient));
+
+        ConsumerOptions options = ConsumerOptions.get()
+                .setTrialDecryptionExecutor(executor);
+        for (PGPSecretKeyRing key : keys) {
+            options.addDecryptionKey(key);
+        }
+
+        assertThrows(MissingDecryptionMethodException.class, () -> decrypt(ciphertext, options));
+    }
+
+    @Test
+    public void testConcurrentPassphraseTrials() throws PGPException, IOException {
+        byte[] ciphertext = encryptWithPassphrases("sw0rdf1sh", "m0nk3y");
+
+        ConsumerOptions options = ConsumerOptions.get()
+                .setTrialDecryptionExecutor(executor)
+                .addDecryptionPassphrase(Passphrase.fromPassword("wrong"))
+                .addDecryptionPassphrase(Passphrase.fromPassword("also wrong"))
+                .addDecryptionPassphrase(Passphrase.fromPassword("m0nk3y"));
+
+        MessageMetadata metadata = decrypt(ciphertext, options);
+        assertNotNull(metadata.getSessionKey());
+    }
+
+    @Test
+    public void testSequentialPassphraseTrials() throws PGPException, IOException {
+        byte[] ciphertext = encryptWithPassphrases("sw0rdf1sh", "m0nk3y");
+
+        ConsumerOptions options = ConsumerOptions.get()
+                .addDecryptionPassphrase(Passphrase.fromPassword("wrong"))
+                .addDecryptionPassphrase(Passphrase.fromPassword("m0nk3y"));
+
+        MessageMetadata metadata = decrypt(ciphertext, options);
+        assertNotNull(metadata.getSessionKey());
+    }
+
+    @Test
+    public void testDecryptorFactoryIsCreatedOncePerPassphrase() throws PGPException, IOException {
+        byte[] ciphertext = encryptWithPassphrases("sw0rdf1sh", "m0nk3y", "password");
+
+        final AtomicInteger createdFactories = new AtomicInteger();
+        ImplementationFactory implementation = ImplementationFactory.getInstance();
+        ImplementationFactory.setFactoryImplementation(new BcImplementationFactory() {
+            @Override
+            public PBEDataDecryptorFactory getPBEDataDecryptorFactory(Passphrase passphrase) {
+                createdFactories.incrementAndGet();
+                return super.getPBEDataDecryptorFactory(passphrase);
+            }
+        });
+        try {
+            // each passphrase is tried on all three SKESKs, but keys are derived by one factory per passphrase
+            assertThrows(MissingDecryptionMethodException.class, () -> decrypt(ciphertext, ConsumerOptions.get()
+                    .addDecryptionPassphrase(Passphrase.fromPassword("wrong"))
+                    .addDecryptionPassphrase(Passphrase.fromPassword("also wrong"))));
+            assertEquals(2, createdFactories.get());
+
+            createdFactories.set(0);
+            assertThrows(MissingDecryptionMethodException.class, () -> decrypt(ciphertext, ConsumerOptions.get()
+                    .setTrialDecryptionExecutor(executor)
+                    .addDecryptionPassphrase(Passphrase.fromPassword("wrong"))
+                    .addDecryptionPassphrase(Passphrase.fromPassword("also wrong"))));
+            assertEquals(2, createdFactories.get());
+        } finally {
+            ImplementationFactory.setFactoryImplementation(implementation);
+        }
+    }
+
+    @Test
+    public void testNoMatchingPassphrase() throws PGPException, IOException {
+        byte[] ciphertext = encryptWithPassphrases("sw0rdf1sh", "m0nk3y");
+
+        ConsumerOptions options = ConsumerOptions.get()
+                .setTrialDecryptionExecutor(executor)
+                .addDecryptionPassphrase(Passphrase.fromPassword("wrong"))
+                .addDecryptionPassphrase(Passphrase.fromPassword("also wrong"));
+
+        assertThrows(MissingDecryptionMethodException.class, () -> decrypt(ciphertext, options));
+    }
+
+    private static List<PGPSecretKeyRing> generateKeys(int count)
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        List<PGPSecretKeyRing> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(PGPainless.generateKeyRing().modernKeyRing("Key " + i));
+        }
+        return keys;
+    }
+
+    private static MessageMetadata decrypt(byte[] ciphertext, ConsumerOptions options)
+            throws PGPException, IOException {
+        DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(ciphertext))
+                .withOptions(options);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Streams.pipeAll(decryptionStream, out);
+        decryptionStream.close();
+        assertEquals(PLAINTEXT, out.toString());
+        return decryptionStream.getMetadata();
+    }
+
+    private static byte[] encryptWithPassphrases(String... passphrases)
+            throws PGPException, IOException {
+        EncryptionOptions encryptionOptions = EncryptionOptions.get();
+        for (String passphrase : passphrases) {
+            encryptionOptions.addPassphrase(Passphrase.fromPassword(passphrase));
+        }
+        ByteArrayOutputStream ciphertextOut = new ByteArrayOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(ciphertextOut)
+                .withOptions(ProducerOptions.encrypt(encryptionOptions));
+        encryptionStream.write(PLAINTEXT.getBytes(StandardCharsets.UTF_8));
+        encryptionStream.close();
+        return ciphertextOut.toByteArray();
+    }
+
+    /**
+     * Encrypt a message for the given certificate and replace the key-id of the PKESK with the wildcard key-id.
+     *
+     * @param certificate recipient certificate
+     * @return unarmored message
+     */
+    private static byte[] encryptForAnonymousRecipient(PGPPublicKeyRing certificate)
+            throws PGPException, IOException {
+        ByteArrayOutputStream ciphertextOut = new ByteArrayOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(ciphertextOut)
+                .withOptions(ProducerOptions.encrypt(EncryptionOptions.get().addRecipient(certificate))
+                        .setAsciiArmor(false));
+        encryptionStream.write(PLAINTEXT.getBytes(StandardCharsets.UTF_8));
+        encryptionStream.close();
+
+        byte[] message = ciphertextOut.toByteArray();
+        // Old format PKESK packet header
+        assertEquals(0x84, message[0] & 0xfc);
+        int headerLength = 1 + (1 << (message[0] & 0x03));
+        // PKESK version 3, followed by the key-id
+        assertEquals(3, message[headerLength]);
+        for (int i = headerLength + 1; i < headerLength + 9; i++) {
+            message[i] = 0;
+        }
+        return message;
+    }
+}
@@ -0,0 +1,140 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.bcpg.PublicKeyAlgorithmTags;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.EncryptionPurpose;
+import org.pgpainless.algorithm.KeyFlag;
+import org.pgpainless.implementation.ImplementationFactory;
+import org.pgpainless.key.generation.KeySpec;
+import org.pgpainless.key.generation.type.KeyType;
+import org.pgpainless.key.generation.type.eddsa.EdDSACurve;
+import org.pgpainless.key.generation.type.rsa.RsaLength;
+import org.pgpainless.key.generation.type.xdh.XDHSpec;
+import org.pgpainless.key.info.KeyRingInfo;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.policy.Policy;
+import org.pgpainless.signature.subpackets.SelfSignatureSubpackets;
+import org.pgpainless.util.Passphrase;
+import org.pgpainless.util.Tuple;
+
+public class DecryptionKeyIndexTest {
+
+    @Test
+    public void lookupDecryptionKeys()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing modernKey = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPSecretKeyRing rsaKey = PGPainless.generateKeyRing().simpleRsaKeyRing("Bob <bob@pgpainless.org>", RsaLength._3072);
+        Policy policy = PGPainless.getPolicy();
+
+        ConsumerOptions options = ConsumerOptions.get()
+                .addDecryptionKey(modernKey)
+                .addDecryptionKey(rsaKey)
+                // adding the same key again does not create duplicate entries
+                .addDecryptionKey(modernKey);
+        DecryptionKeyIndex index = options.getDecryptionKeyIndex();
+
+        KeyRingInfo info = PGPainless.inspectKeyRing(modernKey);
+        PGPPublicKey encryptionKey = info.getEncryptionSubkeys(EncryptionPurpose.ANY).get(0);
+        PGPPublicKey signingKey = info.getSigningSubkeys().get(0);
+
+        assertSame(modernKey, index.getDecryptionKey(encryptionKey.getKeyID(), policy).getA());
+        assertSame(rsaKey, index.getDecryptionKey(rsaKey.getPublicKey().getKeyID(), policy).getA());
+        // Not encryption capable
+        assertNull(index.getDecryptionKey(signingKey.getKeyID(), policy));
+        assertNull(index.getDecryptionKey(modernKey.getPublicKey().getKeyID(), policy));
+        // Unknown key
+        assertNull(index.getDecryptionKey(123L, policy));
+
+        List<Tuple<PGPSecretKeyRing, PGPSecretKey>> ecdhCandidates =
+                index.getDecryptionKeyCandidates(PublicKeyAlgorithmTags.ECDH, policy);
+        assertEquals(1, ecdhCandidates.size());
+        assertSame(modernKey, ecdhCandidates.get(0).getA());
+        assertEquals(encryptionKey.getKeyID(), ecdhCandidates.get(0).getB().getKeyID());
+
+        List<Tuple<PGPSecretKeyRing, PGPSecretKey>> rsaCandidates =
+                index.getDecryptionKeyCandidates(PublicKeyAlgorithmTags.RSA_GENERAL, policy);
+        assertEquals(1, rsaCandidates.size());
+        assertSame(rsaKey, rsaCandidates.get(0).getA());
+    }
+
+    @Test
+    public void sourceKeyRingsAreReturnedWithTheirProtector()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing key = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        final byte[] encoding = key.getEncoded();
+        ConsumerOptions.DecryptionKeySource source = new ConsumerOptions.DecryptionKeySource() {
+            @Override
+            public PGPSecretKeyRing getDecryptionKey(long keyId) {
+                // return a new copy on each lookup, like a store which does not cache parsed key rings
+                try {
+                    return new PGPSecretKeyRing(encoding, ImplementationFactory.getInstance().getKeyFingerprintCalculator());
+                } catch (IOException | PGPException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        };
+        SecretKeyRingProtector protector = SecretKeyRingProtector.unprotectedKeys();
+        ConsumerOptions options = ConsumerOptions.get().addDecryptionKeySource(source, protector);
+        DecryptionKeyIndex index = options.getDecryptionKeyIndex();
+        long encryptionKeyId = PGPainless.inspectKeyRing(key).getEncryptionSubkeys(EncryptionPurpose.ANY).get(0).getKeyID();
+        Policy policy = PGPainless.getPolicy();
+
+        // more key rings than the index remembers the capabilities of
+        for (int i = 0; i <= DecryptionKeyIndex.MAX_SOURCE_KEY_RINGS; i++) {
+            Tuple<PGPSecretKeyRing, SecretKeyRingProtector> decryptionKey = index.getDecryptionKey(encryptionKeyId, policy);
+            assertNotNull(decryptionKey);
+            assertSame(protector, decryptionKey.getB());
+        }
+    }
+
+    @Test
+    public void capabilitiesAreReevaluatedAfterSubkeyExpiration()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing key = PGPainless.buildKeyRing()
+                .setPrimaryKey(KeySpec.getBuilder(KeyType.EDDSA(EdDSACurve._Ed25519), KeyFlag.CERTIFY_OTHER))
+                .addUserId("Alice <alice@pgpainless.org>")
+                .build();
+        // subkey expires a day after its creation
+        key = PGPainless.modifyKeyRing(key)
+                .addSubKey(KeySpec.getBuilder(KeyType.XDH(XDHSpec._X25519), KeyFlag.ENCRYPT_COMMS).build(),
+                        Passphrase.emptyPassphrase(),
+                        new SelfSignatureSubpackets.Callback() {
+                            @Override
+                            public void modifyHashedSubpackets(SelfSignatureSubpackets hashedSubpackets) {
+                                hashedSubpackets.setKeyExpirationTime(true, 24 * 60 * 60);
+                            }
+                        },
+                        SecretKeyRingProtector.unprotectedKeys())
+                .done();
+        PGPPublicKey encryptionKey = PGPainless.inspectKeyRing(key).getEncryptionSubkeys(EncryptionPurpose.ANY).get(0);
+        Date now = new Date();
+        Date expired = new Date(encryptionKey.getCreationTime().getTime() + (24 * 60 * 60 + 1) * 1000L);
+        Policy policy = PGPainless.getPolicy();
+        DecryptionKeyIndex index = ConsumerOptions.get().addDecryptionKey(key).getDecryptionKeyIndex();
+
+        assertNotNull(index.getDecryptionKey(encryptionKey.getKeyID(), policy, now));
+        // the cached evaluation is not reused once the subkey expired
+        assertNull(index.getDecryptionKey(encryptionKey.getKeyID(), policy, expired));
+        assertNotNull(index.getDecryptionKey(encryptionKey.getKeyID(), policy, now));
+    }
+}
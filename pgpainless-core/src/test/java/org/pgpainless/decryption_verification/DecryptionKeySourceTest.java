@@ -0,0 +1,105 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.exception.MissingDecryptionMethodException;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.key.protection.PasswordBasedSecretKeyRingProtector;
+import org.pgpainless.util.Passphrase;
+
+public class DecryptionKeySourceTest {
+
+    private static final byte[] MESSAGE = "Hello, World!\n".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testDecryptionKeyIsLoadedFromSource()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        final PGPSecretKeyRing tenant = PGPainless.generateKeyRing()
+                .simpleEcKeyRing("Tenant <tenant@pgpainless.org>", "sw0rdf1sh");
+        PGPSecretKeyRing other = PGPainless.generateKeyRing().modernKeyRing("Other <other@pgpainless.org>");
+        byte[] ciphertext = encrypt(PGPainless.extractCertificate(tenant));
+
+        final List<Long> lookups = new ArrayList<>();
+        ConsumerOptions.DecryptionKeySource source = new ConsumerOptions.DecryptionKeySource() {
+            @Nullable
+            @Override
+            public PGPSecretKeyRing getDecryptionKey(long keyId) {
+                lookups.add(keyId);
+                return tenant.getSecretKey(keyId) != null ? tenant : null;
+            }
+        };
+
+        ConsumerOptions options = new ConsumerOptions()
+                .addDecryptionKey(other)
+                .addDecryptionKeySource(source, PasswordBasedSecretKeyRingProtector.forKey(
+                        tenant, Passphrase.fromPassword("sw0rdf1sh")));
+        DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(ciphertext))
+                .withOptions(options);
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        Streams.pipeAll(decryptionStream, plaintext);
+        decryptionStream.close();
+
+        assertArrayEquals(MESSAGE, plaintext.toByteArray());
+        assertEquals(new SubkeyIdentifier(tenant, lookups.get(0)), decryptionStream.getMetadata().getDecryptionKey());
+        assertTrue(options.getDecryptionKeys().contains(other));
+        assertEquals(1, options.getDecryptionKeys().size());
+    }
+
+    @Test
+    public void testSourceWithoutMatchingKey()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing tenant = PGPainless.generateKeyRing().modernKeyRing("Tenant <tenant@pgpainless.org>");
+        byte[] ciphertext = encrypt(PGPainless.extractCertificate(tenant));
+
+        ConsumerOptions.DecryptionKeySource emptySource = new ConsumerOptions.DecryptionKeySource() {
+            @Nullable
+            @Override
+            public PGPSecretKeyRing getDecryptionKey(long keyId) {
+                return null;
+            }
+        };
+
+        assertThrows(MissingDecryptionMethodException.class, () -> PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(ciphertext))
+                .withOptions(new ConsumerOptions()
+                        .addDecryptionKeySource(emptySource, PasswordBasedSecretKeyRingProtector.forKey(
+                                tenant, Passphrase.emptyPassphrase()))));
+    }
+
+    private static byte[] encrypt(PGPPublicKeyRing recipient) throws PGPException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign().onOutputStream(out)
+                .withOptions(ProducerOptions.encrypt(EncryptionOptions.encryptCommunications()
+                        .addRecipient(recipient)));
+        encryptionStream.write(MESSAGE);
+        encryptionStream.close();
+        return out.toByteArray();
+    }
+}
@@ -319,7 +319,9 @@ public class OpenPgpMessageInputStreamTest {
     private static Stream<Arguments> provideMessageProcessors() {
         return Stream.of(
                 Arguments.of(Named.of("read(buf,off,len)", (Processor) OpenPgpMessageInputStreamTest::processReadBuffered)),
-                Arguments.of(Named.of("read()", (Processor) OpenPgpMessageInputStreamTest::processReadSequential))
+                Arguments.of(Named.of("read()", (Processor) OpenPgpMessageInputStreamTest::processReadSequential)),
+                Arguments.of(Named.of("read(buf,off,len) with small buffer", (Processor) OpenPgpMessageInputStreamTest::processReadSmallBuffer)),
+                Arguments.of(Named.of("read(buf,off,len) with large buffer", (Processor) OpenPgpMessageInputStreamTest::processReadLargeBuffer))
         );
     }
 
@@ -677,6 +679,32 @@ public class OpenPgpMessageInputStreamTest {
         return new Tuple<>(out.toString(), metadata);
     }
 
+    private static Tuple<String, MessageMetadata> processReadSmallBuffer(String armoredMessage, ConsumerOptions options)
+            throws PGPException, IOException {
+        return processReadWithBufferSize(armoredMessage, options, 7);
+    }
+
+    private static Tuple<String, MessageMetadata> processReadLargeBuffer(String armoredMessage, ConsumerOptions options)
+            throws PGPException, IOException {
+        return processReadWithBufferSize(armoredMessage, options, 16 * 1024);
+    }
+
+    private static Tuple<String, MessageMetadata> processReadWithBufferSize(String armoredMessage, ConsumerOptions options, int bufferSize)
+            throws PGPException, IOException {
+        OpenPgpMessageInputStream in = get(armoredMessage, options);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        byte[] buf = new byte[bufferSize];
+        int r;
+        while ((r = in.read(buf, 0, buf.length)) != -1) {
+            out.write(buf, 0, r);
+        }
+
+        in.close();
+        MessageMetadata metadata = in.getMetadata();
+        return new Tuple<>(out.toString(), metadata);
+    }
+
     private static OpenPgpMessageInputStream get(String armored, ConsumerOptions options)
             throws IOException, PGPException {
         ByteArrayInputStream bytesIn = new ByteArrayInputStream(armored.getBytes(StandardCharsets.UTF_8));
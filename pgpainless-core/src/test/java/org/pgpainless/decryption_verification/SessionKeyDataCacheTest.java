@@ -0,0 +1,212 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.operator.PublicKeyDataDecryptorFactory;
+import org.bouncycastle.openpgp.operator.bc.BcPublicKeyDataDecryptorFactory;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.EncryptionPurpose;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.key.OpenPgpV4Fingerprint;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.key.protection.UnlockSecretKey;
+import org.pgpainless.util.Passphrase;
+
+public class SessionKeyDataCacheTest {
+
+    private static final SubkeyIdentifier ALICE = new SubkeyIdentifier(
+            new OpenPgpV4Fingerprint("C8AE427959585F4686A98B5FEC697C292BE444E0"),
+            new OpenPgpV4Fingerprint("0F5EEC1AF42FC65DD7C1F9BE48E1A0A2AFC45D6D"));
+    private static final SubkeyIdentifier BOB = new SubkeyIdentifier(
+            new OpenPgpV4Fingerprint("A0C70B7E0C8C7E49A98E32AFB58F5AC1C4D42B3D"));
+
+    @Test
+    public void testInvalidMaxSize() {
+        assertThrows(IllegalArgumentException.class, () -> new SessionKeyDataCache(0));
+    }
+
+    @Test
+    public void testCachingHardwareDecryptorFactory()
+            throws PGPException, IOException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKey = PGPainless.generateKeyRing().modernKeyRing("Alice");
+        PGPPublicKeyRing cert = PGPainless.extractCertificate(secretKey);
+        PGPPublicKey encryptionKey = PGPainless.inspectKeyRing(secretKey)
+                .getEncryptionSubkeys(EncryptionPurpose.ANY).get(0);
+        PGPPrivateKey privateKey = UnlockSecretKey.unlockSecretKey(
+                secretKey.getSecretKey(encryptionKey.getKeyID()), Passphrase.emptyPassphrase());
+
+        String plaintext = "Hello, World!\n";
+        ByteArrayOutputStream ciphertextOut = new ByteArrayOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(ciphertextOut)
+                .withOptions(ProducerOptions.encrypt(EncryptionOptions.get()
+                        .addRecipient(cert)));
+        encryptionStream.write(plaintext.getBytes(StandardCharsets.UTF_8));
+        encryptionStream.close();
+
+        AtomicInteger hardwareOperations = new AtomicInteger();
+        HardwareSecurity.DecryptionCallback hardwareDecryptionCallback = new HardwareSecurity.DecryptionCallback() {
+            @Override
+            public byte[] decryptSessionKey(long keyId, int keyAlgorithm, byte[] sessionKeyData)
+                    throws HardwareSecurity.HardwareSecurityException {
+                hardwareOperations.incrementAndGet();
+                try {
+                    PublicKeyDataDecryptorFactory internal = new BcPublicKeyDataDecryptorFactory(privateKey);
+                    return internal.recoverSessionData(keyAlgorithm, new byte[][] {sessionKeyData});
+                } catch (PGPException e) {
+                    throw new HardwareSecurity.HardwareSecurityException();
+                }
+            }
+        };
+
+        SessionKeyDataCache cache = new SessionKeyDataCache();
+        CachingPublicKeyDataDecryptorFactory cachingFactory = new CachingPublicKeyDataDecryptorFactory(
+                new HardwareSecurity.HardwareDataDecryptorFactory(
+                        new SubkeyIdentifier(cert, encryptionKey.getKeyID()),
+                        hardwareDecryptionCallback),
+                cache);
+
+        for (int i = 0; i < 3; i++) {
+            DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                    .onInputStream(new ByteArrayInputStream(ciphertextOut.toByteArray()))
+                    .withOptions(ConsumerOptions.get()
+                            .addCustomDecryptorFactory(cachingFactory));
+
+            ByteArrayOutputStream decryptedOut = new ByteArrayOutputStream();
+            Streams.pipeAll(decryptionStream, decryptedOut);
+            decryptionStream.close();
+
+            assertEquals(plaintext, decryptedOut.toString());
+        }
+
+        assertEquals(1, hardwareOperations.get());
+        assertEquals(1, cache.getMissCount());
+        // subsequent lookups of the same session key are answered from the cache
+        assertTrue(cache.getHitCount() >= 2);
+    }
+
+    @Test
+    public void testEntriesAreScopedToDecryptionKeyAndAlgorithm() {
+        SessionKeyDataCache cache = new SessionKeyDataCache();
+        byte[][] secKeyData = new byte[][] {new byte[] {1, 2, 3}, new byte[] {4, 5}};
+        byte[] sessionKey = new byte[] {9, 8, 7};
+
+        cache.put(ALICE, 1, secKeyData, sessionKey);
+
+        assertArrayEquals(sessionKey, cache.get(ALICE, 1, new byte[][] {new byte[] {1, 2, 3}, new byte[] {4, 5}}));
+        assertNull(cache.get(ALICE, 1, new byte[][] {new byte[] {1, 2, 3}}));
+        assertNull(cache.get(ALICE, 1, new byte[][] {new byte[] {1, 2, 3}, new byte[] {4, 6}}));
+        assertNull(cache.get(ALICE, 16, secKeyData));
+        assertNull(cache.get(BOB, 1, secKeyData));
+    }
+
+    @Test
+    public void testCacheStoresCopies() {
+        SessionKeyDataCache cache = new SessionKeyDataCache();
+        byte[][] secKeyData = new byte[][] {new byte[] {1, 2, 3}};
+        byte[] sessionKey = new byte[] {9, 8, 7};
+
+        cache.put(ALICE, 1, secKeyData, sessionKey);
+        secKeyData[0][0] = 0;
+        sessionKey[0] = 0;
+
+        assertNull(cache.get(ALICE, 1, secKeyData));
+        assertArrayEquals(new byte[] {9, 8, 7}, cache.get(ALICE, 1, new byte[][] {new byte[] {1, 2, 3}}));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        SessionKeyDataCache cache = new SessionKeyDataCache(1);
+        byte[][] first = new byte[][] {new byte[] {1}};
+        byte[][] second = new byte[][] {new byte[] {2}};
+
+        cache.put(ALICE, 1, first, new byte[] {1});
+        cache.put(ALICE, 1, second, new byte[] {2});
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get(ALICE, 1, first));
+        assertArrayEquals(new byte[] {2}, cache.get(ALICE, 1, second));
+    }
+
+    @Test
+    public void testInvalidateAndClear() {
+        SessionKeyDataCache cache = new SessionKeyDataCache();
+        for (byte i = 0; i < 10; i++) {
+            cache.put(ALICE, 1, new byte[][] {new byte[] {i}}, new byte[] {i});
+            cache.put(BOB, 1, new byte[][] {new byte[] {i}}, new byte[] {i});
+        }
+        assertEquals(20, cache.size());
+
+        cache.invalidate(ALICE);
+        assertEquals(10, cache.size());
+        assertNull(cache.get(ALICE, 1, new byte[][] {new byte[] {0}}));
+        assertArrayEquals(new byte[] {0}, cache.get(BOB, 1, new byte[][] {new byte[] {0}}));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        SessionKeyDataCache cache = new SessionKeyDataCache(64);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 10000; i++) {
+                        byte value = (byte) (i % 128);
+                        byte[][] secKeyData = new byte[][] {new byte[] {value, (byte) (value ^ 0x55)}};
+                        byte[] sessionKey = cache.get(ALICE, 1, secKeyData);
+                        if (sessionKey == null) {
+                            cache.put(ALICE, 1, secKeyData, new byte[] {value});
+                        } else if (sessionKey[0] != value) {
+                            throw new AssertionError("Wrong session key for " + value);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertTrue(cache.size() <= 64);
+        assertEquals(80000, cache.getHitCount() + cache.getMissCount());
+    }
+}
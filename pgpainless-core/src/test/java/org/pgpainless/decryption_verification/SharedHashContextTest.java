@@ -0,0 +1,146 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.DocumentSignatureType;
+import org.pgpainless.encryption_signing.EncryptionResult;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.encryption_signing.SigningOptions;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.key.generation.type.rsa.RsaLength;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+
+/**
+ * Test verification of messages with multiple signatures using the same hash algorithm.
+ * Those signatures share a single hash context over the literal data.
+ */
+public class SharedHashContextTest {
+
+    private static final byte[] DATA = "Hello\nWorld\r\nfrom\rthree signers\n".getBytes(StandardCharsets.UTF_8);
+    private static final SecretKeyRingProtector protector = SecretKeyRingProtector.unprotectedKeys();
+    private static List<PGPSecretKeyRing> signerKeys;
+
+    @BeforeAll
+    public static void generateKeys()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        signerKeys = Arrays.asList(
+                PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>"),
+                PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>"),
+                PGPainless.generateKeyRing().simpleRsaKeyRing("Charlie <charlie@pgpainless.org>", RsaLength._3072));
+    }
+
+    @Test
+    public void verifyInlineBinarySignatures() throws PGPException, IOException {
+        byte[] signed = signInline(DocumentSignatureType.BINARY_DOCUMENT);
+        MessageMetadata metadata = verify(signed, new ArrayList<>(), DATA);
+
+        assertEquals(3, metadata.getVerifiedInlineSignatures().size());
+        assertTrue(metadata.getRejectedInlineSignatures().isEmpty());
+    }
+
+    @Test
+    public void verifyInlineTextSignatures() throws PGPException, IOException {
+        byte[] signed = signInline(DocumentSignatureType.CANONICAL_TEXT_DOCUMENT);
+        MessageMetadata metadata = verify(signed, new ArrayList<>(), DATA);
+
+        assertEquals(3, metadata.getVerifiedInlineSignatures().size());
+        assertTrue(metadata.getRejectedInlineSignatures().isEmpty());
+    }
+
+    @Test
+    public void verifyDetachedSignatures() throws PGPException, IOException {
+        List<PGPSignature> detached = signDetached(DATA);
+        MessageMetadata metadata = verify(DATA, detached, DATA);
+
+        assertEquals(3, metadata.getVerifiedDetachedSignatures().size());
+        assertTrue(metadata.getRejectedDetachedSignatures().isEmpty());
+    }
+
+    @Test
+    public void rejectOnlyDetachedSignatureOverDifferentData() throws PGPException, IOException {
+        List<PGPSignature> detached = signDetached(DATA);
+        detached.set(1, signDetached("Something else".getBytes(StandardCharsets.UTF_8)).get(1));
+        MessageMetadata metadata = verify(DATA, detached, DATA);
+
+        assertEquals(2, metadata.getVerifiedDetachedSignatures().size());
+        assertEquals(1, metadata.getRejectedDetachedSignatures().size());
+    }
+
+    private byte[] signInline(DocumentSignatureType signatureType) throws PGPException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncryptionStream signingStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(out)
+                .withOptions(ProducerOptions.sign(
+                        SigningOptions.get().addInlineSignatures(protector, signerKeys, signatureType)));
+        signingStream.write(DATA);
+        signingStream.close();
+        return out.toByteArray();
+    }
+
+    private List<PGPSignature> signDetached(byte[] data) throws PGPException, IOException {
+        SigningOptions signingOptions = SigningOptions.get();
+        for (PGPSecretKeyRing key : signerKeys) {
+            signingOptions.addDetachedSignature(protector, key, DocumentSignatureType.BINARY_DOCUMENT);
+        }
+        EncryptionStream signingStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(new ByteArrayOutputStream())
+                .withOptions(ProducerOptions.sign(signingOptions));
+        signingStream.write(data);
+        signingStream.close();
+
+        EncryptionResult result = signingStream.getResult();
+        List<PGPSignature> signatures = new ArrayList<>();
+        // keep signatures in the order of the signer keys
+        for (PGPSecretKeyRing key : signerKeys) {
+            for (SubkeyIdentifier signingKey : result.getDetachedSignatures().keySet()) {
+                if (signingKey.getPrimaryKeyId() == key.getPublicKey().getKeyID()) {
+                    signatures.addAll(result.getDetachedSignatures().get(signingKey));
+                }
+            }
+        }
+        return signatures;
+    }
+
+    private MessageMetadata verify(byte[] message, List<PGPSignature> detachedSignatures, byte[] expectedPlaintext)
+            throws PGPException, IOException {
+        ConsumerOptions options = ConsumerOptions.get();
+        for (PGPSecretKeyRing key : signerKeys) {
+            options.addVerificationCert(PGPainless.extractCertificate(key));
+        }
+        options.addVerificationOfDetachedSignatures(detachedSignatures);
+
+        DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(message))
+                .withOptions(options);
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        Streams.pipeAll(decryptionStream, plaintext);
+        decryptionStream.close();
+
+        assertArrayEquals(expectedPlaintext, plaintext.toByteArray());
+        return decryptionStream.getMetadata();
+    }
+}
@@ -0,0 +1,318 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.decryption_verification.session_keys;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.SymmetricKeyAlgorithm;
+import org.pgpainless.decryption_verification.ConsumerOptions;
+import org.pgpainless.decryption_verification.DecryptionStream;
+import org.pgpainless.decryption_verification.MessageMetadata;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.util.SessionKey;
+
+public class FileBasedSessionKeyIndexTest {
+
+    private static final byte[] INDEX_KEY = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testIndexKeyTooShort() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new FileBasedSessionKeyIndex(new File(tempDir, "index"), new byte[15]));
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        File file = new File(tempDir, "index");
+        SubkeyIdentifier decryptionKey = new SubkeyIdentifier(
+                OpenPgpFingerprint.parse("7F9116FEA90A5983936C7CFAA027DB2F3E1E118A"),
+                OpenPgpFingerprint.parse("D1A66E1A23B182C9980F788CFBFCC82A015E7330"));
+        IndexedSessionKey sessionKey = new IndexedSessionKey(
+                new SessionKey(SymmetricKeyAlgorithm.AES_256, new byte[32]), decryptionKey);
+        IndexedSessionKey otherSessionKey = new IndexedSessionKey(
+                new SessionKey(SymmetricKeyAlgorithm.AES_128, new byte[] {
+                        1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}), null);
+
+        FileBasedSessionKeyIndex index = new FileBasedSessionKeyIndex(file, INDEX_KEY);
+        assertNull(index.getSessionKey(new byte[] {1}));
+        index.putSessionKey(new byte[] {1}, sessionKey);
+        index.putSessionKey(new byte[] {2}, otherSessionKey);
+        assertEquals(2, index.size());
+        assertSessionKeyEquals(sessionKey, index.getSessionKey(new byte[] {1}));
+        assertSessionKeyEquals(otherSessionKey, index.getSessionKey(new byte[] {2}));
+        assertNull(index.getSessionKey(new byte[] {3}));
+
+        // existing entries are replaced
+        index.putSessionKey(new byte[] {2}, sessionKey);
+        assertEquals(2, index.size());
+        assertSessionKeyEquals(sessionKey, index.getSessionKey(new byte[] {2}));
+        // putting the same session key again does not add a record
+        long length = file.length();
+        index.putSessionKey(new byte[] {1}, sessionKey);
+        assertEquals(length, file.length());
+        // the same session key with a different decryption key is replaced
+        index.putSessionKey(new byte[] {1}, new IndexedSessionKey(sessionKey.getSessionKey(), null));
+        assertEquals(2, index.size());
+        assertSessionKeyEquals(new IndexedSessionKey(sessionKey.getSessionKey(), null), index.getSessionKey(new byte[] {1}));
+        index.putSessionKey(new byte[] {1}, sessionKey);
+        index.close();
+
+        // reopen
+        index = new FileBasedSessionKeyIndex(file, INDEX_KEY);
+        assertEquals(2, index.size());
+        assertSessionKeyEquals(sessionKey, index.getSessionKey(new byte[] {1}));
+        assertSessionKeyEquals(sessionKey, index.getSessionKey(new byte[] {2}));
+        index.close();
+    }
+
+    @Test
+    public void testWrongIndexKey() throws IOException {
+        File file = new File(tempDir, "index");
+        new FileBasedSessionKeyIndex(file, INDEX_KEY).close();
+
+        byte[] wrongKey = INDEX_KEY.clone();
+        wrongKey[0] ^= 1;
+        assertThrows(IOException.class, () -> new FileBasedSessionKeyIndex(file, wrongKey));
+    }
+
+    @Test
+    public void testTamperedRecordIsRejected() throws IOException {
+        File file = new File(tempDir, "index");
+        FileBasedSessionKeyIndex index = new FileBasedSessionKeyIndex(file, INDEX_KEY);
+        index.putSessionKey(new byte[] {1}, indexedSessionKey(SymmetricKeyAlgorithm.AES_256, 32));
+        index.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long last = raf.length() - 1;
+            raf.seek(last);
+            int b = raf.read();
+            raf.seek(last);
+            raf.write(b ^ 1);
+        }
+
+        FileBasedSessionKeyIndex reopened = new FileBasedSessionKeyIndex(file, INDEX_KEY);
+        assertThrows(IOException.class, () -> reopened.getSessionKey(new byte[] {1}));
+        reopened.close();
+    }
+
+    @Test
+    public void testIncompleteRecordIsDropped() throws IOException {
+        File file = new File(tempDir, "index");
+        FileBasedSessionKeyIndex index = new FileBasedSessionKeyIndex(file, INDEX_KEY);
+        index.putSessionKey(new byte[] {1}, indexedSessionKey(SymmetricKeyAlgorithm.AES_256, 32));
+        index.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() + 10);
+        }
+
+        index = new FileBasedSessionKeyIndex(file, INDEX_KEY);
+        assertEquals(1, index.size());
+        index.putSessionKey(new byte[] {2}, indexedSessionKey(SymmetricKeyAlgorithm.AES_128, 16));
+        assertNotNull(index.getSessionKey(new byte[] {1}));
+        assertNotNull(index.getSessionKey(new byte[] {2}));
+        index.close();
+    }
+
+    @Test
+    public void testRepeatedDecryptionUsesIndexedSessionKey()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice");
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(secretKeys);
+        String plaintext = "Hello, World!\n";
+
+        ByteArrayOutputStream ciphertextOut = new ByteArrayOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(ciphertextOut)
+                .withOptions(ProducerOptions.encrypt(EncryptionOptions.get().addRecipient(certificate)));
+        encryptionStream.write(plaintext.getBytes(StandardCharsets.UTF_8));
+        encryptionStream.close();
+        byte[] ciphertext = ciphertextOut.toByteArray();
+
+        File file = new File(tempDir, "index");
+        FileBasedSessionKeyIndex index = new FileBasedSessionKeyIndex(file, INDEX_KEY);
+
+        // First decryption uses the secret key and records the session key
+        MessageMetadata first = decrypt(ciphertext, plaintext, ConsumerOptions.get()
+                .setSessionKeyIndex(index)
+                .addDecryptionKey(secretKeys));
+        assertEquals(1, index.size());
+        assertNotNull(first.getDecryptionKey());
+        index.close();
+
+        // Second decryption does not need the secret key
+        index = new FileBasedSessionKeyIndex(file, INDEX_KEY);
+        MessageMetadata second = decrypt(ciphertext, plaintext, ConsumerOptions.get()
+                .setSessionKeyIndex(index));
+        assertSessionKeyEquals(first.getSessionKey(), second.getSessionKey());
+        assertEquals(first.getEncryptionLayers().next().getRecipients(),
+                second.getEncryptionLayers().next().getRecipients());
+        assertFalse(second.getEncryptionLayers().next().getRecipients().isEmpty());
+        assertEquals(first.getDecryptionKey(), second.getDecryptionKey());
+        assertEquals(1, index.size());
+        index.close();
+    }
+
+    @Test
+    public void testMessageIdentifierDoesNotDependOnStreamChunking()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice");
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(secretKeys);
+        String plaintext = "Hello, World!\n";
+        byte[] ciphertext = encrypt(certificate, plaintext);
+
+        InMemorySessionKeyIndex index = new InMemorySessionKeyIndex();
+        MessageMetadata first = decrypt(new OneByteAtATimeInputStream(ciphertext), plaintext, ConsumerOptions.get()
+                .setSessionKeyIndex(index)
+                .addDecryptionKey(secretKeys));
+        assertEquals(1, index.sessionKeys.size());
+
+        // reading the message in one go results in the same identifier
+        decrypt(ciphertext, plaintext, ConsumerOptions.get()
+                .setSessionKeyIndex(index)
+                .addDecryptionKey(secretKeys));
+        assertEquals(1, index.sessionKeys.size());
+
+        // the indexed session key is found when reading the message one byte at a time
+        MessageMetadata second = decrypt(new OneByteAtATimeInputStream(ciphertext), plaintext, ConsumerOptions.get()
+                .setSessionKeyIndex(index));
+        assertEquals(first.getDecryptionKey(), second.getDecryptionKey());
+        assertEquals(1, index.sessionKeys.size());
+    }
+
+    @Test
+    public void testStaleSessionKeyIsReplaced()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice");
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(secretKeys);
+        String plaintext = "Hello, World!\n";
+        byte[] ciphertext = encrypt(certificate, plaintext);
+
+        InMemorySessionKeyIndex index = new InMemorySessionKeyIndex();
+        MessageMetadata first = decrypt(ciphertext, plaintext, ConsumerOptions.get()
+                .setSessionKeyIndex(index)
+                .addDecryptionKey(secretKeys));
+        assertEquals(1, index.sessionKeys.size());
+        byte[] messageIdentifier = index.sessionKeys.keySet().iterator().next().array();
+
+        // a different message to the same recipient has a different identifier
+        decrypt(encrypt(certificate, plaintext), plaintext, ConsumerOptions.get()
+                .setSessionKeyIndex(index)
+                .addDecryptionKey(secretKeys));
+        assertEquals(2, index.sessionKeys.size());
+
+        // replace the indexed session key with a wrong one
+        index.putSessionKey(messageIdentifier, indexedSessionKey(SymmetricKeyAlgorithm.AES_256, 32));
+        MessageMetadata second = decrypt(ciphertext, plaintext, ConsumerOptions.get()
+                .setSessionKeyIndex(index)
+                .addDecryptionKey(secretKeys));
+        assertNotNull(second.getDecryptionKey());
+        assertSessionKeyEquals(first.getSessionKey(), index.getSessionKey(messageIdentifier).getSessionKey());
+        assertEquals(first.getDecryptionKey(), index.getSessionKey(messageIdentifier).getDecryptionKey());
+    }
+
+    private static byte[] encrypt(PGPPublicKeyRing certificate, String plaintext) throws PGPException, IOException {
+        ByteArrayOutputStream ciphertextOut = new ByteArrayOutputStream();
+        EncryptionStream encryptionStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(ciphertextOut)
+                .withOptions(ProducerOptions.encrypt(EncryptionOptions.get().addRecipient(certificate)));
+        encryptionStream.write(plaintext.getBytes(StandardCharsets.UTF_8));
+        encryptionStream.close();
+        return ciphertextOut.toByteArray();
+    }
+
+    private static MessageMetadata decrypt(byte[] ciphertext, String expectedPlaintext, ConsumerOptions options)
+            throws PGPException, IOException {
+        return decrypt(new ByteArrayInputStream(ciphertext), expectedPlaintext, options);
+    }
+
+    private static MessageMetadata decrypt(InputStream ciphertext, String expectedPlaintext, ConsumerOptions options)
+            throws PGPException, IOException {
+        DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(ciphertext)
+                .withOptions(options);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Streams.pipeAll(decryptionStream, out);
+        decryptionStream.close();
+        assertEquals(expectedPlaintext, out.toString());
+        return decryptionStream.getMetadata();
+    }
+
+    private static IndexedSessionKey indexedSessionKey(SymmetricKeyAlgorithm algorithm, int keyLength) {
+        return new IndexedSessionKey(new SessionKey(algorithm, new byte[keyLength]), null);
+    }
+
+    private static void assertSessionKeyEquals(IndexedSessionKey expected, IndexedSessionKey actual) {
+        assertNotNull(actual);
+        assertSessionKeyEquals(expected.getSessionKey(), actual.getSessionKey());
+        assertEquals(expected.getDecryptionKey(), actual.getDecryptionKey());
+    }
+
+    private static void assertSessionKeyEquals(SessionKey expected, SessionKey actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getAlgorithm(), actual.getAlgorithm());
+        assertArrayEquals(expected.getKey(), actual.getKey());
+    }
+
+    private static class InMemorySessionKeyIndex implements SessionKeyIndex {
+
+        private final Map<ByteBuffer, IndexedSessionKey> sessionKeys = new HashMap<>();
+
+        @Override
+        public IndexedSessionKey getSessionKey(@Nonnull byte[] messageIdentifier) {
+            return sessionKeys.get(ByteBuffer.wrap(messageIdentifier));
+        }
+
+        @Override
+        public void putSessionKey(@Nonnull byte[] messageIdentifier, @Nonnull IndexedSessionKey sessionKey) {
+            sessionKeys.put(ByteBuffer.wrap(messageIdentifier.clone()), sessionKey);
+        }
+    }
+
+    private static class OneByteAtATimeInputStream extends ByteArrayInputStream {
+
+        OneByteAtATimeInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(@Nonnull byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
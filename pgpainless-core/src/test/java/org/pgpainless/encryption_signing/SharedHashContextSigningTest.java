@@ -0,0 +1,140 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.encryption_signing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.operator.bc.BcPGPContentVerifierBuilderProvider;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestTemplate;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.DocumentSignatureType;
+import org.pgpainless.algorithm.HashAlgorithm;
+import org.pgpainless.decryption_verification.ConsumerOptions;
+import org.pgpainless.decryption_verification.DecryptionStream;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.key.generation.type.rsa.RsaLength;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.util.TestAllImplementations;
+
+/**
+ * Test signing with multiple keys using the same hash algorithm.
+ * Those signatures are generated from a single hash context over the data, if the BC implementation is used.
+ * Other implementations generate the signatures individually.
+ */
+public class SharedHashContextSigningTest {
+
+    private static final byte[] DATA = "Hello\nWorld\r\nfrom\rthree signers\n".getBytes(StandardCharsets.UTF_8);
+    private static final SecretKeyRingProtector protector = SecretKeyRingProtector.unprotectedKeys();
+    private static List<PGPSecretKeyRing> signerKeys;
+
+    @BeforeAll
+    public static void generateKeys()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        signerKeys = Arrays.asList(
+                PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>"),
+                PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>"),
+                PGPainless.generateKeyRing().simpleRsaKeyRing("Charlie <charlie@pgpainless.org>", RsaLength._3072));
+    }
+
+    @TestTemplate
+    @ExtendWith(TestAllImplementations.class)
+    public void detachedSignaturesAreCorrect() throws PGPException, IOException, NoSuchAlgorithmException {
+        SigningOptions signingOptions = SigningOptions.get().overrideHashAlgorithm(HashAlgorithm.SHA512);
+        for (PGPSecretKeyRing key : signerKeys) {
+            signingOptions.addDetachedSignature(protector, key, DocumentSignatureType.BINARY_DOCUMENT);
+        }
+        EncryptionStream signingStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(new ByteArrayOutputStream())
+                .withOptions(ProducerOptions.sign(signingOptions));
+        // write data with an offset into the buffer
+        byte[] buffer = new byte[DATA.length + 3];
+        System.arraycopy(DATA, 0, buffer, 3, DATA.length);
+        signingStream.write(buffer, 3, DATA.length);
+        signingStream.close();
+
+        EncryptionResult result = signingStream.getResult();
+        assertEquals(3, result.getDetachedSignatures().size());
+        for (SubkeyIdentifier signingKey : result.getDetachedSignatures().keySet()) {
+            for (PGPSignature signature : result.getDetachedSignatures().get(signingKey)) {
+                // Verify using plain BC
+                signature.init(new BcPGPContentVerifierBuilderProvider(),
+                        PGPainless.extractCertificate(findKey(signingKey)).getPublicKey(signingKey.getSubkeyId()));
+                signature.update(DATA);
+                assertTrue(signature.verify());
+
+                // The digest prefix matches the hash of the data and the signature trailer
+                MessageDigest digest = MessageDigest.getInstance("SHA-512");
+                digest.update(DATA);
+                digest.update(signature.getSignatureTrailer());
+                byte[] hash = digest.digest();
+                assertArrayEquals(Arrays.copyOf(hash, 2), signature.getDigestPrefix());
+            }
+        }
+    }
+
+    @TestTemplate
+    @ExtendWith(TestAllImplementations.class)
+    public void inlineBinarySignaturesAreCorrect() throws PGPException, IOException {
+        inlineSignaturesAreCorrect(DocumentSignatureType.BINARY_DOCUMENT);
+    }
+
+    @TestTemplate
+    @ExtendWith(TestAllImplementations.class)
+    public void inlineTextSignaturesAreCorrect() throws PGPException, IOException {
+        inlineSignaturesAreCorrect(DocumentSignatureType.CANONICAL_TEXT_DOCUMENT);
+    }
+
+    private void inlineSignaturesAreCorrect(DocumentSignatureType signatureType) throws PGPException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncryptionStream signingStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(out)
+                .withOptions(ProducerOptions.sign(
+                        SigningOptions.get().addInlineSignatures(protector, signerKeys, signatureType)));
+        signingStream.write(DATA);
+        signingStream.close();
+
+        ConsumerOptions consumerOptions = ConsumerOptions.get();
+        for (PGPSecretKeyRing key : signerKeys) {
+            consumerOptions.addVerificationCert(PGPainless.extractCertificate(key));
+        }
+        DecryptionStream verificationStream = PGPainless.decryptAndOrVerify()
+                .onInputStream(new ByteArrayInputStream(out.toByteArray()))
+                .withOptions(consumerOptions);
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        Streams.pipeAll(verificationStream, plaintext);
+        verificationStream.close();
+
+        assertArrayEquals(DATA, plaintext.toByteArray());
+        assertEquals(3, verificationStream.getMetadata().getVerifiedInlineSignatures().size());
+        assertTrue(verificationStream.getMetadata().getRejectedInlineSignatures().isEmpty());
+    }
+
+    private static PGPSecretKeyRing findKey(SubkeyIdentifier signingKey) {
+        for (PGPSecretKeyRing key : signerKeys) {
+            if (key.getPublicKey().getKeyID() == signingKey.getPrimaryKeyId()) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("Unknown signing key " + signingKey);
+    }
+}
@@ -0,0 +1,163 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.info;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.KeyFlag;
+import org.pgpainless.key.generation.KeySpec;
+import org.pgpainless.key.generation.type.KeyType;
+import org.pgpainless.key.generation.type.eddsa.EdDSACurve;
+import org.pgpainless.key.generation.type.xdh.XDHSpec;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.key.util.RevocationAttributes;
+import org.pgpainless.util.Passphrase;
+
+public class CertificateTimelineTest {
+
+    @Test
+    public void testTimelineMatchesKeyRingInfo()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        Date now = new Date();
+        Date revocation = new Date(now.getTime() + 60 * 60 * 1000);
+        Date expiration = new Date(now.getTime() + 2 * 60 * 60 * 1000);
+        PGPSecretKeyRing secretKeys = PGPainless.buildKeyRing()
+                .setPrimaryKey(KeySpec.getBuilder(KeyType.EDDSA(EdDSACurve._Ed25519),
+                        KeyFlag.CERTIFY_OTHER, KeyFlag.SIGN_DATA))
+                .addSubkey(KeySpec.getBuilder(KeyType.XDH(XDHSpec._X25519),
+                        KeyFlag.ENCRYPT_COMMS, KeyFlag.ENCRYPT_STORAGE))
+                .addUserId("Alice <alice@pgpainless.org>")
+                .addUserId("Alice <alice@example.org>")
+                .setExpirationDate(expiration)
+                .build();
+        secretKeys = PGPainless.modifyKeyRing(secretKeys, revocation)
+                .revokeUserId("Alice <alice@example.org>", SecretKeyRingProtector.unprotectedKeys(),
+                        RevocationAttributes.createCertificateRevocation()
+                                .withReason(RevocationAttributes.Reason.USER_ID_NO_LONGER_VALID)
+                                .withoutDescription())
+                .done();
+
+        CertificateTimeline timeline = CertificateTimeline.of(secretKeys);
+        Date keyCreation = secretKeys.getPublicKey().getCreationTime();
+        List<Date> dates = Arrays.asList(
+                new Date(keyCreation.getTime() - 1000),
+                keyCreation,
+                new Date(keyCreation.getTime() + 1000),
+                new Date(revocation.getTime() - 1000),
+                revocation,
+                new Date(revocation.getTime() + 1000),
+                new Date(expiration.getTime() - 1000),
+                new Date(expiration.getTime() + 1000),
+                now);
+
+        for (Date date : dates) {
+            KeyRingInfo info = new KeyRingInfo(secretKeys, date);
+            // In contrast to KeyRingInfo.isKeyValidlyBound(), the timeline also respects creation and expiration
+            boolean primaryKeyValid = !date.before(keyCreation) && !date.after(expiration)
+                    && info.isKeyValidlyBound(secretKeys.getPublicKey().getKeyID());
+            assertEquals(primaryKeyValid, timeline.isPrimaryKeyValid(date), "Primary key validity at " + date);
+            for (String userId : Arrays.asList("Alice <alice@pgpainless.org>", "Alice <alice@example.org>")) {
+                assertEquals(primaryKeyValid && info.isUserIdValid(userId), timeline.isUserIdValid(userId, date),
+                        "Validity of " + userId + " at " + date);
+            }
+            Iterator<PGPPublicKey> keys = secretKeys.getPublicKeys();
+            while (keys.hasNext()) {
+                long keyId = keys.next().getKeyID();
+                boolean valid = primaryKeyValid && info.isKeyValidlyBound(keyId);
+                assertEquals(valid, timeline.isKeyValid(keyId, date), "Key validity at " + date);
+                if (valid) {
+                    assertEquals(info.getKeyFlagsOf(keyId), timeline.getKeyFlags(keyId, date));
+                } else {
+                    assertTrue(timeline.getKeyFlags(keyId, date).isEmpty());
+                }
+            }
+        }
+
+        assertTrue(timeline.isUserIdValid("Alice <alice@example.org>", new Date(revocation.getTime() - 1000)));
+        assertFalse(timeline.isUserIdValid("Alice <alice@example.org>", new Date(revocation.getTime() + 1000)));
+        assertTrue(timeline.isPrimaryKeyValid(new Date(expiration.getTime() - 1000)));
+        assertFalse(timeline.isPrimaryKeyValid(new Date(expiration.getTime() + 1000)));
+    }
+
+    @Test
+    public void testValidityIntervals()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        Date keyCreation = secretKeys.getPublicKey().getCreationTime();
+        // the self-signature might have been created a second after the key
+        Date selfSignatureCreation = PGPainless.inspectKeyRing(secretKeys)
+                .getLatestUserIdCertification("Alice <alice@pgpainless.org>").getCreationTime();
+        CertificateTimeline timeline = CertificateTimeline.of(secretKeys);
+
+        List<CertificateTimeline.Interval> intervals = timeline.getPrimaryKeyValidityIntervals();
+        assertEquals(1, intervals.size());
+        CertificateTimeline.Interval interval = intervals.get(0);
+        assertEquals(selfSignatureCreation, interval.getStart());
+        assertNull(interval.getEnd());
+        assertTrue(interval.contains(new Date()));
+        assertFalse(interval.contains(new Date(keyCreation.getTime() - 1000)));
+
+        assertEquals(intervals.size(), timeline.getUserIdValidityIntervals("Alice <alice@pgpainless.org>").size());
+        assertFalse(timeline.isUserIdValid("Bob <bob@pgpainless.org>", new Date()));
+        assertThrows(NoSuchElementException.class, () -> timeline.getUserIdValidityIntervals("Bob"));
+        assertThrows(NoSuchElementException.class, () -> timeline.getKeyValidityIntervals(123L));
+    }
+
+    @Test
+    public void testSubkeyAddedLater()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        Date keyCreation = secretKeys.getPublicKey().getCreationTime();
+        Date later = new Date(keyCreation.getTime() + 60000);
+        Date afterwards = new Date(later.getTime() + 60000);
+
+        PGPSecretKeyRing modified = PGPainless.modifyKeyRing(secretKeys, later)
+                .addSubKey(KeySpec.getBuilder(KeyType.XDH(XDHSpec._X25519),
+                        KeyFlag.ENCRYPT_COMMS).build(),
+                        Passphrase.emptyPassphrase(),
+                        SecretKeyRingProtector.unprotectedKeys())
+                .done();
+
+        long newKeyId = -1;
+        Iterator<PGPPublicKey> keys = modified.getPublicKeys();
+        while (keys.hasNext()) {
+            PGPPublicKey key = keys.next();
+            if (secretKeys.getPublicKey(key.getKeyID()) == null) {
+                newKeyId = key.getKeyID();
+            }
+        }
+
+        CertificateTimeline timeline = CertificateTimeline.of(modified);
+        assertFalse(timeline.isKeyValid(newKeyId, new Date(later.getTime() - 1000)));
+        assertFalse(timeline.hasKeyFlag(newKeyId, KeyFlag.ENCRYPT_COMMS, new Date(later.getTime() - 1000)));
+        assertTrue(timeline.isKeyValid(newKeyId, afterwards));
+        assertTrue(timeline.hasKeyFlag(newKeyId, KeyFlag.ENCRYPT_COMMS, afterwards));
+        assertEquals(new KeyRingInfo(modified, afterwards).isKeyValidlyBound(newKeyId),
+                timeline.isKeyValid(newKeyId, afterwards));
+
+        List<CertificateTimeline.Interval> flagIntervals =
+                timeline.getKeyFlagIntervals(newKeyId, KeyFlag.ENCRYPT_COMMS);
+        assertEquals(1, flagIntervals.size());
+        assertFalse(flagIntervals.get(0).getStart().after(afterwards));
+    }
+}
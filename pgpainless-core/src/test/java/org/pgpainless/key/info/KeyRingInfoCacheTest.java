@@ -0,0 +1,102 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.info;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.EncryptionPurpose;
+import org.pgpainless.key.OpenPgpV4Fingerprint;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+
+public class KeyRingInfoCacheTest {
+
+    private KeyRingInfoCache previousInstance;
+    private KeyRingInfoCache cache;
+
+    @BeforeEach
+    public void setup() {
+        previousInstance = KeyRingInfoCache.getInstance();
+        cache = new KeyRingInfoCache();
+        KeyRingInfoCache.setInstance(cache);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        KeyRingInfoCache.setInstance(previousInstance);
+    }
+
+    @Test
+    public void testInvalidMaxSize() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyRingInfoCache(0));
+    }
+
+    @Test
+    public void testEvaluationIsReusedWithinInterval()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        Date now = new Date();
+        Date later = new Date(now.getTime() + 60000);
+
+        KeyRingInfo first = PGPainless.inspectKeyRing(secretKeys, now);
+        KeyRingInfo second = PGPainless.inspectKeyRing(secretKeys, later);
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(first.getValidUserIds(), second.getValidUserIds());
+        assertEquals(first.getEncryptionSubkeys(EncryptionPurpose.ANY).size(),
+                second.getEncryptionSubkeys(EncryptionPurpose.ANY).size());
+    }
+
+    @Test
+    public void testDifferentIntervalsAreEvaluatedSeparately()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        Date beforeCreation = new Date(secretKeys.getPublicKey().getCreationTime().getTime() - 60000);
+        Date now = new Date();
+
+        KeyRingInfo before = PGPainless.inspectKeyRing(secretKeys, beforeCreation);
+        KeyRingInfo current = PGPainless.inspectKeyRing(secretKeys, now);
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(new KeyRingInfo(secretKeys, beforeCreation).getValidUserIds(), before.getValidUserIds());
+        assertEquals(new KeyRingInfo(secretKeys, now).getValidUserIds(), current.getValidUserIds());
+        assertEquals(0, before.getValidUserIds().size());
+        assertEquals(1, current.getValidUserIds().size());
+    }
+
+    @Test
+    public void testModifiedKeyRingIsEvaluatedAgain()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        assertEquals(1, PGPainless.inspectKeyRing(secretKeys).getValidUserIds().size());
+
+        PGPSecretKeyRing modified = PGPainless.modifyKeyRing(secretKeys)
+                .addUserId("Alice <alice@example.org>", SecretKeyRingProtector.unprotectedKeys())
+                .done();
+        assertEquals(2, PGPainless.inspectKeyRing(modified).getValidUserIds().size());
+        assertEquals(2, cache.size());
+
+        cache.invalidate(new OpenPgpV4Fingerprint(secretKeys));
+        assertEquals(0, cache.size());
+
+        PGPainless.inspectKeyRing(secretKeys);
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
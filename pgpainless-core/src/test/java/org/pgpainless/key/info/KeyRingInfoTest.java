@@ -23,6 +23,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPPublicKey;
@@ -46,11 +47,13 @@ import org.pgpainless.key.generation.KeySpec;
 import org.pgpainless.key.generation.type.KeyType;
 import org.pgpainless.key.generation.type.ecc.EllipticCurve;
 import org.pgpainless.key.generation.type.eddsa.EdDSACurve;
+import org.pgpainless.key.modification.secretkeyring.SecretKeyRingEditorInterface;
 import org.pgpainless.key.protection.SecretKeyRingProtector;
 import org.pgpainless.key.protection.UnprotectedKeysProtector;
 import org.pgpainless.key.util.KeyRingUtils;
 import org.pgpainless.key.util.RevocationAttributes;
 import org.pgpainless.key.util.UserId;
+import org.pgpainless.signature.consumer.SignatureVerificationCache;
 import org.pgpainless.util.DateUtil;
 import org.pgpainless.util.Passphrase;
 import org.pgpainless.util.TestAllImplementations;
@@ -864,4 +867,60 @@ public class KeyRingInfoTest {
         assertFalse(info.isUsableForEncryption(EncryptionPurpose.COMMUNICATIONS));
         assertFalse(info.isUsableForEncryption(EncryptionPurpose.STORAGE));
     }
+
+    @Test
+    public void testSignaturesAreEvaluatedLazily()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        SignatureVerificationCache previous = SignatureVerificationCache.getInstance();
+        SignatureVerificationCache cache = new SignatureVerificationCache();
+        SignatureVerificationCache.setInstance(cache);
+        try {
+            KeyRingInfo info = PGPainless.inspectKeyRing(secretKeys);
+            assertEquals(new OpenPgpV4Fingerprint(secretKeys), info.getFingerprint());
+            // Cheap queries do not verify any signatures
+            assertEquals(0, cache.getMissCount() + cache.getHitCount());
+
+            assertNotNull(info.getLatestUserIdCertification("Alice <alice@pgpainless.org>"));
+            long lookups = cache.getMissCount() + cache.getHitCount();
+            assertTrue(lookups > 0);
+
+            // Picked signatures are memoized
+            assertNotNull(info.getLatestUserIdCertification("Alice <alice@pgpainless.org>"));
+            assertNull(info.getLatestUserIdCertification("Bob <bob@pgpainless.org>"));
+            assertEquals(lookups, cache.getMissCount() + cache.getHitCount());
+        } finally {
+            SignatureVerificationCache.setInstance(previous);
+        }
+    }
+
+    @Test
+    public void testConcurrentEvaluationMatchesSequentialEvaluation()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        SecretKeyRingEditorInterface editor = PGPainless.modifyKeyRing(secretKeys);
+        for (int i = 0; i < 10; i++) {
+            editor.addUserId("Alice " + i + " <alice" + i + "@pgpainless.org>", SecretKeyRingProtector.unprotectedKeys());
+        }
+        secretKeys = editor.revokeUserId("Alice 3 <alice3@pgpainless.org>", SecretKeyRingProtector.unprotectedKeys())
+                .done();
+
+        Date now = new Date();
+        ForkJoinPool executor = new ForkJoinPool(4);
+        try {
+            KeyRingInfo sequential = KeyRingInfo.evaluate(secretKeys, PGPainless.getPolicy(), now);
+            KeyRingInfo concurrent = KeyRingInfo.evaluate(secretKeys, PGPainless.getPolicy(), now, executor);
+
+            assertEquals(10, concurrent.getValidUserIds().size());
+            assertFalse(concurrent.isUserIdValid("Alice 3 <alice3@pgpainless.org>"));
+            assertEquals(sequential.getValidUserIds(), concurrent.getValidUserIds());
+            assertEquals(sequential.getPrimaryUserId(), concurrent.getPrimaryUserId());
+            for (PGPPublicKey key : sequential.getPublicKeys()) {
+                assertEquals(sequential.isKeyValidlyBound(key.getKeyID()), concurrent.isKeyValidlyBound(key.getKeyID()));
+                assertEquals(sequential.getKeyFlagsOf(key.getKeyID()), concurrent.getKeyFlagsOf(key.getKeyID()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
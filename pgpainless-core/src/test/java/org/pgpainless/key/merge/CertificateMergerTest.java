@@ -0,0 +1,209 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.merge;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nonnull;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.info.KeyRingInfo;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.util.CollectionUtils;
+
+public class CertificateMergerTest {
+
+    private static ExecutorService executor;
+
+    @BeforeAll
+    public static void startExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterAll
+    public static void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMergeUpdatesAndReportChanges()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        SecretKeyRingProtector protector = SecretKeyRingProtector.unprotectedKeys();
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPPublicKeyRing aliceCert = PGPainless.extractCertificate(alice);
+        PGPPublicKeyRing bobCert = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>"));
+        PGPPublicKeyRing charlieCert = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Charlie <charlie@pgpainless.org>"));
+        PGPPublicKeyRing daveCert = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Dave <dave@pgpainless.org>"));
+
+        List<PGPPublicKey> aliceKeys = CollectionUtils.iteratorToList(alice.getPublicKeys());
+        long revokedSubkeyId = aliceKeys.get(aliceKeys.size() - 1).getKeyID();
+        PGPPublicKeyRing aliceUpdate = PGPainless.extractCertificate(PGPainless.modifyKeyRing(alice)
+                .addUserId("Alice <alice@example.org>", protector)
+                .revokeSubKey(revokedSubkeyId, protector)
+                .done());
+
+        List<PGPPublicKeyRing> certificates = Arrays.asList(aliceCert, bobCert, charlieCert);
+        List<PGPPublicKeyRing> updates = Arrays.asList(aliceUpdate, bobCert, daveCert, aliceUpdate);
+
+        for (ExecutorService e : Arrays.asList(executor, null)) {
+            CollectingCallback result = new CollectingCallback();
+            CertificateMerger.merge(certificates, updates, e, result);
+
+            // charlie has no updates and is reported right away
+            assertEquals(Arrays.asList(charlieCert, bobCert), result.unchanged);
+            assertSame(charlieCert, result.unchanged.get(0));
+            assertSame(bobCert, result.unchanged.get(1));
+
+            List<PGPPublicKeyRing> merged = result.changed;
+            assertEquals(2, merged.size());
+            assertEquals(OpenPgpFingerprint.of(aliceCert), OpenPgpFingerprint.of(merged.get(0)));
+            assertArrayEquals(daveCert.getEncoded(), merged.get(1).getEncoded());
+
+            // merging the same update twice does not duplicate signatures
+            PGPPublicKeyRing mergedAlice = merged.get(0);
+            assertEquals(signatureCount(PGPainless.mergeCertificate(aliceCert, aliceUpdate)),
+                    signatureCount(mergedAlice));
+            KeyRingInfo info = PGPainless.inspectKeyRing(mergedAlice);
+            assertTrue(info.isUserIdValid("Alice <alice@example.org>"));
+            assertFalse(info.isKeyValidlyBound(revokedSubkeyId));
+
+            List<CertificateChange> changes = result.changes;
+            assertEquals(2, changes.size());
+            CertificateChange aliceChange = changes.get(0);
+            assertSame(mergedAlice, aliceChange.getCertificate());
+            assertFalse(aliceChange.isNewCertificate());
+            assertEquals(Collections.singletonList("Alice <alice@example.org>"), aliceChange.getNewUserIds());
+            assertTrue(aliceChange.getNewSubkeys().isEmpty());
+            assertEquals(1, aliceChange.getNewRevocations().size());
+            assertEquals(PGPSignature.SUBKEY_REVOCATION, aliceChange.getNewRevocations().get(0).getSignatureType());
+            assertEquals(2, aliceChange.getNewSignatureCount());
+
+            CertificateChange daveChange = changes.get(1);
+            assertEquals(OpenPgpFingerprint.of(daveCert), daveChange.getFingerprint());
+            assertTrue(daveChange.isNewCertificate());
+            assertEquals(Collections.singletonList("Dave <dave@pgpainless.org>"), daveChange.getNewUserIds());
+            assertEquals(2, daveChange.getNewSubkeys().size());
+        }
+    }
+
+    @Test
+    public void testDuplicateSignaturesAreRemoved()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>"));
+        PGPPublicKey primaryKey = certificate.getPublicKey();
+        PGPSignature certification = primaryKey.getSignaturesForID("Alice <alice@pgpainless.org>").next();
+        PGPPublicKeyRing duplicated = PGPPublicKeyRing.insertPublicKey(certificate,
+                PGPPublicKey.addCertification(primaryKey, "Alice <alice@pgpainless.org>", certification));
+        assertEquals(signatureCount(certificate) + 1, signatureCount(duplicated));
+
+        // the duplicate in the update is not a change
+        CollectingCallback result = new CollectingCallback();
+        CertificateMerger.merge(
+                Collections.singletonList(certificate), Collections.singletonList(duplicated), executor, result);
+        assertTrue(result.changes.isEmpty());
+        assertSame(certificate, result.unchanged.get(0));
+
+        // copies of the same certificate in the updates are merged without the duplicate
+        result = new CollectingCallback();
+        CertificateMerger.merge(Collections.<PGPPublicKeyRing>emptyList(), Arrays.asList(duplicated, certificate),
+                executor, result);
+        assertEquals(1, result.changed.size());
+        assertArrayEquals(certificate.getEncoded(), result.changed.get(0).getEncoded());
+        assertEquals(signatureCount(certificate), result.changes.get(0).getNewSignatureCount());
+    }
+
+    @Test
+    public void testOrderIsPreservedAcrossBatches()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        List<PGPPublicKeyRing> updates = new ArrayList<>();
+        for (int i = 0; i < CertificateMerger.BATCH_SIZE * 2 + 1; i++) {
+            updates.add(PGPainless.extractCertificate(PGPainless.generateKeyRing().simpleEcKeyRing("User " + i)));
+        }
+
+        CollectingCallback result = new CollectingCallback();
+        CertificateMerger.merge(Collections.<PGPPublicKeyRing>emptyList(), updates, executor, result);
+        assertEquals(updates.size(), result.changed.size());
+        assertEquals(updates.size(), result.changes.size());
+        for (int i = 0; i < updates.size(); i++) {
+            assertArrayEquals(updates.get(i).getEncoded(), result.changed.get(i).getEncoded());
+            assertTrue(result.changes.get(i).isNewCertificate());
+        }
+    }
+
+    @Test
+    public void testCallbackExceptionAbortsMerge()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        List<PGPPublicKeyRing> updates = new ArrayList<>();
+        for (int i = 0; i < CertificateMerger.BATCH_SIZE + 1; i++) {
+            updates.add(PGPainless.extractCertificate(PGPainless.generateKeyRing().simpleEcKeyRing("User " + i)));
+        }
+
+        final List<PGPPublicKeyRing> reported = new ArrayList<>();
+        CollectingCallback failing = new CollectingCallback() {
+            @Override
+            public void changed(@Nonnull PGPPublicKeyRing certificate, @Nonnull CertificateChange change)
+                    throws IOException {
+                reported.add(certificate);
+                throw new IOException("Disk full");
+            }
+        };
+        assertThrows(IOException.class, () -> CertificateMerger.merge(
+                Collections.<PGPPublicKeyRing>emptyList(), updates, executor, failing));
+        assertEquals(1, reported.size());
+    }
+
+    private static class CollectingCallback implements CertificateMerger.Callback {
+        final List<PGPPublicKeyRing> unchanged = new ArrayList<>();
+        final List<PGPPublicKeyRing> changed = new ArrayList<>();
+        final List<CertificateChange> changes = new ArrayList<>();
+
+        @Override
+        public void unchanged(@Nonnull PGPPublicKeyRing certificate) throws IOException {
+            unchanged.add(certificate);
+        }
+
+        @Override
+        public void changed(@Nonnull PGPPublicKeyRing certificate, @Nonnull CertificateChange change)
+                throws IOException {
+            changed.add(certificate);
+            changes.add(change);
+        }
+    }
+
+    private static int signatureCount(PGPPublicKeyRing certificate) {
+        int count = 0;
+        for (PGPPublicKey key : CollectionUtils.iteratorToList(certificate.getPublicKeys())) {
+            count += CollectionUtils.iteratorToList(key.getSignatures()).size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,165 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bouncycastle.bcpg.BCPGOutputStream;
+import org.bouncycastle.bcpg.PacketTags;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pgpainless.PGPainless;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.generation.type.rsa.RsaLength;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.util.CollectionUtils;
+import org.pgpainless.util.Passphrase;
+import org.pgpainless.util.TestUtils;
+
+public class KeyRingIndexerTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testIndexMatchesParsedKeyRings()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>", "sw0rdf1sh");
+        alice = PGPainless.modifyKeyRing(alice)
+                .addUserId("Alice \u00c5lander <alice@example.org>",
+                        SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword("sw0rdf1sh")))
+                .done();
+        PGPSecretKeyRing bob = PGPainless.generateKeyRing().simpleRsaKeyRing("Bob <bob@pgpainless.org>", RsaLength._3072);
+        PGPPublicKeyRing charlie = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().simpleEcKeyRing("Charlie <charlie@pgpainless.org>"));
+        List<PGPKeyRing> keyRings = Arrays.asList(alice, PGPainless.extractCertificate(bob), bob, charlie);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (PGPKeyRing keyRing : keyRings) {
+            out.write(keyRing.getEncoded());
+            TestUtils.getMarkerPacket().encode(new BCPGOutputStream(out));
+        }
+        File file = write(out.toByteArray());
+
+        List<IndexedKeyRing> index = KeyRingIndexer.index(file);
+        assertEquals(keyRings.size(), index.size());
+        for (int i = 0; i < keyRings.size(); i++) {
+            PGPKeyRing keyRing = keyRings.get(i);
+            IndexedKeyRing entry = index.get(i);
+            assertEquals(keyRing instanceof PGPSecretKeyRing, entry.isSecretKeyRing());
+            assertEquals(OpenPgpFingerprint.of(keyRing), entry.getFingerprint());
+            assertEquals(subkeyFingerprints(keyRing), entry.getSubkeyFingerprints());
+            assertEquals(CollectionUtils.iteratorToList(keyRing.getPublicKey().getUserIDs()), entry.getUserIds());
+            assertArrayEquals(keyRing.getEncoded(), read(file, entry));
+        }
+    }
+
+    @Test
+    public void testCallbackCanAbort()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            out.write(PGPainless.extractCertificate(
+                    PGPainless.generateKeyRing().simpleEcKeyRing("User " + i)).getEncoded());
+        }
+        File file = write(out.toByteArray());
+
+        final List<IndexedKeyRing> seen = new ArrayList<>();
+        assertThrows(IOException.class, () -> KeyRingIndexer.index(file, keyRing -> {
+            seen.add(keyRing);
+            throw new IOException("Abort");
+        }));
+        assertEquals(1, seen.size());
+        assertEquals(Arrays.asList("User 0"), seen.get(0).getUserIds());
+    }
+
+    @Test
+    public void testSecretKeyOfUnknownAlgorithmIsSkipped()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().simpleEcKeyRing("Alice <alice@pgpainless.org>");
+        PGPSecretKeyRing bob = PGPainless.generateKeyRing().simpleEcKeyRing("Bob <bob@pgpainless.org>");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(alice.getEncoded());
+        // V4 secret key packet of the private/experimental algorithm 100, followed by a user-id packet
+        byte[] unknownKey = new byte[] {4, 0x5f, 0x00, 0x00, 0x00, 100, 1, 2, 3, 4, 5, 6, 7, 8};
+        out.write(0x80 | (PacketTags.SECRET_KEY << 2));
+        out.write(unknownKey.length);
+        out.write(unknownKey);
+        byte[] userId = "Mallory <mallory@pgpainless.org>".getBytes(StandardCharsets.UTF_8);
+        out.write(0x80 | (PacketTags.USER_ID << 2));
+        out.write(userId.length);
+        out.write(userId);
+        out.write(bob.getEncoded());
+        File file = write(out.toByteArray());
+
+        List<IndexedKeyRing> index = KeyRingIndexer.index(file);
+        assertEquals(2, index.size());
+        assertEquals(OpenPgpFingerprint.of(alice), index.get(0).getFingerprint());
+        assertArrayEquals(alice.getEncoded(), read(file, index.get(0)));
+        assertEquals(OpenPgpFingerprint.of(bob), index.get(1).getFingerprint());
+        assertEquals(Arrays.asList("Bob <bob@pgpainless.org>"), index.get(1).getUserIds());
+        assertArrayEquals(bob.getEncoded(), read(file, index.get(1)));
+    }
+
+    @Test
+    public void testArmoredFileIsRejected()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>"));
+        File file = write(PGPainless.asciiArmor(certificate).getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> KeyRingIndexer.index(file));
+    }
+
+    private static List<OpenPgpFingerprint> subkeyFingerprints(PGPKeyRing keyRing) {
+        List<OpenPgpFingerprint> fingerprints = new ArrayList<>();
+        Iterator<PGPPublicKey> keys = keyRing.getPublicKeys();
+        while (keys.hasNext()) {
+            PGPPublicKey key = keys.next();
+            if (!key.isMasterKey()) {
+                fingerprints.add(OpenPgpFingerprint.of(key));
+            }
+        }
+        return fingerprints;
+    }
+
+    private static byte[] read(File file, IndexedKeyRing entry) throws IOException {
+        byte[] bytes = new byte[(int) entry.getLength()];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        randomAccessFile.seek(entry.getOffset());
+        randomAccessFile.readFully(bytes);
+        randomAccessFile.close();
+        return bytes;
+    }
+
+    private File write(byte[] bytes) throws IOException {
+        File file = new File(tempDir, "keyring.gpg");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+        return file;
+    }
+}
@@ -0,0 +1,148 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.bouncycastle.bcpg.BCPGOutputStream;
+import org.bouncycastle.bcpg.PacketTags;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPRuntimeOperationException;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.util.TestUtils;
+
+public class KeyRingIteratorTest {
+
+    @Test
+    public void testConcatenatedArmoredAndBinaryBlocks()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPSecretKeyRing bob = PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>");
+        PGPPublicKeyRing aliceCert = PGPainless.extractCertificate(alice);
+        PGPPublicKeyRing bobCert = PGPainless.extractCertificate(bob);
+        PGPPublicKeyRing charlieCert = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Charlie <charlie@pgpainless.org>"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(aliceCert.getEncoded());
+        out.write(PGPainless.asciiArmor(bobCert).getBytes(StandardCharsets.UTF_8));
+        out.write(alice.getEncoded());
+        TestUtils.getMarkerPacket().encode(new BCPGOutputStream(out));
+        out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        out.write(PGPainless.asciiArmor(bob).getBytes(StandardCharsets.UTF_8));
+        out.write(PGPainless.asciiArmor(charlieCert).getBytes(StandardCharsets.UTF_8));
+        out.write(charlieCert.getEncoded());
+        byte[] bytes = out.toByteArray();
+
+        KeyRingIterator<PGPPublicKeyRing> certificates = PGPainless.readKeyRing()
+                .publicKeyRingStream(new ByteArrayInputStream(bytes));
+        assertEncodingsEqual(Arrays.<PGPKeyRing>asList(aliceCert, bobCert, charlieCert, charlieCert),
+                toList(certificates));
+        certificates.close();
+
+        KeyRingIterator<PGPSecretKeyRing> keys = PGPainless.readKeyRing()
+                .secretKeyRingStream(new ByteArrayInputStream(bytes));
+        assertEncodingsEqual(Arrays.<PGPKeyRing>asList(alice, bob), toList(keys));
+        keys.close();
+
+        KeyRingIterator<PGPKeyRing> keyRings = PGPainless.readKeyRing()
+                .keyRingStream(new ByteArrayInputStream(bytes));
+        assertEncodingsEqual(Arrays.asList(aliceCert, bobCert, alice, bob, charlieCert, charlieCert),
+                toList(keyRings));
+        keyRings.close();
+    }
+
+    @Test
+    public void testNoLimitOnNumberOfObjects()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPPublicKeyRing cert = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BCPGOutputStream packetOut = new BCPGOutputStream(out);
+        for (int i = 0; i < KeyRingReader.MAX_ITERATIONS; i++) {
+            TestUtils.getMarkerPacket().encode(packetOut);
+        }
+        out.write(cert.getEncoded());
+        byte[] bytes = out.toByteArray();
+
+        assertThrows(IOException.class, () ->
+                KeyRingReader.readPublicKeyRingCollection(new ByteArrayInputStream(bytes)));
+
+        KeyRingIterator<PGPPublicKeyRing> certificates = PGPainless.readKeyRing()
+                .publicKeyRingStream(new ByteArrayInputStream(bytes));
+        assertEncodingsEqual(Arrays.<PGPKeyRing>asList(cert), toList(certificates));
+    }
+
+    @Test
+    public void testEmptyStream() {
+        KeyRingIterator<PGPPublicKeyRing> certificates = PGPainless.readKeyRing()
+                .publicKeyRingStream(new ByteArrayInputStream(new byte[0]));
+        assertFalse(certificates.hasNext());
+        assertThrows(NoSuchElementException.class, certificates::next);
+    }
+
+    @Test
+    public void testTruncatedPacketThrows() {
+        // public key packet header announcing a body of 1000 bytes
+        byte[] truncated = new byte[] {(byte) 0x99, 0x03, (byte) 0xe8, 0x04, 0x01, 0x02};
+
+        KeyRingIterator<PGPPublicKeyRing> certificates = PGPainless.readKeyRing()
+                .publicKeyRingStream(new ByteArrayInputStream(truncated));
+        assertThrows(PGPRuntimeOperationException.class, certificates::hasNext);
+    }
+
+    @Test
+    public void testPacketSequenceWithPartialBodyLengths() throws IOException {
+        ByteArrayOutputStream packets = new ByteArrayOutputStream();
+        // literal data packet with partial body lengths
+        BCPGOutputStream packetOut = new BCPGOutputStream(packets, PacketTags.LITERAL_DATA, new byte[512]);
+        packetOut.write(new byte[5000]);
+        packetOut.close();
+        byte[] expected = packets.toByteArray();
+        packets.write("-----BEGIN PGP PUBLIC KEY BLOCK-----".getBytes(StandardCharsets.UTF_8));
+
+        BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(packets.toByteArray()));
+        assertArrayEquals(expected, Streams.readAll(new PacketSequenceInputStream(in)));
+        // the data following the packets is left in the underlying stream
+        assertEquals('-', in.read());
+    }
+
+    private static <T extends PGPKeyRing> List<PGPKeyRing> toList(KeyRingIterator<T> iterator) {
+        List<PGPKeyRing> list = new ArrayList<>();
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
+        }
+        assertTrue(!iterator.hasNext());
+        return list;
+    }
+
+    private static void assertEncodingsEqual(List<PGPKeyRing> expected, List<PGPKeyRing> actual) throws IOException {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i).getEncoded(), actual.get(i).getEncoded());
+        }
+    }
+}
@@ -18,6 +18,7 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 import org.bouncycastle.bcpg.ArmoredOutputStream;
@@ -38,7 +39,9 @@ import org.pgpainless.PGPainless;
 import org.pgpainless.implementation.ImplementationFactory;
 import org.pgpainless.key.OpenPgpV4Fingerprint;
 import org.pgpainless.key.collection.PGPKeyRingCollection;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
 import org.pgpainless.key.util.KeyRingUtils;
+import org.pgpainless.policy.Policy;
 import org.pgpainless.signature.SignatureUtils;
 import org.pgpainless.util.ArmoredOutputStreamFactory;
 import org.pgpainless.util.TestUtils;
@@ -614,4 +617,57 @@ class KeyRingReaderTest {
         assertTrue(keyRing instanceof PGPSecretKeyRing);
         assertArrayEquals(keyRing.getEncoded(), secretKeys.getEncoded());
     }
+
+    @Test
+    public void testLimitThirdPartyCertifications()
+            throws PGPException, IOException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPPublicKeyRing bob = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>"));
+        for (int i = 0; i < 3; i++) {
+            PGPSecretKeyRing certifier = PGPainless.generateKeyRing().modernKeyRing("Certifier " + i);
+            bob = PGPainless.certify()
+                    .userIdOnCertificate("Bob <bob@pgpainless.org>", bob)
+                    .withKey(certifier, SecretKeyRingProtector.unprotectedKeys())
+                    .build()
+                    .getCertifiedCertificate();
+        }
+        PGPPublicKeyRing alice = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bob.encode(bytes);
+        alice.encode(bytes);
+
+        // Not limited by default
+        assertEquals(4, countSignatures(PGPainless.readKeyRing().publicKeyRing(bytes.toByteArray()),
+                "Bob <bob@pgpainless.org>"));
+
+        Policy policy = PGPainless.getPolicy();
+        Policy.ThirdPartyCertificationLimits previous = policy.getThirdPartyCertificationLimits();
+        try {
+            policy.setThirdPartyCertificationLimits(new Policy.ThirdPartyCertificationLimits(1, 0, 0));
+            PGPPublicKeyRing limited = PGPainless.readKeyRing().limitThirdPartyCertifications()
+                    .publicKeyRing(bytes.toByteArray());
+            assertEquals(2, countSignatures(limited, "Bob <bob@pgpainless.org>"));
+
+            PGPPublicKeyRingCollection collection = PGPainless.readKeyRing().limitThirdPartyCertifications()
+                    .publicKeyRingCollection(bytes.toByteArray());
+            assertEquals(2, collection.size());
+            assertEquals(2, countSignatures(collection.getPublicKeyRing(bob.getPublicKey().getKeyID()),
+                    "Bob <bob@pgpainless.org>"));
+            assertArrayEquals(alice.getEncoded(),
+                    collection.getPublicKeyRing(alice.getPublicKey().getKeyID()).getEncoded());
+        } finally {
+            policy.setThirdPartyCertificationLimits(previous);
+        }
+    }
+
+    private static int countSignatures(PGPPublicKeyRing keyRing, String userId) {
+        int count = 0;
+        Iterator<PGPSignature> signatures = keyRing.getPublicKey().getSignaturesForID(userId);
+        while (signatures.hasNext()) {
+            signatures.next();
+            count++;
+        }
+        return count;
+    }
 }
@@ -0,0 +1,156 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bouncycastle.bcpg.BCPGOutputStream;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pgpainless.PGPainless;
+import org.pgpainless.key.OpenPgpFingerprint;
+import org.pgpainless.key.info.KeyRingInfo;
+import org.pgpainless.util.TestUtils;
+
+public class ParallelKeyRingParserTest {
+
+    private static ExecutorService executor;
+
+    @TempDir
+    File tempDir;
+
+    @BeforeAll
+    public static void startExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterAll
+    public static void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrderIsPreserved()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        List<PGPKeyRing> keyRings = new ArrayList<>();
+        List<PGPPublicKeyRing> certificates = new ArrayList<>();
+        List<PGPSecretKeyRing> secretKeys = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            PGPSecretKeyRing key = PGPainless.generateKeyRing().simpleEcKeyRing("User " + i + " <user" + i + "@pgpainless.org>");
+            if (i % 3 == 0) {
+                keyRings.add(key);
+                secretKeys.add(key);
+            } else {
+                PGPPublicKeyRing certificate = PGPainless.extractCertificate(key);
+                keyRings.add(certificate);
+                certificates.add(certificate);
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TestUtils.getMarkerPacket().encode(new BCPGOutputStream(out));
+        for (PGPKeyRing keyRing : keyRings) {
+            out.write(keyRing.getEncoded());
+        }
+        TestUtils.getMarkerPacket().encode(new BCPGOutputStream(out));
+        File file = write(out.toByteArray());
+
+        assertEncodingsEqual(certificates, PGPainless.readKeyRing().publicKeyRings(file, executor));
+        assertEncodingsEqual(certificates, PGPainless.readKeyRing().publicKeyRings(file, null));
+        assertEncodingsEqual(secretKeys, PGPainless.readKeyRing().secretKeyRings(file, executor));
+
+        // one task per key ring
+        List<Object> parsed = new ParallelKeyRingParser(PGPKeyRing.class, null)
+                .batchSize(1)
+                .parse(file, executor);
+        assertEquals(keyRings.size(), parsed.size());
+        for (int i = 0; i < keyRings.size(); i++) {
+            assertArrayEquals(keyRings.get(i).getEncoded(), ((PGPKeyRing) parsed.get(i)).getEncoded());
+        }
+    }
+
+    @Test
+    public void testInspectKeyRings()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPPublicKeyRing bob = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(alice.getEncoded());
+        out.write(bob.getEncoded());
+        File file = write(out.toByteArray());
+
+        List<KeyRingInfo> infos = PGPainless.readKeyRing()
+                .inspectKeyRings(file, PGPainless.getPolicy(), new Date(), executor);
+        assertEquals(2, infos.size());
+        assertEquals(OpenPgpFingerprint.of(alice), infos.get(0).getFingerprint());
+        assertTrue(infos.get(0).isSecretKey());
+        assertEquals(Arrays.asList("Alice <alice@pgpainless.org>"), infos.get(0).getValidUserIds());
+        assertEquals(OpenPgpFingerprint.of(bob), infos.get(1).getFingerprint());
+        assertEquals(Arrays.asList("Bob <bob@pgpainless.org>"), infos.get(1).getValidUserIds());
+        assertTrue(infos.get(1).isUsableForEncryption());
+    }
+
+    @Test
+    public void testArmoredFileIsRejected()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>"));
+        File file = write(PGPainless.asciiArmor(certificate).getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> PGPainless.readKeyRing().publicKeyRings(file, executor));
+    }
+
+    @Test
+    public void testTruncatedFileIsRejected()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(
+                PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>"));
+        byte[] encoding = certificate.getEncoded();
+        File file = write(Arrays.copyOf(encoding, encoding.length - 10));
+
+        assertThrows(IOException.class, () -> PGPainless.readKeyRing().publicKeyRings(file, executor));
+    }
+
+    private File write(byte[] bytes) throws IOException {
+        File file = new File(tempDir, "keyring.gpg");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+        return file;
+    }
+
+    private static void assertEncodingsEqual(List<? extends PGPKeyRing> expected, List<? extends PGPKeyRing> actual)
+            throws IOException {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i).getEncoded(), actual.get(i).getEncoded());
+        }
+    }
+}
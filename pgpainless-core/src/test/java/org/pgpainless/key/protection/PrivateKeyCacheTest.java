@@ -0,0 +1,291 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.key.protection;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.operator.PBESecretKeyDecryptor;
+import org.bouncycastle.openpgp.operator.PBESecretKeyEncryptor;
+import org.bouncycastle.util.io.Streams;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.decryption_verification.ConsumerOptions;
+import org.pgpainless.decryption_verification.DecryptionStream;
+import org.pgpainless.encryption_signing.EncryptionOptions;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.exception.WrongPassphraseException;
+import org.pgpainless.key.SubkeyIdentifier;
+import org.pgpainless.util.Passphrase;
+
+public class PrivateKeyCacheTest {
+
+    private static final String PASSPHRASE = "sw0rdf1sh";
+
+    @Test
+    public void testInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new PrivateKeyCache(0, 1, TimeUnit.MINUTES));
+        assertThrows(IllegalArgumentException.class, () -> new PrivateKeyCache(1, 0, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void testCachedKeyIsReused()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice", PASSPHRASE);
+        PGPSecretKey secretKey = secretKeys.getSecretKey();
+        SubkeyIdentifier identifier = new SubkeyIdentifier(secretKeys, secretKey.getKeyID());
+        CountingProtector protector = new CountingProtector(
+                SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword(PASSPHRASE)));
+        PrivateKeyCache cache = new PrivateKeyCache(10, 1, TimeUnit.MINUTES);
+
+        PGPPrivateKey first = UnlockSecretKey.unlockSecretKey(secretKey, identifier, protector, cache);
+        PGPPrivateKey second = UnlockSecretKey.unlockSecretKey(secretKey, identifier, protector, cache);
+
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals(1, protector.decryptorRequests);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testChangedSecretKeyIsNotServedFromCache()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice", PASSPHRASE);
+        PGPSecretKey secretKey = secretKeys.getSecretKey();
+        SubkeyIdentifier identifier = new SubkeyIdentifier(secretKeys, secretKey.getKeyID());
+        SecretKeyRingProtector protector = SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword(PASSPHRASE));
+        PrivateKeyCache cache = new PrivateKeyCache(10, 1, TimeUnit.MINUTES);
+
+        UnlockSecretKey.unlockSecretKey(secretKey, identifier, protector, cache);
+
+        PGPSecretKeyRing changedPassphrase = PGPainless.modifyKeyRing(secretKeys)
+                .changePassphraseFromOldPassphrase(Passphrase.fromPassword(PASSPHRASE))
+                .withSecureDefaultSettings()
+                .toNewPassphrase(Passphrase.fromPassword("0th3r"))
+                .done();
+
+        assertNull(cache.get(identifier, changedPassphrase.getSecretKey(), protector));
+        assertNotNull(cache.get(identifier, secretKey, protector));
+    }
+
+    @Test
+    public void testCachedKeyIsOnlyServedToUnlockingProtector()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice", PASSPHRASE);
+        PGPSecretKey secretKey = secretKeys.getSecretKey();
+        SubkeyIdentifier identifier = new SubkeyIdentifier(secretKeys, secretKey.getKeyID());
+        SecretKeyRingProtector protector = SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword(PASSPHRASE));
+        PrivateKeyCache cache = new PrivateKeyCache(10, 1, TimeUnit.MINUTES);
+
+        UnlockSecretKey.unlockSecretKey(secretKey, identifier, protector, cache);
+
+        SecretKeyRingProtector wrongPassphrase = SecretKeyRingProtector.unlockAnyKeyWith(
+                Passphrase.fromPassword("wr0ng"));
+        SecretKeyRingProtector unprotected = SecretKeyRingProtector.unprotectedKeys();
+        assertNull(cache.get(identifier, secretKey, wrongPassphrase));
+        assertNull(cache.get(identifier, secretKey, unprotected));
+        assertThrows(WrongPassphraseException.class, () ->
+                UnlockSecretKey.unlockSecretKey(secretKey, identifier, wrongPassphrase, cache));
+        assertThrows(PGPException.class, () ->
+                UnlockSecretKey.unlockSecretKey(secretKey, identifier, unprotected, cache));
+        assertNotNull(cache.get(identifier, secretKey, protector));
+    }
+
+    @Test
+    public void testUnprotectedKeyIsServedToAnyProtector()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice");
+        PGPSecretKey secretKey = secretKeys.getSecretKey();
+        SubkeyIdentifier identifier = new SubkeyIdentifier(secretKeys, secretKey.getKeyID());
+        PrivateKeyCache cache = new PrivateKeyCache(10, 1, TimeUnit.MINUTES);
+
+        PGPPrivateKey privateKey = UnlockSecretKey.unlockSecretKey(
+                secretKey, identifier, SecretKeyRingProtector.unprotectedKeys(), cache);
+        assertSame(privateKey, cache.get(identifier, secretKey, SecretKeyRingProtector.unprotectedKeys()));
+    }
+
+    @Test
+    public void testTimeToLive()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice", PASSPHRASE);
+        PGPSecretKey secretKey = secretKeys.getSecretKey();
+        SubkeyIdentifier identifier = new SubkeyIdentifier(secretKeys, secretKey.getKeyID());
+        SecretKeyRingProtector protector = SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword(PASSPHRASE));
+        PGPPrivateKey privateKey = UnlockSecretKey.unlockSecretKey(secretKey, protector);
+
+        ControlledClockCache cache = new ControlledClockCache(10, 10, TimeUnit.SECONDS);
+        cache.put(identifier, secretKey, protector, privateKey);
+
+        cache.now += TimeUnit.SECONDS.toMillis(9);
+        assertSame(privateKey, cache.get(identifier, secretKey, protector));
+
+        cache.now += TimeUnit.SECONDS.toMillis(1);
+        assertNull(cache.get(identifier, secretKey, protector));
+        assertEquals(0, cache.size());
+
+        cache.put(identifier, secretKey, protector, privateKey);
+        cache.now += TimeUnit.SECONDS.toMillis(10);
+        assertEquals(1, cache.size());
+        cache.evictExpired();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice", PASSPHRASE);
+        SecretKeyRingProtector protector = SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword(PASSPHRASE));
+        PrivateKeyCache cache = new PrivateKeyCache(2, 1, TimeUnit.MINUTES);
+
+        Iterator<PGPSecretKey> iterator = secretKeys.getSecretKeys();
+        PGPSecretKey primaryKey = iterator.next();
+        PGPSecretKey signingKey = iterator.next();
+        PGPSecretKey encryptionKey = iterator.next();
+        SubkeyIdentifier primaryKeyId = new SubkeyIdentifier(secretKeys, primaryKey.getKeyID());
+        SubkeyIdentifier signingKeyId = new SubkeyIdentifier(secretKeys, signingKey.getKeyID());
+        SubkeyIdentifier encryptionKeyId = new SubkeyIdentifier(secretKeys, encryptionKey.getKeyID());
+
+        UnlockSecretKey.unlockSecretKey(primaryKey, primaryKeyId, protector, cache);
+        UnlockSecretKey.unlockSecretKey(signingKey, signingKeyId, protector, cache);
+        // access the primary key, so that the signing key becomes the least recently used entry
+        assertNotNull(cache.get(primaryKeyId, primaryKey, protector));
+        UnlockSecretKey.unlockSecretKey(encryptionKey, encryptionKeyId, protector, cache);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(primaryKeyId, primaryKey, protector));
+        assertNull(cache.get(signingKeyId, signingKey, protector));
+        assertNotNull(cache.get(encryptionKeyId, encryptionKey, protector));
+    }
+
+    @Test
+    public void testInvalidation()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice", PASSPHRASE);
+        PGPSecretKeyRing bob = PGPainless.generateKeyRing().modernKeyRing("Bob", PASSPHRASE);
+        SecretKeyRingProtector protector = SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword(PASSPHRASE));
+        PrivateKeyCache cache = new PrivateKeyCache(10, 1, TimeUnit.MINUTES);
+
+        unlockAll(alice, protector, cache);
+        unlockAll(bob, protector, cache);
+        assertEquals(6, cache.size());
+
+        SubkeyIdentifier bobsPrimaryKey = new SubkeyIdentifier(bob);
+        cache.invalidate(bobsPrimaryKey);
+        assertEquals(5, cache.size());
+        assertNull(cache.get(bobsPrimaryKey, bob.getSecretKey(), protector));
+
+        cache.invalidate(alice);
+        assertEquals(2, cache.size());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSharedCacheAcrossConsumerOptions()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice", PASSPHRASE);
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(secretKeys);
+        CountingProtector protector = new CountingProtector(
+                SecretKeyRingProtector.unlockAnyKeyWith(Passphrase.fromPassword(PASSPHRASE)));
+        PrivateKeyCache cache = new PrivateKeyCache(10, 1, TimeUnit.MINUTES);
+        byte[] plaintext = "Hello, World!\n".getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream ciphertextOut = new ByteArrayOutputStream();
+            EncryptionStream encryptionStream = PGPainless.encryptAndOrSign()
+                    .onOutputStream(ciphertextOut)
+                    .withOptions(ProducerOptions.encrypt(EncryptionOptions.get().addRecipient(certificate)));
+            encryptionStream.write(plaintext);
+            encryptionStream.close();
+
+            ByteArrayOutputStream plaintextOut = new ByteArrayOutputStream();
+            DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                    .onInputStream(new ByteArrayInputStream(ciphertextOut.toByteArray()))
+                    .withOptions(ConsumerOptions.get()
+                            .setPrivateKeyCache(cache)
+                            .addDecryptionKey(secretKeys, protector));
+            Streams.pipeAll(decryptionStream, plaintextOut);
+            decryptionStream.close();
+
+            assertArrayEquals(plaintext, plaintextOut.toByteArray());
+        }
+
+        assertEquals(1, protector.decryptorRequests);
+        assertEquals(1, cache.size());
+    }
+
+    private static void unlockAll(PGPSecretKeyRing secretKeys, SecretKeyRingProtector protector, PrivateKeyCache cache)
+            throws PGPException {
+        Iterator<PGPSecretKey> iterator = secretKeys.getSecretKeys();
+        while (iterator.hasNext()) {
+            PGPSecretKey secretKey = iterator.next();
+            UnlockSecretKey.unlockSecretKey(secretKey,
+                    new SubkeyIdentifier(secretKeys, secretKey.getKeyID()), protector, cache);
+        }
+    }
+
+    private static class ControlledClockCache extends PrivateKeyCache {
+
+        private long now = 0;
+
+        ControlledClockCache(int maxSize, long timeToLive, TimeUnit unit) {
+            super(maxSize, timeToLive, unit);
+        }
+
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class CountingProtector implements SecretKeyRingProtector {
+
+        private final SecretKeyRingProtector delegate;
+        private int decryptorRequests = 0;
+
+        CountingProtector(SecretKeyRingProtector delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasPassphraseFor(Long keyId) {
+            return delegate.hasPassphraseFor(keyId);
+        }
+
+        @Nullable
+        @Override
+        public PBESecretKeyDecryptor getDecryptor(Long keyId) throws PGPException {
+            decryptorRequests++;
+            return delegate.getDecryptor(keyId);
+        }
+
+        @Nullable
+        @Override
+        public PBESecretKeyEncryptor getEncryptor(Long keyId) throws PGPException {
+            return delegate.getEncryptor(keyId);
+        }
+    }
+}
@@ -7,15 +7,18 @@ package org.pgpainless.key.util;
 import org.bouncycastle.bcpg.attr.ImageAttribute;
 import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPKeyPair;
+import org.bouncycastle.openpgp.PGPPrivateKey;
 import org.bouncycastle.openpgp.PGPPublicKey;
 import org.bouncycastle.openpgp.PGPPublicKeyRing;
 import org.bouncycastle.openpgp.PGPSecretKeyRing;
 import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.openpgp.PGPSignatureGenerator;
+import org.bouncycastle.openpgp.PGPSignatureSubpacketGenerator;
 import org.bouncycastle.openpgp.PGPUserAttributeSubpacketVector;
 import org.bouncycastle.openpgp.PGPUserAttributeSubpacketVectorGenerator;
 import org.junit.jupiter.api.Test;
 import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.EncryptionPurpose;
 import org.pgpainless.algorithm.HashAlgorithm;
 import org.pgpainless.algorithm.KeyFlag;
 import org.pgpainless.algorithm.SignatureType;
@@ -24,17 +27,27 @@ import org.pgpainless.key.generation.KeyRingBuilder;
 import org.pgpainless.key.generation.KeySpec;
 import org.pgpainless.key.generation.type.KeyType;
 import org.pgpainless.key.generation.type.ecc.EllipticCurve;
+import org.pgpainless.key.generation.type.xdh.XDHSpec;
+import org.pgpainless.key.info.KeyRingInfo;
 import org.pgpainless.key.protection.SecretKeyRingProtector;
 import org.pgpainless.key.protection.UnlockSecretKey;
+import org.pgpainless.policy.Policy;
 import org.pgpainless.util.CollectionUtils;
+import org.pgpainless.util.Passphrase;
 
+import java.io.IOException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class KeyRingUtilTest {
@@ -88,4 +101,197 @@ public class KeyRingUtilTest {
         PGPPublicKeyRing publicKeysPlus = KeyRingUtils.keysPlusPublicKey(publicKeys, pubkey);
         assertNotNull(publicKeysPlus.getPublicKey(pubkey.getKeyID()));
     }
+
+    @Test
+    public void testLimitThirdPartyCertificationsRetainsMostRecentCertifications()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing bob = PGPainless.generateKeyRing().modernKeyRing("Bob");
+        PGPSecretKeyRing certifier = PGPainless.generateKeyRing().modernKeyRing("Certifier");
+        PGPPrivateKey certifierKey = UnlockSecretKey.unlockSecretKey(
+                certifier.getSecretKey(), SecretKeyRingProtector.unprotectedKeys());
+        long now = bob.getPublicKey().getCreationTime().getTime();
+        for (int i = 5; i > 0; i--) {
+            PGPSignatureGenerator sigGen = new PGPSignatureGenerator(
+                    ImplementationFactory.getInstance().getPGPContentSignerBuilder(
+                            certifier.getPublicKey().getAlgorithm(), HashAlgorithm.SHA512.getAlgorithmId()));
+            sigGen.init(SignatureType.GENERIC_CERTIFICATION.getCode(), certifierKey);
+            PGPSignatureSubpacketGenerator hashed = new PGPSignatureSubpacketGenerator();
+            hashed.setSignatureCreationTime(false, new Date(now - i * 60000L));
+            hashed.setIssuerFingerprint(false, certifier.getPublicKey());
+            sigGen.setHashedSubpackets(hashed.generate());
+            PGPSignature certification = sigGen.generateCertification("Bob", bob.getPublicKey());
+            bob = KeyRingUtils.injectCertification(bob, "Bob", certification);
+        }
+        assertEquals(6, CollectionUtils.iteratorToList(bob.getPublicKey().getSignaturesForID("Bob")).size());
+
+        Policy policy = PGPainless.getPolicy();
+        Policy.ThirdPartyCertificationLimits previous = policy.getThirdPartyCertificationLimits();
+        try {
+            policy.setThirdPartyCertificationLimits(Policy.ThirdPartyCertificationLimits.unlimited());
+            assertTrue(bob == KeyRingUtils.limitThirdPartyCertifications(bob, policy));
+
+            policy.setThirdPartyCertificationLimits(new Policy.ThirdPartyCertificationLimits(2, 0, 0));
+            PGPSecretKeyRing limited = KeyRingUtils.limitThirdPartyCertifications(bob, policy);
+            List<PGPSignature> signatures =
+                    CollectionUtils.iteratorToList(limited.getPublicKey().getSignaturesForID("Bob"));
+            assertEquals(3, signatures.size());
+            int thirdParty = 0;
+            for (PGPSignature signature : signatures) {
+                if (signature.getKeyID() == certifier.getPublicKey().getKeyID()) {
+                    thirdParty++;
+                    // only the two most recent certifications are retained
+                    assertTrue(signature.getCreationTime().getTime() >= now - 2 * 60000L);
+                }
+            }
+            assertEquals(2, thirdParty);
+            assertTrue(PGPainless.inspectKeyRing(limited).isUserIdValid("Bob"));
+            assertNotNull(limited.getSecretKey(bob.getSecretKey().getKeyID()));
+
+            policy.setThirdPartyCertificationLimits(
+                    Policy.ThirdPartyCertificationLimits.noThirdPartyCertifications());
+            PGPPublicKeyRing stripped = KeyRingUtils.limitThirdPartyCertifications(
+                    PGPainless.extractCertificate(bob), policy);
+            assertEquals(1, CollectionUtils.iteratorToList(stripped.getPublicKey().getSignaturesForID("Bob")).size());
+            assertEquals(PGPainless.inspectKeyRing(bob).getValidUserIds(),
+                    PGPainless.inspectKeyRing(stripped).getValidUserIds());
+        } finally {
+            policy.setThirdPartyCertificationLimits(previous);
+        }
+    }
+
+    @Test
+    public void testLimitThirdPartyCertificationsLimitsKeyRevocationsSeparately()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing bob = PGPainless.generateKeyRing().modernKeyRing("Bob");
+        PGPSecretKeyRing revoker = PGPainless.generateKeyRing().modernKeyRing("Revoker");
+        PGPPrivateKey revokerKey = UnlockSecretKey.unlockSecretKey(
+                revoker.getSecretKey(), SecretKeyRingProtector.unprotectedKeys());
+        long now = bob.getPublicKey().getCreationTime().getTime();
+        int keySignatures = CollectionUtils.iteratorToList(bob.getPublicKey().getKeySignatures()).size();
+        for (int i = 3; i > 0; i--) {
+            PGPSignatureGenerator sigGen = new PGPSignatureGenerator(
+                    ImplementationFactory.getInstance().getPGPContentSignerBuilder(
+                            revoker.getPublicKey().getAlgorithm(), HashAlgorithm.SHA512.getAlgorithmId()));
+            sigGen.init(SignatureType.KEY_REVOCATION.getCode(), revokerKey);
+            PGPSignatureSubpacketGenerator hashed = new PGPSignatureSubpacketGenerator();
+            hashed.setSignatureCreationTime(false, new Date(now + i * 60000L));
+            hashed.setIssuerFingerprint(false, revoker.getPublicKey());
+            sigGen.setHashedSubpackets(hashed.generate());
+            bob = KeyRingUtils.injectCertification(bob, sigGen.generateCertification(bob.getPublicKey()));
+        }
+        assertEquals(keySignatures + 3,
+                CollectionUtils.iteratorToList(bob.getPublicKey().getKeySignatures()).size());
+
+        Policy policy = PGPainless.getPolicy();
+        Policy.ThirdPartyCertificationLimits previous = policy.getThirdPartyCertificationLimits();
+        try {
+            // revocations are not counted against the per-key limit
+            policy.setThirdPartyCertificationLimits(new Policy.ThirdPartyCertificationLimits(0, 0, 0, 3));
+            assertTrue(bob == KeyRingUtils.limitThirdPartyCertifications(bob, policy));
+
+            policy.setThirdPartyCertificationLimits(new Policy.ThirdPartyCertificationLimits(0, 0, 0, 2));
+            PGPSecretKeyRing limited = KeyRingUtils.limitThirdPartyCertifications(bob, policy);
+            List<PGPSignature> signatures = CollectionUtils.iteratorToList(limited.getPublicKey().getKeySignatures());
+            assertEquals(keySignatures + 2, signatures.size());
+            for (PGPSignature signature : signatures) {
+                if (signature.getKeyID() == revoker.getPublicKey().getKeyID()) {
+                    // only the two most recent revocations are retained
+                    assertTrue(signature.getCreationTime().getTime() >= now + 2 * 60000L);
+                }
+            }
+            assertEquals(PGPainless.inspectKeyRing(bob).getValidUserIds(),
+                    PGPainless.inspectKeyRing(limited).getValidUserIds());
+            assertNotNull(limited.getSecretKey(bob.getSecretKey().getKeyID()));
+        } finally {
+            policy.setThirdPartyCertificationLimits(previous);
+        }
+    }
+
+    @Test
+    public void testCompactCertificateRetainsCurrentValidState()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        SecretKeyRingProtector protector = SecretKeyRingProtector.unprotectedKeys();
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        alice = PGPainless.modifyKeyRing(alice)
+                .addUserId("Alice <alice@example.org>", protector)
+                .addUserId("Old Alice <alice@old.example.org>", protector)
+                .addSubKey(KeySpec.getBuilder(KeyType.XDH(XDHSpec._X25519), KeyFlag.ENCRYPT_COMMS).build(),
+                        Passphrase.emptyPassphrase(), protector)
+                .done();
+        List<PGPPublicKey> keys = CollectionUtils.iteratorToList(alice.getPublicKeys());
+        long revokedSubkeyId = keys.get(keys.size() - 1).getKeyID();
+        alice = PGPainless.modifyKeyRing(alice)
+                .revokeUserId("Old Alice <alice@old.example.org>", protector)
+                .revokeSubKey(revokedSubkeyId, protector)
+                .done();
+        PGPPublicKeyRing certificate = PGPainless.certify()
+                .userIdOnCertificate("Alice <alice@pgpainless.org>", PGPainless.extractCertificate(alice))
+                .withKey(PGPainless.generateKeyRing().modernKeyRing("Bob <bob@pgpainless.org>"), protector)
+                .build()
+                .getCertifiedCertificate();
+
+        Date now = new Date();
+        KeyRingInfo info = PGPainless.inspectKeyRing(certificate, now);
+        CompactCertificate compact = KeyRingUtils.compact(certificate, PGPainless.getPolicy(), now);
+
+        assertEquals(info.getFingerprint(), compact.getFingerprint());
+        assertEquals(now, compact.getReferenceDate());
+        assertEquals(Arrays.asList("Alice <alice@pgpainless.org>", "Alice <alice@example.org>"), compact.getUserIds());
+        assertEquals(keyIds(info.getEncryptionSubkeys(EncryptionPurpose.ANY)), toList(compact.getEncryptionKeyIds()));
+        assertEquals(keyIds(info.getSigningSubkeys()), toList(compact.getSigningKeyIds()));
+        assertFalse(compact.isEncryptionKey(revokedSubkeyId));
+        assertTrue(compact.isSigningKey(info.getSigningSubkeys().get(0).getKeyID()));
+        assertTrue(compact.getEncoded().length < certificate.getEncoded().length);
+
+        PGPPublicKeyRing expanded = compact.toPublicKeyRing();
+        assertNull(expanded.getPublicKey(revokedSubkeyId));
+        for (PGPPublicKey key : CollectionUtils.iteratorToList(expanded.getPublicKeys())) {
+            // only self-signatures are retained
+            for (PGPSignature signature : CollectionUtils.iteratorToList(key.getSignatures())) {
+                assertEquals(certificate.getPublicKey().getKeyID(), signature.getKeyID());
+            }
+        }
+        KeyRingInfo expandedInfo = PGPainless.inspectKeyRing(expanded, now);
+        assertEquals(info.getValidUserIds(), expandedInfo.getValidUserIds());
+        assertEquals(keyIds(info.getEncryptionSubkeys(EncryptionPurpose.ANY)),
+                keyIds(expandedInfo.getEncryptionSubkeys(EncryptionPurpose.ANY)));
+        assertEquals(keyIds(info.getSigningSubkeys()), keyIds(expandedInfo.getSigningSubkeys()));
+        assertEquals(info.getPrimaryKeyExpirationDate(), expandedInfo.getPrimaryKeyExpirationDate());
+
+        // compacting the secret key yields the same certificate, without secret key material
+        assertEquals(KeyRingUtils.compact(alice, PGPainless.getPolicy(), now),
+                KeyRingUtils.compact(PGPainless.extractCertificate(alice), PGPainless.getPolicy(), now));
+    }
+
+    @Test
+    public void testCompactRevokedCertificate()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing alice = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        alice = PGPainless.modifyKeyRing(alice)
+                .revoke(SecretKeyRingProtector.unprotectedKeys())
+                .done();
+
+        Date now = new Date();
+        CompactCertificate compact = KeyRingUtils.compact(alice, PGPainless.getPolicy(), now);
+        assertTrue(compact.getUserIds().isEmpty());
+        assertEquals(0, compact.getEncryptionKeyIds().length);
+        assertEquals(0, compact.getSigningKeyIds().length);
+        assertTrue(PGPainless.inspectKeyRing(compact.toPublicKeyRing(), now).getRevocationState().isHardRevocation());
+    }
+
+    private static List<Long> keyIds(List<PGPPublicKey> keys) {
+        List<Long> keyIds = new ArrayList<>();
+        for (PGPPublicKey key : keys) {
+            keyIds.add(key.getKeyID());
+        }
+        return keyIds;
+    }
+
+    private static List<Long> toList(long[] keyIds) {
+        List<Long> list = new ArrayList<>();
+        for (long keyId : keyIds) {
+            list.add(keyId);
+        }
+        return list;
+    }
 }
@@ -7,25 +7,38 @@ package org.pgpainless.signature;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
 import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.util.io.Streams;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestTemplate;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.DocumentSignatureType;
 import org.pgpainless.decryption_verification.ConsumerOptions;
 import org.pgpainless.decryption_verification.DecryptionStream;
 import org.pgpainless.decryption_verification.OpenPgpMetadata;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.encryption_signing.SigningOptions;
 import org.pgpainless.exception.SignatureValidationException;
+import org.pgpainless.key.modification.secretkeyring.SecretKeyRingEditorInterface;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
 import org.pgpainless.policy.Policy;
 import org.pgpainless.signature.consumer.CertificateValidator;
 import org.pgpainless.util.TestAllImplementations;
@@ -1395,4 +1408,51 @@ public class CertificateValidatorTest {
 
         assertFalse(metadata.getVerifiedSignatures().isEmpty());
     }
+
+    @Test
+    public void testConcurrentCertificateValidation()
+            throws PGPException, IOException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        SecretKeyRingEditorInterface editor = PGPainless.modifyKeyRing(secretKeys);
+        for (int i = 0; i < 5; i++) {
+            editor.addUserId("Alice " + i + " <alice" + i + "@pgpainless.org>", SecretKeyRingProtector.unprotectedKeys());
+        }
+        secretKeys = editor.done();
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(secretKeys);
+
+        ByteArrayOutputStream signedOut = new ByteArrayOutputStream();
+        EncryptionStream signingStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(signedOut)
+                .withOptions(ProducerOptions.sign(SigningOptions.get()
+                        .addInlineSignature(SecretKeyRingProtector.unprotectedKeys(), secretKeys,
+                                DocumentSignatureType.BINARY_DOCUMENT)));
+        signingStream.write("Hello, World!\n".getBytes(StandardCharsets.UTF_8));
+        signingStream.close();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DecryptionStream decryptionStream = PGPainless.decryptAndOrVerify()
+                    .onInputStream(new ByteArrayInputStream(signedOut.toByteArray()))
+                    .withOptions(ConsumerOptions.get()
+                            .addVerificationCert(certificate)
+                            .setCertificateValidationExecutor(executor));
+            Streams.drain(decryptionStream);
+            decryptionStream.close();
+            assertTrue(decryptionStream.getMetadata().isVerifiedSignedBy(certificate));
+
+            // Certificate without any valid user-id is rejected, no matter if validated sequentially or concurrently
+            PGPSignature signature = decryptionStream.getMetadata().getVerifiedInlineSignatures().get(0).getSignature();
+            SecretKeyRingEditorInterface revoker = PGPainless.modifyKeyRing(secretKeys);
+            for (String userId : PGPainless.inspectKeyRing(secretKeys).getUserIds()) {
+                revoker.revokeUserId(userId, SecretKeyRingProtector.unprotectedKeys());
+            }
+            PGPPublicKeyRing revoked = PGPainless.extractCertificate(revoker.done());
+            assertThrows(SignatureValidationException.class, () -> CertificateValidator.validateCertificate(
+                    signature, revoked, PGPainless.getPolicy()));
+            assertThrows(SignatureValidationException.class, () -> CertificateValidator.validateCertificate(
+                    signature, revoked, PGPainless.getPolicy(), executor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,123 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.signature;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Iterator;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.SignatureType;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.policy.Policy;
+import org.pgpainless.signature.consumer.SignatureIndex;
+import org.pgpainless.signature.consumer.SignaturePicker;
+
+public class SignatureIndexTest {
+
+    private static final String BOB = "Bob <bob@pgpainless.org>";
+
+    @Test
+    public void testSignaturesAreBucketedByComponentTypeAndIssuer()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPPublicKeyRing bob = certifiedBob(3);
+        SignatureIndex index = SignatureIndex.of(bob);
+
+        assertEquals(1, index.getSelfCertifications(BOB).size());
+        assertEquals(SignatureType.POSITIVE_CERTIFICATION,
+                SignatureType.valueOf(index.getSelfCertifications(BOB).get(0).getSignatureType()));
+        assertEquals(3, index.getThirdPartyCertifications(BOB).size());
+        assertEquals(3, index.getThirdPartySignatures(BOB, SignatureType.GENERIC_CERTIFICATION).size());
+        assertTrue(index.getSelfSignatures(BOB, SignatureType.CERTIFICATION_REVOCATION).isEmpty());
+        assertTrue(index.getSelfCertifications("Mallory <mallory@pgpainless.org>").isEmpty());
+        assertTrue(index.hasUserId(BOB));
+        assertFalse(index.hasUserId("Mallory <mallory@pgpainless.org>"));
+
+        Iterator<PGPPublicKey> subkeys = bob.getPublicKeys();
+        subkeys.next();
+        while (subkeys.hasNext()) {
+            PGPPublicKey subkey = subkeys.next();
+            assertEquals(1, index.getSelfSignatures(subkey.getKeyID(), SignatureType.SUBKEY_BINDING).size());
+            assertTrue(index.getThirdPartySignatures(subkey.getKeyID(), SignatureType.SUBKEY_BINDING).isEmpty());
+        }
+
+        // Buckets are sorted by ascending creation time
+        PGPSignature previous = null;
+        for (PGPSignature signature : index.getThirdPartyCertifications(BOB)) {
+            if (previous != null) {
+                assertTrue(!signature.getCreationTime().before(previous.getCreationTime()));
+            }
+            previous = signature;
+        }
+    }
+
+    @Test
+    public void testIndexedPickersMatchKeyRingPickers()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing(BOB);
+        PGPSecretKeyRing revoked = PGPainless.modifyKeyRing(secretKeys)
+                .addUserId("Bob <bob@example.org>", SecretKeyRingProtector.unprotectedKeys())
+                .revokeUserId("Bob <bob@example.org>", SecretKeyRingProtector.unprotectedKeys())
+                .done();
+        PGPPublicKeyRing bob = PGPainless.extractCertificate(revoked);
+        SignatureIndex index = SignatureIndex.of(bob);
+        Policy policy = PGPainless.getPolicy();
+        Date now = new Date();
+
+        assertEquals(SignaturePicker.pickCurrentRevocationSelfSignature(bob, policy, now),
+                SignaturePicker.pickCurrentRevocationSelfSignature(index, policy, now));
+        assertEquals(SignaturePicker.pickLatestDirectKeySignature(bob, policy, now),
+                SignaturePicker.pickLatestDirectKeySignature(index, policy, now));
+        assertEquals(SignaturePicker.pickCurrentDirectKeySelfSignature(bob, policy, now),
+                SignaturePicker.pickCurrentDirectKeySelfSignature(index, policy, now));
+        for (String userId : new String[] {BOB, "Bob <bob@example.org>"}) {
+            assertEquals(SignaturePicker.pickLatestUserIdCertificationSignature(bob, userId, policy, now),
+                    SignaturePicker.pickLatestUserIdCertificationSignature(index, userId, policy, now));
+            assertEquals(SignaturePicker.pickCurrentUserIdCertificationSignature(bob, userId, policy, now),
+                    SignaturePicker.pickCurrentUserIdCertificationSignature(index, userId, policy, now));
+            assertEquals(SignaturePicker.pickCurrentUserIdRevocationSignature(bob, userId, policy, now),
+                    SignaturePicker.pickCurrentUserIdRevocationSignature(index, userId, policy, now));
+        }
+        assertNotNull(SignaturePicker.pickCurrentUserIdRevocationSignature(index, "Bob <bob@example.org>", policy, now));
+
+        Iterator<PGPPublicKey> subkeys = bob.getPublicKeys();
+        subkeys.next();
+        while (subkeys.hasNext()) {
+            PGPPublicKey subkey = subkeys.next();
+            assertEquals(SignaturePicker.pickLatestSubkeyBindingSignature(bob, subkey, policy, now),
+                    SignaturePicker.pickLatestSubkeyBindingSignature(index, subkey, policy, now));
+            assertEquals(SignaturePicker.pickCurrentSubkeyBindingSignature(bob, subkey, policy, now),
+                    SignaturePicker.pickCurrentSubkeyBindingSignature(index, subkey, policy, now));
+            assertEquals(SignaturePicker.pickCurrentSubkeyBindingRevocationSignature(bob, subkey, policy, now),
+                    SignaturePicker.pickCurrentSubkeyBindingRevocationSignature(index, subkey, policy, now));
+        }
+    }
+
+    private static PGPPublicKeyRing certifiedBob(int certifiers)
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPPublicKeyRing bob = PGPainless.extractCertificate(PGPainless.generateKeyRing().modernKeyRing(BOB));
+        for (int i = 0; i < certifiers; i++) {
+            PGPSecretKeyRing certifier = PGPainless.generateKeyRing().modernKeyRing("Certifier " + i);
+            bob = PGPainless.certify()
+                    .userIdOnCertificate(BOB, bob)
+                    .withKey(certifier, SecretKeyRingProtector.unprotectedKeys())
+                    .build()
+                    .getCertifiedCertificate();
+        }
+        return bob;
+    }
+}
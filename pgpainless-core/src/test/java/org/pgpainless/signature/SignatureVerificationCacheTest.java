@@ -0,0 +1,201 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.signature;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pgpainless.PGPainless;
+import org.pgpainless.algorithm.DocumentSignatureType;
+import org.pgpainless.encryption_signing.EncryptionStream;
+import org.pgpainless.encryption_signing.ProducerOptions;
+import org.pgpainless.encryption_signing.SigningOptions;
+import org.pgpainless.exception.SignatureValidationException;
+import org.pgpainless.key.info.KeyRingInfo;
+import org.pgpainless.key.modification.secretkeyring.SecretKeyRingEditorInterface;
+import org.pgpainless.key.protection.SecretKeyRingProtector;
+import org.pgpainless.policy.Policy;
+import org.pgpainless.signature.consumer.CertificateValidator;
+import org.pgpainless.signature.consumer.SignatureVerificationCache;
+import org.pgpainless.signature.consumer.SignatureVerifier;
+
+public class SignatureVerificationCacheTest {
+
+    private SignatureVerificationCache previousInstance;
+    private SignatureVerificationCache cache;
+
+    @BeforeEach
+    public void setup() {
+        previousInstance = SignatureVerificationCache.getInstance();
+        cache = new SignatureVerificationCache();
+        SignatureVerificationCache.setInstance(cache);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SignatureVerificationCache.setInstance(previousInstance);
+    }
+
+    @Test
+    public void testInvalidMaxSize() {
+        assertThrows(IllegalArgumentException.class, () -> new SignatureVerificationCache(0));
+    }
+
+    @Test
+    public void testRepeatedVerificationOfUserIdCertificationIsCached()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPPublicKey primaryKey = secretKeys.getPublicKey();
+        PGPSignature certification = primaryKey.getSignaturesForID("Alice <alice@pgpainless.org>").next();
+        Policy policy = PGPainless.getPolicy();
+        Date now = new Date();
+
+        assertTrue(SignatureVerifier.verifyUserIdCertification(
+                "Alice <alice@pgpainless.org>", certification, primaryKey, policy, now));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getHitCount());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(SignatureVerifier.verifyUserIdCertification(
+                    "Alice <alice@pgpainless.org>", certification, primaryKey, policy, now));
+        }
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.getHitCount());
+    }
+
+    @Test
+    public void testOutcomeIsScopedToSignedData()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPPublicKey primaryKey = secretKeys.getPublicKey();
+        PGPSignature certification = primaryKey.getSignaturesForID("Alice <alice@pgpainless.org>").next();
+        Policy policy = PGPainless.getPolicy();
+        Date now = new Date();
+
+        assertTrue(SignatureVerifier.verifyUserIdCertification(
+                "Alice <alice@pgpainless.org>", certification, primaryKey, policy, now));
+
+        // The cached outcome for the genuine user-id must not be used for a different user-id
+        for (int i = 0; i < 2; i++) {
+            assertThrows(SignatureValidationException.class, () -> SignatureVerifier.verifyUserIdCertification(
+                    "Mallory <mallory@pgpainless.org>", certification, primaryKey, policy, now));
+        }
+        assertEquals(2, cache.size());
+        // second failed attempt is answered from the cache
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testPolicyIsAlwaysEvaluated()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPPublicKey primaryKey = secretKeys.getPublicKey();
+        PGPSignature certification = primaryKey.getSignaturesForID("Alice <alice@pgpainless.org>").next();
+        Policy policy = PGPainless.getPolicy();
+
+        assertTrue(SignatureVerifier.verifyUserIdCertification(
+                "Alice <alice@pgpainless.org>", certification, primaryKey, policy, new Date()));
+        // Signature was not yet effective at that time, even though its correctness is cached
+        Date past = new Date(certification.getCreationTime().getTime() - 100000);
+        assertThrows(SignatureValidationException.class, () -> SignatureVerifier.verifyUserIdCertification(
+                "Alice <alice@pgpainless.org>", certification, primaryKey, policy, past));
+    }
+
+    @Test
+    public void testDisabledCache()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        SignatureVerificationCache.setInstance(null);
+        assertNull(SignatureVerificationCache.getInstance());
+
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPPublicKey primaryKey = secretKeys.getPublicKey();
+        PGPSignature certification = primaryKey.getSignaturesForID("Alice <alice@pgpainless.org>").next();
+
+        assertTrue(SignatureVerifier.verifyUserIdCertification(
+                "Alice <alice@pgpainless.org>", certification, primaryKey, PGPainless.getPolicy(), new Date()));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testThreadInstanceTakesPrecedence()
+            throws PGPException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        PGPPublicKey primaryKey = secretKeys.getPublicKey();
+        PGPSignature certification = primaryKey.getSignaturesForID("Alice <alice@pgpainless.org>").next();
+
+        SignatureVerificationCache threadCache = new SignatureVerificationCache();
+        assertNull(SignatureVerificationCache.setThreadInstance(threadCache));
+        try {
+            assertSame(threadCache, SignatureVerificationCache.getInstance());
+            assertTrue(SignatureVerifier.verifyUserIdCertification(
+                    "Alice <alice@pgpainless.org>", certification, primaryKey, PGPainless.getPolicy(), new Date()));
+        } finally {
+            assertSame(threadCache, SignatureVerificationCache.setThreadInstance(null));
+        }
+        assertEquals(1, threadCache.size());
+        assertEquals(0, cache.size());
+        assertSame(cache, SignatureVerificationCache.getInstance());
+    }
+
+    @Test
+    public void testThreadInstanceIsUsedByExecutorThreads()
+            throws PGPException, IOException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        PGPSecretKeyRing secretKeys = PGPainless.generateKeyRing().modernKeyRing("Alice <alice@pgpainless.org>");
+        SecretKeyRingEditorInterface editor = PGPainless.modifyKeyRing(secretKeys);
+        for (int i = 0; i < 5; i++) {
+            editor.addUserId("Alice " + i + " <alice" + i + "@pgpainless.org>", SecretKeyRingProtector.unprotectedKeys());
+        }
+        secretKeys = editor.done();
+        PGPPublicKeyRing certificate = PGPainless.extractCertificate(secretKeys);
+
+        EncryptionStream signingStream = PGPainless.encryptAndOrSign()
+                .onOutputStream(new ByteArrayOutputStream())
+                .withOptions(ProducerOptions.sign(SigningOptions.get()
+                        .addDetachedSignature(SecretKeyRingProtector.unprotectedKeys(), secretKeys,
+                                DocumentSignatureType.BINARY_DOCUMENT)));
+        signingStream.write("Hello, World!\n".getBytes(StandardCharsets.UTF_8));
+        signingStream.close();
+        PGPSignature signature = signingStream.getResult().getDetachedSignatures().values().iterator().next().iterator().next();
+
+        cache.clear();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        SignatureVerificationCache threadCache = new SignatureVerificationCache();
+        SignatureVerificationCache.setThreadInstance(threadCache);
+        try {
+            assertTrue(CertificateValidator.validateCertificate(
+                    signature, certificate, PGPainless.getPolicy(), executor));
+            assertEquals(0, cache.size());
+            assertTrue(threadCache.size() >= 6);
+
+            threadCache.clear();
+            KeyRingInfo.evaluate(certificate, PGPainless.getPolicy(), new Date(), executor);
+            assertEquals(0, cache.size());
+            assertTrue(threadCache.size() >= 6);
+        } finally {
+            SignatureVerificationCache.setThreadInstance(null);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+// SPDX-FileCopyrightText: 2023 Paul Schaub <vanitasvitae@fsfe.org>
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.pgpainless.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LongMapTest {
+
+    @Test
+    public void testMatchesHashMap() {
+        Random random = new Random(42);
+        LongMap<String> longMap = new LongMap<>();
+        Map<Long, String> hashMap = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            // small range of keys to provoke overwrites
+            long key = random.nextInt(5000) - 2500L;
+            String value = Integer.toString(i);
+            assertEquals(hashMap.put(key, value), longMap.put(key, value));
+        }
+        // keys which differ only in their upper half
+        for (long i = 1; i <= 100; i++) {
+            assertNull(longMap.put(i << 32, "upper" + i));
+            hashMap.put(i << 32, "upper" + i);
+        }
+
+        assertEquals(hashMap.size(), longMap.size());
+        for (long key = -2600; key < 2600; key++) {
+            assertEquals(hashMap.get(key), longMap.get(key));
+            assertEquals(hashMap.containsKey(key), longMap.containsKey(key));
+        }
+        for (long i = 1; i <= 100; i++) {
+            assertEquals("upper" + i, longMap.get(i << 32));
+        }
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        LongMap<String> map = new LongMap<>(0);
+        assertTrue(map.isEmpty());
+        assertNull(map.putIfAbsent(0L, "zero"));
+        assertEquals("zero", map.putIfAbsent(0L, "null"));
+        assertEquals("zero", map.get(0L));
+        assertFalse(map.isEmpty());
+        assertEquals(1, map.size());
+
+        assertThrows(NullPointerException.class, () -> map.put(1L, null));
+        assertThrows(IllegalArgumentException.class, () -> new LongMap<String>(-1));
+    }
+}